@@ -0,0 +1,94 @@
+package com.adaton.benchmark;
+
+import com.adaton.model.InstrumentPrice;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mixed reader and writer threads sharing one cache, with writer:reader ratios of 1:1, 1:8 and 8:1.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContentionBenchmark {
+
+    @State(Scope.Thread)
+    public static class ThreadRandom {
+        final SplittableRandom random = new SplittableRandom();
+    }
+
+    private static void publish(PriceUniverse priceUniverse, ThreadRandom threadRandom) {
+        final long sequence = threadRandom.random.nextLong(
+            (long) priceUniverse.vendorCount * priceUniverse.instrumentCount
+        );
+        priceUniverse.instrumentPriceCache.publishInstrumentPrice(
+            priceUniverse.priceAt(sequence, priceUniverse.latestPriceDate)
+        );
+    }
+
+    private static Map<String, InstrumentPrice> read(PriceUniverse priceUniverse, ThreadRandom threadRandom) {
+        final int instrumentIndex = threadRandom.random.nextInt(priceUniverse.instrumentCount);
+        return priceUniverse.instrumentPriceCache.getInstrumentPrice(
+            priceUniverse.instrumentIds[instrumentIndex],
+            priceUniverse.latestPriceDate
+        );
+    }
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(1)
+    public void balancedWriter(PriceUniverse priceUniverse, ThreadRandom threadRandom) {
+        publish(priceUniverse, threadRandom);
+    }
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(1)
+    public Map<String, InstrumentPrice> balancedReader(PriceUniverse priceUniverse, ThreadRandom threadRandom) {
+        return read(priceUniverse, threadRandom);
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(1)
+    public void readHeavyWriter(PriceUniverse priceUniverse, ThreadRandom threadRandom) {
+        publish(priceUniverse, threadRandom);
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(8)
+    public Map<String, InstrumentPrice> readHeavyReader(PriceUniverse priceUniverse, ThreadRandom threadRandom) {
+        return read(priceUniverse, threadRandom);
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(8)
+    public void writeHeavyWriter(PriceUniverse priceUniverse, ThreadRandom threadRandom) {
+        publish(priceUniverse, threadRandom);
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(1)
+    public Map<String, InstrumentPrice> writeHeavyReader(PriceUniverse priceUniverse, ThreadRandom threadRandom) {
+        return read(priceUniverse, threadRandom);
+    }
+
+}
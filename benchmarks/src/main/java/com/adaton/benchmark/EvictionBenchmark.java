@@ -0,0 +1,76 @@
+package com.adaton.benchmark;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.model.PublishResult;
+import com.adaton.service.impl.InstrumentPriceCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Day rollover: the cache is filled to its day limit, then every invocation publishes a batch for the
+ * next date, which queues the background retention run that evicts the earliest cached date. The batch is
+ * published either through the bulk path or one price at a time.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class EvictionBenchmark {
+
+    // Day limit of the default InstrumentPriceCache retention policy
+    private static final int MAX_DAY_COUNT = 30;
+
+    // Number of prices published for every rolled date
+    @Param({"1", "1000"})
+    public int pricesPerDay;
+
+    private InstrumentPriceCache instrumentPriceCache;
+    private LocalDate nextPriceDate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        instrumentPriceCache = new InstrumentPriceCache();
+        nextPriceDate = LocalDate.of(2026, 1, 1);
+        for (int dayIndex = 0; dayIndex < MAX_DAY_COUNT; dayIndex++) {
+            rollDay();
+        }
+    }
+
+    @Benchmark
+    public PublishResult rollDay() {
+        final List<InstrumentPrice> instrumentPrices = new ArrayList<>(pricesPerDay);
+        for (int instrumentIndex = 0; instrumentIndex < pricesPerDay; instrumentIndex++) {
+            instrumentPrices.add(new InstrumentPrice("VENDOR", "INSTRUMENT" + instrumentIndex, nextPriceDate, instrumentIndex));
+        }
+        nextPriceDate = nextPriceDate.plusDays(1L);
+        return instrumentPriceCache.publishInstrumentPrices(instrumentPrices);
+    }
+
+    @Benchmark
+    public void rollDayOnePriceAtATime() {
+        for (int instrumentIndex = 0; instrumentIndex < pricesPerDay; instrumentIndex++) {
+            instrumentPriceCache.publishInstrumentPrice(
+                new InstrumentPrice("VENDOR", "INSTRUMENT" + instrumentIndex, nextPriceDate, instrumentIndex)
+            );
+        }
+        nextPriceDate = nextPriceDate.plusDays(1L);
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.adaton.benchmark;
+
+import com.adaton.loader.impl.CsvPriceFileFormat;
+import com.adaton.loader.impl.MappedPriceFileLoader;
+import com.adaton.model.LoadResult;
+import com.adaton.service.impl.InstrumentPriceCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a vendor CSV file into an empty cache, parsing and publishing its chunks in parallel. Rows take about
+ * 45 bytes, so the default file of a million rows is about 45MB, split into a dozen chunks for the workers.
+ */
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class LoadBenchmark {
+
+    // Number of rows of the loaded file, one per vendor and instrument
+    @Param({"1000000"})
+    public int rowCount;
+
+    @Param({"4"})
+    public int vendorCount;
+
+    // Small enough for the file to be loaded by several workers
+    @Param({"4194304"})
+    public long chunkSize;
+
+    private Path priceFile;
+    private MappedPriceFileLoader priceFileLoader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        priceFile = Files.createTempFile("prices", ".csv");
+        final LocalDate priceDate = LocalDate.of(2026, 1, 2);
+        try (BufferedWriter writer = Files.newBufferedWriter(priceFile)) {
+            writer.write("vendorId,instrumentId,priceDate,price\n");
+            for (int rowIndex = 0; rowIndex < rowCount; rowIndex++) {
+                writer.write("VENDOR" + rowIndex % vendorCount + ",INSTRUMENT" + rowIndex / vendorCount + "," + priceDate + "," + rowIndex * 0.01d + "\n");
+            }
+        }
+        priceFileLoader = new MappedPriceFileLoader(new CsvPriceFileFormat(), Runtime.getRuntime().availableProcessors(), chunkSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(priceFile);
+    }
+
+    @Benchmark
+    public LoadResult loadIntoEmptyCache() throws IOException {
+        return priceFileLoader.load(priceFile, new InstrumentPriceCache());
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.adaton.benchmark;
+
+import com.adaton.model.InstrumentPrice;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LookupBenchmark {
+
+    @State(Scope.Thread)
+    public static class LookupSequence {
+        int instrumentIndex;
+        int vendorIndex;
+    }
+
+    @Benchmark
+    public Map<String, InstrumentPrice> getInstrumentPriceHit(PriceUniverse priceUniverse, LookupSequence lookupSequence) {
+        final int instrumentIndex = lookupSequence.instrumentIndex++ % priceUniverse.instrumentCount;
+        return priceUniverse.instrumentPriceCache.getInstrumentPrice(
+            priceUniverse.instrumentIds[instrumentIndex],
+            priceUniverse.latestPriceDate
+        );
+    }
+
+    @Benchmark
+    public Map<String, InstrumentPrice> getInstrumentPriceMissOnInstrument(PriceUniverse priceUniverse) {
+        return priceUniverse.instrumentPriceCache.getInstrumentPrice("UNKNOWN", priceUniverse.latestPriceDate);
+    }
+
+    @Benchmark
+    public Map<String, InstrumentPrice> getInstrumentPriceMissOnDate(PriceUniverse priceUniverse) {
+        return priceUniverse.instrumentPriceCache.getInstrumentPrice(
+            priceUniverse.instrumentIds[0],
+            priceUniverse.latestPriceDate.plusDays(1L)
+        );
+    }
+
+    @Benchmark
+    public Map<String, InstrumentPrice> getAllInstrumentPricesForVendorHit(PriceUniverse priceUniverse, LookupSequence lookupSequence) {
+        final int vendorIndex = lookupSequence.vendorIndex++ % priceUniverse.vendorCount;
+        return priceUniverse.instrumentPriceCache.getAllInstrumentPricesForVendor(
+            priceUniverse.vendorIds[vendorIndex],
+            priceUniverse.latestPriceDate
+        );
+    }
+
+    @Benchmark
+    public double getPriceHit(PriceUniverse priceUniverse, LookupSequence lookupSequence) {
+        final int instrumentIndex = lookupSequence.instrumentIndex++ % priceUniverse.instrumentCount;
+        return priceUniverse.instrumentPriceCache.getPrice(
+            priceUniverse.vendorIds[instrumentIndex % priceUniverse.vendorCount],
+            priceUniverse.instrumentIds[instrumentIndex],
+            priceUniverse.latestPriceDate
+        );
+    }
+
+    @Benchmark
+    public Map<String, InstrumentPrice> getAllInstrumentPricesForVendorMiss(PriceUniverse priceUniverse) {
+        return priceUniverse.instrumentPriceCache.getAllInstrumentPricesForVendor("UNKNOWN", priceUniverse.latestPriceDate);
+    }
+
+    @Benchmark
+    public void getInstrumentPricesForAllDates(PriceUniverse priceUniverse, Blackhole blackhole) {
+        // One call per instrument and date, as a valuation batch would do with the single key lookup
+        for (LocalDate priceDate = priceUniverse.latestPriceDate.minusDays(priceUniverse.populatedDayCount - 1);
+             ! priceDate.isAfter(priceUniverse.latestPriceDate);
+             priceDate = priceDate.plusDays(1L)) {
+            for (String instrumentId : priceUniverse.instrumentIds) {
+                priceUniverse.instrumentPriceCache.getInstrumentPrice(instrumentId, priceDate).values().forEach(blackhole::consume);
+            }
+        }
+    }
+
+    @Benchmark
+    public void getInstrumentPricesBulkForAllDates(PriceUniverse priceUniverse, Blackhole blackhole) {
+        priceUniverse.instrumentPriceCache.getInstrumentPrices(
+            Arrays.asList(priceUniverse.instrumentIds),
+            priceUniverse.latestPriceDate.minusDays(priceUniverse.populatedDayCount - 1),
+            priceUniverse.latestPriceDate,
+            false,
+            blackhole::consume
+        );
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.adaton.benchmark;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.service.IInstrumentPriceCache;
+import com.adaton.service.impl.InstrumentPriceCache;
+import com.adaton.service.impl.ShardedInstrumentPriceCache;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Vendor and instrument universe shared by the benchmarks. The cardinality is set through JMH parameters,
+ * e.g. {@code -p vendorCount=50 -p instrumentCount=200000} for the full production universe, and
+ * {@code -p stripeCount=8} to run against a cache sharded into 8 stripes.
+ */
+@State(Scope.Benchmark)
+public class PriceUniverse {
+
+    @Param({"10"})
+    public int vendorCount;
+
+    @Param({"10000"})
+    public int instrumentCount;
+
+    // Number of consecutive price dates populated in the cache before the measurement starts
+    @Param({"1"})
+    public int populatedDayCount;
+
+    // Number of stripes of a sharded cache, or 0 for a single cache
+    @Param({"0"})
+    public int stripeCount;
+
+    public String[] vendorIds;
+    public String[] instrumentIds;
+    public LocalDate latestPriceDate;
+    public IInstrumentPriceCache instrumentPriceCache;
+
+    @Setup
+    public void setUp() {
+        vendorIds = IntStream.range(0, vendorCount)
+            .mapToObj(vendorIndex -> "VENDOR" + vendorIndex)
+            .toArray(String[]::new);
+        instrumentIds = IntStream.range(0, instrumentCount)
+            .mapToObj(instrumentIndex -> String.format("XS%010d", instrumentIndex))
+            .toArray(String[]::new);
+        latestPriceDate = LocalDate.of(2026, 1, 30);
+
+        instrumentPriceCache =
+            stripeCount == 0
+                ? new InstrumentPriceCache()
+                : new ShardedInstrumentPriceCache(stripeCount);
+        for (int dayIndex = populatedDayCount - 1; dayIndex >= 0; dayIndex--) {
+            instrumentPriceCache.publishInstrumentPrices(pricesForDate(latestPriceDate.minusDays(dayIndex)));
+        }
+    }
+
+    public List<InstrumentPrice> pricesForDate(LocalDate priceDate) {
+        final List<InstrumentPrice> instrumentPrices = new ArrayList<>(vendorCount * instrumentCount);
+        for (String vendorId : vendorIds) {
+            for (int instrumentIndex = 0; instrumentIndex < instrumentCount; instrumentIndex++) {
+                instrumentPrices.add(new InstrumentPrice(vendorId, instrumentIds[instrumentIndex], priceDate, instrumentIndex));
+            }
+        }
+        return instrumentPrices;
+    }
+
+    public InstrumentPrice priceAt(long sequence, LocalDate priceDate) {
+        final int vendorIndex = (int) (sequence % vendorCount);
+        final int instrumentIndex = (int) ((sequence / vendorCount) % instrumentCount);
+        return new InstrumentPrice(vendorIds[vendorIndex], instrumentIds[instrumentIndex], priceDate, sequence);
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.adaton.benchmark;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.model.PublishResult;
+import com.adaton.service.impl.InstrumentPriceCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PublishBenchmark {
+
+    @State(Scope.Thread)
+    public static class PublishSequence {
+        long sequence;
+    }
+
+    @State(Scope.Benchmark)
+    public static class BulkBatch {
+
+        // Number of consecutive price dates carried by the batch, each holding the full universe
+        @Param({"1"})
+        public int batchDayCount;
+
+        List<InstrumentPrice> instrumentPrices;
+
+        @Setup(Level.Trial)
+        public void setUp(PriceUniverse priceUniverse) {
+            instrumentPrices = new ArrayList<>();
+            for (int dayIndex = 0; dayIndex < batchDayCount; dayIndex++) {
+                instrumentPrices.addAll(priceUniverse.pricesForDate(priceUniverse.latestPriceDate.minusDays(dayIndex)));
+            }
+        }
+
+    }
+
+    /**
+     * Publish single prices that update the prices already held for the latest date.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void publishSingleUpdate(PriceUniverse priceUniverse, PublishSequence publishSequence) {
+        priceUniverse.instrumentPriceCache.publishInstrumentPrice(
+            priceUniverse.priceAt(publishSequence.sequence++, priceUniverse.latestPriceDate)
+        );
+    }
+
+    /**
+     * Publish a full-universe batch into an empty cache through the bulk path.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public PublishResult publishBulkIntoEmptyCache(BulkBatch bulkBatch) {
+        return new InstrumentPriceCache().publishInstrumentPrices(bulkBatch.instrumentPrices);
+    }
+
+    /**
+     * Publish the same full-universe batch one price at a time, as a baseline for the bulk path.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public InstrumentPriceCache publishLoopIntoEmptyCache(BulkBatch bulkBatch) {
+        final InstrumentPriceCache instrumentPriceCache = new InstrumentPriceCache();
+        for (InstrumentPrice instrumentPrice : bulkBatch.instrumentPrices) {
+            instrumentPriceCache.publishInstrumentPrice(instrumentPrice);
+        }
+        return instrumentPriceCache;
+    }
+
+}
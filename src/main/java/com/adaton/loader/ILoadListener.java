@@ -0,0 +1,27 @@
+package com.adaton.loader;
+
+/**
+ * Receives the progress of a price file load. Files are parsed in chunks on several threads at once, so
+ * implementations must be thread-safe.
+ */
+public interface ILoadListener {
+
+    /**
+     * Called each time a chunk of the file has been parsed and published.
+     *
+     * @param loadedBytes Number of bytes of the file loaded so far.
+     * @param totalBytes  Size of the file.
+     */
+    default void onProgress(long loadedBytes, long totalBytes) {
+    }
+
+    /**
+     * Called for every row that cannot be parsed. The row is skipped.
+     *
+     * @param rowOffset Offset of the row in the file, in bytes.
+     * @param reason    Why the row was rejected.
+     */
+    default void onBadRow(long rowOffset, String reason) {
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.adaton.loader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Layout of the rows of a vendor price file. A format locates row boundaries, so that a file can be split into
+ * chunks parsed independently, and parses the rows of a chunk straight from its bytes.
+ */
+public interface IPriceFileFormat {
+
+    /**
+     * Locate the first row that starts at or after a position of the file.
+     *
+     * @param fileChannel Channel of the price file.
+     * @param position    Position of the file, in bytes.
+     * @return The offset of the first row starting at or after the position, or the file size if there is none.
+     */
+    long rowStart(FileChannel fileChannel, long position) throws IOException;
+
+    /**
+     * Parse every row of a chunk of the file. The chunk starts and ends on row boundaries.
+     *
+     * @param rows       Bytes of the chunk, from position 0 up to its limit.
+     * @param rowsOffset Offset of the chunk in the file, in bytes.
+     * @param rowSink    Receives the prices and the bad rows of the chunk.
+     */
+    void parseRows(ByteBuffer rows, long rowsOffset, IPriceRowSink rowSink);
+
+}
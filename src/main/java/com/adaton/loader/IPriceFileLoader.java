@@ -0,0 +1,36 @@
+package com.adaton.loader;
+
+import com.adaton.model.LoadResult;
+import com.adaton.service.IInstrumentPriceCache;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface IPriceFileLoader {
+
+    /**
+     * Load every price of a vendor price file into a cache, through its bulk publication path. Rows that cannot
+     * be parsed are reported to the listener and skipped; they do not stop the load. Parts of the file may be
+     * parsed concurrently, but prices are published in file order: when the file holds several prices for the
+     * same vendor, instrument and date, the last one is kept.
+     *
+     * @param priceFile            Price file to be loaded.
+     * @param instrumentPriceCache Cache the prices are published to.
+     * @param loadListener         Receives the progress of the load and the bad rows.
+     * @return Row, bad row and publication counts for the whole file.
+     */
+    LoadResult load(Path priceFile, IInstrumentPriceCache instrumentPriceCache, ILoadListener loadListener) throws IOException;
+
+    /**
+     * Load every price of a vendor price file into a cache, skipping the rows that cannot be parsed.
+     *
+     * @param priceFile            Price file to be loaded.
+     * @param instrumentPriceCache Cache the prices are published to.
+     * @return Row, bad row and publication counts for the whole file.
+     */
+    default LoadResult load(Path priceFile, IInstrumentPriceCache instrumentPriceCache) throws IOException {
+        return load(priceFile, instrumentPriceCache, new ILoadListener() {
+        });
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.adaton.loader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the rows parsed from one chunk of a price file, on the thread parsing the chunk.
+ */
+public interface IPriceRowSink {
+
+    /**
+     * Decode a vendor or instrument ID from the bytes of a row. Each distinct ID is decoded into a string once
+     * per chunk, and the same instance is returned for its later occurrences.
+     *
+     * @param rows   Bytes of the chunk.
+     * @param offset Position of the first byte of the ID.
+     * @param length Length of the ID in bytes, UTF-8 encoded.
+     * @return The ID.
+     */
+    String symbol(ByteBuffer rows, int offset, int length);
+
+    /**
+     * Receive the price of a row.
+     *
+     * @param vendorId     Vendor ID, as returned by symbol.
+     * @param instrumentId Instrument ID, as returned by symbol.
+     * @param epochDay     Trading date of the price, as a count of days since 1970-01-01.
+     * @param price        Price of the row.
+     */
+    void addPrice(String vendorId, String instrumentId, int epochDay, double price);
+
+    /**
+     * Receive a row that cannot be parsed.
+     *
+     * @param rowOffset Offset of the row in the file, in bytes.
+     * @param reason    Why the row was rejected.
+     */
+    void badRow(long rowOffset, String reason);
+
+}
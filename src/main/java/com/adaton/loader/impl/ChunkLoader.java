@@ -0,0 +1,169 @@
+package com.adaton.loader.impl;
+
+import com.adaton.loader.ILoadListener;
+import com.adaton.loader.IPriceRowSink;
+import com.adaton.model.InstrumentPrice;
+import com.adaton.model.LoadResult;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receives the rows of one chunk of a price file, and hands them in batches to the sequencer publishing the
+ * chunks in file order. Used by a single thread.
+ */
+class ChunkLoader implements IPriceRowSink {
+
+    // Prices published to the cache per bulk publication
+    static final int BATCH_SIZE = 1 << 14;
+
+    private static final int INITIAL_SYMBOL_CAPACITY = 1 << 10;
+
+    private final ChunkSequencer chunkSequencer;
+    private final int chunkIndex;
+    private final ILoadListener loadListener;
+
+    private List<InstrumentPrice> batch;
+
+    // Open-addressing table of the symbols decoded so far, keyed on their bytes
+    private byte[][] symbolBytes;
+    private String[] symbols;
+    private int symbolCount;
+
+    // Date of the last row, reused while rows share it
+    private int lastEpochDay;
+    private LocalDate lastPriceDate;
+
+    private long rowCount;
+    private long badRowCount;
+
+    ChunkLoader(ChunkSequencer chunkSequencer, int chunkIndex, ILoadListener loadListener) {
+        this.chunkSequencer = chunkSequencer;
+        this.chunkIndex = chunkIndex;
+        this.loadListener = loadListener;
+        this.batch = new ArrayList<>(BATCH_SIZE);
+        this.symbolBytes = new byte[INITIAL_SYMBOL_CAPACITY][];
+        this.symbols = new String[INITIAL_SYMBOL_CAPACITY];
+    }
+
+    @Override
+    public String symbol(ByteBuffer rows, int offset, int length) {
+        int hash = 1;
+        for (int index = offset; index < offset + length; index++) {
+            hash = 31 * hash + rows.get(index);
+        }
+
+        final int mask = symbols.length - 1;
+        int slot = mix(hash) & mask;
+        while (symbols[slot] != null) {
+            if (matches(symbolBytes[slot], rows, offset, length)) {
+                return symbols[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        final byte[] bytes = new byte[length];
+        rows.get(offset, bytes);
+        final String symbol = new String(bytes, StandardCharsets.UTF_8);
+        symbolBytes[slot] = bytes;
+        symbols[slot] = symbol;
+        if (++symbolCount > symbols.length >> 1) {
+            growSymbols();
+        }
+        return symbol;
+    }
+
+    @Override
+    public void addPrice(String vendorId, String instrumentId, int epochDay, double price) {
+        rowCount++;
+        batch.add(new InstrumentPrice(vendorId, instrumentId, priceDate(epochDay), price));
+        if (batch.size() == BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    @Override
+    public void badRow(long rowOffset, String reason) {
+        rowCount++;
+        badRowCount++;
+        loadListener.onBadRow(rowOffset, reason);
+    }
+
+    /**
+     * Hand over the prices still batched, once every row of the chunk is parsed.
+     */
+    void finish() {
+        flush();
+        chunkSequencer.chunkParsed(chunkIndex);
+    }
+
+    /**
+     * @return The row counts of the chunk. Publications are counted by the sequencer.
+     */
+    LoadResult getLoadResult() {
+        return new LoadResult(rowCount, badRowCount, 0L, 0L, 0L);
+    }
+
+    private void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        chunkSequencer.publish(chunkIndex, batch);
+        // The batch may be held back by the sequencer, or held on to by the cache, e.g. when publications are queued
+        batch = new ArrayList<>(BATCH_SIZE);
+    }
+
+    private LocalDate priceDate(int epochDay) {
+        if (lastPriceDate == null || lastEpochDay != epochDay) {
+            lastPriceDate = LocalDate.ofEpochDay(epochDay);
+            lastEpochDay = epochDay;
+        }
+        return lastPriceDate;
+    }
+
+    private void growSymbols() {
+        final byte[][] grownSymbolBytes = new byte[symbols.length << 1][];
+        final String[] grownSymbols = new String[symbols.length << 1];
+        final int mask = grownSymbols.length - 1;
+        for (int slot = 0; slot < symbols.length; slot++) {
+            if (symbols[slot] != null) {
+                int grownSlot = mix(hash(symbolBytes[slot])) & mask;
+                while (grownSymbols[grownSlot] != null) {
+                    grownSlot = (grownSlot + 1) & mask;
+                }
+                grownSymbolBytes[grownSlot] = symbolBytes[slot];
+                grownSymbols[grownSlot] = symbols[slot];
+            }
+        }
+        symbolBytes = grownSymbolBytes;
+        symbols = grownSymbols;
+    }
+
+    private static boolean matches(byte[] bytes, ByteBuffer rows, int offset, int length) {
+        if (bytes.length != length) {
+            return false;
+        }
+        for (int index = 0; index < length; index++) {
+            if (bytes[index] != rows.get(offset + index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] bytes) {
+        int hash = 1;
+        for (byte b : bytes) {
+            hash = 31 * hash + b;
+        }
+        return hash;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+}
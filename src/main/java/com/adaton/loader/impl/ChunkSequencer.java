@@ -0,0 +1,149 @@
+package com.adaton.loader.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.model.PublishResult;
+import com.adaton.service.IInstrumentPriceCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Publishes the batches of the chunks of a file in file order, while the chunks are parsed concurrently, so that
+ * the last price of a vendor, instrument and date in the file wins whichever chunks hold its prices.
+ * <p>
+ * The first chunk not fully published is the head: its batches are published as they are parsed, while the
+ * batches of later chunks are held back. When the head chunk is parsed, the thread that parsed it publishes the
+ * held back batches of the next chunks that are parsed too, and the first chunk still being parsed becomes the
+ * head. Parsing threads only wait for the head to come within the lookahead of the chunk they are to parse, which
+ * bounds the chunks held back.
+ */
+class ChunkSequencer {
+
+    private final IInstrumentPriceCache instrumentPriceCache;
+
+    // Batches parsed but not published yet, by chunk index. Guarded by this.
+    private final List<List<List<InstrumentPrice>>> heldBackBatches;
+    // True once every row of the chunk is parsed, by chunk index. Guarded by this.
+    private final boolean[] parsedChunks;
+    // Index of the first chunk not fully published. Guarded by this.
+    private int headChunkIndex;
+    // True once a chunk failed to load, releases the threads awaiting the head. Guarded by this.
+    private boolean aborted;
+
+    // Publication counts of every chunk. Guarded by this.
+    private long acceptedCount;
+    private long rejectedAsTooOldCount;
+    private long supersededCount;
+
+    ChunkSequencer(IInstrumentPriceCache instrumentPriceCache, int chunkCount) {
+        this.instrumentPriceCache = instrumentPriceCache;
+        this.heldBackBatches = new ArrayList<>(chunkCount);
+        for (int chunkIndex = 0; chunkIndex < chunkCount; chunkIndex++) {
+            heldBackBatches.add(new ArrayList<>());
+        }
+        this.parsedChunks = new boolean[chunkCount];
+    }
+
+    /**
+     * Wait until a chunk is less than lookahead chunks past the head, so that at most lookahead chunks are parsed
+     * or held back at a time. The head itself never waits.
+     *
+     * @return True if the chunk is to be parsed, false if the load was aborted.
+     */
+    synchronized boolean awaitLookahead(int chunkIndex, int lookahead) throws InterruptedException {
+        while (! aborted && chunkIndex >= headChunkIndex + lookahead) {
+            wait();
+        }
+        return ! aborted;
+    }
+
+    /**
+     * Release the threads awaiting the head, as a chunk failed to load and the head may never move again.
+     */
+    synchronized void abort() {
+        aborted = true;
+        notifyAll();
+    }
+
+    /**
+     * Publish a batch of a chunk being parsed, or hold it back until the earlier chunks are published.
+     */
+    void publish(int chunkIndex, List<InstrumentPrice> batch) {
+        final List<List<InstrumentPrice>> batches;
+        synchronized (this) {
+            if (chunkIndex != headChunkIndex) {
+                heldBackBatches.get(chunkIndex).add(batch);
+                return;
+            }
+            // The chunk may have become the head since its last batch, its held back batches go first
+            batches = takeHeldBackBatches(chunkIndex);
+        }
+        batches.forEach(this::publish);
+        publish(batch);
+    }
+
+    /**
+     * Record that every row of a chunk is parsed. If the chunk is the head, publish its held back batches and
+     * those of the next chunks already parsed.
+     */
+    void chunkParsed(int chunkIndex) {
+        synchronized (this) {
+            parsedChunks[chunkIndex] = true;
+            if (chunkIndex != headChunkIndex) {
+                // The thread publishing the chunk before it publishes its batches
+                return;
+            }
+        }
+
+        int publishedChunkIndex = chunkIndex;
+        while (true) {
+            final List<List<InstrumentPrice>> batches;
+            synchronized (this) {
+                batches = takeHeldBackBatches(publishedChunkIndex);
+                if (batches.isEmpty()) {
+                    headChunkIndex = publishedChunkIndex + 1;
+                    notifyAll();
+                    if (headChunkIndex == parsedChunks.length || ! parsedChunks[headChunkIndex]) {
+                        // The thread parsing the new head publishes its batches
+                        return;
+                    }
+                    publishedChunkIndex = headChunkIndex;
+                    continue;
+                }
+            }
+            batches.forEach(this::publish);
+        }
+    }
+
+    synchronized long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    synchronized long getRejectedAsTooOldCount() {
+        return rejectedAsTooOldCount;
+    }
+
+    synchronized long getSupersededCount() {
+        return supersededCount;
+    }
+
+    // Called while holding this
+    private List<List<InstrumentPrice>> takeHeldBackBatches(int chunkIndex) {
+        final List<List<InstrumentPrice>> batches = heldBackBatches.get(chunkIndex);
+        if (batches.isEmpty()) {
+            return List.of();
+        }
+        heldBackBatches.set(chunkIndex, new ArrayList<>());
+        return batches;
+    }
+
+    private void publish(List<InstrumentPrice> batch) {
+        final PublishResult publishResult = instrumentPriceCache.publishInstrumentPrices(batch);
+        synchronized (this) {
+            acceptedCount += publishResult.acceptedCount();
+            rejectedAsTooOldCount += publishResult.rejectedAsTooOldCount();
+            supersededCount += publishResult.supersededCount();
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+package com.adaton.loader.impl;
+
+import com.adaton.loader.IPriceFileFormat;
+import com.adaton.loader.IPriceRowSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Delimited text price files, one price per line: vendor ID, instrument ID, ISO price date (yyyy-MM-dd) and
+ * price, e.g. "Vendor 1,Instrument 1,2024-01-02,101.25". Lines end with LF or CRLF, fields are not quoted, and
+ * blank lines are skipped.
+ * <p>
+ * Fields are parsed from the bytes of the line: IDs are decoded by the row sink, dates and plain decimal
+ * prices are parsed without creating strings. Prices in other notations, e.g. with an exponent, fall back to
+ * Double.parseDouble.
+ */
+public class CsvPriceFileFormat implements IPriceFileFormat {
+
+    private static final int FIELD_COUNT = 4;
+
+    // Largest mantissa, and largest power of 10, that a double holds exactly, so that their quotient is correctly rounded
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final byte separator;
+    private final boolean hasHeader;
+
+    public CsvPriceFileFormat() {
+        this(',', true);
+    }
+
+    public CsvPriceFileFormat(char separator, boolean hasHeader) {
+        if (separator > 0x7F || separator == '\n' || separator == '\r' || separator == '.' || separator == '-' || Character.isDigit(separator)) {
+            throw new IllegalArgumentException("separator must be an ASCII character that cannot occur in a date or a price");
+        }
+        this.separator = (byte) separator;
+        this.hasHeader = hasHeader;
+    }
+
+    @Override
+    public long rowStart(FileChannel fileChannel, long position) throws IOException {
+        if (position == 0L && ! hasHeader) {
+            return 0L;
+        }
+
+        // A row starts after the line feed that ends the row the position falls in
+        final ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+        long bufferPosition = position == 0L ? 0L : position - 1L;
+        while (true) {
+            buffer.clear();
+            final int readCount = fileChannel.read(buffer, bufferPosition);
+            if (readCount <= 0) {
+                return fileChannel.size();
+            }
+            for (int index = 0; index < readCount; index++) {
+                if (buffer.get(index) == '\n') {
+                    return bufferPosition + index + 1L;
+                }
+            }
+            bufferPosition += readCount;
+        }
+    }
+
+    @Override
+    public void parseRows(ByteBuffer rows, long rowsOffset, IPriceRowSink rowSink) {
+        final int limit = rows.limit();
+        final int[] fieldStarts = new int[FIELD_COUNT];
+        int rowStart = 0;
+        while (rowStart < limit) {
+            int rowEnd = rowStart;
+            while (rowEnd < limit && rows.get(rowEnd) != '\n') {
+                rowEnd++;
+            }
+            final int contentEnd = rowEnd > rowStart && rows.get(rowEnd - 1) == '\r' ? rowEnd - 1 : rowEnd;
+            if (contentEnd > rowStart) {
+                parseRow(rows, rowStart, contentEnd, rowsOffset, fieldStarts, rowSink);
+            }
+            rowStart = rowEnd + 1;
+        }
+    }
+
+    private void parseRow(ByteBuffer rows, int rowStart, int rowEnd, long rowsOffset, int[] fieldStarts, IPriceRowSink rowSink) {
+        int fieldCount = 1;
+        fieldStarts[0] = rowStart;
+        for (int index = rowStart; index < rowEnd; index++) {
+            if (rows.get(index) == separator) {
+                if (fieldCount == FIELD_COUNT) {
+                    rowSink.badRow(rowsOffset + rowStart, "more than " + FIELD_COUNT + " fields");
+                    return;
+                }
+                fieldStarts[fieldCount++] = index + 1;
+            }
+        }
+        if (fieldCount < FIELD_COUNT) {
+            rowSink.badRow(rowsOffset + rowStart, "fewer than " + FIELD_COUNT + " fields");
+            return;
+        }
+
+        final int vendorIdLength = fieldStarts[1] - fieldStarts[0] - 1;
+        final int instrumentIdLength = fieldStarts[2] - fieldStarts[1] - 1;
+        if (vendorIdLength == 0 || instrumentIdLength == 0) {
+            rowSink.badRow(rowsOffset + rowStart, "empty vendor or instrument ID");
+            return;
+        }
+
+        final int epochDay;
+        final double price;
+        try {
+            epochDay = parseEpochDay(rows, fieldStarts[2], fieldStarts[3] - 1);
+            price = parsePrice(rows, fieldStarts[3], rowEnd);
+        }
+        catch (DateTimeException e) {
+            rowSink.badRow(rowsOffset + rowStart, "invalid price date: " + e.getMessage());
+            return;
+        }
+        catch (NumberFormatException e) {
+            rowSink.badRow(rowsOffset + rowStart, "invalid price: " + e.getMessage());
+            return;
+        }
+
+        rowSink.addPrice(
+            rowSink.symbol(rows, fieldStarts[0], vendorIdLength),
+            rowSink.symbol(rows, fieldStarts[1], instrumentIdLength),
+            epochDay,
+            price
+        );
+    }
+
+    private static int parseEpochDay(ByteBuffer rows, int start, int end) {
+        if (end - start != 10 || rows.get(start + 4) != '-' || rows.get(start + 7) != '-') {
+            throw new DateTimeException("expected yyyy-MM-dd");
+        }
+        final int year = parseDigits(rows, start, start + 4);
+        final int month = parseDigits(rows, start + 5, start + 7);
+        final int day = parseDigits(rows, start + 8, start + 10);
+        return (int) LocalDate.of(year, month, day).toEpochDay();
+    }
+
+    private static int parseDigits(ByteBuffer rows, int start, int end) {
+        int value = 0;
+        for (int index = start; index < end; index++) {
+            final int digit = rows.get(index) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new DateTimeException("expected yyyy-MM-dd");
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static double parsePrice(ByteBuffer rows, int start, int end) {
+        int index = start;
+        final boolean negative = index < end && rows.get(index) == '-';
+        if (negative || index < end && rows.get(index) == '+') {
+            index++;
+        }
+
+        long mantissa = 0L;
+        int digitCount = 0;
+        int fractionDigitCount = -1;
+        for (; index < end; index++) {
+            final byte b = rows.get(index);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10L + (b - '0');
+                digitCount++;
+                if (fractionDigitCount >= 0) {
+                    fractionDigitCount++;
+                }
+                if (mantissa >= MAX_EXACT_MANTISSA) {
+                    return parsePriceSlowly(rows, start, end);
+                }
+            }
+            else if (b == '.' && fractionDigitCount < 0) {
+                fractionDigitCount = 0;
+            }
+            else {
+                return parsePriceSlowly(rows, start, end);
+            }
+        }
+        if (digitCount == 0 || fractionDigitCount >= POWERS_OF_TEN.length) {
+            return parsePriceSlowly(rows, start, end);
+        }
+
+        final double price = fractionDigitCount > 0 ? mantissa / POWERS_OF_TEN[fractionDigitCount] : mantissa;
+        return negative ? -price : price;
+    }
+
+    private static double parsePriceSlowly(ByteBuffer rows, int start, int end) {
+        final byte[] bytes = new byte[end - start];
+        rows.get(start, bytes);
+        return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.adaton.loader.impl;
+
+import com.adaton.loader.IPriceFileFormat;
+import com.adaton.loader.IPriceRowSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Binary price files made of fixed-width records, without a header. Each record holds, big-endian:
+ * <pre>
+ * vendor ID       UTF-8, vendorIdWidth bytes, padded with trailing NUL or space bytes
+ * instrument ID   UTF-8, instrumentIdWidth bytes, padded with trailing NUL or space bytes
+ * price date      int, days since 1970-01-01
+ * price           double
+ * </pre>
+ * A trailing partial record is reported as a bad row.
+ */
+public class FixedWidthPriceFileFormat implements IPriceFileFormat {
+
+    private final int vendorIdWidth;
+    private final int instrumentIdWidth;
+    private final int recordSize;
+
+    public FixedWidthPriceFileFormat(int vendorIdWidth, int instrumentIdWidth) {
+        if (vendorIdWidth <= 0 || instrumentIdWidth <= 0) {
+            throw new IllegalArgumentException("ID widths must be positive");
+        }
+        this.vendorIdWidth = vendorIdWidth;
+        this.instrumentIdWidth = instrumentIdWidth;
+        this.recordSize = vendorIdWidth + instrumentIdWidth + Integer.BYTES + Double.BYTES;
+    }
+
+    /**
+     * @return The size of a record in bytes.
+     */
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    @Override
+    public long rowStart(FileChannel fileChannel, long position) throws IOException {
+        final long recordStart = (position + recordSize - 1L) / recordSize * recordSize;
+        return Math.min(recordStart, fileChannel.size());
+    }
+
+    @Override
+    public void parseRows(ByteBuffer rows, long rowsOffset, IPriceRowSink rowSink) {
+        final int limit = rows.limit();
+        int recordStart = 0;
+        for (; recordStart + recordSize <= limit; recordStart += recordSize) {
+            final int vendorIdLength = idLength(rows, recordStart, vendorIdWidth);
+            final int instrumentIdStart = recordStart + vendorIdWidth;
+            final int instrumentIdLength = idLength(rows, instrumentIdStart, instrumentIdWidth);
+            if (vendorIdLength == 0 || instrumentIdLength == 0) {
+                rowSink.badRow(rowsOffset + recordStart, "empty vendor or instrument ID");
+                continue;
+            }
+
+            rowSink.addPrice(
+                rowSink.symbol(rows, recordStart, vendorIdLength),
+                rowSink.symbol(rows, instrumentIdStart, instrumentIdLength),
+                rows.getInt(instrumentIdStart + instrumentIdWidth),
+                rows.getDouble(instrumentIdStart + instrumentIdWidth + Integer.BYTES)
+            );
+        }
+        if (recordStart < limit) {
+            rowSink.badRow(rowsOffset + recordStart, "partial record of " + (limit - recordStart) + " bytes");
+        }
+    }
+
+    // Length of an ID without its padding
+    private static int idLength(ByteBuffer rows, int idStart, int idWidth) {
+        int idLength = idWidth;
+        while (idLength > 0 && (rows.get(idStart + idLength - 1) == 0 || rows.get(idStart + idLength - 1) == ' ')) {
+            idLength--;
+        }
+        return idLength;
+    }
+
+}
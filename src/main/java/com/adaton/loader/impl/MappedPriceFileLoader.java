@@ -0,0 +1,162 @@
+package com.adaton.loader.impl;
+
+import com.adaton.loader.ILoadListener;
+import com.adaton.loader.IPriceFileFormat;
+import com.adaton.loader.IPriceFileLoader;
+import com.adaton.model.LoadResult;
+import com.adaton.service.IInstrumentPriceCache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads price files by memory-mapping them in chunks that start and end on row boundaries. Chunks are parsed in
+ * parallel straight from the mapping, and their prices are published to the cache in batches, in file order:
+ * the first chunk not yet published publishes its batches as it parses them, while later chunks hold theirs back
+ * until the chunks before them are published. Parsing overlaps publication, and the last price of a vendor,
+ * instrument and date in the file wins.
+ * <p>
+ * Each of the parallelism workers takes the next chunk in file order, and waits before parsing a chunk that is
+ * parallelism chunks or more past the first chunk not yet published. Held back batches thus take at most the
+ * prices of parallelism - 1 chunks.
+ */
+public class MappedPriceFileLoader implements IPriceFileLoader {
+
+    // Size of the chunks a file is split into, before they are aligned on row boundaries
+    public static final long DEFAULT_CHUNK_SIZE = 1L << 25;
+    // Largest chunk size, leaving room within a single mapping for the row that straddles the end of a chunk
+    public static final long MAX_CHUNK_SIZE = 1L << 30;
+
+    private final IPriceFileFormat priceFileFormat;
+    private final int parallelism;
+    private final long chunkSize;
+
+    public MappedPriceFileLoader(IPriceFileFormat priceFileFormat) {
+        this(priceFileFormat, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public MappedPriceFileLoader(IPriceFileFormat priceFileFormat, int parallelism, long chunkSize) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        if (chunkSize <= 0L || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("chunkSize must be positive and at most MAX_CHUNK_SIZE");
+        }
+        this.priceFileFormat = priceFileFormat;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public LoadResult load(Path priceFile, IInstrumentPriceCache instrumentPriceCache, ILoadListener loadListener) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(priceFile, StandardOpenOption.READ)) {
+            final long fileSize = fileChannel.size();
+            final List<Chunk> chunks = splitIntoChunks(fileChannel, fileSize);
+            final AtomicLong loadedBytes = new AtomicLong(fileSize - chunks.stream().mapToLong(Chunk::size).sum());
+
+            final ChunkSequencer chunkSequencer = new ChunkSequencer(instrumentPriceCache, chunks.size());
+            final AtomicInteger nextChunkIndex = new AtomicInteger();
+            final Callable<LoadResult> chunkWorker = () -> {
+                LoadResult workerResult = new LoadResult(0L, 0L, 0L, 0L, 0L);
+                try {
+                    for (int chunkIndex = nextChunkIndex.getAndIncrement(); chunkIndex < chunks.size(); chunkIndex = nextChunkIndex.getAndIncrement()) {
+                        if (! chunkSequencer.awaitLookahead(chunkIndex, parallelism)) {
+                            break;
+                        }
+                        final Chunk chunk = chunks.get(chunkIndex);
+                        workerResult = workerResult.plus(loadChunk(fileChannel, chunk, chunkSequencer, chunkIndex, loadListener));
+                        loadListener.onProgress(loadedBytes.addAndGet(chunk.size()), fileSize);
+                    }
+                }
+                catch (RuntimeException | Error e) {
+                    // The chunk may be the head, workers waiting for it to be published would wait forever
+                    chunkSequencer.abort();
+                    throw e;
+                }
+                return workerResult;
+            };
+
+            final ExecutorService loadPool = Executors.newFixedThreadPool(parallelism);
+            try {
+                final List<Future<LoadResult>> workerResults = new ArrayList<>(parallelism);
+                for (int workerIndex = 0; workerIndex < Math.min(parallelism, chunks.size()); workerIndex++) {
+                    workerResults.add(loadPool.submit(chunkWorker));
+                }
+                LoadResult parseResult = new LoadResult(0L, 0L, 0L, 0L, 0L);
+                for (Future<LoadResult> workerResult : workerResults) {
+                    parseResult = parseResult.plus(workerResult.get());
+                }
+                return new LoadResult(
+                    parseResult.rowCount(),
+                    parseResult.badRowCount(),
+                    chunkSequencer.getAcceptedCount(),
+                    chunkSequencer.getRejectedAsTooOldCount(),
+                    chunkSequencer.getSupersededCount()
+                );
+            }
+            catch (InterruptedException e) {
+                chunkSequencer.abort();
+                Thread.currentThread().interrupt();
+                throw new IOException("price file load interrupted", e);
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+                    throw uncheckedIOException.getCause();
+                }
+                throw new IOException("price file load failed", e.getCause());
+            }
+            finally {
+                loadPool.shutdown();
+            }
+        }
+    }
+
+    // Splits the rows of the file into chunks of about chunkSize bytes, each starting on a row boundary
+    private List<Chunk> splitIntoChunks(FileChannel fileChannel, long fileSize) throws IOException {
+        final List<Chunk> chunks = new ArrayList<>();
+        long chunkStart = priceFileFormat.rowStart(fileChannel, 0L);
+        while (chunkStart < fileSize) {
+            final long chunkEnd = fileSize - chunkStart <= chunkSize ? fileSize : priceFileFormat.rowStart(fileChannel, chunkStart + chunkSize);
+            chunks.add(new Chunk(chunkStart, chunkEnd));
+            chunkStart = chunkEnd;
+        }
+        return chunks;
+    }
+
+    private LoadResult loadChunk(FileChannel fileChannel, Chunk chunk, ChunkSequencer chunkSequencer, int chunkIndex, ILoadListener loadListener) {
+        final MappedByteBuffer rows;
+        try {
+            rows = fileChannel.map(FileChannel.MapMode.READ_ONLY, chunk.start(), chunk.size());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        final ChunkLoader chunkLoader = new ChunkLoader(chunkSequencer, chunkIndex, loadListener);
+        priceFileFormat.parseRows(rows, chunk.start(), chunkLoader);
+        chunkLoader.finish();
+        return chunkLoader.getLoadResult();
+    }
+
+    private record Chunk(long start, long end) {
+
+        private long size() {
+            return end - start;
+        }
+
+    }
+
+}
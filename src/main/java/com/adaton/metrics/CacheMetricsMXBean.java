@@ -0,0 +1,26 @@
+package com.adaton.metrics;
+
+/**
+ * JMX view of the cache metrics.
+ */
+public interface CacheMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getPublishedPriceCount();
+
+    long getRejectedAsTooOldCount();
+
+    long getSupersededPriceCount();
+
+    long getEvictedDayCount();
+
+    int getCachedDayCount();
+
+    long getCachedPriceCount();
+
+    long getEstimatedMemoryBytes();
+
+}
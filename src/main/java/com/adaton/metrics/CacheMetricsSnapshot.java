@@ -0,0 +1,28 @@
+package com.adaton.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Point-in-time copy of the cache metrics.
+ */
+public record CacheMetricsSnapshot(
+        boolean enabled,
+        Map<CacheOperation, OperationStatistics> operationStatistics,
+        // Prices published to the cache, either one at a time or in bulk
+        long publishedPriceCount,
+        // Prices ignored because their date is older than every cached date
+        long rejectedAsTooOldCount,
+        // Prices of bulk publications that replaced a cached price
+        long supersededPriceCount,
+        // Dates evicted to make room for more recent dates
+        long evictedDayCount,
+        List<DayStatistics> dayStatistics) {
+
+    public CacheMetricsSnapshot {
+        operationStatistics = Map.copyOf(Objects.requireNonNull(operationStatistics));
+        dayStatistics = List.copyOf(Objects.requireNonNull(dayStatistics));
+    }
+
+}
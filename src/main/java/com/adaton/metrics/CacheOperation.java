@@ -0,0 +1,29 @@
+package com.adaton.metrics;
+
+/**
+ * Operations whose call count and latency are recorded by the cache metrics.
+ */
+public enum CacheOperation {
+
+    // IInstrumentPriceCache operations
+    PUBLISH,
+    PUBLISH_BULK,
+    GET_INSTRUMENT_PRICE,
+    GET_VENDOR_PRICES,
+    GET_PRICE,
+    GET_PRICE_AGGREGATE,
+    GET_INSTRUMENT_PRICES_BULK,
+    GET_VENDOR_PRICES_BULK,
+    GET_PRICE_AGGREGATES_BULK,
+    GET_SNAPSHOT,
+    WRITE_SNAPSHOT,
+    LOAD_SNAPSHOT,
+
+    // ICacheIndex operations, across the instrument and vendor indices of every date
+    INDEX_UPDATE,
+    INDEX_UPDATE_BULK,
+    INDEX_LOOKUP,
+    INDEX_SCAN,
+    INDEX_SNAPSHOT
+
+}
@@ -0,0 +1,21 @@
+package com.adaton.metrics;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Number of prices cached for a date and the estimated memory held by the indices of the date.
+ */
+public record DayStatistics(
+        LocalDate priceDate,
+        long priceCount,
+        long estimatedMemoryBytes) {
+
+    public DayStatistics {
+        Objects.requireNonNull(priceDate);
+        if (priceCount < 0 || estimatedMemoryBytes < 0) {
+            throw new IllegalArgumentException("counts must not be negative");
+        }
+    }
+
+}
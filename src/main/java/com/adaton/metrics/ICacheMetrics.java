@@ -0,0 +1,40 @@
+package com.adaton.metrics;
+
+import javax.management.JMException;
+
+public interface ICacheMetrics {
+
+    /**
+     * @return True if operations and counters are being recorded.
+     */
+    boolean isEnabled();
+
+    /**
+     * Switch recording on or off. While recording is off, the instrumented operations only read a flag.
+     * Values recorded so far are kept.
+     *
+     * @param enabled True to record operations and counters.
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Take a copy of the metrics recorded so far. Per-date statistics are computed when the method is called.
+     *
+     * @return A snapshot of the metrics.
+     */
+    CacheMetricsSnapshot getSnapshot();
+
+    /**
+     * Register the metrics with the platform MBean server, under the com.adaton domain: one MBean for the
+     * cache and one MBean for each operation.
+     *
+     * @param cacheName Name that distinguishes the cache from other caches registered in the same JVM.
+     */
+    void registerMBeans(String cacheName) throws JMException;
+
+    /**
+     * Unregister the MBeans registered by registerMBeans, if any.
+     */
+    void unregisterMBeans() throws JMException;
+
+}
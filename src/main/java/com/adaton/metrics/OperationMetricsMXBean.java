@@ -0,0 +1,22 @@
+package com.adaton.metrics;
+
+/**
+ * JMX view of the call count and latency distribution of one operation.
+ */
+public interface OperationMetricsMXBean {
+
+    long getCount();
+
+    double getMeanLatencyNanos();
+
+    long getP50LatencyNanos();
+
+    long getP90LatencyNanos();
+
+    long getP99LatencyNanos();
+
+    long getP999LatencyNanos();
+
+    long getMaxLatencyNanos();
+
+}
@@ -0,0 +1,21 @@
+package com.adaton.metrics;
+
+/**
+ * Call count and latency distribution of one operation. Percentiles are accurate to within about 6%.
+ */
+public record OperationStatistics(
+        long count,
+        double meanLatencyNanos,
+        long p50LatencyNanos,
+        long p90LatencyNanos,
+        long p99LatencyNanos,
+        long p999LatencyNanos,
+        long maxLatencyNanos) {
+
+    public OperationStatistics {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative");
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+package com.adaton.metrics.impl;
+
+import com.adaton.metrics.CacheMetricsMXBean;
+import com.adaton.metrics.CacheMetricsSnapshot;
+import com.adaton.metrics.CacheOperation;
+import com.adaton.metrics.DayStatistics;
+import com.adaton.metrics.ICacheMetrics;
+import com.adaton.metrics.OperationStatistics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Metrics recorded by a cache. Instrumented code asks for a start time with startTiming() and hands it back
+ * with recordLatency(); while recording is off, startTiming() only reads a volatile flag and recordLatency()
+ * does nothing, so the instrumentation can stay in the hot path.
+ */
+public class CacheMetrics implements ICacheMetrics, CacheMetricsMXBean {
+
+    /**
+     * Start time returned while recording is off.
+     */
+    public static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private static final String JMX_DOMAIN = "com.adaton";
+
+    private volatile boolean enabled;
+
+    // Indexed by CacheOperation ordinal
+    private final OperationMetrics[] operationMetrics;
+    private final LongAdder publishedPriceCount;
+    private final LongAdder rejectedAsTooOldCount;
+    private final LongAdder supersededPriceCount;
+    private final LongAdder evictedDayCount;
+
+    // Computes the statistics of every cached date, only called when metrics are pulled
+    private final Supplier<List<DayStatistics>> dayStatisticsSupplier;
+
+    private final List<ObjectName> registeredNames;
+
+    public CacheMetrics(Supplier<List<DayStatistics>> dayStatisticsSupplier) {
+        this.operationMetrics = new OperationMetrics[CacheOperation.values().length];
+        for (CacheOperation cacheOperation : CacheOperation.values()) {
+            operationMetrics[cacheOperation.ordinal()] = new OperationMetrics();
+        }
+        this.publishedPriceCount = new LongAdder();
+        this.rejectedAsTooOldCount = new LongAdder();
+        this.supersededPriceCount = new LongAdder();
+        this.evictedDayCount = new LongAdder();
+        this.dayStatisticsSupplier = Objects.requireNonNull(dayStatisticsSupplier);
+        this.registeredNames = new ArrayList<>();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return The current time in nanoseconds, or NOT_TIMED if recording is off.
+     */
+    public long startTiming() {
+        return enabled ? System.nanoTime() : NOT_TIMED;
+    }
+
+    /**
+     * Record the latency of an operation started at the time returned by startTiming().
+     */
+    public void recordLatency(CacheOperation cacheOperation, long startNanos) {
+        if (startNanos != NOT_TIMED) {
+            operationMetrics[cacheOperation.ordinal()].record(System.nanoTime() - startNanos);
+        }
+    }
+
+    public void addPublishedPrices(long priceCount) {
+        if (enabled) {
+            publishedPriceCount.add(priceCount);
+        }
+    }
+
+    public void addRejectedAsTooOld(long priceCount) {
+        if (enabled) {
+            rejectedAsTooOldCount.add(priceCount);
+        }
+    }
+
+    public void addSupersededPrices(long priceCount) {
+        if (enabled) {
+            supersededPriceCount.add(priceCount);
+        }
+    }
+
+    public void addEvictedDays(long dayCount) {
+        if (enabled) {
+            evictedDayCount.add(dayCount);
+        }
+    }
+
+    @Override
+    public CacheMetricsSnapshot getSnapshot() {
+        final Map<CacheOperation, OperationStatistics> operationStatistics = new EnumMap<>(CacheOperation.class);
+        for (CacheOperation cacheOperation : CacheOperation.values()) {
+            operationStatistics.put(cacheOperation, operationMetrics[cacheOperation.ordinal()].getStatistics());
+        }
+        return new CacheMetricsSnapshot(
+            enabled,
+            operationStatistics,
+            publishedPriceCount.sum(),
+            rejectedAsTooOldCount.sum(),
+            supersededPriceCount.sum(),
+            evictedDayCount.sum(),
+            dayStatisticsSupplier.get()
+        );
+    }
+
+    @Override
+    public long getPublishedPriceCount() {
+        return publishedPriceCount.sum();
+    }
+
+    @Override
+    public long getRejectedAsTooOldCount() {
+        return rejectedAsTooOldCount.sum();
+    }
+
+    @Override
+    public long getSupersededPriceCount() {
+        return supersededPriceCount.sum();
+    }
+
+    @Override
+    public long getEvictedDayCount() {
+        return evictedDayCount.sum();
+    }
+
+    @Override
+    public int getCachedDayCount() {
+        return dayStatisticsSupplier.get().size();
+    }
+
+    @Override
+    public long getCachedPriceCount() {
+        return dayStatisticsSupplier.get().stream().mapToLong(DayStatistics::priceCount).sum();
+    }
+
+    @Override
+    public long getEstimatedMemoryBytes() {
+        return dayStatisticsSupplier.get().stream().mapToLong(DayStatistics::estimatedMemoryBytes).sum();
+    }
+
+    @Override
+    public synchronized void registerMBeans(String cacheName) throws JMException {
+        if (! registeredNames.isEmpty()) {
+            throw new IllegalStateException("metrics are already registered");
+        }
+
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final String cacheNameProperty = JMX_DOMAIN + ":type=InstrumentPriceCache,name=" + ObjectName.quote(cacheName);
+        try {
+            final ObjectName cacheObjectName = new ObjectName(cacheNameProperty);
+            mBeanServer.registerMBean(this, cacheObjectName);
+            registeredNames.add(cacheObjectName);
+            for (CacheOperation cacheOperation : CacheOperation.values()) {
+                final ObjectName operationObjectName = new ObjectName(cacheNameProperty + ",operation=" + cacheOperation);
+                mBeanServer.registerMBean(operationMetrics[cacheOperation.ordinal()], operationObjectName);
+                registeredNames.add(operationObjectName);
+            }
+        }
+        catch (JMException e) {
+            unregisterMBeans();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void unregisterMBeans() throws JMException {
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (ObjectName registeredName : registeredNames) {
+                if (mBeanServer.isRegistered(registeredName)) {
+                    mBeanServer.unregisterMBean(registeredName);
+                }
+            }
+        }
+        finally {
+            registeredNames.clear();
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.adaton.metrics.impl;
+
+import com.adaton.metrics.CacheOperation;
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.ICacheIndex;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Cache index stage that records the latency of every operation of the underlying index.
+ */
+public class InstrumentedCacheIndex implements ICacheIndex {
+
+    private final ICacheIndex cacheIndex;
+    private final CacheMetrics cacheMetrics;
+
+    public InstrumentedCacheIndex(ICacheIndex cacheIndex, CacheMetrics cacheMetrics) {
+        this.cacheIndex = cacheIndex;
+        this.cacheMetrics = cacheMetrics;
+    }
+
+    @Override
+    public void updateCacheIndex(String outerKey, String innerKey, InstrumentPrice instrumentPrice) {
+        final long startNanos = cacheMetrics.startTiming();
+        cacheIndex.updateCacheIndex(outerKey, innerKey, instrumentPrice);
+        cacheMetrics.recordLatency(CacheOperation.INDEX_UPDATE, startNanos);
+    }
+
+    @Override
+    public int updateCacheIndex(String outerKey, Function<InstrumentPrice, String> innerKeyFunction, Collection<InstrumentPrice> instrumentPrices) {
+        final long startNanos = cacheMetrics.startTiming();
+        final int replacedCount = cacheIndex.updateCacheIndex(outerKey, innerKeyFunction, instrumentPrices);
+        cacheMetrics.recordLatency(CacheOperation.INDEX_UPDATE_BULK, startNanos);
+        return replacedCount;
+    }
+
+    @Override
+    public Map<String, InstrumentPrice> getCachedInstrumentPrices(String outerKey) {
+        final long startNanos = cacheMetrics.startTiming();
+        final Map<String, InstrumentPrice> instrumentPrices = cacheIndex.getCachedInstrumentPrices(outerKey);
+        cacheMetrics.recordLatency(CacheOperation.INDEX_LOOKUP, startNanos);
+        return instrumentPrices;
+    }
+
+    @Override
+    public void forEachCachedInstrumentPrice(String outerKey, Consumer<InstrumentPrice> action) {
+        final long startNanos = cacheMetrics.startTiming();
+        cacheIndex.forEachCachedInstrumentPrice(outerKey, action);
+        cacheMetrics.recordLatency(CacheOperation.INDEX_LOOKUP, startNanos);
+    }
+
+    @Override
+    public void forEachInstrumentPrice(Consumer<InstrumentPrice> action) {
+        final long startNanos = cacheMetrics.startTiming();
+        cacheIndex.forEachInstrumentPrice(action);
+        cacheMetrics.recordLatency(CacheOperation.INDEX_SCAN, startNanos);
+    }
+
+    @Override
+    public ICacheIndex snapshot() {
+        final long startNanos = cacheMetrics.startTiming();
+        final ICacheIndex snapshot = cacheIndex.snapshot();
+        cacheMetrics.recordLatency(CacheOperation.INDEX_SNAPSHOT, startNanos);
+        return snapshot;
+    }
+
+    @Override
+    public long getPriceCount() {
+        return cacheIndex.getPriceCount();
+    }
+
+    @Override
+    public long estimateMemoryBytes() {
+        return cacheIndex.estimateMemoryBytes();
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.adaton.metrics.impl;
+
+import com.adaton.metrics.CacheOperation;
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.ICacheIndex;
+import com.adaton.persistence.IDayPriceStore;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Price store stage that records the latency of every update of the underlying store, and of every operation
+ * of its indices.
+ */
+public class InstrumentedDayPriceStore implements IDayPriceStore {
+
+    private final IDayPriceStore priceStore;
+    private final CacheMetrics cacheMetrics;
+    private final ICacheIndex instrumentIndex;
+    private final ICacheIndex vendorIndex;
+
+    public InstrumentedDayPriceStore(IDayPriceStore priceStore, CacheMetrics cacheMetrics) {
+        this.priceStore = priceStore;
+        this.cacheMetrics = cacheMetrics;
+        this.instrumentIndex = new InstrumentedCacheIndex(priceStore.instrumentIndex(), cacheMetrics);
+        this.vendorIndex = new InstrumentedCacheIndex(priceStore.vendorIndex(), cacheMetrics);
+    }
+
+    @Override
+    public InstrumentPrice updatePrice(InstrumentPrice instrumentPrice) {
+        final long startNanos = cacheMetrics.startTiming();
+        final InstrumentPrice replacedPrice = priceStore.updatePrice(instrumentPrice);
+        cacheMetrics.recordLatency(CacheOperation.INDEX_UPDATE, startNanos);
+        return replacedPrice;
+    }
+
+    @Override
+    public boolean updatePrice(int vendorId, int instrumentId, double price) {
+        final long startNanos = cacheMetrics.startTiming();
+        final boolean replaced = priceStore.updatePrice(vendorId, instrumentId, price);
+        cacheMetrics.recordLatency(CacheOperation.INDEX_UPDATE, startNanos);
+        return replaced;
+    }
+
+    @Override
+    public boolean isAddressedBySymbolId() {
+        return priceStore.isAddressedBySymbolId();
+    }
+
+    @Override
+    public boolean holdsEachPriceOnce() {
+        return priceStore.holdsEachPriceOnce();
+    }
+
+    @Override
+    public double getPrice(int vendorId, int instrumentId) {
+        final long startNanos = cacheMetrics.startTiming();
+        final double price = priceStore.getPrice(vendorId, instrumentId);
+        cacheMetrics.recordLatency(CacheOperation.INDEX_LOOKUP, startNanos);
+        return price;
+    }
+
+    @Override
+    public double getPrice(String vendorId, String instrumentId) {
+        final long startNanos = cacheMetrics.startTiming();
+        final double price = priceStore.getPrice(vendorId, instrumentId);
+        cacheMetrics.recordLatency(CacheOperation.INDEX_LOOKUP, startNanos);
+        return price;
+    }
+
+    @Override
+    public int updatePrices(Collection<InstrumentPrice> instrumentPrices, ForkJoinPool parallelPool) {
+        final long startNanos = cacheMetrics.startTiming();
+        final int replacedCount = priceStore.updatePrices(instrumentPrices, parallelPool);
+        cacheMetrics.recordLatency(CacheOperation.INDEX_UPDATE_BULK, startNanos);
+        return replacedCount;
+    }
+
+    @Override
+    public ICacheIndex instrumentIndex() {
+        return instrumentIndex;
+    }
+
+    @Override
+    public ICacheIndex vendorIndex() {
+        return vendorIndex;
+    }
+
+    @Override
+    public IDayPriceStore snapshot() {
+        final long startNanos = cacheMetrics.startTiming();
+        final IDayPriceStore snapshot = priceStore.snapshot();
+        cacheMetrics.recordLatency(CacheOperation.INDEX_SNAPSHOT, startNanos);
+        return snapshot;
+    }
+
+    @Override
+    public long getPriceCount() {
+        return priceStore.getPriceCount();
+    }
+
+    @Override
+    public long estimateMemoryBytes() {
+        return priceStore.estimateMemoryBytes();
+    }
+
+}
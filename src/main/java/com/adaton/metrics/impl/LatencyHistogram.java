@@ -0,0 +1,106 @@
+package com.adaton.metrics.impl;
+
+import com.adaton.metrics.OperationStatistics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with log-linear buckets, in the manner of HdrHistogram: each power of two is split into
+ * 16 linear sub-buckets, which bounds the error of a reported percentile to 1/16 of its value.
+ * Every bucket is a LongAdder, so concurrent recorders do not contend on a shared cache line.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // Latencies of 2^36 ns (about 68 s) or more are recorded in the last bucket
+    private static final int MAX_MAGNITUDE = 36;
+    private static final long MAX_TRACKED_NANOS = (1L << MAX_MAGNITUDE) - 1;
+    private static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final LongAdder[] buckets;
+    private final LongAdder count;
+    private final LongAdder totalNanos;
+    private final LongAccumulator maxNanos;
+
+    public LatencyHistogram() {
+        this.buckets = new LongAdder[BUCKET_COUNT];
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            buckets[bucket] = new LongAdder();
+        }
+        this.count = new LongAdder();
+        this.totalNanos = new LongAdder();
+        this.maxNanos = new LongAccumulator(Math::max, 0L);
+    }
+
+    public void record(long latencyNanos) {
+        final long trackedNanos = Math.min(Math.max(latencyNanos, 0L), MAX_TRACKED_NANOS);
+        buckets[bucketIndex(trackedNanos)].increment();
+        count.increment();
+        totalNanos.add(trackedNanos);
+        maxNanos.accumulate(trackedNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * The buckets are summed one at a time, so the statistics of a histogram that is being recorded to are
+     * only approximately consistent with each other.
+     */
+    public OperationStatistics getStatistics() {
+        final long[] bucketCounts = new long[BUCKET_COUNT];
+        long recordedCount = 0L;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            bucketCounts[bucket] = buckets[bucket].sum();
+            recordedCount += bucketCounts[bucket];
+        }
+        if (recordedCount == 0L) {
+            return new OperationStatistics(0L, 0.0d, 0L, 0L, 0L, 0L, 0L);
+        }
+
+        return new OperationStatistics(
+            recordedCount,
+            (double) totalNanos.sum() / count.sum(),
+            percentile(bucketCounts, recordedCount, 0.50d),
+            percentile(bucketCounts, recordedCount, 0.90d),
+            percentile(bucketCounts, recordedCount, 0.99d),
+            percentile(bucketCounts, recordedCount, 0.999d),
+            maxNanos.get()
+        );
+    }
+
+    // Returns the highest latency of the bucket that holds the percentile
+    private static long percentile(long[] bucketCounts, long recordedCount, double percentile) {
+        final long rank = (long) Math.ceil(percentile * recordedCount);
+        long cumulativeCount = 0L;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            cumulativeCount += bucketCounts[bucket];
+            if (cumulativeCount >= rank) {
+                return bucketUpperBound(bucket);
+            }
+        }
+        return MAX_TRACKED_NANOS;
+    }
+
+    private static int bucketIndex(long latencyNanos) {
+        if (latencyNanos < SUB_BUCKET_COUNT) {
+            return (int) latencyNanos;
+        }
+        final int magnitude = 63 - Long.numberOfLeadingZeros(latencyNanos);
+        final int subBucket = (int) (latencyNanos >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    private static long bucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKET_COUNT - 1;
+        final long lowerBound = (long) (SUB_BUCKET_COUNT + bucket % SUB_BUCKET_COUNT) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+}
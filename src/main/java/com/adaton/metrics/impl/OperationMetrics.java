@@ -0,0 +1,60 @@
+package com.adaton.metrics.impl;
+
+import com.adaton.metrics.OperationMetricsMXBean;
+import com.adaton.metrics.OperationStatistics;
+
+/**
+ * Latency histogram of one operation, exposed through JMX.
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+
+    private final LatencyHistogram latencyHistogram;
+
+    public OperationMetrics() {
+        this.latencyHistogram = new LatencyHistogram();
+    }
+
+    public void record(long latencyNanos) {
+        latencyHistogram.record(latencyNanos);
+    }
+
+    public OperationStatistics getStatistics() {
+        return latencyHistogram.getStatistics();
+    }
+
+    @Override
+    public long getCount() {
+        return latencyHistogram.getCount();
+    }
+
+    @Override
+    public double getMeanLatencyNanos() {
+        return getStatistics().meanLatencyNanos();
+    }
+
+    @Override
+    public long getP50LatencyNanos() {
+        return getStatistics().p50LatencyNanos();
+    }
+
+    @Override
+    public long getP90LatencyNanos() {
+        return getStatistics().p90LatencyNanos();
+    }
+
+    @Override
+    public long getP99LatencyNanos() {
+        return getStatistics().p99LatencyNanos();
+    }
+
+    @Override
+    public long getP999LatencyNanos() {
+        return getStatistics().p999LatencyNanos();
+    }
+
+    @Override
+    public long getMaxLatencyNanos() {
+        return getStatistics().maxLatencyNanos();
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.adaton.model;
+
+public record LoadResult(
+        // Number of rows read from the file, bad rows included
+        long rowCount,
+        // Number of rows that could not be parsed, reported to the load listener and skipped
+        long badRowCount,
+        // Number of prices written to the cache
+        long acceptedCount,
+        // Number of prices ignored because their price date is older than the earliest date kept in the cache
+        long rejectedAsTooOldCount,
+        // Number of accepted prices that replaced a price for the same vendor, instrument and date
+        long supersededCount) {
+
+    public LoadResult {
+        if (rowCount < 0L || badRowCount < 0L || acceptedCount < 0L || rejectedAsTooOldCount < 0L || supersededCount < 0L)
+            throw new IllegalArgumentException("counts cannot be negative");
+        if (badRowCount + acceptedCount + rejectedAsTooOldCount > rowCount)
+            throw new IllegalArgumentException("bad, accepted and rejected rows cannot exceed rowCount");
+    }
+
+    /**
+     * @return The counts of this result added to the counts of another.
+     */
+    public LoadResult plus(LoadResult loadResult) {
+        return new LoadResult(
+            rowCount + loadResult.rowCount,
+            badRowCount + loadResult.badRowCount,
+            acceptedCount + loadResult.acceptedCount,
+            rejectedAsTooOldCount + loadResult.rejectedAsTooOldCount,
+            supersededCount + loadResult.supersededCount
+        );
+    }
+
+}
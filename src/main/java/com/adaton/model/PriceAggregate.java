@@ -0,0 +1,28 @@
+package com.adaton.model;
+
+public record PriceAggregate(
+        // Number of vendors with a price for the instrument, NaN prices excluded
+        int vendorCount,
+        // Lowest and highest vendor price
+        double minPrice,
+        double maxPrice,
+        // Sum of the vendor prices
+        double sumOfPrices,
+        // Median of the vendor prices, which a minority of outlying vendors cannot move beyond the other prices
+        double consensusPrice) {
+
+    public PriceAggregate {
+        if (vendorCount <= 0)
+            throw new IllegalArgumentException("vendorCount must be positive");
+        if (minPrice > maxPrice)
+            throw new IllegalArgumentException("minPrice cannot exceed maxPrice");
+    }
+
+    /**
+     * @return The mean of the vendor prices.
+     */
+    public double averagePrice() {
+        return sumOfPrices / vendorCount;
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.adaton.model;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+public record PriceChangeEvent(
+        ChangeType changeType,
+        LocalDate priceDate,
+        // Price replaced by an UPDATED change, null otherwise
+        InstrumentPrice oldPrice,
+        // Price published by a NEW or UPDATED change, null for a DAY_EVICTED change
+        InstrumentPrice newPrice) {
+
+    public enum ChangeType {
+        // First price of a vendor for an instrument and date
+        NEW,
+        // Price replacing the cached price of the same vendor, instrument and date
+        UPDATED,
+        // Every price of the date was evicted from the cache
+        DAY_EVICTED
+    }
+
+    public PriceChangeEvent {
+        Objects.requireNonNull(changeType);
+        Objects.requireNonNull(priceDate);
+        if ((changeType == ChangeType.UPDATED) != (oldPrice != null))
+            throw new IllegalArgumentException("oldPrice must be set for UPDATED changes only");
+        if ((changeType == ChangeType.DAY_EVICTED) != (newPrice == null))
+            throw new IllegalArgumentException("newPrice must be set for NEW and UPDATED changes only");
+    }
+
+    public static PriceChangeEvent added(InstrumentPrice newPrice) {
+        return new PriceChangeEvent(ChangeType.NEW, newPrice.priceDate(), null, newPrice);
+    }
+
+    public static PriceChangeEvent updated(InstrumentPrice oldPrice, InstrumentPrice newPrice) {
+        return new PriceChangeEvent(ChangeType.UPDATED, newPrice.priceDate(), oldPrice, newPrice);
+    }
+
+    public static PriceChangeEvent dayEvicted(LocalDate priceDate) {
+        return new PriceChangeEvent(ChangeType.DAY_EVICTED, priceDate, null, null);
+    }
+
+}
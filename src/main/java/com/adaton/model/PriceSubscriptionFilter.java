@@ -0,0 +1,48 @@
+package com.adaton.model;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Set;
+
+public record PriceSubscriptionFilter(
+        // Vendors whose prices are received, null for every vendor
+        Set<String> vendorIds,
+        // Instruments whose prices are received, null for every instrument
+        Set<String> instrumentIds,
+        // Price date whose prices and eviction are received, null for every date
+        LocalDate priceDate) {
+
+    private static final PriceSubscriptionFilter ALL = new PriceSubscriptionFilter(null, null, null);
+
+    public PriceSubscriptionFilter {
+        vendorIds = vendorIds != null ? Set.copyOf(vendorIds) : null;
+        instrumentIds = instrumentIds != null ? Set.copyOf(instrumentIds) : null;
+    }
+
+    public static PriceSubscriptionFilter all() {
+        return ALL;
+    }
+
+    public static PriceSubscriptionFilter forVendor(String vendorId) {
+        return new PriceSubscriptionFilter(Set.of(vendorId), null, null);
+    }
+
+    public static PriceSubscriptionFilter forInstruments(Collection<String> instrumentIds) {
+        return new PriceSubscriptionFilter(null, Set.copyOf(instrumentIds), null);
+    }
+
+    public static PriceSubscriptionFilter forDate(LocalDate priceDate) {
+        return new PriceSubscriptionFilter(null, null, priceDate);
+    }
+
+    public boolean matches(InstrumentPrice instrumentPrice) {
+        return matches(instrumentPrice.priceDate()) &&
+            (vendorIds == null || vendorIds.contains(instrumentPrice.vendorId())) &&
+            (instrumentIds == null || instrumentIds.contains(instrumentPrice.instrumentId()));
+    }
+
+    public boolean matches(LocalDate priceDate) {
+        return this.priceDate == null || this.priceDate.equals(priceDate);
+    }
+
+}
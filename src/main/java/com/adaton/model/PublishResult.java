@@ -0,0 +1,24 @@
+package com.adaton.model;
+
+public record PublishResult(
+        // Number of prices written to the cache
+        int acceptedCount,
+        // Number of prices ignored because their price date is older than the earliest date kept in the cache
+        int rejectedAsTooOldCount,
+        // Number of accepted prices that replaced a price for the same vendor, instrument and date
+        int supersededCount,
+        // Number of queued prices discarded under backpressure to make room for the published ones
+        int droppedCount) {
+
+    public PublishResult {
+        if (acceptedCount < 0 || rejectedAsTooOldCount < 0 || supersededCount < 0 || droppedCount < 0)
+            throw new IllegalArgumentException("counts cannot be negative");
+        if (supersededCount > acceptedCount)
+            throw new IllegalArgumentException("supersededCount cannot exceed acceptedCount");
+    }
+
+    public PublishResult(int acceptedCount, int rejectedAsTooOldCount, int supersededCount) {
+        this(acceptedCount, rejectedAsTooOldCount, supersededCount, 0);
+    }
+
+}
@@ -2,10 +2,19 @@ package com.adaton.persistence;
 
 import com.adaton.model.InstrumentPrice;
 
+import java.util.Collection;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public interface ICacheIndex {
 
+    /**
+     * Rough memory held by one price in an on-heap index: its map entry, its share of the hash table
+     * and of the price object, which is shared by the instrument and the vendor indices.
+     */
+    long ESTIMATED_BYTES_PER_PRICE = 64L;
+
     /**
      * Update the cache index. The index is organised according to a 2-layer associative map:
      * Map of [Instrument ID --> Map of [Vendor ID --> Price]]
@@ -22,6 +31,22 @@ public interface ICacheIndex {
             InstrumentPrice instrumentPrice
     );
 
+    /**
+     * Update the cache index with a group of instrument prices that share the same first layer key.
+     * The second layer map is resolved once for the whole group. When the group holds more than one price
+     * for the same second layer key, the last one in iteration order is kept.
+     *
+     * @param outerKey         Key to the first layer map.
+     * @param innerKeyFunction Function that extracts the key to the second layer map from a price.
+     * @param instrumentPrices Instrument prices to be kept in cache.
+     * @return The number of prices replaced, either already held in the index or earlier in the group.
+     */
+    int updateCacheIndex(
+            String outerKey,
+            Function<InstrumentPrice, String> innerKeyFunction,
+            Collection<InstrumentPrice> instrumentPrices
+    );
+
     /**
      * Retrieve instrument prices using the first layer key.
      *
@@ -30,4 +55,46 @@ public interface ICacheIndex {
      */
     Map<String, InstrumentPrice> getCachedInstrumentPrices(String outerKey);
 
+    /**
+     * Visit the instrument prices associated with a first layer key, without creating a map for them.
+     *
+     * @param outerKey Key to the first layer map.
+     * @param action   Action to be performed on each instrument price.
+     */
+    default void forEachCachedInstrumentPrice(String outerKey, Consumer<InstrumentPrice> action) {
+        getCachedInstrumentPrices(outerKey).values().forEach(action);
+    }
+
+    /**
+     * Visit every instrument price held in the index.
+     *
+     * @param action Action to be performed on each instrument price.
+     */
+    void forEachInstrumentPrice(Consumer<InstrumentPrice> action);
+
+    /**
+     * Take a point-in-time view of the index. The view is immutable: later updates to this index are not
+     * visible through it, and the maps it returns can be iterated without being copied.
+     * Backends built on persistent maps return the view in constant time, other backends copy their content.
+     *
+     * @return A read-only index holding the prices held by this index when the method was called.
+     */
+    ICacheIndex snapshot();
+
+    /**
+     * @return The number of instrument prices held in the index.
+     */
+    default long getPriceCount() {
+        final long[] priceCount = new long[1];
+        forEachInstrumentPrice(instrumentPrice -> priceCount[0]++);
+        return priceCount[0];
+    }
+
+    /**
+     * @return An estimate of the memory held by the index, in bytes.
+     */
+    default long estimateMemoryBytes() {
+        return getPriceCount() * ESTIMATED_BYTES_PER_PRICE;
+    }
+
 }
@@ -0,0 +1,46 @@
+package com.adaton.persistence;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.impl.DualIndexPriceStore;
+
+import java.time.LocalDate;
+
+public interface ICacheIndexFactory {
+
+    /**
+     * Create an empty index organised as Map of [Instrument ID --> Map of [Vendor ID --> Price]].
+     *
+     * @return The new cache index.
+     */
+    ICacheIndex createInstrumentIndex();
+
+    /**
+     * Create an empty index organised as Map of [Vendor ID --> Map of [Instrument ID --> Price]].
+     *
+     * @return The new cache index.
+     */
+    ICacheIndex createVendorIndex();
+
+    /**
+     * Create an empty store for the prices of one date. By default the store keeps one index of each
+     * orientation, created by the two methods above, and writes every price to both.
+     *
+     * @param priceDate Trading date of the prices kept in the store.
+     * @return The new price store.
+     */
+    default IDayPriceStore createDayStore(LocalDate priceDate) {
+        return new DualIndexPriceStore(createInstrumentIndex(), createVendorIndex());
+    }
+
+    /**
+     * Give the factory a chance to replace an instrument price with an equal one before it is kept in the
+     * indices it creates, e.g. to share canonical vendor and instrument ID instances.
+     *
+     * @param instrumentPrice Instrument price to be published.
+     * @return The instrument price to be kept in the indices.
+     */
+    default InstrumentPrice internInstrumentPrice(InstrumentPrice instrumentPrice) {
+        return instrumentPrice;
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.adaton.persistence;
+
+import com.adaton.model.InstrumentPrice;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Prices of one date, readable both by instrument and by vendor. A store either keeps one index of each
+ * orientation, or holds each price once and serves both orientations from it.
+ */
+public interface IDayPriceStore {
+
+    /**
+     * Keep an instrument price in the store, replacing the price of the same vendor and instrument if any.
+     *
+     * @param instrumentPrice Instrument price to be kept in cache.
+     * @return The price replaced, or null if the store held no price for the vendor and instrument.
+     */
+    InstrumentPrice updatePrice(InstrumentPrice instrumentPrice);
+
+    /**
+     * Keep a price given by the symbol IDs of its vendor and instrument, as interned by the symbol tables shared
+     * by the stores of a factory. Replacing a price held by the store allocates nothing.
+     *
+     * @param vendorId     Vendor symbol ID.
+     * @param instrumentId Instrument symbol ID.
+     * @param price        Price to be kept in cache.
+     * @return True if the price replaced a price held by the store.
+     * @throws UnsupportedOperationException If the store does not address prices by symbol ID.
+     */
+    default boolean updatePrice(int vendorId, int instrumentId, double price) {
+        throw new UnsupportedOperationException("price store does not address prices by symbol ID");
+    }
+
+    /**
+     * @return True if the store supports updating prices by symbol ID.
+     */
+    default boolean isAddressedBySymbolId() {
+        return false;
+    }
+
+    /**
+     * Retrieve a price by the symbol IDs of its vendor and instrument, without allocating.
+     *
+     * @param vendorId     Vendor symbol ID.
+     * @param instrumentId Instrument symbol ID.
+     * @return The price, or NaN if the store holds no price for the vendor and instrument.
+     * @throws UnsupportedOperationException If the store does not address prices by symbol ID.
+     */
+    default double getPrice(int vendorId, int instrumentId) {
+        throw new UnsupportedOperationException("price store does not address prices by symbol ID");
+    }
+
+    /**
+     * @return True if the store holds each price once and serves both orientations from it, so that both
+     *         orientations of a snapshot hold the same prices even when updates run while it is taken.
+     */
+    default boolean holdsEachPriceOnce() {
+        return false;
+    }
+
+    /**
+     * Retrieve the price of an instrument from a vendor.
+     *
+     * @param vendorId     Vendor ID of the price.
+     * @param instrumentId Instrument ID of the price.
+     * @return The price, or NaN if the store holds no price for the vendor and instrument.
+     */
+    default double getPrice(String vendorId, String instrumentId) {
+        final InstrumentPrice instrumentPrice = instrumentIndex().getCachedInstrumentPrices(instrumentId).get(vendorId);
+        return instrumentPrice != null ? instrumentPrice.price() : Double.NaN;
+    }
+
+    /**
+     * Keep a group of instrument prices in the store. When the group holds more than one price for the same
+     * vendor and instrument, the last one in iteration order is kept.
+     *
+     * @param instrumentPrices Instrument prices to be kept in cache.
+     * @param parallelPool     Pool used to apply the group in parallel, or null to apply it on the caller's thread.
+     * @return The number of prices replaced, either already held in the store or earlier in the group.
+     */
+    int updatePrices(Collection<InstrumentPrice> instrumentPrices, ForkJoinPool parallelPool);
+
+    /**
+     * @return The prices organised as Map of [Instrument ID --> Map of [Vendor ID --> Price]].
+     */
+    ICacheIndex instrumentIndex();
+
+    /**
+     * @return The prices organised as Map of [Vendor ID --> Map of [Instrument ID --> Price]].
+     */
+    ICacheIndex vendorIndex();
+
+    /**
+     * Take a point-in-time view of the store. Both orientations of the view hold the same prices as long as
+     * no update runs while the view is taken.
+     *
+     * @return A read-only store holding the prices held by this store when the method was called.
+     */
+    IDayPriceStore snapshot();
+
+    /**
+     * @return The number of instrument prices held in the store.
+     */
+    default long getPriceCount() {
+        return instrumentIndex().getPriceCount();
+    }
+
+    /**
+     * @return An estimate of the memory held by the store, in bytes.
+     */
+    default long estimateMemoryBytes() {
+        return instrumentIndex().estimateMemoryBytes() + vendorIndex().estimateMemoryBytes();
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.adaton.persistence;
+
+import com.adaton.model.InstrumentPrice;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface IPriceJournal extends Closeable {
+
+    /**
+     * Append an instrument price to the journal. The price is made durable by a later group commit;
+     * the call does not wait for it.
+     *
+     * @param instrumentPrice Instrument price to be journaled.
+     */
+    void append(InstrumentPrice instrumentPrice);
+
+    /**
+     * Append a collection of instrument prices to the journal. The prices are made durable by a later
+     * group commit; the call does not wait for it.
+     *
+     * @param instrumentPrices Instrument prices to be journaled.
+     */
+    void append(Collection<InstrumentPrice> instrumentPrices);
+
+    /**
+     * Wait until every price appended before the call is durable.
+     */
+    void sync() throws IOException;
+
+    /**
+     * Hand every journaled price over in batches, e.g. to IInstrumentPriceCache.publishInstrumentPrices.
+     * Segments of different price dates are replayed in parallel; segments of the same date are replayed in
+     * the order they were written. Each batch holds prices of a single date.
+     *
+     * @param publisher   Receives the batches of journaled prices. Called from several threads at once.
+     * @param parallelism Number of replay threads.
+     * @return The number of prices replayed.
+     */
+    long replay(Consumer<List<InstrumentPrice>> publisher, int parallelism) throws IOException;
+
+    /**
+     * Delete the journal segments of price dates before a given date.
+     *
+     * @param priceDate Earliest price date whose segments are kept.
+     */
+    void deleteSegmentsBefore(LocalDate priceDate) throws IOException;
+
+    /**
+     * Delete the journal segments of one price date, e.g. once the date is evicted from the cache.
+     *
+     * @param priceDate Price date whose segments are deleted.
+     */
+    void deleteSegments(LocalDate priceDate) throws IOException;
+
+}
@@ -0,0 +1,40 @@
+package com.adaton.persistence;
+
+public interface ISymbolTable {
+
+    /**
+     * Symbol ID returned by lookups for a symbol that has never been interned.
+     */
+    int NO_SYMBOL_ID = -1;
+
+    /**
+     * Intern a symbol. Symbol IDs are dense: they are assigned from 0 upwards in the order symbols are first
+     * interned, and never change or get reused.
+     *
+     * @param symbol Symbol to be interned, e.g. a vendor ID or an instrument ID.
+     * @return The symbol ID assigned to the symbol.
+     */
+    int intern(String symbol);
+
+    /**
+     * Retrieve the ID of a symbol without interning it.
+     *
+     * @param symbol Symbol to be looked up.
+     * @return The symbol ID, or NO_SYMBOL_ID if the symbol has never been interned.
+     */
+    int lookup(String symbol);
+
+    /**
+     * Retrieve the canonical instance of an interned symbol.
+     *
+     * @param symbolId Symbol ID returned by intern.
+     * @return The canonical symbol instance.
+     */
+    String symbol(int symbolId);
+
+    /**
+     * @return The number of interned symbols.
+     */
+    int size();
+
+}
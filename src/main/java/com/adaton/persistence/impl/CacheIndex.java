@@ -3,13 +3,17 @@ package com.adaton.persistence.impl;
 import com.adaton.model.InstrumentPrice;
 import com.adaton.persistence.ICacheIndex;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class CacheIndex implements ICacheIndex {
 
-    private final ConcurrentHashMap<String, ConcurrentHashMap<String, InstrumentPrice>> cacheIndex;
+    private final ConcurrentHashMap<String, InstrumentPrices> cacheIndex;
 
     public CacheIndex() {
         this.cacheIndex = new ConcurrentHashMap<>();
@@ -21,22 +25,87 @@ public class CacheIndex implements ICacheIndex {
             outerKey,
             (oldKey_, instrumentPrices) -> {
                 if (instrumentPrices == null) {
-                    instrumentPrices = new ConcurrentHashMap<>();
+                    instrumentPrices = new InstrumentPrices();
                 }
-                instrumentPrices.put(innerKey, instrumentPrice);
+                instrumentPrices.prices.put(innerKey, instrumentPrice);
                 return instrumentPrices;
             }
         );
     }
 
+    @Override
+    public int updateCacheIndex(String outerKey, Function<InstrumentPrice, String> innerKeyFunction, Collection<InstrumentPrice> instrumentPrices) {
+        final int[] replacedCount = new int[1];
+        cacheIndex.compute(
+            outerKey,
+            (oldKey_, cachedPrices) -> {
+                if (cachedPrices == null) {
+                    // Size the new map for the whole group to avoid rehashing while it is filled
+                    cachedPrices = new InstrumentPrices(instrumentPrices.size());
+                }
+                for (InstrumentPrice instrumentPrice : instrumentPrices) {
+                    if (cachedPrices.prices.put(innerKeyFunction.apply(instrumentPrice), instrumentPrice) != null) {
+                        replacedCount[0]++;
+                    }
+                }
+                return cachedPrices;
+            }
+        );
+        return replacedCount[0];
+    }
+
     @Override
     public Map<String, InstrumentPrice> getCachedInstrumentPrices(String outerKey) {
-        if (cacheIndex.containsKey(outerKey)) {
-            return Collections.unmodifiableMap(cacheIndex.get(outerKey));
+        final InstrumentPrices instrumentPrices = cacheIndex.get(outerKey);
+        return instrumentPrices != null ? instrumentPrices.readOnlyView : Collections.emptyMap();
+    }
+
+    @Override
+    public void forEachCachedInstrumentPrice(String outerKey, Consumer<InstrumentPrice> action) {
+        final InstrumentPrices instrumentPrices = cacheIndex.get(outerKey);
+        if (instrumentPrices != null) {
+            instrumentPrices.prices.values().forEach(action);
+        }
+    }
+
+    @Override
+    public void forEachInstrumentPrice(Consumer<InstrumentPrice> action) {
+        cacheIndex.values().forEach(instrumentPrices -> instrumentPrices.prices.values().forEach(action));
+    }
+
+    @Override
+    public ICacheIndex snapshot() {
+        final Map<String, Map<String, InstrumentPrice>> copiedPrices = new HashMap<>(cacheIndex.size());
+        cacheIndex.forEach((outerKey, instrumentPrices) -> copiedPrices.put(outerKey, Map.copyOf(instrumentPrices.prices)));
+        return new ImmutableCacheIndex(copiedPrices);
+    }
+
+    @Override
+    public long getPriceCount() {
+        return cacheIndex.values().stream().mapToLong(instrumentPrices -> instrumentPrices.prices.mappingCount()).sum();
+    }
+
+    /**
+     * Prices of one outer key, along with the read-only view handed to every lookup of the key.
+     */
+    private static class InstrumentPrices {
+
+        private final ConcurrentHashMap<String, InstrumentPrice> prices;
+        private final Map<String, InstrumentPrice> readOnlyView;
+
+        private InstrumentPrices() {
+            this(new ConcurrentHashMap<>());
         }
-        else {
-            return Collections.emptyMap();
+
+        private InstrumentPrices(int initialCapacity) {
+            this(new ConcurrentHashMap<>(initialCapacity));
         }
+
+        private InstrumentPrices(ConcurrentHashMap<String, InstrumentPrice> prices) {
+            this.prices = prices;
+            this.readOnlyView = Collections.unmodifiableMap(prices);
+        }
+
     }
 
 }
@@ -0,0 +1,18 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.persistence.ICacheIndex;
+import com.adaton.persistence.ICacheIndexFactory;
+
+public class CacheIndexFactory implements ICacheIndexFactory {
+
+    @Override
+    public ICacheIndex createInstrumentIndex() {
+        return new CacheIndex();
+    }
+
+    @Override
+    public ICacheIndex createVendorIndex() {
+        return new CacheIndex();
+    }
+
+}
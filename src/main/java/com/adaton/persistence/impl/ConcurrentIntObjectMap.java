@@ -0,0 +1,213 @@
+package com.adaton.persistence.impl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+import java.util.function.IntFunction;
+
+/**
+ * Open-addressing hash map keyed by non-negative int IDs, such as the IDs handed out by a symbol table.
+ * Writers are serialised on the map; readers never lock. Entries are never removed.
+ *
+ * @param <V> Type of the mapped values.
+ */
+public class ConcurrentIntObjectMap<V> {
+
+    private static final VarHandle INT_ARRAY = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle OBJECT_ARRAY = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private static final int MIN_CAPACITY = 4;
+
+    // Keys are stored as ID + 1, so that a zero slot is empty
+    private record Table(int[] keys, Object[] values) {
+        Table(int capacity) {
+            this(new int[capacity], new Object[capacity]);
+        }
+    }
+
+    private volatile Table table;
+    private volatile int size;
+
+    public ConcurrentIntObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public ConcurrentIntObjectMap(int expectedSize) {
+        this.table = new Table(capacityFor(Math.max(expectedSize, MIN_CAPACITY)));
+    }
+
+    public V get(int key) {
+        final Table currentTable = table;
+        final int storedKey = key + 1;
+        final int mask = currentTable.keys().length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            final int slotKey = (int) INT_ARRAY.getAcquire(currentTable.keys(), slot);
+            if (slotKey == storedKey) {
+                @SuppressWarnings("unchecked")
+                final V value = (V) OBJECT_ARRAY.getAcquire(currentTable.values(), slot);
+                return value;
+            }
+            if (slotKey == 0) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @return The previous value mapped to the key, or null if there was none.
+     */
+    public synchronized V put(int key, V value) {
+        Objects.requireNonNull(value);
+        final Table currentTable = table;
+        final int slot = findSlot(currentTable, key);
+        @SuppressWarnings("unchecked")
+        final V previousValue = (V) currentTable.values()[slot];
+        if (previousValue != null) {
+            OBJECT_ARRAY.setRelease(currentTable.values(), slot, value);
+            return previousValue;
+        }
+
+        insert(currentTable, slot, key, value);
+        return null;
+    }
+
+    public V computeIfAbsent(int key, IntFunction<V> mappingFunction) {
+        final V value = get(key);
+        if (value != null) {
+            return value;
+        }
+
+        synchronized (this) {
+            final Table currentTable = table;
+            final int slot = findSlot(currentTable, key);
+            @SuppressWarnings("unchecked")
+            final V racedValue = (V) currentTable.values()[slot];
+            if (racedValue != null) {
+                return racedValue;
+            }
+
+            final V newValue = mappingFunction.apply(key);
+            insert(currentTable, slot, key, newValue);
+            return newValue;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Visit every entry of the map. Entries inserted while the visit is under way may or may not be visited.
+     */
+    public void forEach(IntObjectConsumer<? super V> action) {
+        final Table currentTable = table;
+        for (int slot = 0; slot < currentTable.keys().length; slot++) {
+            final int slotKey = (int) INT_ARRAY.getAcquire(currentTable.keys(), slot);
+            if (slotKey != 0) {
+                @SuppressWarnings("unchecked")
+                final V value = (V) OBJECT_ARRAY.getAcquire(currentTable.values(), slot);
+                action.accept(slotKey - 1, value);
+            }
+        }
+    }
+
+    /**
+     * Create a cursor over the entries of the map. Entries inserted while the cursor is in use may or may not
+     * be visited.
+     */
+    public Cursor<V> cursor() {
+        return new Cursor<>(table);
+    }
+
+    public static class Cursor<V> {
+
+        private final Table table;
+        private int slot = -1;
+        private int key;
+        private V value;
+
+        private Cursor(Table table) {
+            this.table = table;
+        }
+
+        /**
+         * @return True if the cursor moved to the next entry, false if there are no more entries.
+         */
+        public boolean advance() {
+            while (++slot < table.keys().length) {
+                final int slotKey = (int) INT_ARRAY.getAcquire(table.keys(), slot);
+                if (slotKey != 0) {
+                    @SuppressWarnings("unchecked")
+                    final V slotValue = (V) OBJECT_ARRAY.getAcquire(table.values(), slot);
+                    key = slotKey - 1;
+                    value = slotValue;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public int key() {
+            return key;
+        }
+
+        public V value() {
+            return value;
+        }
+
+    }
+
+    @FunctionalInterface
+    public interface IntObjectConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    // Called while holding the map lock
+    private int findSlot(Table currentTable, int key) {
+        final int storedKey = key + 1;
+        final int mask = currentTable.keys().length - 1;
+        int slot = hash(key) & mask;
+        while (currentTable.keys()[slot] != 0 && currentTable.keys()[slot] != storedKey) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Called while holding the map lock
+    private void insert(Table currentTable, int slot, int key, V value) {
+        if ((size + 1) * 4 > currentTable.keys().length * 3) {
+            // Keep the load factor under 0.75; the grown table is only published once fully populated
+            final Table grownTable = new Table(currentTable.keys().length << 1);
+            for (int oldSlot = 0; oldSlot < currentTable.keys().length; oldSlot++) {
+                final int oldKey = currentTable.keys()[oldSlot];
+                if (oldKey != 0) {
+                    final int newSlot = findSlot(grownTable, oldKey - 1);
+                    grownTable.keys()[newSlot] = oldKey;
+                    grownTable.values()[newSlot] = currentTable.values()[oldSlot];
+                }
+            }
+            final int newSlot = findSlot(grownTable, key);
+            grownTable.keys()[newSlot] = key + 1;
+            grownTable.values()[newSlot] = value;
+            table = grownTable;
+        }
+        else {
+            // Publish the value before the key, so that a reader matching the key always sees the value
+            OBJECT_ARRAY.setRelease(currentTable.values(), slot, value);
+            INT_ARRAY.setRelease(currentTable.keys(), slot, key + 1);
+        }
+        size = size + 1;
+    }
+
+    private static int hash(int key) {
+        // Spread dense IDs over the table
+        final int scrambled = key * 0x9E3779B9;
+        return scrambled ^ (scrambled >>> 16);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        final int minimumCapacity = expectedSize * 4 / 3 + 1;
+        return Integer.highestOneBit(minimumCapacity - 1) << 1;
+    }
+
+}
@@ -0,0 +1,557 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.ICacheIndex;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Compact binary snapshot of the prices of one date, designed to be served straight from a memory mapping.
+ * <p>
+ * Layout, all values big-endian:
+ * <pre>
+ * Header          magic, version, epoch day, vendor count, instrument count, price count,
+ *                 and the offsets of the five sections below
+ * Vendors         offsets int[vendor count + 1], then UTF-8 vendor IDs sorted by byte value
+ * Instruments     offsets int[instrument count + 1], then UTF-8 instrument IDs sorted by byte value
+ * By instrument   first row int[instrument count + 1], then vendor index int[price count]
+ *                 (rows sorted by instrument index, then vendor index)
+ * By vendor       first row int[vendor count + 1], then instrument index int[price count] and
+ *                 by-instrument row int[price count] (rows sorted by vendor index, then instrument index)
+ * Prices          price double[price count], in by-instrument row order
+ * </pre>
+ */
+public class DaySnapshotFile {
+
+    private static final int MAGIC = 0x49504353;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 48;
+
+    private final ByteBuffer buffer;
+    private final LocalDate priceDate;
+    private final Dictionary vendors;
+    private final Dictionary instruments;
+    private final int priceCount;
+    private final int byInstrumentOffset;
+    private final int byVendorOffset;
+    private final int priceOffset;
+
+    private DaySnapshotFile(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.priceDate = LocalDate.ofEpochDay(buffer.getInt(8));
+        this.vendors = new Dictionary(buffer.getInt(24), buffer.getInt(12));
+        this.instruments = new Dictionary(buffer.getInt(28), buffer.getInt(16));
+        this.priceCount = buffer.getInt(20);
+        this.byInstrumentOffset = buffer.getInt(32);
+        this.byVendorOffset = buffer.getInt(36);
+        this.priceOffset = buffer.getInt(40);
+    }
+
+    /**
+     * Map a snapshot file into memory. Prices are read from the mapping on demand, nothing is parsed upfront
+     * beyond checking that the header and section lengths describe the whole file.
+     *
+     * @throws IOException If the file cannot be read, or is not a complete snapshot file.
+     */
+    public static DaySnapshotFile map(Path snapshotFile) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            final long fileSize = fileChannel.size();
+            if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE)
+                throw new IOException("corrupt day snapshot file " + snapshotFile + ": unexpected size " + fileSize);
+            final MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0L, fileSize);
+            final String corruption = validate(buffer);
+            if (corruption != null)
+                throw new IOException("corrupt day snapshot file " + snapshotFile + ": " + corruption);
+            return new DaySnapshotFile(buffer);
+        }
+    }
+
+    /**
+     * Write the prices of one date to a snapshot file. The file is written aside and moved into place, so that
+     * an existing snapshot of the date, even one currently mapped, is replaced atomically.
+     *
+     * @param snapshotFile      File to be written.
+     * @param priceDate         Date of the prices.
+     * @param pricesByInstrument Index holding the prices of the date, organised by instrument.
+     */
+    public static void write(Path snapshotFile, LocalDate priceDate, ICacheIndex pricesByInstrument) throws IOException {
+        final List<InstrumentPrice> instrumentPrices = new ArrayList<>();
+        pricesByInstrument.forEachInstrumentPrice(instrumentPrices::add);
+
+        final byte[][] vendorIds = sortedSymbols(instrumentPrices, InstrumentPrice::vendorId);
+        final byte[][] instrumentIds = sortedSymbols(instrumentPrices, InstrumentPrice::instrumentId);
+        final Map<String, Integer> vendorIndices = symbolIndices(vendorIds);
+        final Map<String, Integer> instrumentIndices = symbolIndices(instrumentIds);
+
+        final int priceCount = instrumentPrices.size();
+        final int[] rowVendors = new int[priceCount];
+        final int[] rowInstruments = new int[priceCount];
+        for (int row = 0; row < priceCount; row++) {
+            rowVendors[row] = vendorIndices.get(instrumentPrices.get(row).vendorId());
+            rowInstruments[row] = instrumentIndices.get(instrumentPrices.get(row).instrumentId());
+        }
+
+        // By-instrument order of the collected prices
+        final Integer[] byInstrument = new Integer[priceCount];
+        Arrays.setAll(byInstrument, row -> row);
+        Arrays.sort(byInstrument, (left, right) ->
+            rowInstruments[left] != rowInstruments[right]
+                ? Integer.compare(rowInstruments[left], rowInstruments[right])
+                : Integer.compare(rowVendors[left], rowVendors[right]));
+        final int[] byInstrumentRows = new int[priceCount];
+        for (int row = 0; row < priceCount; row++) {
+            byInstrumentRows[byInstrument[row]] = row;
+        }
+
+        // By-vendor order of the collected prices
+        final Integer[] byVendor = new Integer[priceCount];
+        Arrays.setAll(byVendor, row -> row);
+        Arrays.sort(byVendor, (left, right) ->
+            rowVendors[left] != rowVendors[right]
+                ? Integer.compare(rowVendors[left], rowVendors[right])
+                : Integer.compare(rowInstruments[left], rowInstruments[right]));
+
+        final int vendorDictionaryOffset = HEADER_SIZE;
+        final int instrumentDictionaryOffset = vendorDictionaryOffset + dictionarySize(vendorIds);
+        final int byInstrumentOffset = instrumentDictionaryOffset + dictionarySize(instrumentIds);
+        final int byVendorOffset = byInstrumentOffset + Integer.BYTES * (instrumentIds.length + 1 + priceCount);
+        final int unalignedPriceOffset = byVendorOffset + Integer.BYTES * (vendorIds.length + 1 + priceCount * 2);
+        final int priceOffset = (unalignedPriceOffset + Double.BYTES - 1) & -Double.BYTES;
+
+        final Path temporaryFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (FileChannel fileChannel =
+                 FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(fileChannel), 1 << 16));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt((int) priceDate.toEpochDay());
+            output.writeInt(vendorIds.length);
+            output.writeInt(instrumentIds.length);
+            output.writeInt(priceCount);
+            output.writeInt(vendorDictionaryOffset);
+            output.writeInt(instrumentDictionaryOffset);
+            output.writeInt(byInstrumentOffset);
+            output.writeInt(byVendorOffset);
+            output.writeInt(priceOffset);
+            output.writeInt(0);
+
+            writeDictionary(output, vendorIds);
+            writeDictionary(output, instrumentIds);
+
+            writeRowStarts(output, instrumentIds.length, byInstrument, rowInstruments);
+            for (Integer row : byInstrument) {
+                output.writeInt(rowVendors[row]);
+            }
+
+            writeRowStarts(output, vendorIds.length, byVendor, rowVendors);
+            for (Integer row : byVendor) {
+                output.writeInt(rowInstruments[row]);
+            }
+            for (Integer row : byVendor) {
+                output.writeInt(byInstrumentRows[row]);
+            }
+
+            for (int padding = unalignedPriceOffset; padding < priceOffset; padding++) {
+                output.writeByte(0);
+            }
+            for (Integer row : byInstrument) {
+                output.writeDouble(instrumentPrices.get(row).price());
+            }
+            output.flush();
+
+            // The content must be on disk before the move makes it the snapshot of the date
+            fileChannel.force(true);
+        }
+        Files.move(temporaryFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(snapshotFile.toAbsolutePath().getParent());
+    }
+
+    public LocalDate getPriceDate() {
+        return priceDate;
+    }
+
+    public int getPriceCount() {
+        return priceCount;
+    }
+
+    /**
+     * @return A read-only index organised as Map of [Instrument ID --> Map of [Vendor ID --> Price]].
+     */
+    public ICacheIndex instrumentIndex() {
+        return new MappedCacheIndex(false);
+    }
+
+    /**
+     * @return A read-only index organised as Map of [Vendor ID --> Map of [Instrument ID --> Price]].
+     */
+    public ICacheIndex vendorIndex() {
+        return new MappedCacheIndex(true);
+    }
+
+    // Returns a description of the first inconsistency between the header and the mapping, or null if none
+    private static String validate(ByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            return "not a day snapshot file";
+        final long vendorCount = buffer.getInt(12);
+        final long instrumentCount = buffer.getInt(16);
+        final long priceCount = buffer.getInt(20);
+        final long vendorDictionaryOffset = buffer.getInt(24);
+        final long instrumentDictionaryOffset = buffer.getInt(28);
+        final long byInstrumentOffset = buffer.getInt(32);
+        final long byVendorOffset = buffer.getInt(36);
+        final long priceOffset = buffer.getInt(40);
+        if (vendorCount < 0L || instrumentCount < 0L || priceCount < 0L)
+            return "negative count";
+        if (vendorDictionaryOffset != HEADER_SIZE ||
+            dictionaryEnd(buffer, vendorDictionaryOffset, vendorCount, instrumentDictionaryOffset) != instrumentDictionaryOffset ||
+            dictionaryEnd(buffer, instrumentDictionaryOffset, instrumentCount, byInstrumentOffset) != byInstrumentOffset ||
+            byVendorOffset != byInstrumentOffset + Integer.BYTES * (instrumentCount + 1L + priceCount) ||
+            priceOffset < byVendorOffset + Integer.BYTES * (vendorCount + 1L + priceCount * 2L) ||
+            priceOffset % Double.BYTES != 0L ||
+            priceOffset + Double.BYTES * priceCount != buffer.capacity())
+            return "section lengths do not match the file size";
+        return null;
+    }
+
+    // Returns the end of a dictionary as described by its offsets, or -1 if they do not fit before the next section
+    private static long dictionaryEnd(ByteBuffer buffer, long offset, long count, long nextSectionOffset) {
+        final long bytesOffset = offset + Integer.BYTES * (count + 1L);
+        if (bytesOffset > nextSectionOffset) {
+            return -1L;
+        }
+        int previousEnd = 0;
+        for (int symbolIndex = 0; symbolIndex <= count; symbolIndex++) {
+            final int symbolEnd = buffer.getInt((int) offset + Integer.BYTES * symbolIndex);
+            if (symbolEnd < previousEnd || bytesOffset + symbolEnd > nextSectionOffset) {
+                return -1L;
+            }
+            previousEnd = symbolEnd;
+        }
+        return bytesOffset + previousEnd;
+    }
+
+    private static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        }
+        catch (IOException e) {
+            // Some platforms cannot open or force a directory, the move is then as durable as they make it
+            if (Files.isDirectory(directory)) {
+                return;
+            }
+            throw e;
+        }
+    }
+
+    private static byte[][] sortedSymbols(List<InstrumentPrice> instrumentPrices, Function<InstrumentPrice, String> symbolFunction) {
+        return instrumentPrices.stream()
+            .map(symbolFunction)
+            .distinct()
+            .map(symbol -> symbol.getBytes(StandardCharsets.UTF_8))
+            .sorted(Arrays::compareUnsigned)
+            .toArray(byte[][]::new);
+    }
+
+    private static Map<String, Integer> symbolIndices(byte[][] symbols) {
+        final Map<String, Integer> symbolIndices = new HashMap<>(symbols.length * 2);
+        for (int symbolIndex = 0; symbolIndex < symbols.length; symbolIndex++) {
+            symbolIndices.put(new String(symbols[symbolIndex], StandardCharsets.UTF_8), symbolIndex);
+        }
+        return symbolIndices;
+    }
+
+    private static int dictionarySize(byte[][] symbols) {
+        int size = Integer.BYTES * (symbols.length + 1);
+        for (byte[] symbol : symbols) {
+            size += symbol.length;
+        }
+        return size;
+    }
+
+    private static void writeDictionary(DataOutputStream output, byte[][] symbols) throws IOException {
+        int symbolOffset = 0;
+        output.writeInt(symbolOffset);
+        for (byte[] symbol : symbols) {
+            symbolOffset += symbol.length;
+            output.writeInt(symbolOffset);
+        }
+        for (byte[] symbol : symbols) {
+            output.write(symbol);
+        }
+    }
+
+    private static void writeRowStarts(DataOutputStream output, int outerCount, Integer[] sortedRows, int[] rowOuterIndices) throws IOException {
+        int row = 0;
+        for (int outerIndex = 0; outerIndex <= outerCount; outerIndex++) {
+            while (row < sortedRows.length && rowOuterIndices[sortedRows[row]] < outerIndex) {
+                row++;
+            }
+            output.writeInt(row);
+        }
+    }
+
+    /**
+     * Sorted symbol dictionary within the mapping. Decoded symbols are kept so that each is decoded once.
+     */
+    private class Dictionary {
+
+        private final int offset;
+        private final int count;
+        private final int bytesOffset;
+        private final String[] decodedSymbols;
+
+        private Dictionary(int offset, int count) {
+            this.offset = offset;
+            this.count = count;
+            this.bytesOffset = offset + Integer.BYTES * (count + 1);
+            this.decodedSymbols = new String[count];
+        }
+
+        // Returns the index of the symbol, or -1 if the dictionary does not hold it
+        private int indexOf(String symbol) {
+            final byte[] symbolBytes = symbol.getBytes(StandardCharsets.UTF_8);
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                final int middle = (low + high) >>> 1;
+                final int comparison = compareTo(middle, symbolBytes);
+                if (comparison < 0) {
+                    low = middle + 1;
+                }
+                else if (comparison > 0) {
+                    high = middle - 1;
+                }
+                else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+
+        private int compareTo(int symbolIndex, byte[] symbolBytes) {
+            final int start = bytesOffset + buffer.getInt(offset + Integer.BYTES * symbolIndex);
+            final int end = bytesOffset + buffer.getInt(offset + Integer.BYTES * (symbolIndex + 1));
+            final int length = Math.min(end - start, symbolBytes.length);
+            for (int byteIndex = 0; byteIndex < length; byteIndex++) {
+                final int comparison = Byte.compareUnsigned(buffer.get(start + byteIndex), symbolBytes[byteIndex]);
+                if (comparison != 0) {
+                    return comparison;
+                }
+            }
+            return Integer.compare(end - start, symbolBytes.length);
+        }
+
+        private String symbol(int symbolIndex) {
+            // Strings are immutable, so a racy first decode only costs a duplicate instance
+            String symbol = decodedSymbols[symbolIndex];
+            if (symbol == null) {
+                final int start = bytesOffset + buffer.getInt(offset + Integer.BYTES * symbolIndex);
+                final int end = bytesOffset + buffer.getInt(offset + Integer.BYTES * (symbolIndex + 1));
+                final byte[] symbolBytes = new byte[end - start];
+                buffer.get(start, symbolBytes);
+                symbol = new String(symbolBytes, StandardCharsets.UTF_8);
+                decodedSymbols[symbolIndex] = symbol;
+            }
+            return symbol;
+        }
+
+    }
+
+    /**
+     * Read-only index over one orientation of the mapping.
+     */
+    private class MappedCacheIndex implements ICacheIndex {
+
+        // True if the outer key is a vendor ID, false if it is an instrument ID
+        private final boolean keyedByVendor;
+        private final Dictionary outerSymbols;
+        private final Dictionary innerSymbols;
+        private final int rowStartOffset;
+        private final int innerIndexOffset;
+
+        private MappedCacheIndex(boolean keyedByVendor) {
+            this.keyedByVendor = keyedByVendor;
+            this.outerSymbols = keyedByVendor ? vendors : instruments;
+            this.innerSymbols = keyedByVendor ? instruments : vendors;
+            this.rowStartOffset = keyedByVendor ? byVendorOffset : byInstrumentOffset;
+            this.innerIndexOffset = rowStartOffset + Integer.BYTES * (outerSymbols.count + 1);
+        }
+
+        @Override
+        public void updateCacheIndex(String outerKey, String innerKey, InstrumentPrice instrumentPrice) {
+            throw new UnsupportedOperationException("snapshot index is read-only");
+        }
+
+        @Override
+        public int updateCacheIndex(String outerKey, Function<InstrumentPrice, String> innerKeyFunction, Collection<InstrumentPrice> instrumentPrices) {
+            throw new UnsupportedOperationException("snapshot index is read-only");
+        }
+
+        @Override
+        public ICacheIndex snapshot() {
+            // The mapped file never changes
+            return this;
+        }
+
+        @Override
+        public long getPriceCount() {
+            return priceCount;
+        }
+
+        @Override
+        public long estimateMemoryBytes() {
+            // The mapped file is shared by the instrument and the vendor index, each is charged half of it
+            return buffer.capacity() / 2;
+        }
+
+        @Override
+        public Map<String, InstrumentPrice> getCachedInstrumentPrices(String outerKey) {
+            final int outerIndex = outerSymbols.indexOf(outerKey);
+            if (outerIndex < 0) {
+                return Collections.emptyMap();
+            }
+            return new MappedPricesView(outerIndex);
+        }
+
+        @Override
+        public void forEachInstrumentPrice(Consumer<InstrumentPrice> action) {
+            for (int outerIndex = 0; outerIndex < outerSymbols.count; outerIndex++) {
+                for (int row = rowStart(outerIndex); row < rowStart(outerIndex + 1); row++) {
+                    action.accept(materialise(outerIndex, row));
+                }
+            }
+        }
+
+        private int rowStart(int outerIndex) {
+            return buffer.getInt(rowStartOffset + Integer.BYTES * outerIndex);
+        }
+
+        private int innerIndex(int row) {
+            return buffer.getInt(innerIndexOffset + Integer.BYTES * row);
+        }
+
+        private double price(int row) {
+            final int priceRow = keyedByVendor
+                ? buffer.getInt(innerIndexOffset + Integer.BYTES * (priceCount + row))
+                : row;
+            return buffer.getDouble(priceOffset + Double.BYTES * priceRow);
+        }
+
+        private InstrumentPrice materialise(int outerIndex, int row) {
+            final String outerKey = outerSymbols.symbol(outerIndex);
+            final String innerKey = innerSymbols.symbol(innerIndex(row));
+            return keyedByVendor
+                ? new InstrumentPrice(outerKey, innerKey, priceDate, price(row))
+                : new InstrumentPrice(innerKey, outerKey, priceDate, price(row));
+        }
+
+        private class MappedPricesView extends AbstractMap<String, InstrumentPrice> {
+
+            private final int outerIndex;
+
+            private MappedPricesView(int outerIndex) {
+                this.outerIndex = outerIndex;
+            }
+
+            @Override
+            public InstrumentPrice get(Object key) {
+                if (! (key instanceof String innerKey)) {
+                    return null;
+                }
+                final int innerIndex = innerSymbols.indexOf(innerKey);
+                if (innerIndex < 0) {
+                    return null;
+                }
+
+                // Rows of an outer key are sorted by inner index
+                int low = rowStart(outerIndex);
+                int high = rowStart(outerIndex + 1) - 1;
+                while (low <= high) {
+                    final int middle = (low + high) >>> 1;
+                    final int middleInnerIndex = innerIndex(middle);
+                    if (middleInnerIndex < innerIndex) {
+                        low = middle + 1;
+                    }
+                    else if (middleInnerIndex > innerIndex) {
+                        high = middle - 1;
+                    }
+                    else {
+                        return materialise(outerIndex, middle);
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public int size() {
+                return rowStart(outerIndex + 1) - rowStart(outerIndex);
+            }
+
+            @Override
+            public Set<Map.Entry<String, InstrumentPrice>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Map.Entry<String, InstrumentPrice>> iterator() {
+                        return new Iterator<>() {
+                            private int row = rowStart(outerIndex);
+                            private final int endRow = rowStart(outerIndex + 1);
+
+                            @Override
+                            public boolean hasNext() {
+                                return row < endRow;
+                            }
+
+                            @Override
+                            public Map.Entry<String, InstrumentPrice> next() {
+                                if (row >= endRow) {
+                                    throw new NoSuchElementException();
+                                }
+                                final String innerKey = innerSymbols.symbol(innerIndex(row));
+                                return Map.entry(innerKey, materialise(outerIndex, row++));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return MappedPricesView.this.size();
+                    }
+                };
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.ICacheIndex;
+import com.adaton.persistence.IDayPriceStore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Price store that keeps every price in one index of each orientation. Each update writes both indices.
+ */
+public class DualIndexPriceStore implements IDayPriceStore {
+
+    // Map of [Instrument ID --> Map of [Vendor ID --> Price]]
+    private final ICacheIndex instrumentIndex;
+    // Map of [Vendor ID --> Map of [Instrument ID --> Price]]
+    private final ICacheIndex vendorIndex;
+
+    public DualIndexPriceStore(ICacheIndex instrumentIndex, ICacheIndex vendorIndex) {
+        this.instrumentIndex = instrumentIndex;
+        this.vendorIndex = vendorIndex;
+    }
+
+    @Override
+    public InstrumentPrice updatePrice(InstrumentPrice instrumentPrice) {
+        // The indices do not return the price they replace, read it first. A concurrent update of the same
+        // vendor and instrument may replace it in between.
+        final InstrumentPrice replacedPrice =
+            instrumentIndex.getCachedInstrumentPrices(instrumentPrice.instrumentId()).get(instrumentPrice.vendorId());
+        instrumentIndex.updateCacheIndex(instrumentPrice.instrumentId(), instrumentPrice.vendorId(), instrumentPrice);
+        vendorIndex.updateCacheIndex(instrumentPrice.vendorId(), instrumentPrice.instrumentId(), instrumentPrice);
+        return replacedPrice;
+    }
+
+    @Override
+    public int updatePrices(Collection<InstrumentPrice> instrumentPrices, ForkJoinPool parallelPool) {
+        // Group the prices by the outer key of each index, so that each outer key is updated once
+        final Map<String, List<InstrumentPrice>> pricesByInstrument = new HashMap<>();
+        final Map<String, List<InstrumentPrice>> pricesByVendor = new HashMap<>();
+        for (InstrumentPrice instrumentPrice : instrumentPrices) {
+            pricesByInstrument
+                .computeIfAbsent(instrumentPrice.instrumentId(), instrumentId -> new ArrayList<>())
+                .add(instrumentPrice);
+            pricesByVendor
+                .computeIfAbsent(instrumentPrice.vendorId(), vendorId -> new ArrayList<>())
+                .add(instrumentPrice);
+        }
+
+        // Each replaced price is replaced in both indices, it is only counted against the instrument index
+        final int replacedCount = updateCacheIndex(instrumentIndex, InstrumentPrice::vendorId, pricesByInstrument, parallelPool);
+        updateCacheIndex(vendorIndex, InstrumentPrice::instrumentId, pricesByVendor, parallelPool);
+        return replacedCount;
+    }
+
+    private static int updateCacheIndex(
+            ICacheIndex cacheIndex,
+            Function<InstrumentPrice, String> innerKeyFunction,
+            Map<String, List<InstrumentPrice>> pricesByOuterKey,
+            ForkJoinPool parallelPool) {
+        if (parallelPool != null) {
+            return parallelPool.submit(
+                () -> pricesByOuterKey.entrySet()
+                    .parallelStream()
+                    .mapToInt(entry -> cacheIndex.updateCacheIndex(entry.getKey(), innerKeyFunction, entry.getValue()))
+                    .sum()
+            ).join();
+        }
+
+        int replacedCount = 0;
+        for (Map.Entry<String, List<InstrumentPrice>> entry : pricesByOuterKey.entrySet()) {
+            replacedCount += cacheIndex.updateCacheIndex(entry.getKey(), innerKeyFunction, entry.getValue());
+        }
+        return replacedCount;
+    }
+
+    @Override
+    public ICacheIndex instrumentIndex() {
+        return instrumentIndex;
+    }
+
+    @Override
+    public ICacheIndex vendorIndex() {
+        return vendorIndex;
+    }
+
+    @Override
+    public IDayPriceStore snapshot() {
+        return new DualIndexPriceStore(instrumentIndex.snapshot(), vendorIndex.snapshot());
+    }
+
+}
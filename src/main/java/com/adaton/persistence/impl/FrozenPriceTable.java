@@ -0,0 +1,466 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.ICacheIndex;
+
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Compact, read-only form of the prices of one date, for dates that are rarely read any more. Both the
+ * instrument and the vendor index are served from a single price column, and keys are found by binary search.
+ * <p>
+ * Layout:
+ * <pre>
+ * Vendors         vendor IDs String[vendor count], sorted
+ * Instruments     instrument IDs String[instrument count], sorted
+ * By instrument   first row int[instrument count + 1], then vendor index int[price count]
+ *                 (rows sorted by instrument index, then vendor index)
+ * By vendor       first row int[vendor count + 1], then instrument index int[price count]
+ *                 (rows sorted by vendor index, then instrument index)
+ * Prices          price column in by-instrument row order, either plain or XOR compressed
+ * </pre>
+ */
+public class FrozenPriceTable {
+
+    // Number of prices per compressed block, each block is decoded from its first price
+    private static final int BLOCK_SIZE = 16;
+
+    private final LocalDate priceDate;
+    private final String[] vendorIds;
+    private final String[] instrumentIds;
+    private final int[] instrumentRowStarts;
+    private final int[] rowVendors;
+    private final int[] vendorRowStarts;
+    private final int[] vendorRowInstruments;
+    private final PriceColumn priceColumn;
+
+    private FrozenPriceTable(
+            LocalDate priceDate,
+            String[] vendorIds,
+            String[] instrumentIds,
+            int[] instrumentRowStarts,
+            int[] rowVendors,
+            int[] vendorRowStarts,
+            int[] vendorRowInstruments,
+            PriceColumn priceColumn) {
+        this.priceDate = priceDate;
+        this.vendorIds = vendorIds;
+        this.instrumentIds = instrumentIds;
+        this.instrumentRowStarts = instrumentRowStarts;
+        this.rowVendors = rowVendors;
+        this.vendorRowStarts = vendorRowStarts;
+        this.vendorRowInstruments = vendorRowInstruments;
+        this.priceColumn = priceColumn;
+    }
+
+    /**
+     * Copy the prices of one date into a frozen table. The index must not change while it is copied.
+     *
+     * @param priceDate          Date of the prices.
+     * @param pricesByInstrument Index holding the prices of the date, organised by instrument.
+     * @param compressPrices     True to XOR compress the price column, at the cost of decoding on every read.
+     * @return The frozen table.
+     */
+    public static FrozenPriceTable freeze(LocalDate priceDate, ICacheIndex pricesByInstrument, boolean compressPrices) {
+        final List<InstrumentPrice> instrumentPrices = new ArrayList<>();
+        pricesByInstrument.forEachInstrumentPrice(instrumentPrices::add);
+
+        final String[] vendorIds = sortedSymbols(instrumentPrices, InstrumentPrice::vendorId);
+        final String[] instrumentIds = sortedSymbols(instrumentPrices, InstrumentPrice::instrumentId);
+        final Map<String, Integer> vendorIndices = symbolIndices(vendorIds);
+        final Map<String, Integer> instrumentIndices = symbolIndices(instrumentIds);
+
+        // Counting sort of the prices by instrument, then sort the rows of each instrument by vendor
+        final int priceCount = instrumentPrices.size();
+        final int[] priceInstruments = new int[priceCount];
+        final int[] instrumentRowStarts = new int[instrumentIds.length + 1];
+        for (int priceIndex = 0; priceIndex < priceCount; priceIndex++) {
+            priceInstruments[priceIndex] = instrumentIndices.get(instrumentPrices.get(priceIndex).instrumentId());
+            instrumentRowStarts[priceInstruments[priceIndex] + 1]++;
+        }
+        Arrays.parallelPrefix(instrumentRowStarts, Integer::sum);
+
+        final int[] nextInstrumentRows = Arrays.copyOf(instrumentRowStarts, instrumentIds.length);
+        // Vendor index in the high half, price index in the low half, so that rows sort by vendor
+        final long[] rowKeys = new long[priceCount];
+        for (int priceIndex = 0; priceIndex < priceCount; priceIndex++) {
+            final long vendorIndex = vendorIndices.get(instrumentPrices.get(priceIndex).vendorId());
+            rowKeys[nextInstrumentRows[priceInstruments[priceIndex]]++] = vendorIndex << 32 | priceIndex;
+        }
+        for (int instrumentIndex = 0; instrumentIndex < instrumentIds.length; instrumentIndex++) {
+            Arrays.sort(rowKeys, instrumentRowStarts[instrumentIndex], instrumentRowStarts[instrumentIndex + 1]);
+        }
+
+        final int[] rowVendors = new int[priceCount];
+        final double[] prices = new double[priceCount];
+        final int[] vendorRowStarts = new int[vendorIds.length + 1];
+        for (int row = 0; row < priceCount; row++) {
+            rowVendors[row] = (int) (rowKeys[row] >>> 32);
+            prices[row] = instrumentPrices.get((int) rowKeys[row]).price();
+            vendorRowStarts[rowVendors[row] + 1]++;
+        }
+        Arrays.parallelPrefix(vendorRowStarts, Integer::sum);
+
+        // Rows are visited by instrument, so the rows of each vendor come out sorted by instrument
+        final int[] nextVendorRows = Arrays.copyOf(vendorRowStarts, vendorIds.length);
+        final int[] vendorRowInstruments = new int[priceCount];
+        for (int instrumentIndex = 0; instrumentIndex < instrumentIds.length; instrumentIndex++) {
+            for (int row = instrumentRowStarts[instrumentIndex]; row < instrumentRowStarts[instrumentIndex + 1]; row++) {
+                vendorRowInstruments[nextVendorRows[rowVendors[row]]++] = instrumentIndex;
+            }
+        }
+
+        return new FrozenPriceTable(
+            priceDate,
+            vendorIds,
+            instrumentIds,
+            instrumentRowStarts,
+            rowVendors,
+            vendorRowStarts,
+            vendorRowInstruments,
+            compressPrices ? XorPriceColumn.encode(prices) : new PlainPriceColumn(prices)
+        );
+    }
+
+    public LocalDate getPriceDate() {
+        return priceDate;
+    }
+
+    public int getPriceCount() {
+        return rowVendors.length;
+    }
+
+    /**
+     * @return The memory held by the table, in bytes. As for the regular indices, the ID strings are not counted,
+     *         as they are shared with the published prices.
+     */
+    public long getMemoryBytes() {
+        return priceColumn.getMemoryBytes()
+            + (long) Integer.BYTES * (vendorIds.length + instrumentIds.length)
+            + (long) Integer.BYTES * (instrumentRowStarts.length + rowVendors.length)
+            + (long) Integer.BYTES * (vendorRowStarts.length + vendorRowInstruments.length);
+    }
+
+    /**
+     * @return A read-only index organised as Map of [Instrument ID --> Map of [Vendor ID --> Price]].
+     */
+    public ICacheIndex instrumentIndex() {
+        return new FrozenCacheIndex(false);
+    }
+
+    /**
+     * @return A read-only index organised as Map of [Vendor ID --> Map of [Instrument ID --> Price]].
+     */
+    public ICacheIndex vendorIndex() {
+        return new FrozenCacheIndex(true);
+    }
+
+    private static String[] sortedSymbols(List<InstrumentPrice> instrumentPrices, Function<InstrumentPrice, String> symbolFunction) {
+        return instrumentPrices.stream()
+            .map(symbolFunction)
+            .distinct()
+            .sorted()
+            .toArray(String[]::new);
+    }
+
+    private static Map<String, Integer> symbolIndices(String[] symbols) {
+        final Map<String, Integer> symbolIndices = new HashMap<>(symbols.length * 2);
+        for (int symbolIndex = 0; symbolIndex < symbols.length; symbolIndex++) {
+            symbolIndices.put(symbols[symbolIndex], symbolIndex);
+        }
+        return symbolIndices;
+    }
+
+    // Returns the index of the key in a sorted range of an int array, or -1 if the range does not hold it
+    private static int search(int[] values, int fromIndex, int toIndex, int key) {
+        final int index = Arrays.binarySearch(values, fromIndex, toIndex, key);
+        return index >= 0 ? index : -1;
+    }
+
+    // Returns the by-instrument row of a price, or -1 if the table does not hold it
+    private int row(int instrumentIndex, int vendorIndex) {
+        return search(rowVendors, instrumentRowStarts[instrumentIndex], instrumentRowStarts[instrumentIndex + 1], vendorIndex);
+    }
+
+    /**
+     * Price column in by-instrument row order.
+     */
+    private interface PriceColumn {
+
+        double price(int row);
+
+        long getMemoryBytes();
+
+    }
+
+    private record PlainPriceColumn(double[] prices) implements PriceColumn {
+
+        @Override
+        public double price(int row) {
+            return prices[row];
+        }
+
+        @Override
+        public long getMemoryBytes() {
+            return (long) Double.BYTES * prices.length;
+        }
+
+    }
+
+    /**
+     * Prices stored as the XOR of their bits with the bits of the previous price, with the leading and trailing
+     * zero bytes of each XOR dropped. Neighbouring rows hold the prices of one instrument from several vendors,
+     * so they usually share their sign, exponent and leading mantissa bits.
+     * <p>
+     * Each block starts with the raw bits of its first price. Every other price is a header byte holding the
+     * number of leading zero bytes in its upper half and the number of trailing zero bytes in its lower half,
+     * followed by the remaining bytes of the XOR, least significant first. A header of 0x80 is a repeated price.
+     */
+    private record XorPriceColumn(byte[] encodedPrices, int[] blockOffsets) implements PriceColumn {
+
+        private static final int REPEATED_PRICE = 0x80;
+
+        private static XorPriceColumn encode(double[] prices) {
+            final int[] blockOffsets = new int[(prices.length + BLOCK_SIZE - 1) / BLOCK_SIZE];
+            byte[] encodedPrices = new byte[Math.max(prices.length * 4, Long.BYTES + 1)];
+            int offset = 0;
+            long previousBits = 0L;
+            for (int row = 0; row < prices.length; row++) {
+                if (encodedPrices.length - offset < Long.BYTES + 1) {
+                    encodedPrices = Arrays.copyOf(encodedPrices, encodedPrices.length * 2);
+                }
+
+                final long bits = Double.doubleToRawLongBits(prices[row]);
+                if (row % BLOCK_SIZE == 0) {
+                    blockOffsets[row / BLOCK_SIZE] = offset;
+                    offset = writeBytes(encodedPrices, offset, bits, Long.BYTES);
+                }
+                else {
+                    final long xor = bits ^ previousBits;
+                    if (xor == 0L) {
+                        encodedPrices[offset++] = (byte) REPEATED_PRICE;
+                    }
+                    else {
+                        final int leadingBytes = Long.numberOfLeadingZeros(xor) / Byte.SIZE;
+                        final int trailingBytes = Long.numberOfTrailingZeros(xor) / Byte.SIZE;
+                        encodedPrices[offset++] = (byte) (leadingBytes << 4 | trailingBytes);
+                        offset = writeBytes(encodedPrices, offset, xor >>> (trailingBytes * Byte.SIZE), Long.BYTES - leadingBytes - trailingBytes);
+                    }
+                }
+                previousBits = bits;
+            }
+            return new XorPriceColumn(Arrays.copyOf(encodedPrices, offset), blockOffsets);
+        }
+
+        private static int writeBytes(byte[] bytes, int offset, long value, int byteCount) {
+            for (int byteIndex = 0; byteIndex < byteCount; byteIndex++) {
+                bytes[offset++] = (byte) (value >>> (byteIndex * Byte.SIZE));
+            }
+            return offset;
+        }
+
+        private static long readBytes(byte[] bytes, int offset, int byteCount) {
+            long value = 0L;
+            for (int byteIndex = 0; byteIndex < byteCount; byteIndex++) {
+                value |= (bytes[offset + byteIndex] & 0xFFL) << (byteIndex * Byte.SIZE);
+            }
+            return value;
+        }
+
+        @Override
+        public double price(int row) {
+            int offset = blockOffsets[row / BLOCK_SIZE];
+            long bits = readBytes(encodedPrices, offset, Long.BYTES);
+            offset += Long.BYTES;
+            for (int blockRow = row - row % BLOCK_SIZE; blockRow < row; blockRow++) {
+                final int header = encodedPrices[offset++] & 0xFF;
+                if (header != REPEATED_PRICE) {
+                    final int leadingBytes = header >>> 4;
+                    final int trailingBytes = header & 0x0F;
+                    final int byteCount = Long.BYTES - leadingBytes - trailingBytes;
+                    bits ^= readBytes(encodedPrices, offset, byteCount) << (trailingBytes * Byte.SIZE);
+                    offset += byteCount;
+                }
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        @Override
+        public long getMemoryBytes() {
+            return encodedPrices.length + (long) Integer.BYTES * blockOffsets.length;
+        }
+
+    }
+
+    /**
+     * Read-only index over one orientation of the table.
+     */
+    private class FrozenCacheIndex implements ICacheIndex {
+
+        // True if the outer key is a vendor ID, false if it is an instrument ID
+        private final boolean keyedByVendor;
+        private final String[] outerSymbols;
+        private final String[] innerSymbols;
+        private final int[] rowStarts;
+        private final int[] innerIndices;
+
+        private FrozenCacheIndex(boolean keyedByVendor) {
+            this.keyedByVendor = keyedByVendor;
+            this.outerSymbols = keyedByVendor ? vendorIds : instrumentIds;
+            this.innerSymbols = keyedByVendor ? instrumentIds : vendorIds;
+            this.rowStarts = keyedByVendor ? vendorRowStarts : instrumentRowStarts;
+            this.innerIndices = keyedByVendor ? vendorRowInstruments : rowVendors;
+        }
+
+        @Override
+        public void updateCacheIndex(String outerKey, String innerKey, InstrumentPrice instrumentPrice) {
+            throw new UnsupportedOperationException("frozen index is read-only");
+        }
+
+        @Override
+        public int updateCacheIndex(String outerKey, Function<InstrumentPrice, String> innerKeyFunction, Collection<InstrumentPrice> instrumentPrices) {
+            throw new UnsupportedOperationException("frozen index is read-only");
+        }
+
+        @Override
+        public ICacheIndex snapshot() {
+            // The table never changes
+            return this;
+        }
+
+        @Override
+        public long getPriceCount() {
+            return rowVendors.length;
+        }
+
+        @Override
+        public long estimateMemoryBytes() {
+            // The table is shared by the instrument and the vendor index, each is charged half of it
+            return getMemoryBytes() / 2;
+        }
+
+        @Override
+        public Map<String, InstrumentPrice> getCachedInstrumentPrices(String outerKey) {
+            final int outerIndex = Arrays.binarySearch(outerSymbols, outerKey);
+            if (outerIndex < 0) {
+                return Collections.emptyMap();
+            }
+            return new FrozenPricesView(outerIndex);
+        }
+
+        @Override
+        public void forEachCachedInstrumentPrice(String outerKey, Consumer<InstrumentPrice> action) {
+            final int outerIndex = Arrays.binarySearch(outerSymbols, outerKey);
+            if (outerIndex >= 0) {
+                for (int row = rowStarts[outerIndex]; row < rowStarts[outerIndex + 1]; row++) {
+                    action.accept(materialise(outerIndex, row));
+                }
+            }
+        }
+
+        @Override
+        public void forEachInstrumentPrice(Consumer<InstrumentPrice> action) {
+            for (int outerIndex = 0; outerIndex < outerSymbols.length; outerIndex++) {
+                for (int row = rowStarts[outerIndex]; row < rowStarts[outerIndex + 1]; row++) {
+                    action.accept(materialise(outerIndex, row));
+                }
+            }
+        }
+
+        private double price(int outerIndex, int row) {
+            // Rows of the vendor orientation point back to the instrument orientation, which holds the prices
+            return priceColumn.price(keyedByVendor ? row(innerIndices[row], outerIndex) : row);
+        }
+
+        private InstrumentPrice materialise(int outerIndex, int row) {
+            final String outerKey = outerSymbols[outerIndex];
+            final String innerKey = innerSymbols[innerIndices[row]];
+            return keyedByVendor
+                ? new InstrumentPrice(outerKey, innerKey, priceDate, price(outerIndex, row))
+                : new InstrumentPrice(innerKey, outerKey, priceDate, price(outerIndex, row));
+        }
+
+        private class FrozenPricesView extends AbstractMap<String, InstrumentPrice> {
+
+            private final int outerIndex;
+
+            private FrozenPricesView(int outerIndex) {
+                this.outerIndex = outerIndex;
+            }
+
+            @Override
+            public InstrumentPrice get(Object key) {
+                if (! (key instanceof String innerKey)) {
+                    return null;
+                }
+                final int innerIndex = Arrays.binarySearch(innerSymbols, innerKey);
+                if (innerIndex < 0) {
+                    return null;
+                }
+
+                // Rows of an outer key are sorted by inner index
+                final int row = search(innerIndices, rowStarts[outerIndex], rowStarts[outerIndex + 1], innerIndex);
+                return row >= 0 ? materialise(outerIndex, row) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public int size() {
+                return rowStarts[outerIndex + 1] - rowStarts[outerIndex];
+            }
+
+            @Override
+            public Set<Map.Entry<String, InstrumentPrice>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public Iterator<Map.Entry<String, InstrumentPrice>> iterator() {
+                        return new Iterator<>() {
+                            private int row = rowStarts[outerIndex];
+                            private final int endRow = rowStarts[outerIndex + 1];
+
+                            @Override
+                            public boolean hasNext() {
+                                return row < endRow;
+                            }
+
+                            @Override
+                            public Map.Entry<String, InstrumentPrice> next() {
+                                if (row >= endRow) {
+                                    throw new NoSuchElementException();
+                                }
+                                final String innerKey = innerSymbols[innerIndices[row]];
+                                return Map.entry(innerKey, materialise(outerIndex, row++));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return FrozenPricesView.this.size();
+                    }
+                };
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.ICacheIndex;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Read-only cache index over maps that never change, used as the point-in-time view of another index.
+ */
+public class ImmutableCacheIndex implements ICacheIndex {
+
+    private static final ImmutableCacheIndex EMPTY = new ImmutableCacheIndex(Collections.emptyMap());
+
+    private final Map<String, ? extends Map<String, InstrumentPrice>> cacheIndex;
+
+    /**
+     * @param cacheIndex Map of [Outer key --> Map of [Inner key --> Price]]. Neither layer is copied,
+     *                   so no layer may change once the index is created.
+     */
+    public ImmutableCacheIndex(Map<String, ? extends Map<String, InstrumentPrice>> cacheIndex) {
+        this.cacheIndex = cacheIndex;
+    }
+
+    public static ImmutableCacheIndex empty() {
+        return EMPTY;
+    }
+
+    @Override
+    public void updateCacheIndex(String outerKey, String innerKey, InstrumentPrice instrumentPrice) {
+        throw new UnsupportedOperationException("snapshot index is read-only");
+    }
+
+    @Override
+    public int updateCacheIndex(String outerKey, Function<InstrumentPrice, String> innerKeyFunction, Collection<InstrumentPrice> instrumentPrices) {
+        throw new UnsupportedOperationException("snapshot index is read-only");
+    }
+
+    @Override
+    public Map<String, InstrumentPrice> getCachedInstrumentPrices(String outerKey) {
+        final Map<String, InstrumentPrice> instrumentPrices = cacheIndex.get(outerKey);
+        return instrumentPrices != null ? instrumentPrices : Collections.emptyMap();
+    }
+
+    @Override
+    public void forEachInstrumentPrice(Consumer<InstrumentPrice> action) {
+        cacheIndex.values().forEach(instrumentPrices -> instrumentPrices.values().forEach(action));
+    }
+
+    @Override
+    public ICacheIndex snapshot() {
+        return this;
+    }
+
+    @Override
+    public long getPriceCount() {
+        return cacheIndex.values().stream().mapToLong(Map::size).sum();
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.ICacheIndex;
+import com.adaton.persistence.ISymbolTable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Cache index that keys both layers on the dense IDs of interned symbols instead of raw strings.
+ */
+public class InternedCacheIndex implements ICacheIndex {
+
+    private final ISymbolTable outerSymbols;
+    private final ISymbolTable innerSymbols;
+    private final ConcurrentIntObjectMap<ConcurrentIntObjectMap<InstrumentPrice>> cacheIndex;
+    // Read-only views of the outer keys looked up so far, handed to every later lookup of the key
+    private final ConcurrentIntObjectMap<InternedPricesView> pricesViews;
+
+    public InternedCacheIndex(ISymbolTable outerSymbols, ISymbolTable innerSymbols) {
+        this.outerSymbols = outerSymbols;
+        this.innerSymbols = innerSymbols;
+        this.cacheIndex = new ConcurrentIntObjectMap<>();
+        this.pricesViews = new ConcurrentIntObjectMap<>();
+    }
+
+    @Override
+    public void updateCacheIndex(String outerKey, String innerKey, InstrumentPrice instrumentPrice) {
+        cacheIndex
+            .computeIfAbsent(outerSymbols.intern(outerKey), outerId_ -> new ConcurrentIntObjectMap<>())
+            .put(innerSymbols.intern(innerKey), instrumentPrice);
+    }
+
+    @Override
+    public int updateCacheIndex(String outerKey, Function<InstrumentPrice, String> innerKeyFunction, Collection<InstrumentPrice> instrumentPrices) {
+        final ConcurrentIntObjectMap<InstrumentPrice> cachedPrices =
+            cacheIndex.computeIfAbsent(
+                outerSymbols.intern(outerKey),
+                outerId_ -> new ConcurrentIntObjectMap<>(instrumentPrices.size())
+            );
+
+        int replacedCount = 0;
+        for (InstrumentPrice instrumentPrice : instrumentPrices) {
+            final int innerId = innerSymbols.intern(innerKeyFunction.apply(instrumentPrice));
+            if (cachedPrices.put(innerId, instrumentPrice) != null) {
+                replacedCount++;
+            }
+        }
+        return replacedCount;
+    }
+
+    @Override
+    public Map<String, InstrumentPrice> getCachedInstrumentPrices(String outerKey) {
+        final int outerId = outerSymbols.lookup(outerKey);
+        if (outerId == ISymbolTable.NO_SYMBOL_ID) {
+            return Collections.emptyMap();
+        }
+        final InternedPricesView pricesView = pricesViews.get(outerId);
+        if (pricesView != null) {
+            return pricesView;
+        }
+
+        final ConcurrentIntObjectMap<InstrumentPrice> cachedPrices = cacheIndex.get(outerId);
+        if (cachedPrices == null) {
+            return Collections.emptyMap();
+        }
+        return pricesViews.computeIfAbsent(outerId, outerId_ -> new InternedPricesView(innerSymbols, cachedPrices));
+    }
+
+    @Override
+    public void forEachCachedInstrumentPrice(String outerKey, Consumer<InstrumentPrice> action) {
+        final int outerId = outerSymbols.lookup(outerKey);
+        if (outerId == ISymbolTable.NO_SYMBOL_ID) {
+            return;
+        }
+
+        final ConcurrentIntObjectMap<InstrumentPrice> cachedPrices = cacheIndex.get(outerId);
+        if (cachedPrices != null) {
+            cachedPrices.forEach((innerId_, instrumentPrice) -> action.accept(instrumentPrice));
+        }
+    }
+
+    @Override
+    public void forEachInstrumentPrice(Consumer<InstrumentPrice> action) {
+        cacheIndex.forEach(
+            (outerId_, cachedPrices) -> cachedPrices.forEach((innerId_, instrumentPrice) -> action.accept(instrumentPrice))
+        );
+    }
+
+    @Override
+    public ICacheIndex snapshot() {
+        final Map<String, Map<String, InstrumentPrice>> copiedPrices = new HashMap<>(cacheIndex.size());
+        cacheIndex.forEach((outerId, cachedPrices) -> {
+            final Map<String, InstrumentPrice> instrumentPrices = new HashMap<>(cachedPrices.size());
+            cachedPrices.forEach((innerId, instrumentPrice) -> instrumentPrices.put(innerSymbols.symbol(innerId), instrumentPrice));
+            copiedPrices.put(outerSymbols.symbol(outerId), Collections.unmodifiableMap(instrumentPrices));
+        });
+        return new ImmutableCacheIndex(copiedPrices);
+    }
+
+    @Override
+    public long getPriceCount() {
+        final long[] priceCount = new long[1];
+        cacheIndex.forEach((outerId_, cachedPrices) -> priceCount[0] += cachedPrices.size());
+        return priceCount[0];
+    }
+
+}
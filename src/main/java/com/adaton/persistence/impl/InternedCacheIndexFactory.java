@@ -0,0 +1,54 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.ICacheIndex;
+import com.adaton.persistence.ICacheIndexFactory;
+import com.adaton.persistence.ISymbolTable;
+
+/**
+ * Creates InternedCacheIndex instances that share one vendor and one instrument symbol table across all
+ * price dates, and makes published prices refer to the canonical vendor and instrument ID instances.
+ */
+public class InternedCacheIndexFactory implements ICacheIndexFactory {
+
+    private final ISymbolTable vendorSymbols;
+    private final ISymbolTable instrumentSymbols;
+
+    public InternedCacheIndexFactory() {
+        this(new SymbolTable(), new SymbolTable());
+    }
+
+    public InternedCacheIndexFactory(ISymbolTable vendorSymbols, ISymbolTable instrumentSymbols) {
+        this.vendorSymbols = vendorSymbols;
+        this.instrumentSymbols = instrumentSymbols;
+    }
+
+    @Override
+    public ICacheIndex createInstrumentIndex() {
+        return new InternedCacheIndex(instrumentSymbols, vendorSymbols);
+    }
+
+    @Override
+    public ICacheIndex createVendorIndex() {
+        return new InternedCacheIndex(vendorSymbols, instrumentSymbols);
+    }
+
+    @Override
+    public InstrumentPrice internInstrumentPrice(InstrumentPrice instrumentPrice) {
+        final String vendorId = vendorSymbols.symbol(vendorSymbols.intern(instrumentPrice.vendorId()));
+        final String instrumentId = instrumentSymbols.symbol(instrumentSymbols.intern(instrumentPrice.instrumentId()));
+        if (vendorId == instrumentPrice.vendorId() && instrumentId == instrumentPrice.instrumentId()) {
+            return instrumentPrice;
+        }
+        return new InstrumentPrice(vendorId, instrumentId, instrumentPrice.priceDate(), instrumentPrice.price());
+    }
+
+    public ISymbolTable getVendorSymbols() {
+        return vendorSymbols;
+    }
+
+    public ISymbolTable getInstrumentSymbols() {
+        return instrumentSymbols;
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.ISymbolTable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only map view that exposes an int-keyed second layer map of InternedCacheIndex with string keys.
+ */
+class InternedPricesView extends AbstractMap<String, InstrumentPrice> {
+
+    private final ISymbolTable innerSymbols;
+    private final ConcurrentIntObjectMap<InstrumentPrice> instrumentPrices;
+
+    InternedPricesView(ISymbolTable innerSymbols, ConcurrentIntObjectMap<InstrumentPrice> instrumentPrices) {
+        this.innerSymbols = innerSymbols;
+        this.instrumentPrices = instrumentPrices;
+    }
+
+    @Override
+    public InstrumentPrice get(Object key) {
+        if (! (key instanceof String innerKey)) {
+            return null;
+        }
+        final int innerId = innerSymbols.lookup(innerKey);
+        return innerId == ISymbolTable.NO_SYMBOL_ID ? null : instrumentPrices.get(innerId);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return instrumentPrices.size();
+    }
+
+    @Override
+    public Set<Map.Entry<String, InstrumentPrice>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<String, InstrumentPrice>> iterator() {
+                final ConcurrentIntObjectMap.Cursor<InstrumentPrice> cursor = instrumentPrices.cursor();
+                return new Iterator<>() {
+                    private boolean advanced;
+                    private boolean hasNext;
+
+                    @Override
+                    public boolean hasNext() {
+                        if (! advanced) {
+                            hasNext = cursor.advance();
+                            advanced = true;
+                        }
+                        return hasNext;
+                    }
+
+                    @Override
+                    public Map.Entry<String, InstrumentPrice> next() {
+                        if (! hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        advanced = false;
+                        return Map.entry(innerSymbols.symbol(cursor.key()), cursor.value());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return instrumentPrices.size();
+            }
+        };
+    }
+
+}
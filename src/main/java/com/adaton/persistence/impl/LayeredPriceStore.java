@@ -0,0 +1,78 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.ICacheIndex;
+import com.adaton.persistence.IDayPriceStore;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Price store that layers a writable store over a pair of read-only indices, e.g. a mapped snapshot or a
+ * frozen date. Updates go to the overlay store; reads see the overlay price wherever both hold a price.
+ */
+public class LayeredPriceStore implements IDayPriceStore {
+
+    private final ICacheIndex baseInstrumentIndex;
+    private final ICacheIndex baseVendorIndex;
+    private final IDayPriceStore overlayStore;
+    private final ICacheIndex instrumentIndex;
+    private final ICacheIndex vendorIndex;
+
+    public LayeredPriceStore(ICacheIndex baseInstrumentIndex, ICacheIndex baseVendorIndex, IDayPriceStore overlayStore) {
+        this.baseInstrumentIndex = baseInstrumentIndex;
+        this.baseVendorIndex = baseVendorIndex;
+        this.overlayStore = overlayStore;
+        this.instrumentIndex = new OverlayCacheIndex(baseInstrumentIndex, overlayStore.instrumentIndex(), false);
+        this.vendorIndex = new OverlayCacheIndex(baseVendorIndex, overlayStore.vendorIndex(), true);
+    }
+
+    @Override
+    public InstrumentPrice updatePrice(InstrumentPrice instrumentPrice) {
+        final InstrumentPrice replacedPrice = overlayStore.updatePrice(instrumentPrice);
+        if (replacedPrice != null) {
+            return replacedPrice;
+        }
+        return baseInstrumentIndex.getCachedInstrumentPrices(instrumentPrice.instrumentId()).get(instrumentPrice.vendorId());
+    }
+
+    @Override
+    public int updatePrices(Collection<InstrumentPrice> instrumentPrices, ForkJoinPool parallelPool) {
+        // A price replaces another one if either layer, or an earlier price of the group, already holds its key
+        final Set<Map.Entry<String, String>> keys = new HashSet<>();
+        int replacedCount = 0;
+        for (InstrumentPrice instrumentPrice : instrumentPrices) {
+            if (! keys.add(Map.entry(instrumentPrice.instrumentId(), instrumentPrice.vendorId())) ||
+                instrumentIndex.getCachedInstrumentPrices(instrumentPrice.instrumentId()).containsKey(instrumentPrice.vendorId())) {
+                replacedCount++;
+            }
+        }
+
+        overlayStore.updatePrices(instrumentPrices, parallelPool);
+        return replacedCount;
+    }
+
+    @Override
+    public ICacheIndex instrumentIndex() {
+        return instrumentIndex;
+    }
+
+    @Override
+    public ICacheIndex vendorIndex() {
+        return vendorIndex;
+    }
+
+    @Override
+    public IDayPriceStore snapshot() {
+        return new LayeredPriceStore(baseInstrumentIndex.snapshot(), baseVendorIndex.snapshot(), overlayStore.snapshot());
+    }
+
+    @Override
+    public long estimateMemoryBytes() {
+        return baseInstrumentIndex.estimateMemoryBytes() + baseVendorIndex.estimateMemoryBytes() + overlayStore.estimateMemoryBytes();
+    }
+
+}
@@ -0,0 +1,507 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.ICacheIndex;
+import com.adaton.persistence.ISymbolTable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Cache index that keeps prices off-heap. Prices are stored as rows in direct column blocks holding the vendor
+ * symbol ID, instrument symbol ID, price date and price of each row. Rows are located through open-addressing
+ * tables, also off-heap, keyed on [Outer ID, Inner ID] and on the outer ID. InstrumentPrice objects are only
+ * created when a caller reads a price.
+ * <p>
+ * Rows are never moved or removed. All rows sharing an outer key are chained from the most recent one, so the
+ * chain of an outer key never changes once written. Writers are serialised on the index.
+ */
+public class OffHeapCacheIndex implements ICacheIndex {
+
+    private static final int NO_ROW = -1;
+
+    private static final int BLOCK_ROW_COUNT = 1 << 12;
+    private static final int BLOCK_ROW_SHIFT = 12;
+
+    // Column offsets within a block
+    private static final int VENDOR_ID_COLUMN = 0;
+    private static final int INSTRUMENT_ID_COLUMN = VENDOR_ID_COLUMN + Integer.BYTES * BLOCK_ROW_COUNT;
+    private static final int PRICE_DATE_COLUMN = INSTRUMENT_ID_COLUMN + Integer.BYTES * BLOCK_ROW_COUNT;
+    private static final int NEXT_ROW_COLUMN = PRICE_DATE_COLUMN + Integer.BYTES * BLOCK_ROW_COUNT;
+    private static final int PRICE_COLUMN = NEXT_ROW_COLUMN + Integer.BYTES * BLOCK_ROW_COUNT;
+    private static final int BLOCK_SIZE = PRICE_COLUMN + Double.BYTES * BLOCK_ROW_COUNT;
+
+    // Row table slot: [Outer ID, Inner ID] key as a long, then row + 1 (0 for an empty slot), padded to 16 bytes
+    private static final int ROW_SLOT_SIZE = 16;
+    // Outer table slot: outer ID + 1 (0 for an empty slot), then the most recent row and the row count
+    private static final int OUTER_SLOT_SIZE = 12;
+
+    private static final int INITIAL_TABLE_CAPACITY = 64;
+
+    private final ISymbolTable vendorSymbols;
+    private final ISymbolTable instrumentSymbols;
+    // True if the outer key is a vendor ID, false if it is an instrument ID
+    private final boolean keyedByVendor;
+
+    private final StampedLock lock;
+    // Views of the outer keys looked up so far. Outer keys are never removed, so a view stays valid once created.
+    private final ConcurrentIntObjectMap<OffHeapPricesView> pricesViews;
+
+    private ByteBuffer[] blocks;
+    private int rowCount;
+    private ByteBuffer rowTable;
+    private int rowTableCapacity;
+    private ByteBuffer outerTable;
+    private int outerTableCapacity;
+    private int outerCount;
+
+    public OffHeapCacheIndex(ISymbolTable vendorSymbols, ISymbolTable instrumentSymbols, boolean keyedByVendor) {
+        this.vendorSymbols = vendorSymbols;
+        this.instrumentSymbols = instrumentSymbols;
+        this.keyedByVendor = keyedByVendor;
+        this.lock = new StampedLock();
+        this.pricesViews = new ConcurrentIntObjectMap<>();
+        this.blocks = new ByteBuffer[0];
+        this.rowTableCapacity = INITIAL_TABLE_CAPACITY;
+        this.rowTable = allocate(rowTableCapacity * ROW_SLOT_SIZE);
+        this.outerTableCapacity = INITIAL_TABLE_CAPACITY;
+        this.outerTable = allocate(outerTableCapacity * OUTER_SLOT_SIZE);
+    }
+
+    @Override
+    public void updateCacheIndex(String outerKey, String innerKey, InstrumentPrice instrumentPrice) {
+        final int outerId = outerSymbols().intern(outerKey);
+        final int innerId = innerSymbols().intern(innerKey);
+        final long stamp = lock.writeLock();
+        try {
+            upsert(outerId, innerId, instrumentPrice);
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int updateCacheIndex(String outerKey, Function<InstrumentPrice, String> innerKeyFunction, Collection<InstrumentPrice> instrumentPrices) {
+        final int outerId = outerSymbols().intern(outerKey);
+        final int[] innerIds = new int[instrumentPrices.size()];
+        int priceIndex = 0;
+        for (InstrumentPrice instrumentPrice : instrumentPrices) {
+            innerIds[priceIndex++] = innerSymbols().intern(innerKeyFunction.apply(instrumentPrice));
+        }
+
+        int replacedCount = 0;
+        final long stamp = lock.writeLock();
+        try {
+            priceIndex = 0;
+            for (InstrumentPrice instrumentPrice : instrumentPrices) {
+                if (upsert(outerId, innerIds[priceIndex++], instrumentPrice)) {
+                    replacedCount++;
+                }
+            }
+        }
+        finally {
+            lock.unlockWrite(stamp);
+        }
+        return replacedCount;
+    }
+
+    @Override
+    public Map<String, InstrumentPrice> getCachedInstrumentPrices(String outerKey) {
+        final int outerId = outerSymbols().lookup(outerKey);
+        if (outerId == ISymbolTable.NO_SYMBOL_ID) {
+            return Collections.emptyMap();
+        }
+        final OffHeapPricesView pricesView = pricesViews.get(outerId);
+        if (pricesView != null) {
+            return pricesView;
+        }
+
+        final long stamp = lock.readLock();
+        try {
+            if (findOuterSlot(outerId) < 0) {
+                return Collections.emptyMap();
+            }
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+        return pricesViews.computeIfAbsent(outerId, OffHeapPricesView::new);
+    }
+
+    @Override
+    public void forEachInstrumentPrice(Consumer<InstrumentPrice> action) {
+        // Rows never move, so rows appended after the visit started are simply not visited
+        final int visitedRowCount;
+        long stamp = lock.readLock();
+        try {
+            visitedRowCount = rowCount;
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+
+        for (int row = 0; row < visitedRowCount; row++) {
+            final InstrumentPrice instrumentPrice;
+            stamp = lock.readLock();
+            try {
+                instrumentPrice = materialise(row);
+            }
+            finally {
+                lock.unlockRead(stamp);
+            }
+            action.accept(instrumentPrice);
+        }
+    }
+
+    @Override
+    public ICacheIndex snapshot() {
+        // Copy every row under a single read lock, so that the copy is consistent
+        final Map<String, Map<String, InstrumentPrice>> copiedPrices = new HashMap<>();
+        final long stamp = lock.readLock();
+        try {
+            for (int row = 0; row < rowCount; row++) {
+                final InstrumentPrice instrumentPrice = materialise(row);
+                final String outerKey = keyedByVendor ? instrumentPrice.vendorId() : instrumentPrice.instrumentId();
+                final String innerKey = keyedByVendor ? instrumentPrice.instrumentId() : instrumentPrice.vendorId();
+                copiedPrices.computeIfAbsent(outerKey, outerKey_ -> new HashMap<>()).put(innerKey, instrumentPrice);
+            }
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+        copiedPrices.replaceAll((outerKey_, instrumentPrices) -> Collections.unmodifiableMap(instrumentPrices));
+        return new ImmutableCacheIndex(copiedPrices);
+    }
+
+    @Override
+    public long getPriceCount() {
+        final long stamp = lock.readLock();
+        try {
+            return rowCount;
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long estimateMemoryBytes() {
+        // Off-heap column blocks and lookup tables, the prices themselves are only materialised on reads
+        final long stamp = lock.readLock();
+        try {
+            return (long) blocks.length * BLOCK_SIZE
+                + (long) rowTableCapacity * ROW_SLOT_SIZE
+                + (long) outerTableCapacity * OUTER_SLOT_SIZE;
+        }
+        finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private ISymbolTable outerSymbols() {
+        return keyedByVendor ? vendorSymbols : instrumentSymbols;
+    }
+
+    private ISymbolTable innerSymbols() {
+        return keyedByVendor ? instrumentSymbols : vendorSymbols;
+    }
+
+    // Called while holding the write lock. Returns true if an existing row was updated.
+    private boolean upsert(int outerId, int innerId, InstrumentPrice instrumentPrice) {
+        final long rowKey = rowKey(outerId, innerId);
+        int slot = hash(rowKey) & (rowTableCapacity - 1);
+        for (int storedRow; (storedRow = rowTable.getInt(slot * ROW_SLOT_SIZE + Long.BYTES)) != 0; slot = (slot + 1) & (rowTableCapacity - 1)) {
+            if (rowTable.getLong(slot * ROW_SLOT_SIZE) == rowKey) {
+                final int row = storedRow - 1;
+                final ByteBuffer block = blocks[row >>> BLOCK_ROW_SHIFT];
+                final int rowInBlock = row & (BLOCK_ROW_COUNT - 1);
+                block.putInt(PRICE_DATE_COLUMN + rowInBlock * Integer.BYTES, (int) instrumentPrice.priceDate().toEpochDay());
+                block.putDouble(PRICE_COLUMN + rowInBlock * Double.BYTES, instrumentPrice.price());
+                return true;
+            }
+        }
+
+        final int row = appendRow(outerId, innerId, instrumentPrice);
+        rowTable.putLong(slot * ROW_SLOT_SIZE, rowKey);
+        rowTable.putInt(slot * ROW_SLOT_SIZE + Long.BYTES, row + 1);
+        if (rowCount * 4 > rowTableCapacity * 3) {
+            growRowTable();
+        }
+        return false;
+    }
+
+    // Called while holding the write lock
+    private int appendRow(int outerId, int innerId, InstrumentPrice instrumentPrice) {
+        final int row = rowCount;
+        if ((row >>> BLOCK_ROW_SHIFT) == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blocks.length + 1);
+            blocks[blocks.length - 1] = allocate(BLOCK_SIZE);
+        }
+
+        final int outerSlot = findOrAddOuterSlot(outerId);
+        final int outerSlotOffset = outerSlot * OUTER_SLOT_SIZE;
+        final int previousRow = outerTable.getInt(outerSlotOffset + Integer.BYTES);
+        outerTable.putInt(outerSlotOffset + Integer.BYTES, row);
+        outerTable.putInt(outerSlotOffset + Integer.BYTES * 2, outerTable.getInt(outerSlotOffset + Integer.BYTES * 2) + 1);
+
+        final ByteBuffer block = blocks[row >>> BLOCK_ROW_SHIFT];
+        final int rowInBlock = row & (BLOCK_ROW_COUNT - 1);
+        block.putInt(VENDOR_ID_COLUMN + rowInBlock * Integer.BYTES, keyedByVendor ? outerId : innerId);
+        block.putInt(INSTRUMENT_ID_COLUMN + rowInBlock * Integer.BYTES, keyedByVendor ? innerId : outerId);
+        block.putInt(PRICE_DATE_COLUMN + rowInBlock * Integer.BYTES, (int) instrumentPrice.priceDate().toEpochDay());
+        block.putInt(NEXT_ROW_COLUMN + rowInBlock * Integer.BYTES, previousRow);
+        block.putDouble(PRICE_COLUMN + rowInBlock * Double.BYTES, instrumentPrice.price());
+
+        rowCount = row + 1;
+        return row;
+    }
+
+    // Called while holding the write lock
+    private int findOrAddOuterSlot(int outerId) {
+        int slot = findOuterSlot(outerId);
+        if (slot >= 0) {
+            return slot;
+        }
+
+        if ((outerCount + 1) * 4 > outerTableCapacity * 3) {
+            growOuterTable();
+        }
+        slot = hash(outerId) & (outerTableCapacity - 1);
+        while (outerTable.getInt(slot * OUTER_SLOT_SIZE) != 0) {
+            slot = (slot + 1) & (outerTableCapacity - 1);
+        }
+        outerTable.putInt(slot * OUTER_SLOT_SIZE, outerId + 1);
+        outerTable.putInt(slot * OUTER_SLOT_SIZE + Integer.BYTES, NO_ROW);
+        outerTable.putInt(slot * OUTER_SLOT_SIZE + Integer.BYTES * 2, 0);
+        outerCount++;
+        return slot;
+    }
+
+    // Called while holding a lock. Returns the slot of the outer ID, or -1 if there is none.
+    private int findOuterSlot(int outerId) {
+        for (int slot = hash(outerId) & (outerTableCapacity - 1); ; slot = (slot + 1) & (outerTableCapacity - 1)) {
+            final int storedOuterId = outerTable.getInt(slot * OUTER_SLOT_SIZE);
+            if (storedOuterId == outerId + 1) {
+                return slot;
+            }
+            if (storedOuterId == 0) {
+                return -1;
+            }
+        }
+    }
+
+    // Called while holding a lock. Returns the row of the key, or NO_ROW if there is none.
+    private int findRow(int outerId, int innerId) {
+        final long rowKey = rowKey(outerId, innerId);
+        for (int slot = hash(rowKey) & (rowTableCapacity - 1); ; slot = (slot + 1) & (rowTableCapacity - 1)) {
+            final int storedRow = rowTable.getInt(slot * ROW_SLOT_SIZE + Long.BYTES);
+            if (storedRow == 0) {
+                return NO_ROW;
+            }
+            if (rowTable.getLong(slot * ROW_SLOT_SIZE) == rowKey) {
+                return storedRow - 1;
+            }
+        }
+    }
+
+    private void growRowTable() {
+        final ByteBuffer oldRowTable = rowTable;
+        final int oldCapacity = rowTableCapacity;
+        rowTableCapacity = oldCapacity << 1;
+        rowTable = allocate(rowTableCapacity * ROW_SLOT_SIZE);
+        for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+            final int storedRow = oldRowTable.getInt(oldSlot * ROW_SLOT_SIZE + Long.BYTES);
+            if (storedRow != 0) {
+                final long rowKey = oldRowTable.getLong(oldSlot * ROW_SLOT_SIZE);
+                int slot = hash(rowKey) & (rowTableCapacity - 1);
+                while (rowTable.getInt(slot * ROW_SLOT_SIZE + Long.BYTES) != 0) {
+                    slot = (slot + 1) & (rowTableCapacity - 1);
+                }
+                rowTable.putLong(slot * ROW_SLOT_SIZE, rowKey);
+                rowTable.putInt(slot * ROW_SLOT_SIZE + Long.BYTES, storedRow);
+            }
+        }
+    }
+
+    private void growOuterTable() {
+        final ByteBuffer oldOuterTable = outerTable;
+        final int oldCapacity = outerTableCapacity;
+        outerTableCapacity = oldCapacity << 1;
+        outerTable = allocate(outerTableCapacity * OUTER_SLOT_SIZE);
+        for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+            final int storedOuterId = oldOuterTable.getInt(oldSlot * OUTER_SLOT_SIZE);
+            if (storedOuterId != 0) {
+                int slot = hash(storedOuterId - 1) & (outerTableCapacity - 1);
+                while (outerTable.getInt(slot * OUTER_SLOT_SIZE) != 0) {
+                    slot = (slot + 1) & (outerTableCapacity - 1);
+                }
+                outerTable.put(slot * OUTER_SLOT_SIZE, oldOuterTable, oldSlot * OUTER_SLOT_SIZE, OUTER_SLOT_SIZE);
+            }
+        }
+    }
+
+    // Called while holding a lock
+    private InstrumentPrice materialise(int row) {
+        final ByteBuffer block = blocks[row >>> BLOCK_ROW_SHIFT];
+        final int rowInBlock = row & (BLOCK_ROW_COUNT - 1);
+        return new InstrumentPrice(
+            vendorSymbols.symbol(block.getInt(VENDOR_ID_COLUMN + rowInBlock * Integer.BYTES)),
+            instrumentSymbols.symbol(block.getInt(INSTRUMENT_ID_COLUMN + rowInBlock * Integer.BYTES)),
+            LocalDate.ofEpochDay(block.getInt(PRICE_DATE_COLUMN + rowInBlock * Integer.BYTES)),
+            block.getDouble(PRICE_COLUMN + rowInBlock * Double.BYTES)
+        );
+    }
+
+    // Called while holding a lock
+    private int nextRow(int row) {
+        return blocks[row >>> BLOCK_ROW_SHIFT].getInt(NEXT_ROW_COLUMN + (row & (BLOCK_ROW_COUNT - 1)) * Integer.BYTES);
+    }
+
+    // Called while holding a lock
+    private int innerId(int row) {
+        final ByteBuffer block = blocks[row >>> BLOCK_ROW_SHIFT];
+        final int rowInBlock = row & (BLOCK_ROW_COUNT - 1);
+        return block.getInt((keyedByVendor ? INSTRUMENT_ID_COLUMN : VENDOR_ID_COLUMN) + rowInBlock * Integer.BYTES);
+    }
+
+    private static long rowKey(int outerId, int innerId) {
+        return ((long) outerId << 32) | (innerId & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        final long scrambled = key * 0x9E3779B97F4A7C15L;
+        return (int) (scrambled ^ (scrambled >>> 32));
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Read-only view over the rows of one outer key. Prices are materialised on each read.
+     */
+    private class OffHeapPricesView extends AbstractMap<String, InstrumentPrice> {
+
+        private final int outerId;
+
+        private OffHeapPricesView(int outerId) {
+            this.outerId = outerId;
+        }
+
+        @Override
+        public InstrumentPrice get(Object key) {
+            if (! (key instanceof String innerKey)) {
+                return null;
+            }
+            final int innerId = innerSymbols().lookup(innerKey);
+            if (innerId == ISymbolTable.NO_SYMBOL_ID) {
+                return null;
+            }
+
+            final long stamp = lock.readLock();
+            try {
+                final int row = findRow(outerId, innerId);
+                return row == NO_ROW ? null : materialise(row);
+            }
+            finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            final long stamp = lock.readLock();
+            try {
+                final int outerSlot = findOuterSlot(outerId);
+                return outerSlot < 0 ? 0 : outerTable.getInt(outerSlot * OUTER_SLOT_SIZE + Integer.BYTES * 2);
+            }
+            finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        @Override
+        public Set<Map.Entry<String, InstrumentPrice>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<String, InstrumentPrice>> iterator() {
+                    return new RowIterator(headRow());
+                }
+
+                @Override
+                public int size() {
+                    return OffHeapPricesView.this.size();
+                }
+            };
+        }
+
+        private int headRow() {
+            final long stamp = lock.readLock();
+            try {
+                final int outerSlot = findOuterSlot(outerId);
+                return outerSlot < 0 ? NO_ROW : outerTable.getInt(outerSlot * OUTER_SLOT_SIZE + Integer.BYTES);
+            }
+            finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+    }
+
+    /**
+     * Walks the chain of rows of an outer key from the most recent row at the time the iteration started.
+     */
+    private class RowIterator implements Iterator<Map.Entry<String, InstrumentPrice>> {
+
+        private int row;
+
+        private RowIterator(int headRow) {
+            this.row = headRow;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return row != NO_ROW;
+        }
+
+        @Override
+        public Map.Entry<String, InstrumentPrice> next() {
+            if (row == NO_ROW) {
+                throw new NoSuchElementException();
+            }
+
+            final long stamp = lock.readLock();
+            try {
+                final InstrumentPrice instrumentPrice = materialise(row);
+                final String innerKey = innerSymbols().symbol(innerId(row));
+                row = nextRow(row);
+                return Map.entry(innerKey, instrumentPrice);
+            }
+            finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+    }
+
+}
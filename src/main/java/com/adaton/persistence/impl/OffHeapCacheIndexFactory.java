@@ -0,0 +1,35 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.persistence.ICacheIndex;
+import com.adaton.persistence.ICacheIndexFactory;
+import com.adaton.persistence.ISymbolTable;
+
+/**
+ * Creates OffHeapCacheIndex instances that share one vendor and one instrument symbol table across all
+ * price dates.
+ */
+public class OffHeapCacheIndexFactory implements ICacheIndexFactory {
+
+    private final ISymbolTable vendorSymbols;
+    private final ISymbolTable instrumentSymbols;
+
+    public OffHeapCacheIndexFactory() {
+        this(new SymbolTable(), new SymbolTable());
+    }
+
+    public OffHeapCacheIndexFactory(ISymbolTable vendorSymbols, ISymbolTable instrumentSymbols) {
+        this.vendorSymbols = vendorSymbols;
+        this.instrumentSymbols = instrumentSymbols;
+    }
+
+    @Override
+    public ICacheIndex createInstrumentIndex() {
+        return new OffHeapCacheIndex(vendorSymbols, instrumentSymbols, false);
+    }
+
+    @Override
+    public ICacheIndex createVendorIndex() {
+        return new OffHeapCacheIndex(vendorSymbols, instrumentSymbols, true);
+    }
+
+}
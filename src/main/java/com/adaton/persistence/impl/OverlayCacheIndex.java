@@ -0,0 +1,175 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.ICacheIndex;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Cache index that layers a writable index over a read-only base index, e.g. a mapped snapshot.
+ * Writes go to the overlay index; reads see the overlay price wherever both indices hold a price for a key.
+ */
+public class OverlayCacheIndex implements ICacheIndex {
+
+    private final ICacheIndex baseIndex;
+    private final ICacheIndex overlayIndex;
+    // True if the outer key is a vendor ID, false if it is an instrument ID
+    private final boolean keyedByVendor;
+
+    public OverlayCacheIndex(ICacheIndex baseIndex, ICacheIndex overlayIndex, boolean keyedByVendor) {
+        this.baseIndex = baseIndex;
+        this.overlayIndex = overlayIndex;
+        this.keyedByVendor = keyedByVendor;
+    }
+
+    @Override
+    public void updateCacheIndex(String outerKey, String innerKey, InstrumentPrice instrumentPrice) {
+        overlayIndex.updateCacheIndex(outerKey, innerKey, instrumentPrice);
+    }
+
+    @Override
+    public int updateCacheIndex(String outerKey, Function<InstrumentPrice, String> innerKeyFunction, Collection<InstrumentPrice> instrumentPrices) {
+        // A price replaces another one if either index, or an earlier price of the group, already holds its key
+        final Map<String, InstrumentPrice> cachedPrices = getCachedInstrumentPrices(outerKey);
+        final Set<String> innerKeys = new HashSet<>();
+        int replacedCount = 0;
+        for (InstrumentPrice instrumentPrice : instrumentPrices) {
+            final String innerKey = innerKeyFunction.apply(instrumentPrice);
+            if (! innerKeys.add(innerKey) || cachedPrices.containsKey(innerKey)) {
+                replacedCount++;
+            }
+        }
+
+        overlayIndex.updateCacheIndex(outerKey, innerKeyFunction, instrumentPrices);
+        return replacedCount;
+    }
+
+    @Override
+    public Map<String, InstrumentPrice> getCachedInstrumentPrices(String outerKey) {
+        final Map<String, InstrumentPrice> overlayPrices = overlayIndex.getCachedInstrumentPrices(outerKey);
+        if (overlayPrices.isEmpty()) {
+            return baseIndex.getCachedInstrumentPrices(outerKey);
+        }
+        final Map<String, InstrumentPrice> basePrices = baseIndex.getCachedInstrumentPrices(outerKey);
+        if (basePrices.isEmpty()) {
+            return overlayPrices;
+        }
+        return new MergedPricesView(basePrices, overlayPrices);
+    }
+
+    @Override
+    public void forEachInstrumentPrice(Consumer<InstrumentPrice> action) {
+        overlayIndex.forEachInstrumentPrice(action);
+        baseIndex.forEachInstrumentPrice(instrumentPrice -> {
+            if (! isOverlaid(instrumentPrice)) {
+                action.accept(instrumentPrice);
+            }
+        });
+    }
+
+    @Override
+    public ICacheIndex snapshot() {
+        return new OverlayCacheIndex(baseIndex.snapshot(), overlayIndex.snapshot(), keyedByVendor);
+    }
+
+    @Override
+    public long estimateMemoryBytes() {
+        return baseIndex.estimateMemoryBytes() + overlayIndex.estimateMemoryBytes();
+    }
+
+    private boolean isOverlaid(InstrumentPrice instrumentPrice) {
+        final String outerKey = keyedByVendor ? instrumentPrice.vendorId() : instrumentPrice.instrumentId();
+        final String innerKey = keyedByVendor ? instrumentPrice.instrumentId() : instrumentPrice.vendorId();
+        return overlayIndex.getCachedInstrumentPrices(outerKey).containsKey(innerKey);
+    }
+
+    /**
+     * Read-only view of the prices of one outer key held in either index.
+     */
+    private static class MergedPricesView extends AbstractMap<String, InstrumentPrice> {
+
+        private final Map<String, InstrumentPrice> basePrices;
+        private final Map<String, InstrumentPrice> overlayPrices;
+
+        private MergedPricesView(Map<String, InstrumentPrice> basePrices, Map<String, InstrumentPrice> overlayPrices) {
+            this.basePrices = basePrices;
+            this.overlayPrices = overlayPrices;
+        }
+
+        @Override
+        public InstrumentPrice get(Object key) {
+            final InstrumentPrice overlayPrice = overlayPrices.get(key);
+            return overlayPrice != null ? overlayPrice : basePrices.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return overlayPrices.containsKey(key) || basePrices.containsKey(key);
+        }
+
+        @Override
+        public Set<Map.Entry<String, InstrumentPrice>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<String, InstrumentPrice>> iterator() {
+                    final Iterator<Map.Entry<String, InstrumentPrice>> overlayEntries = overlayPrices.entrySet().iterator();
+                    final Iterator<Map.Entry<String, InstrumentPrice>> baseEntries = basePrices.entrySet().iterator();
+                    return new Iterator<>() {
+                        private Map.Entry<String, InstrumentPrice> nextEntry;
+
+                        @Override
+                        public boolean hasNext() {
+                            if (nextEntry != null) {
+                                return true;
+                            }
+                            if (overlayEntries.hasNext()) {
+                                nextEntry = overlayEntries.next();
+                                return true;
+                            }
+                            while (baseEntries.hasNext()) {
+                                final Map.Entry<String, InstrumentPrice> baseEntry = baseEntries.next();
+                                if (! overlayPrices.containsKey(baseEntry.getKey())) {
+                                    nextEntry = baseEntry;
+                                    return true;
+                                }
+                            }
+                            return false;
+                        }
+
+                        @Override
+                        public Map.Entry<String, InstrumentPrice> next() {
+                            if (! hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            final Map.Entry<String, InstrumentPrice> entry = nextEntry;
+                            nextEntry = null;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    int size = overlayPrices.size();
+                    for (String baseKey : basePrices.keySet()) {
+                        if (! overlayPrices.containsKey(baseKey)) {
+                            size++;
+                        }
+                    }
+                    return size;
+                }
+            };
+        }
+
+    }
+
+}
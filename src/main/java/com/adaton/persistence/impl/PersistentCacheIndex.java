@@ -0,0 +1,86 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.ICacheIndex;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Cache index that keeps both layers in persistent hash maps and publishes each update by swapping the root.
+ * Readers never take a lock, the maps they are given never change, and a snapshot is the current root.
+ */
+public class PersistentCacheIndex implements ICacheIndex {
+
+    private final AtomicReference<PersistentHashMap<String, PersistentHashMap<String, InstrumentPrice>>> root;
+
+    public PersistentCacheIndex() {
+        this.root = new AtomicReference<>(PersistentHashMap.empty());
+    }
+
+    @Override
+    public void updateCacheIndex(String outerKey, String innerKey, InstrumentPrice instrumentPrice) {
+        // Retry on a concurrent update, only the path from the root to the updated price is copied each time
+        while (true) {
+            final var cachedPrices = root.get();
+            final var instrumentPrices = cachedPrices.getOrDefault(outerKey, PersistentHashMap.empty());
+            final var updatedPrices = cachedPrices.with(outerKey, instrumentPrices.with(innerKey, instrumentPrice));
+            if (root.compareAndSet(cachedPrices, updatedPrices)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public int updateCacheIndex(String outerKey, Function<InstrumentPrice, String> innerKeyFunction, Collection<InstrumentPrice> instrumentPrices) {
+        final PersistentHashMap.Change<InstrumentPrice> change = new PersistentHashMap.Change<>();
+        while (true) {
+            final var cachedPrices = root.get();
+            var updatedInstrumentPrices = cachedPrices.getOrDefault(outerKey, PersistentHashMap.empty());
+            int replacedCount = 0;
+            for (InstrumentPrice instrumentPrice : instrumentPrices) {
+                updatedInstrumentPrices = updatedInstrumentPrices.with(innerKeyFunction.apply(instrumentPrice), instrumentPrice, change);
+                if (! change.isAdded()) {
+                    replacedCount++;
+                }
+            }
+            if (root.compareAndSet(cachedPrices, cachedPrices.with(outerKey, updatedInstrumentPrices))) {
+                return replacedCount;
+            }
+        }
+    }
+
+    @Override
+    public Map<String, InstrumentPrice> getCachedInstrumentPrices(String outerKey) {
+        final Map<String, InstrumentPrice> instrumentPrices = root.get().get(outerKey);
+        return instrumentPrices != null ? instrumentPrices : Collections.emptyMap();
+    }
+
+    @Override
+    public void forEachCachedInstrumentPrice(String outerKey, Consumer<InstrumentPrice> action) {
+        final PersistentHashMap<String, InstrumentPrice> instrumentPrices = root.get().get(outerKey);
+        if (instrumentPrices != null) {
+            instrumentPrices.forEach((innerKey_, instrumentPrice) -> action.accept(instrumentPrice));
+        }
+    }
+
+    @Override
+    public void forEachInstrumentPrice(Consumer<InstrumentPrice> action) {
+        root.get().forEach((outerKey_, instrumentPrices) -> instrumentPrices.forEach((innerKey_, instrumentPrice) -> action.accept(instrumentPrice)));
+    }
+
+    @Override
+    public ICacheIndex snapshot() {
+        return new ImmutableCacheIndex(root.get());
+    }
+
+    @Override
+    public long getPriceCount() {
+        return root.get().values().stream().mapToLong(Map::size).sum();
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.persistence.ICacheIndex;
+import com.adaton.persistence.ICacheIndexFactory;
+
+/**
+ * Creates PersistentCacheIndex instances, whose snapshots are taken in constant time.
+ */
+public class PersistentCacheIndexFactory implements ICacheIndexFactory {
+
+    @Override
+    public ICacheIndex createInstrumentIndex() {
+        return new PersistentCacheIndex();
+    }
+
+    @Override
+    public ICacheIndex createVendorIndex() {
+        return new PersistentCacheIndex();
+    }
+
+}
@@ -0,0 +1,357 @@
+package com.adaton.persistence.impl;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable hash array mapped trie. Updates return a new map that shares all untouched nodes with the
+ * original one, so that any map instance is a point-in-time view that can be kept at no cost.
+ *
+ * @param <K> Type of the keys.
+ * @param <V> Type of the mapped values.
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS_PER_LEVEL = 5;
+    private static final int LEVEL_MASK = (1 << BITS_PER_LEVEL) - 1;
+
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Outcome of an update: whether a key was added, and the value it replaced if it was not.
+     */
+    public static class Change<V> {
+
+        private boolean added;
+        private V previousValue;
+
+        public boolean isAdded() {
+            return added;
+        }
+
+        public V getPreviousValue() {
+            return previousValue;
+        }
+
+    }
+
+    /**
+     * @return A map holding the mapping in addition to, or in place of, the mappings of this map.
+     */
+    public PersistentHashMap<K, V> with(K key, V value) {
+        return with(key, value, new Change<>());
+    }
+
+    /**
+     * @param change Receives the outcome of the update.
+     * @return A map holding the mapping in addition to, or in place of, the mappings of this map.
+     */
+    public PersistentHashMap<K, V> with(K key, V value, Change<V> change) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        change.added = false;
+        change.previousValue = null;
+        final Node newRoot = root.with(0, hash(key), key, value, change);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentHashMap<>(newRoot, change.added ? size + 1 : size);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        return (V) root.find(0, hash(key), key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        root.forEach((BiConsumer<Object, Object>) action);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator<>(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static int hash(Object key) {
+        final int hashCode = key.hashCode();
+        return hashCode ^ (hashCode >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & LEVEL_MASK);
+    }
+
+    private abstract static class Node {
+
+        abstract Object find(int shift, int hash, Object key);
+
+        abstract <V> Node with(int shift, int hash, Object key, V value, Change<V> change);
+
+        abstract void forEach(BiConsumer<Object, Object> action);
+
+    }
+
+    /**
+     * Node holding up to 32 slots, one per 5-bit hash chunk present in the bitmap. A slot holds either a key and
+     * its value, or a null key and a child node.
+     */
+    private static final class BitmapNode extends Node {
+
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] slots;
+
+        private BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            final int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            final int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+            final Object slotKey = slots[index];
+            if (slotKey == null) {
+                return ((Node) slots[index + 1]).find(shift + BITS_PER_LEVEL, hash, key);
+            }
+            return key.equals(slotKey) ? slots[index + 1] : null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        <V> Node with(int shift, int hash, Object key, V value, Change<V> change) {
+            final int bit = bit(hash, shift);
+            final int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                change.added = true;
+                final Object[] newSlots = new Object[slots.length + 2];
+                System.arraycopy(slots, 0, newSlots, 0, index);
+                newSlots[index] = key;
+                newSlots[index + 1] = value;
+                System.arraycopy(slots, index, newSlots, index + 2, slots.length - index);
+                return new BitmapNode(bitmap | bit, newSlots);
+            }
+
+            final Object slotKey = slots[index];
+            final Object slotValue = slots[index + 1];
+            if (slotKey == null) {
+                final Node child = (Node) slotValue;
+                final Node newChild = child.with(shift + BITS_PER_LEVEL, hash, key, value, change);
+                return newChild == child ? this : withSlot(index, null, newChild);
+            }
+            if (key.equals(slotKey)) {
+                if (slotValue == value) {
+                    change.previousValue = value;
+                    return this;
+                }
+                change.previousValue = (V) slotValue;
+                return withSlot(index, slotKey, value);
+            }
+
+            change.added = true;
+            return withSlot(index, null, pair(shift + BITS_PER_LEVEL, slotKey, slotValue, hash, key, value));
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int index = 0; index < slots.length; index += 2) {
+                if (slots[index] == null) {
+                    ((Node) slots[index + 1]).forEach(action);
+                }
+                else {
+                    action.accept(slots[index], slots[index + 1]);
+                }
+            }
+        }
+
+        private BitmapNode withSlot(int index, Object key, Object value) {
+            final Object[] newSlots = slots.clone();
+            newSlots[index] = key;
+            newSlots[index + 1] = value;
+            return new BitmapNode(bitmap, newSlots);
+        }
+
+        private static Node pair(int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+            final int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(hash1, new Object[] { key1, value1, key2, value2 });
+            }
+            final Change<Object> ignored = new Change<>();
+            return EMPTY
+                .with(shift, hash1, key1, value1, ignored)
+                .with(shift, hash2, key2, value2, ignored);
+        }
+
+    }
+
+    /**
+     * Node holding the keys that share a full hash code.
+     */
+    private static final class CollisionNode extends Node {
+
+        private final int hash;
+        private final Object[] slots;
+
+        private CollisionNode(int hash, Object[] slots) {
+            this.hash = hash;
+            this.slots = slots;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            for (int index = 0; index < slots.length; index += 2) {
+                if (key.equals(slots[index])) {
+                    return slots[index + 1];
+                }
+            }
+            return null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        <V> Node with(int shift, int hash, Object key, V value, Change<V> change) {
+            if (hash != this.hash) {
+                // Push this node one level down, next to the new key
+                return new BitmapNode(bit(this.hash, shift), new Object[] { null, this })
+                    .with(shift, hash, key, value, change);
+            }
+
+            for (int index = 0; index < slots.length; index += 2) {
+                if (key.equals(slots[index])) {
+                    change.previousValue = (V) slots[index + 1];
+                    if (slots[index + 1] == value) {
+                        return this;
+                    }
+                    final Object[] newSlots = slots.clone();
+                    newSlots[index + 1] = value;
+                    return new CollisionNode(hash, newSlots);
+                }
+            }
+
+            change.added = true;
+            final Object[] newSlots = Arrays.copyOf(slots, slots.length + 2);
+            newSlots[slots.length] = key;
+            newSlots[slots.length + 1] = value;
+            return new CollisionNode(hash, newSlots);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int index = 0; index < slots.length; index += 2) {
+                action.accept(slots[index], slots[index + 1]);
+            }
+        }
+
+    }
+
+    /**
+     * Depth-first iterator over the entries of a trie.
+     */
+    private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+
+        private final ArrayDeque<Object[]> slotStack;
+        private final ArrayDeque<Integer> indexStack;
+        private Map.Entry<K, V> nextEntry;
+
+        private EntryIterator(Node root) {
+            this.slotStack = new ArrayDeque<>();
+            this.indexStack = new ArrayDeque<>();
+            push(root);
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextEntry != null;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (nextEntry == null) {
+                throw new NoSuchElementException();
+            }
+            final Map.Entry<K, V> entry = nextEntry;
+            advance();
+            return entry;
+        }
+
+        private void push(Node node) {
+            slotStack.push(node instanceof BitmapNode bitmapNode ? bitmapNode.slots : ((CollisionNode) node).slots);
+            indexStack.push(0);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            nextEntry = null;
+            while (! slotStack.isEmpty()) {
+                final Object[] slots = slotStack.peek();
+                final int index = indexStack.pop();
+                if (index >= slots.length) {
+                    slotStack.pop();
+                    continue;
+                }
+                indexStack.push(index + 2);
+                if (slots[index] == null) {
+                    push((Node) slots[index + 1]);
+                }
+                else {
+                    nextEntry = Map.entry((K) slots[index], (V) slots[index + 1]);
+                    return;
+                }
+            }
+        }
+
+    }
+
+}
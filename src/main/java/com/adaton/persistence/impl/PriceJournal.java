@@ -0,0 +1,567 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.IPriceJournal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of published prices, with one sequence of segment files per price date.
+ * <p>
+ * Appending threads only encode prices into the pending buffer of their date's segment. A committer thread
+ * writes the pending buffers through a FileChannel and forces them to disk once groupCommitCount prices are
+ * pending or groupCommitDelay has elapsed, whichever comes first. Each commit is written as a block framed by
+ * its length and CRC-32C, so that a block torn by a crash is detected and ignored on replay.
+ * <p>
+ * Within a segment, vendor and instrument IDs are written once and then referred to by their index.
+ * A segment is rolled over once it exceeds maxSegmentBytes.
+ */
+public class PriceJournal implements IPriceJournal {
+
+    private static final String SEGMENT_FILE_PREFIX = "journal-";
+    private static final String SEGMENT_FILE_SUFFIX = ".log";
+
+    private static final int DEFAULT_GROUP_COMMIT_COUNT = 4096;
+    private static final Duration DEFAULT_GROUP_COMMIT_DELAY = Duration.ofMillis(5L);
+    private static final long DEFAULT_MAX_SEGMENT_BYTES = 64L << 20;
+
+    // Record types
+    private static final byte VENDOR_RECORD = 1;
+    private static final byte INSTRUMENT_RECORD = 2;
+    private static final byte PRICE_RECORD = 3;
+
+    // Number of replayed prices handed over to the publisher at once
+    private static final int REPLAY_BATCH_SIZE = 1 << 16;
+
+    private final Path journalDirectory;
+    private final int groupCommitCount;
+    private final long groupCommitDelayNanos;
+    private final long maxSegmentBytes;
+
+    // Guards the segments and the counters below
+    private final ReentrantLock lock;
+    private final Condition commitRequested;
+    private final Condition committed;
+    // Held by the committer while writing, and while segments are being deleted
+    private final ReentrantLock commitLock;
+
+    private final Map<LocalDate, Segment> openSegments;
+    private final Map<LocalDate, Integer> nextSegmentSequences;
+    private final List<Segment> rolledSegments;
+    private long appendedCount;
+    private long committedCount;
+    private IOException commitFailure;
+    private boolean closed;
+
+    private final Thread committer;
+
+    public PriceJournal(Path journalDirectory) throws IOException {
+        this(journalDirectory, DEFAULT_GROUP_COMMIT_COUNT, DEFAULT_GROUP_COMMIT_DELAY, DEFAULT_MAX_SEGMENT_BYTES);
+    }
+
+    public PriceJournal(Path journalDirectory, int groupCommitCount, Duration groupCommitDelay, long maxSegmentBytes) throws IOException {
+        if (groupCommitCount <= 0)
+            throw new IllegalArgumentException("groupCommitCount must be positive");
+        if (groupCommitDelay.isNegative() || groupCommitDelay.isZero())
+            throw new IllegalArgumentException("groupCommitDelay must be positive");
+        if (maxSegmentBytes <= 0L)
+            throw new IllegalArgumentException("maxSegmentBytes must be positive");
+
+        this.journalDirectory = Files.createDirectories(journalDirectory);
+        this.groupCommitCount = groupCommitCount;
+        this.groupCommitDelayNanos = groupCommitDelay.toNanos();
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.lock = new ReentrantLock();
+        this.commitRequested = lock.newCondition();
+        this.committed = lock.newCondition();
+        this.commitLock = new ReentrantLock();
+        this.openSegments = new HashMap<>();
+        this.rolledSegments = new ArrayList<>();
+
+        // New segments never reopen the segments of a previous run
+        this.nextSegmentSequences = new HashMap<>();
+        for (Map.Entry<LocalDate, TreeMap<Integer, Path>> segmentFilesForDate : listSegmentFiles().entrySet()) {
+            nextSegmentSequences.put(segmentFilesForDate.getKey(), segmentFilesForDate.getValue().lastKey() + 1);
+        }
+
+        this.committer = new Thread(this::runCommitter, "price-journal-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    @Override
+    public void append(InstrumentPrice instrumentPrice) {
+        lock.lock();
+        try {
+            appendLocked(instrumentPrice);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void append(Collection<InstrumentPrice> instrumentPrices) {
+        lock.lock();
+        try {
+            for (InstrumentPrice instrumentPrice : instrumentPrices) {
+                appendLocked(instrumentPrice);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+        lock.lock();
+        try {
+            final long syncedCount = appendedCount;
+            commitRequested.signal();
+            while (committedCount < syncedCount && commitFailure == null) {
+                committed.awaitUninterruptibly();
+            }
+            if (commitFailure != null) {
+                throw new IOException("journal commit failed", commitFailure);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long replay(Consumer<List<InstrumentPrice>> publisher, int parallelism) throws IOException {
+        final Collection<TreeMap<Integer, Path>> segmentFilesByDate = listSegmentFiles().values();
+        final ForkJoinPool replayPool = new ForkJoinPool(parallelism);
+        try {
+            return replayPool.submit(
+                () -> segmentFilesByDate.parallelStream()
+                    .mapToLong(segmentFiles -> {
+                        long replayedCount = 0L;
+                        for (Path segmentFile : segmentFiles.values()) {
+                            replayedCount += replaySegment(segmentFile, publisher);
+                        }
+                        return replayedCount;
+                    })
+                    .sum()
+            ).get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("journal replay interrupted", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+                throw uncheckedIOException.getCause();
+            }
+            throw new IOException("journal replay failed", e.getCause());
+        }
+        finally {
+            replayPool.shutdown();
+        }
+    }
+
+    @Override
+    public void deleteSegmentsBefore(LocalDate priceDate) throws IOException {
+        deleteSegments(segmentDate -> segmentDate.isBefore(priceDate));
+    }
+
+    @Override
+    public void deleteSegments(LocalDate priceDate) throws IOException {
+        deleteSegments(priceDate::equals);
+    }
+
+    private void deleteSegments(Predicate<LocalDate> deletedDates) throws IOException {
+        commitLock.lock();
+        try {
+            final List<Segment> deletedSegments = new ArrayList<>();
+            lock.lock();
+            try {
+                for (Iterator<Segment> segments = openSegments.values().iterator(); segments.hasNext(); ) {
+                    final Segment segment = segments.next();
+                    if (deletedDates.test(segment.priceDate)) {
+                        deletedSegments.add(segment);
+                        segments.remove();
+                    }
+                }
+                for (Iterator<Segment> segments = rolledSegments.iterator(); segments.hasNext(); ) {
+                    final Segment segment = segments.next();
+                    if (deletedDates.test(segment.priceDate)) {
+                        deletedSegments.add(segment);
+                        segments.remove();
+                    }
+                }
+                nextSegmentSequences.keySet().removeIf(deletedDates);
+            }
+            finally {
+                lock.unlock();
+            }
+
+            for (Segment segment : deletedSegments) {
+                segment.channel.close();
+            }
+            for (Map.Entry<LocalDate, TreeMap<Integer, Path>> segmentFilesForDate : listSegmentFiles().entrySet()) {
+                if (deletedDates.test(segmentFilesForDate.getKey())) {
+                    for (Path segmentFile : segmentFilesForDate.getValue().values()) {
+                        Files.deleteIfExists(segmentFile);
+                    }
+                }
+            }
+        }
+        finally {
+            commitLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            commitRequested.signal();
+        }
+        finally {
+            lock.unlock();
+        }
+
+        boolean interrupted = false;
+        while (committer.isAlive()) {
+            try {
+                committer.join();
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (Segment segment : openSegments.values()) {
+            segment.channel.close();
+        }
+        if (commitFailure != null) {
+            throw new IOException("journal commit failed", commitFailure);
+        }
+    }
+
+    // Called while holding the lock
+    private void appendLocked(InstrumentPrice instrumentPrice) {
+        if (closed)
+            throw new IllegalStateException("journal is closed");
+        if (commitFailure != null)
+            throw new UncheckedIOException("journal commit failed", commitFailure);
+
+        final Segment segment = segmentFor(instrumentPrice.priceDate());
+        try {
+            final int vendorIndex = segment.symbolIndex(segment.vendorIndices, VENDOR_RECORD, instrumentPrice.vendorId());
+            final int instrumentIndex = segment.symbolIndex(segment.instrumentIndices, INSTRUMENT_RECORD, instrumentPrice.instrumentId());
+            segment.pending.writeByte(PRICE_RECORD);
+            writeVarInt(segment.pending, vendorIndex);
+            writeVarInt(segment.pending, instrumentIndex);
+            segment.pending.writeDouble(instrumentPrice.price());
+        }
+        catch (IOException e) {
+            // Writes to an in-memory stream do not fail
+            throw new UncheckedIOException(e);
+        }
+
+        appendedCount++;
+        if (appendedCount - committedCount >= groupCommitCount) {
+            commitRequested.signal();
+        }
+    }
+
+    // Called while holding the lock
+    private Segment segmentFor(LocalDate priceDate) {
+        Segment segment = openSegments.get(priceDate);
+        if (segment != null && segment.committedBytes + segment.pendingBytes.size() < maxSegmentBytes) {
+            return segment;
+        }
+
+        if (segment != null) {
+            // The segment is closed by the committer once its pending prices are written
+            rolledSegments.add(segment);
+        }
+        final int sequence = nextSegmentSequences.merge(priceDate, 1, Integer::sum) - 1;
+        final Path segmentFile = journalDirectory.resolve(SEGMENT_FILE_PREFIX + priceDate + "-" + String.format("%06d", sequence) + SEGMENT_FILE_SUFFIX);
+        try {
+            segment = new Segment(priceDate, FileChannel.open(segmentFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        openSegments.put(priceDate, segment);
+        return segment;
+    }
+
+    private void runCommitter() {
+        while (true) {
+            final Map<Segment, byte[]> pendingBlocks = new HashMap<>();
+            final List<Segment> segmentsToClose;
+            final long targetCount;
+            final boolean closing;
+
+            lock.lock();
+            try {
+                if (! closed && appendedCount - committedCount < groupCommitCount) {
+                    commitRequested.awaitNanos(groupCommitDelayNanos);
+                }
+                closing = closed;
+                targetCount = appendedCount;
+                collectPendingBlocks(openSegments.values(), pendingBlocks);
+                collectPendingBlocks(rolledSegments, pendingBlocks);
+                segmentsToClose = new ArrayList<>(rolledSegments);
+                rolledSegments.clear();
+            }
+            catch (InterruptedException e) {
+                // The committer only stops once the journal is closed
+                continue;
+            }
+            finally {
+                lock.unlock();
+            }
+
+            IOException failure = null;
+            commitLock.lock();
+            try {
+                for (Map.Entry<Segment, byte[]> pendingBlock : pendingBlocks.entrySet()) {
+                    final Segment segment = pendingBlock.getKey();
+                    if (segment.channel.isOpen()) {
+                        writeBlock(segment, pendingBlock.getValue());
+                    }
+                }
+                for (Segment segment : segmentsToClose) {
+                    segment.channel.close();
+                }
+            }
+            catch (IOException e) {
+                failure = e;
+            }
+            finally {
+                commitLock.unlock();
+            }
+
+            lock.lock();
+            try {
+                if (failure != null) {
+                    commitFailure = failure;
+                }
+                else {
+                    committedCount = Math.max(committedCount, targetCount);
+                }
+                committed.signalAll();
+            }
+            finally {
+                lock.unlock();
+            }
+
+            if (closing || failure != null) {
+                return;
+            }
+        }
+    }
+
+    // Called while holding the lock
+    private static void collectPendingBlocks(Collection<Segment> segments, Map<Segment, byte[]> pendingBlocks) {
+        for (Segment segment : segments) {
+            if (segment.pendingBytes.size() > 0) {
+                pendingBlocks.put(segment, segment.pendingBytes.toByteArray());
+                segment.committedBytes += segment.pendingBytes.size() + Integer.BYTES * 2L;
+                segment.pendingBytes.reset();
+            }
+        }
+    }
+
+    private static void writeBlock(Segment segment, byte[] payload) throws IOException {
+        final CRC32C crc = new CRC32C();
+        crc.update(payload);
+        final ByteBuffer block = ByteBuffer.allocate(Integer.BYTES * 2 + payload.length);
+        block.putInt(payload.length);
+        block.putInt((int) crc.getValue());
+        block.put(payload);
+        block.flip();
+        while (block.hasRemaining()) {
+            segment.channel.write(block);
+        }
+        segment.channel.force(false);
+    }
+
+    private static long replaySegment(Path segmentFile, Consumer<List<InstrumentPrice>> publisher) {
+        final LocalDate priceDate = segmentDate(segmentFile);
+        final ByteBuffer segment;
+        try {
+            segment = ByteBuffer.wrap(Files.readAllBytes(segmentFile));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        final List<String> vendorIds = new ArrayList<>();
+        final List<String> instrumentIds = new ArrayList<>();
+        List<InstrumentPrice> instrumentPrices = new ArrayList<>();
+        long replayedCount = 0L;
+        while (segment.remaining() >= Integer.BYTES * 2) {
+            final int length = segment.getInt();
+            final int checksum = segment.getInt();
+            if (length < 0 || length > segment.remaining()) {
+                // Torn block at the end of the segment
+                break;
+            }
+            final CRC32C crc = new CRC32C();
+            crc.update(segment.array(), segment.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            final DataInputStream block = new DataInputStream(new ByteArrayInputStream(segment.array(), segment.position(), length));
+            segment.position(segment.position() + length);
+            try {
+                while (block.available() > 0) {
+                    final byte recordType = block.readByte();
+                    switch (recordType) {
+                        case VENDOR_RECORD -> vendorIds.add(block.readUTF());
+                        case INSTRUMENT_RECORD -> instrumentIds.add(block.readUTF());
+                        case PRICE_RECORD -> {
+                            final String vendorId = vendorIds.get(readVarInt(block));
+                            final String instrumentId = instrumentIds.get(readVarInt(block));
+                            instrumentPrices.add(new InstrumentPrice(vendorId, instrumentId, priceDate, block.readDouble()));
+                        }
+                        default -> throw new IOException("unknown record type " + recordType + " in " + segmentFile);
+                    }
+                    if (instrumentPrices.size() == REPLAY_BATCH_SIZE) {
+                        publisher.accept(instrumentPrices);
+                        replayedCount += instrumentPrices.size();
+                        instrumentPrices = new ArrayList<>();
+                    }
+                }
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        if (! instrumentPrices.isEmpty()) {
+            publisher.accept(instrumentPrices);
+            replayedCount += instrumentPrices.size();
+        }
+        return replayedCount;
+    }
+
+    // Map of [Price date --> Map of [Segment sequence --> Segment file]]
+    private TreeMap<LocalDate, TreeMap<Integer, Path>> listSegmentFiles() throws IOException {
+        final TreeMap<LocalDate, TreeMap<Integer, Path>> segmentFiles = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(journalDirectory, SEGMENT_FILE_PREFIX + "*" + SEGMENT_FILE_SUFFIX)) {
+            for (Path file : files) {
+                final LocalDate priceDate = segmentDate(file);
+                if (priceDate != null) {
+                    segmentFiles.computeIfAbsent(priceDate, date -> new TreeMap<>()).put(segmentSequence(file), file);
+                }
+            }
+        }
+        return segmentFiles;
+    }
+
+    // Segment file names are journal-<price date>-<sequence>.log
+    private static LocalDate segmentDate(Path segmentFile) {
+        final String fileName = segmentFile.getFileName().toString();
+        try {
+            return LocalDate.parse(fileName.substring(SEGMENT_FILE_PREFIX.length(), SEGMENT_FILE_PREFIX.length() + 10));
+        }
+        catch (DateTimeParseException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private static int segmentSequence(Path segmentFile) {
+        final String fileName = segmentFile.getFileName().toString();
+        return Integer.parseInt(fileName.substring(SEGMENT_FILE_PREFIX.length() + 11, fileName.length() - SEGMENT_FILE_SUFFIX.length()));
+    }
+
+    private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream input) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            final byte encodedByte = input.readByte();
+            value |= (encodedByte & 0x7F) << shift;
+            if (encodedByte >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static class Segment {
+
+        private final LocalDate priceDate;
+        private final FileChannel channel;
+        private final Map<String, Integer> vendorIndices;
+        private final Map<String, Integer> instrumentIndices;
+        private final ByteArrayOutputStream pendingBytes;
+        private final DataOutputStream pending;
+        private long committedBytes;
+
+        private Segment(LocalDate priceDate, FileChannel channel) {
+            this.priceDate = priceDate;
+            this.channel = channel;
+            this.vendorIndices = new HashMap<>();
+            this.instrumentIndices = new HashMap<>();
+            this.pendingBytes = new ByteArrayOutputStream(1 << 12);
+            this.pending = new DataOutputStream(pendingBytes);
+        }
+
+        // Returns the index of a symbol within the segment, writing its definition on first use
+        private int symbolIndex(Map<String, Integer> symbolIndices, byte recordType, String symbol) throws IOException {
+            final Integer symbolIndex = symbolIndices.get(symbol);
+            if (symbolIndex != null) {
+                return symbolIndex;
+            }
+            final int newSymbolIndex = symbolIndices.size();
+            symbolIndices.put(symbol, newSymbolIndex);
+            pending.writeByte(recordType);
+            pending.writeUTF(symbol);
+            return newSymbolIndex;
+        }
+
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.persistence.IDayPriceStore;
+import com.adaton.persistence.ISymbolTable;
+
+import java.time.LocalDate;
+
+/**
+ * Creates SlotTablePriceStore instances that hold each price of a date once, addressed by one vendor and one
+ * instrument symbol table shared across all price dates. Published prices refer to the canonical vendor and
+ * instrument ID instances, as with InternedCacheIndexFactory. Standalone indices are interned cache indices.
+ */
+public class SlotTableCacheIndexFactory extends InternedCacheIndexFactory {
+
+    public SlotTableCacheIndexFactory() {
+        super();
+    }
+
+    public SlotTableCacheIndexFactory(ISymbolTable vendorSymbols, ISymbolTable instrumentSymbols) {
+        super(vendorSymbols, instrumentSymbols);
+    }
+
+    @Override
+    public IDayPriceStore createDayStore(LocalDate priceDate) {
+        return new SlotTablePriceStore(priceDate, getVendorSymbols(), getInstrumentSymbols());
+    }
+
+}
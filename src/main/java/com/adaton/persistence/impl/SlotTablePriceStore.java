@@ -0,0 +1,637 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.ICacheIndex;
+import com.adaton.persistence.IDayPriceStore;
+import com.adaton.persistence.ISymbolTable;
+
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+
+/**
+ * Price store that holds each price once, in a dense vendor x instrument slot table addressed by the IDs of
+ * symbol tables shared across dates. The vendor and instrument symbol tables are the two secondary indices
+ * into the table. Updating a price is a single atomic slot update, so a price becomes visible by instrument
+ * and by vendor at the same time.
+ * <p>
+ * Slots hold the bits of the price rather than a price object, so that updating an existing slot allocates
+ * nothing. Price objects are created when read, from the canonical vendor and instrument IDs.
+ * <p>
+ * A snapshot is a read-only slot table holding a copy of the allocated pages, sharing the symbol tables of the
+ * store. Both orientations of the snapshot read the same copied slots, so it needs no lock against updates.
+ */
+public class SlotTablePriceStore implements IDayPriceStore {
+
+    // Slots per page of a vendor column, pages are allocated once an instrument ID within them is published
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    // Memory held by one slot of an allocated page
+    private static final long BYTES_PER_SLOT = 8L;
+    // Memory held by the price count and the view reference of one instrument of an allocated instrument page
+    private static final long BYTES_PER_INSTRUMENT = 8L;
+
+    // Slots hold the complement of the price bits. NaN bits are canonical, so no price is stored as 0,
+    // which marks an empty slot.
+    private static final long EMPTY_SLOT = 0L;
+
+    private final LocalDate priceDate;
+    private final ISymbolTable vendorSymbols;
+    private final ISymbolTable instrumentSymbols;
+
+    // Vendor columns indexed by vendor ID, null until the vendor publishes a price for the date.
+    // Only grown and published while holding the store lock.
+    private volatile VendorColumn[] vendorColumns;
+
+    // Instrument pages indexed by instrument ID >>> PAGE_SHIFT, null until an instrument ID within them is published.
+    // Only grown and published while holding the store lock.
+    private volatile InstrumentPage[] instrumentPages;
+
+    // True for a snapshot, whose slots are never updated
+    private final boolean readOnly;
+
+    private final ICacheIndex instrumentIndex;
+    private final ICacheIndex vendorIndex;
+
+    public SlotTablePriceStore(LocalDate priceDate, ISymbolTable vendorSymbols, ISymbolTable instrumentSymbols) {
+        this.priceDate = priceDate;
+        this.vendorSymbols = vendorSymbols;
+        this.instrumentSymbols = instrumentSymbols;
+        this.vendorColumns = new VendorColumn[Math.max(vendorSymbols.size(), 1)];
+        this.instrumentPages = new InstrumentPage[1];
+        this.readOnly = false;
+        this.instrumentIndex = new SlotTableIndex(false);
+        this.vendorIndex = new SlotTableIndex(true);
+    }
+
+    // Read-only copy of the slots of a store
+    private SlotTablePriceStore(SlotTablePriceStore priceStore) {
+        this.priceDate = priceStore.priceDate;
+        this.vendorSymbols = priceStore.vendorSymbols;
+        this.instrumentSymbols = priceStore.instrumentSymbols;
+        this.instrumentPages = new InstrumentPage[priceStore.instrumentPages.length];
+        final VendorColumn[] vendorColumns = priceStore.vendorColumns;
+        this.vendorColumns = new VendorColumn[vendorColumns.length];
+        for (int vendorId = 0; vendorId < vendorColumns.length; vendorId++) {
+            if (vendorColumns[vendorId] != null) {
+                this.vendorColumns[vendorId] = new VendorColumn(vendorColumns[vendorId]);
+            }
+        }
+        this.readOnly = true;
+        this.instrumentIndex = new SlotTableIndex(false);
+        this.vendorIndex = new SlotTableIndex(true);
+    }
+
+    @Override
+    public InstrumentPrice updatePrice(InstrumentPrice instrumentPrice) {
+        return setSlot(instrumentPrice);
+    }
+
+    @Override
+    public boolean updatePrice(int vendorId, int instrumentId, double price) {
+        checkWritable();
+        return vendorColumn(vendorId).setPrice(instrumentId, price) != EMPTY_SLOT;
+    }
+
+    @Override
+    public boolean isAddressedBySymbolId() {
+        return true;
+    }
+
+    @Override
+    public boolean holdsEachPriceOnce() {
+        return true;
+    }
+
+    private void checkWritable() {
+        if (readOnly)
+            throw new UnsupportedOperationException("snapshot store is read-only");
+    }
+
+    @Override
+    public double getPrice(int vendorId, int instrumentId) {
+        final VendorColumn vendorColumn = findVendorColumn(vendorId);
+        return vendorColumn != null ? vendorColumn.getPrice(instrumentId) : Double.NaN;
+    }
+
+    @Override
+    public double getPrice(String vendorId, String instrumentId) {
+        final int vendorSymbolId = vendorSymbols.lookup(vendorId);
+        final int instrumentSymbolId = instrumentSymbols.lookup(instrumentId);
+        if (vendorSymbolId == ISymbolTable.NO_SYMBOL_ID || instrumentSymbolId == ISymbolTable.NO_SYMBOL_ID) {
+            return Double.NaN;
+        }
+        return getPrice(vendorSymbolId, instrumentSymbolId);
+    }
+
+    @Override
+    public int updatePrices(Collection<InstrumentPrice> instrumentPrices, ForkJoinPool parallelPool) {
+        checkWritable();
+        if (parallelPool != null) {
+            // Prices of the same instrument are applied in order by one task, so the last of the group wins
+            final Map<String, List<InstrumentPrice>> pricesByInstrument = new HashMap<>();
+            for (InstrumentPrice instrumentPrice : instrumentPrices) {
+                pricesByInstrument
+                    .computeIfAbsent(instrumentPrice.instrumentId(), instrumentId -> new ArrayList<>())
+                    .add(instrumentPrice);
+            }
+            return parallelPool.submit(
+                () -> pricesByInstrument.values()
+                    .parallelStream()
+                    .mapToInt(this::setSlots)
+                    .sum()
+            ).join();
+        }
+        return setSlots(instrumentPrices);
+    }
+
+    private int setSlots(Collection<InstrumentPrice> instrumentPrices) {
+        int replacedCount = 0;
+        for (InstrumentPrice instrumentPrice : instrumentPrices) {
+            if (setSlot(instrumentPrice) != null) {
+                replacedCount++;
+            }
+        }
+        return replacedCount;
+    }
+
+    // Returns the price replaced, or null if the slot was empty
+    private InstrumentPrice setSlot(InstrumentPrice instrumentPrice) {
+        checkWritable();
+        final int vendorId = vendorSymbols.intern(instrumentPrice.vendorId());
+        final int instrumentId = instrumentSymbols.intern(instrumentPrice.instrumentId());
+        final long replacedSlot = vendorColumn(vendorId).setPrice(instrumentId, instrumentPrice.price());
+        return replacedSlot != EMPTY_SLOT ? newInstrumentPrice(vendorId, instrumentId, replacedSlot) : null;
+    }
+
+    private InstrumentPrice newInstrumentPrice(int vendorId, int instrumentId, long slot) {
+        return new InstrumentPrice(vendorSymbols.symbol(vendorId), instrumentSymbols.symbol(instrumentId), priceDate, Double.longBitsToDouble(~slot));
+    }
+
+    // Returns the column of a vendor, or null if the vendor has no price for the date
+    private VendorColumn findVendorColumn(int vendorId) {
+        final VendorColumn[] vendorColumns = this.vendorColumns;
+        return vendorId < vendorColumns.length ? vendorColumns[vendorId] : null;
+    }
+
+    private VendorColumn vendorColumn(int vendorId) {
+        final VendorColumn vendorColumn = findVendorColumn(vendorId);
+        if (vendorColumn != null) {
+            return vendorColumn;
+        }
+
+        synchronized (this) {
+            VendorColumn[] vendorColumns = this.vendorColumns;
+            if (vendorId >= vendorColumns.length) {
+                vendorColumns = Arrays.copyOf(vendorColumns, Math.max(vendorColumns.length << 1, vendorId + 1));
+            }
+            if (vendorColumns[vendorId] == null) {
+                vendorColumns[vendorId] = new VendorColumn(vendorId);
+            }
+            this.vendorColumns = vendorColumns;
+            return vendorColumns[vendorId];
+        }
+    }
+
+    // Returns the page of an instrument ID, or null if no instrument ID within it has a price for the date
+    private InstrumentPage findInstrumentPage(int instrumentId) {
+        final InstrumentPage[] instrumentPages = this.instrumentPages;
+        final int pageIndex = instrumentId >>> PAGE_SHIFT;
+        return pageIndex < instrumentPages.length ? instrumentPages[pageIndex] : null;
+    }
+
+    private InstrumentPage instrumentPage(int instrumentId) {
+        final InstrumentPage instrumentPage = findInstrumentPage(instrumentId);
+        if (instrumentPage != null) {
+            return instrumentPage;
+        }
+
+        synchronized (this) {
+            final int pageIndex = instrumentId >>> PAGE_SHIFT;
+            InstrumentPage[] instrumentPages = this.instrumentPages;
+            if (pageIndex >= instrumentPages.length) {
+                instrumentPages = Arrays.copyOf(instrumentPages, Math.max(instrumentPages.length << 1, pageIndex + 1));
+            }
+            if (instrumentPages[pageIndex] == null) {
+                instrumentPages[pageIndex] = new InstrumentPage();
+            }
+            this.instrumentPages = instrumentPages;
+            return instrumentPages[pageIndex];
+        }
+    }
+
+    private int vendorColumnCount() {
+        return vendorColumns.length;
+    }
+
+    // Returns the price of a vendor and instrument, or null if the slot is empty
+    private InstrumentPrice slot(int vendorId, int instrumentId) {
+        final VendorColumn vendorColumn = findVendorColumn(vendorId);
+        return vendorColumn != null ? vendorColumn.get(instrumentId) : null;
+    }
+
+    @Override
+    public ICacheIndex instrumentIndex() {
+        return instrumentIndex;
+    }
+
+    @Override
+    public ICacheIndex vendorIndex() {
+        return vendorIndex;
+    }
+
+    @Override
+    public IDayPriceStore snapshot() {
+        return readOnly ? this : new SlotTablePriceStore(this);
+    }
+
+    @Override
+    public long getPriceCount() {
+        long priceCount = 0L;
+        for (VendorColumn vendorColumn : vendorColumns) {
+            if (vendorColumn != null) {
+                priceCount += vendorColumn.priceCount.get();
+            }
+        }
+        return priceCount;
+    }
+
+    @Override
+    public long estimateMemoryBytes() {
+        long slotCount = 0L;
+        for (VendorColumn vendorColumn : vendorColumns) {
+            if (vendorColumn != null) {
+                slotCount += (long) vendorColumn.pageCount() * PAGE_SIZE;
+            }
+        }
+        long instrumentPageCount = 0L;
+        for (InstrumentPage instrumentPage : instrumentPages) {
+            if (instrumentPage != null) {
+                instrumentPageCount++;
+            }
+        }
+        return slotCount * BYTES_PER_SLOT + instrumentPageCount * PAGE_SIZE * BYTES_PER_INSTRUMENT;
+    }
+
+    /**
+     * Prices of one vendor indexed by instrument ID.
+     */
+    private class VendorColumn {
+
+        private final int vendorId;
+
+        // Pages of slots, null until a slot within them is set. Only grown and published while holding the column lock.
+        private volatile AtomicLongArray[] pages;
+
+        private final AtomicInteger priceCount;
+
+        // Read-only view of the column, created once and handed to every lookup by vendor
+        private final Map<String, InstrumentPrice> pricesView;
+
+        private VendorColumn(int vendorId) {
+            this.vendorId = vendorId;
+            this.pages = new AtomicLongArray[1];
+            this.priceCount = new AtomicInteger();
+            this.pricesView = new SlotPricesView(this::slotCount, this::get, priceCount::get, instrumentSymbols, InstrumentPrice::instrumentId);
+        }
+
+        // Copy of the filled slots of a column, counting them into the instrument pages of this store
+        private VendorColumn(VendorColumn vendorColumn) {
+            this(vendorColumn.vendorId);
+            final AtomicLongArray[] pages = vendorColumn.pages;
+            this.pages = new AtomicLongArray[pages.length];
+            for (int pageIndex = 0; pageIndex < pages.length; pageIndex++) {
+                if (pages[pageIndex] != null) {
+                    for (int slotIndex = 0; slotIndex < PAGE_SIZE; slotIndex++) {
+                        final long slot = pages[pageIndex].get(slotIndex);
+                        if (slot != EMPTY_SLOT) {
+                            setSlot((pageIndex << PAGE_SHIFT) | slotIndex, slot);
+                        }
+                    }
+                }
+            }
+        }
+
+        private long getSlot(int instrumentId) {
+            final AtomicLongArray[] pages = this.pages;
+            final int pageIndex = instrumentId >>> PAGE_SHIFT;
+            if (pageIndex >= pages.length || pages[pageIndex] == null) {
+                return EMPTY_SLOT;
+            }
+            return pages[pageIndex].get(instrumentId & (PAGE_SIZE - 1));
+        }
+
+        private double getPrice(int instrumentId) {
+            final long slot = getSlot(instrumentId);
+            return slot != EMPTY_SLOT ? Double.longBitsToDouble(~slot) : Double.NaN;
+        }
+
+        private InstrumentPrice get(int instrumentId) {
+            final long slot = getSlot(instrumentId);
+            return slot != EMPTY_SLOT ? newInstrumentPrice(vendorId, instrumentId, slot) : null;
+        }
+
+        // Returns the slot replaced, EMPTY_SLOT if there was no price
+        private long setPrice(int instrumentId, double price) {
+            return setSlot(instrumentId, ~Double.doubleToLongBits(price));
+        }
+
+        private long setSlot(int instrumentId, long slot) {
+            final long replacedSlot = page(instrumentId >>> PAGE_SHIFT).getAndSet(instrumentId & (PAGE_SIZE - 1), slot);
+            if (replacedSlot == EMPTY_SLOT) {
+                priceCount.incrementAndGet();
+                instrumentPage(instrumentId).priceCounts.incrementAndGet(instrumentId & (PAGE_SIZE - 1));
+            }
+            return replacedSlot;
+        }
+
+        private AtomicLongArray page(int pageIndex) {
+            final AtomicLongArray[] pages = this.pages;
+            if (pageIndex < pages.length && pages[pageIndex] != null) {
+                return pages[pageIndex];
+            }
+
+            synchronized (this) {
+                AtomicLongArray[] grownPages = this.pages;
+                if (pageIndex >= grownPages.length) {
+                    grownPages = Arrays.copyOf(grownPages, Math.max(grownPages.length << 1, pageIndex + 1));
+                }
+                if (grownPages[pageIndex] == null) {
+                    grownPages[pageIndex] = new AtomicLongArray(PAGE_SIZE);
+                }
+                this.pages = grownPages;
+                return grownPages[pageIndex];
+            }
+        }
+
+        private int pageCount() {
+            int pageCount = 0;
+            for (AtomicLongArray page : pages) {
+                if (page != null) {
+                    pageCount++;
+                }
+            }
+            return pageCount;
+        }
+
+        private int slotCount() {
+            return pages.length << PAGE_SHIFT;
+        }
+
+        private void forEach(Consumer<InstrumentPrice> action) {
+            final AtomicLongArray[] pages = this.pages;
+            for (int pageIndex = 0; pageIndex < pages.length; pageIndex++) {
+                final AtomicLongArray page = pages[pageIndex];
+                if (page != null) {
+                    for (int slotIndex = 0; slotIndex < PAGE_SIZE; slotIndex++) {
+                        final long slot = page.get(slotIndex);
+                        if (slot != EMPTY_SLOT) {
+                            action.accept(newInstrumentPrice(vendorId, (pageIndex << PAGE_SHIFT) | slotIndex, slot));
+                        }
+                    }
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Price counts and read-only views of a page of instrument IDs, the row counterpart of the vendor columns.
+     */
+    private class InstrumentPage {
+
+        // Number of vendors with a price, by instrument ID within the page
+        private final AtomicIntegerArray priceCounts;
+
+        // Read-only views of the rows, created on their first lookup and handed to every later lookup by instrument
+        private final AtomicReferenceArray<Map<String, InstrumentPrice>> pricesViews;
+
+        private InstrumentPage() {
+            this.priceCounts = new AtomicIntegerArray(PAGE_SIZE);
+            this.pricesViews = new AtomicReferenceArray<>(PAGE_SIZE);
+        }
+
+        private Map<String, InstrumentPrice> pricesView(int instrumentId) {
+            final int slotIndex = instrumentId & (PAGE_SIZE - 1);
+            final Map<String, InstrumentPrice> pricesView = pricesViews.get(slotIndex);
+            if (pricesView != null) {
+                return pricesView;
+            }
+            final Map<String, InstrumentPrice> newPricesView =
+                new SlotPricesView(
+                    SlotTablePriceStore.this::vendorColumnCount,
+                    vendorId -> slot(vendorId, instrumentId),
+                    () -> priceCounts.get(slotIndex),
+                    vendorSymbols,
+                    InstrumentPrice::vendorId
+                );
+            return pricesViews.compareAndSet(slotIndex, null, newPricesView) ? newPricesView : pricesViews.get(slotIndex);
+        }
+
+    }
+
+    /**
+     * One orientation of the slot table. Updates through either orientation set the same slot.
+     */
+    private class SlotTableIndex implements ICacheIndex {
+
+        // True if the outer key is a vendor ID, false if it is an instrument ID
+        private final boolean keyedByVendor;
+
+        private SlotTableIndex(boolean keyedByVendor) {
+            this.keyedByVendor = keyedByVendor;
+        }
+
+        @Override
+        public void updateCacheIndex(String outerKey, String innerKey, InstrumentPrice instrumentPrice) {
+            setSlot(instrumentPrice);
+        }
+
+        @Override
+        public int updateCacheIndex(String outerKey, Function<InstrumentPrice, String> innerKeyFunction, Collection<InstrumentPrice> instrumentPrices) {
+            return setSlots(instrumentPrices);
+        }
+
+        @Override
+        public Map<String, InstrumentPrice> getCachedInstrumentPrices(String outerKey) {
+            if (keyedByVendor) {
+                final int vendorId = vendorSymbols.lookup(outerKey);
+                final VendorColumn vendorColumn = vendorId == ISymbolTable.NO_SYMBOL_ID ? null : findVendorColumn(vendorId);
+                if (vendorColumn == null || vendorColumn.priceCount.get() == 0) {
+                    return Collections.emptyMap();
+                }
+                return vendorColumn.pricesView;
+            }
+
+            final int instrumentId = instrumentSymbols.lookup(outerKey);
+            final InstrumentPage instrumentPage = instrumentId == ISymbolTable.NO_SYMBOL_ID ? null : findInstrumentPage(instrumentId);
+            if (instrumentPage == null || instrumentPage.priceCounts.get(instrumentId & (PAGE_SIZE - 1)) == 0) {
+                return Collections.emptyMap();
+            }
+            return instrumentPage.pricesView(instrumentId);
+        }
+
+        @Override
+        public void forEachCachedInstrumentPrice(String outerKey, Consumer<InstrumentPrice> action) {
+            if (keyedByVendor) {
+                final int vendorId = vendorSymbols.lookup(outerKey);
+                final VendorColumn vendorColumn = vendorId == ISymbolTable.NO_SYMBOL_ID ? null : findVendorColumn(vendorId);
+                if (vendorColumn != null) {
+                    vendorColumn.forEach(action);
+                }
+                return;
+            }
+
+            final int instrumentId = instrumentSymbols.lookup(outerKey);
+            if (instrumentId != ISymbolTable.NO_SYMBOL_ID) {
+                for (VendorColumn vendorColumn : vendorColumns) {
+                    final InstrumentPrice instrumentPrice = vendorColumn != null ? vendorColumn.get(instrumentId) : null;
+                    if (instrumentPrice != null) {
+                        action.accept(instrumentPrice);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void forEachInstrumentPrice(Consumer<InstrumentPrice> action) {
+            for (VendorColumn vendorColumn : vendorColumns) {
+                if (vendorColumn != null) {
+                    vendorColumn.forEach(action);
+                }
+            }
+        }
+
+        @Override
+        public ICacheIndex snapshot() {
+            // Copying the slots costs the same whichever orientation is needed
+            final IDayPriceStore snapshot = SlotTablePriceStore.this.snapshot();
+            return keyedByVendor ? snapshot.vendorIndex() : snapshot.instrumentIndex();
+        }
+
+        @Override
+        public long getPriceCount() {
+            return SlotTablePriceStore.this.getPriceCount();
+        }
+
+        @Override
+        public long estimateMemoryBytes() {
+            // The slot table is shared by the instrument and the vendor index, each is charged half of it
+            return SlotTablePriceStore.this.estimateMemoryBytes() / 2;
+        }
+
+    }
+
+    /**
+     * Read-only view of one row or one column of the slot table, keyed by the symbols of the other dimension.
+     */
+    private static class SlotPricesView extends AbstractMap<String, InstrumentPrice> {
+
+        private final IntSupplier slotCountFunction;
+        private final IntFunction<InstrumentPrice> slotFunction;
+        // Counts the filled slots
+        private final IntSupplier sizeFunction;
+        private final ISymbolTable innerSymbols;
+        private final Function<InstrumentPrice, String> innerKeyFunction;
+
+        private SlotPricesView(
+                IntSupplier slotCountFunction,
+                IntFunction<InstrumentPrice> slotFunction,
+                IntSupplier sizeFunction,
+                ISymbolTable innerSymbols,
+                Function<InstrumentPrice, String> innerKeyFunction) {
+            this.slotCountFunction = slotCountFunction;
+            this.slotFunction = slotFunction;
+            this.sizeFunction = sizeFunction;
+            this.innerSymbols = innerSymbols;
+            this.innerKeyFunction = innerKeyFunction;
+        }
+
+        @Override
+        public InstrumentPrice get(Object key) {
+            if (! (key instanceof String innerKey)) {
+                return null;
+            }
+            final int innerId = innerSymbols.lookup(innerKey);
+            return innerId == ISymbolTable.NO_SYMBOL_ID ? null : slotFunction.apply(innerId);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return sizeFunction.getAsInt() == 0;
+        }
+
+        @Override
+        public int size() {
+            return sizeFunction.getAsInt();
+        }
+
+        @Override
+        public Set<Map.Entry<String, InstrumentPrice>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<String, InstrumentPrice>> iterator() {
+                    return new Iterator<>() {
+                        private final int slotCount = slotCountFunction.getAsInt();
+                        private int slot;
+                        private InstrumentPrice nextPrice;
+
+                        @Override
+                        public boolean hasNext() {
+                            while (nextPrice == null && slot < slotCount) {
+                                nextPrice = slotFunction.apply(slot++);
+                            }
+                            return nextPrice != null;
+                        }
+
+                        @Override
+                        public Map.Entry<String, InstrumentPrice> next() {
+                            if (! hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            final InstrumentPrice instrumentPrice = nextPrice;
+                            nextPrice = null;
+                            return Map.entry(innerKeyFunction.apply(instrumentPrice), instrumentPrice);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    int size = 0;
+                    for (Iterator<Map.Entry<String, InstrumentPrice>> entries = iterator(); entries.hasNext(); entries.next()) {
+                        size++;
+                    }
+                    return size;
+                }
+            };
+        }
+
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.adaton.persistence.impl;
+
+import com.adaton.persistence.ISymbolTable;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class SymbolTable implements ISymbolTable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Map of [Symbol --> Symbol ID], read without locking
+    private final ConcurrentHashMap<String, Integer> symbolIds;
+
+    // Canonical symbols indexed by symbol ID. Only grown and published while holding the table lock.
+    private volatile String[] symbols;
+
+    private int symbolCount;
+
+    public SymbolTable() {
+        this.symbolIds = new ConcurrentHashMap<>(INITIAL_CAPACITY);
+        this.symbols = new String[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public int intern(String symbol) {
+        final Integer symbolId = symbolIds.get(symbol);
+        if (symbolId != null) {
+            return symbolId;
+        }
+
+        synchronized (this) {
+            final Integer racedSymbolId = symbolIds.get(symbol);
+            if (racedSymbolId != null) {
+                return racedSymbolId;
+            }
+
+            final int newSymbolId = symbolCount;
+            String[] currentSymbols = symbols;
+            if (newSymbolId == currentSymbols.length) {
+                currentSymbols = Arrays.copyOf(currentSymbols, currentSymbols.length << 1);
+            }
+            currentSymbols[newSymbolId] = Objects.requireNonNull(symbol);
+            // Publish the symbol before its ID, so that any thread seeing the ID can resolve it
+            symbols = currentSymbols;
+            symbolCount = newSymbolId + 1;
+            symbolIds.put(symbol, newSymbolId);
+            return newSymbolId;
+        }
+    }
+
+    @Override
+    public int lookup(String symbol) {
+        final Integer symbolId = symbolIds.get(symbol);
+        return symbolId != null ? symbolId : NO_SYMBOL_ID;
+    }
+
+    @Override
+    public String symbol(int symbolId) {
+        return symbols[symbolId];
+    }
+
+    @Override
+    public int size() {
+        return symbolIds.size();
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.adaton.replication;
+
+import java.time.Duration;
+
+/**
+ * Follower keeping a local cache in step with the cache of a leader. Batches are applied in the order the
+ * leader published them, and the local cache answers reads as of the last applied batch.
+ */
+public interface IPriceReplica extends AutoCloseable {
+
+    /**
+     * Connect to the leader and catch up from its delta log, or from a snapshot if the log no longer holds
+     * every missed batch. Returns without waiting for the catch-up to complete.
+     *
+     * @throws IllegalStateException If the replica is already started.
+     */
+    void start();
+
+    /**
+     * @return The sequence of the last batch applied to the local cache, 0 if none.
+     */
+    long getAppliedSequence();
+
+    /**
+     * @return The highest batch sequence received from the leader, applied or not.
+     */
+    long getLatestSequence();
+
+    /**
+     * @return The time between the leader sending the last applied batch and the replica applying it.
+     */
+    Duration getReplicationDelay();
+
+    /**
+     * Wait until a batch is applied to the local cache, e.g. the sequence of a leader publication.
+     *
+     * @param sequence Batch sequence to wait for.
+     * @param timeout  Maximum time to wait.
+     * @return True if the batch was applied within the timeout.
+     */
+    boolean awaitSequence(long sequence, Duration timeout) throws InterruptedException;
+
+    @Override
+    void close();
+
+}
@@ -0,0 +1,19 @@
+package com.adaton.replication;
+
+/**
+ * Connection of a follower to the leader of a transport. Closing it stops the delivery of batches.
+ */
+public interface IReplicationConnection extends AutoCloseable {
+
+    /**
+     * Ask the leader for the batches sent after a given sequence. They are delivered to the follower's sink
+     * like the batches sent to every follower, with no ordering guarantee between the two.
+     *
+     * @param afterSequence Sequence of the last batch the follower applied, 0 if none.
+     */
+    void requestCatchUp(long afterSequence);
+
+    @Override
+    void close();
+
+}
@@ -0,0 +1,19 @@
+package com.adaton.replication;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives the replication batches of a leader, e.g. a follower cache.
+ */
+@FunctionalInterface
+public interface IReplicationSink {
+
+    /**
+     * Receive a replication batch: a delta of published prices, or a part of a snapshot answering a catch-up.
+     * Batches are received one at a time, and may be received more than once or out of sequence order.
+     *
+     * @param batch Encoded batch, read-only.
+     */
+    void onBatch(ByteBuffer batch);
+
+}
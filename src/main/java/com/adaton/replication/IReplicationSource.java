@@ -0,0 +1,18 @@
+package com.adaton.replication;
+
+/**
+ * Answers the catch-up requests of followers, e.g. a leader cache.
+ */
+@FunctionalInterface
+public interface IReplicationSource {
+
+    /**
+     * Send a follower the batches it missed, from the delta log if it still holds them, otherwise as a
+     * snapshot of every cached date followed by nothing else: later batches reach the follower as usual.
+     *
+     * @param afterSequence Sequence of the last batch the follower applied, 0 if none.
+     * @param sink          Receives the batches, on the calling thread.
+     */
+    void catchUp(long afterSequence, IReplicationSink sink);
+
+}
@@ -0,0 +1,33 @@
+package com.adaton.replication;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Carries replication batches from one leader to its followers, e.g. in-process or over the network.
+ */
+public interface IReplicationTransport {
+
+    /**
+     * Bind the leader answering the catch-up requests of followers.
+     *
+     * @param source Leader of the transport.
+     * @throws IllegalStateException If a leader is already bound.
+     */
+    void bind(IReplicationSource source);
+
+    /**
+     * Send a batch to every connected follower, without waiting for them to receive it.
+     *
+     * @param batch Encoded batch, read-only. The transport may keep it.
+     */
+    void send(ByteBuffer batch);
+
+    /**
+     * Connect a follower. Batches sent from then on are delivered to its sink.
+     *
+     * @param sink Receives the batches of the follower.
+     * @return The connection of the follower.
+     */
+    IReplicationConnection connect(IReplicationSink sink);
+
+}
@@ -0,0 +1,131 @@
+package com.adaton.replication.impl;
+
+import com.adaton.replication.IReplicationConnection;
+import com.adaton.replication.IReplicationSink;
+import com.adaton.replication.IReplicationSource;
+import com.adaton.replication.IReplicationTransport;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process transport between caches of the same JVM, e.g. for tests. Each follower receives its batches
+ * in the order they were sent, from a virtual thread started whenever batches are pending and no delivery is
+ * under way, so that the leader never waits for a follower.
+ */
+public class LoopbackReplicationTransport implements IReplicationTransport {
+
+    private final Set<Connection> connections;
+    private final LongAdder failedCount;
+    private volatile IReplicationSource replicationSource;
+
+    public LoopbackReplicationTransport() {
+        this.connections = ConcurrentHashMap.newKeySet();
+        this.failedCount = new LongAdder();
+    }
+
+    @Override
+    public synchronized void bind(IReplicationSource replicationSource) {
+        if (this.replicationSource != null)
+            throw new IllegalStateException("a leader is already bound to the transport");
+        this.replicationSource = Objects.requireNonNull(replicationSource);
+    }
+
+    @Override
+    public void send(ByteBuffer batch) {
+        for (Connection connection : connections) {
+            // Every follower reads the batch from its own position
+            final ByteBuffer followerBatch = batch.duplicate();
+            connection.deliver(() -> connection.sink.onBatch(followerBatch));
+        }
+    }
+
+    @Override
+    public IReplicationConnection connect(IReplicationSink sink) {
+        final Connection connection = new Connection(Objects.requireNonNull(sink));
+        connections.add(connection);
+        return connection;
+    }
+
+    /**
+     * @return The number of deliveries that threw an exception. The follower recovers the batch by catching up.
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    private class Connection implements IReplicationConnection {
+
+        private final IReplicationSink sink;
+
+        // Deliveries not yet run, in the order they were requested. Guarded by this.
+        private final ArrayDeque<Runnable> pendingDeliveries;
+        // True while a delivery thread runs. Guarded by this.
+        private boolean delivering;
+        private volatile boolean closed;
+
+        private Connection(IReplicationSink sink) {
+            this.sink = sink;
+            this.pendingDeliveries = new ArrayDeque<>();
+        }
+
+        @Override
+        public void requestCatchUp(long afterSequence) {
+            final IReplicationSource source = replicationSource;
+            if (source == null)
+                throw new IllegalStateException("no leader is bound to the transport");
+            // The catch-up runs on the delivery thread, in order with the batches sent before the request
+            deliver(() -> source.catchUp(afterSequence, sink));
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            connections.remove(this);
+            synchronized (this) {
+                pendingDeliveries.clear();
+            }
+        }
+
+        private void deliver(Runnable delivery) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                pendingDeliveries.add(delivery);
+                if (delivering) {
+                    return;
+                }
+                delivering = true;
+            }
+            Thread.ofVirtual().name("replication-loopback").start(this::runDeliveries);
+        }
+
+        private void runDeliveries() {
+            while (true) {
+                final Runnable delivery;
+                synchronized (this) {
+                    delivery = closed ? null : pendingDeliveries.poll();
+                    if (delivery == null) {
+                        delivering = false;
+                        return;
+                    }
+                }
+
+                try {
+                    delivery.run();
+                }
+                catch (RuntimeException e) {
+                    // Keep delivering, the follower asks for the batch again once it sees it missing
+                    failedCount.increment();
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,192 @@
+package com.adaton.replication.impl;
+
+import com.adaton.replication.IPriceReplica;
+import com.adaton.replication.IReplicationConnection;
+import com.adaton.replication.IReplicationTransport;
+import com.adaton.service.IInstrumentPriceCache;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Follower applying the batches of a leader to a local cache. Delta batches are applied in sequence order:
+ * a batch received ahead of a missing one is held back, and the leader is asked for the missing batches.
+ * The local cache is to be read only, and is best given the same retention policy as the leader's.
+ */
+public class PriceReplica implements IPriceReplica {
+
+    private final IInstrumentPriceCache instrumentPriceCache;
+    private final IReplicationTransport replicationTransport;
+
+    // Guards the fields below
+    private final ReentrantLock lock;
+    private final Condition batchApplied;
+
+    // Delta batches received ahead of a missing batch, by sequence
+    private final TreeMap<Long, ReplicationBatch> heldBackBatches;
+    private IReplicationConnection connection;
+    // Sequence of the snapshot being applied, 0 if none
+    private long snapshotSequence;
+    // True from a catch-up request until no batch is missing
+    private boolean catchingUp;
+
+    private volatile long appliedSequence;
+    private volatile long latestSequence;
+    private volatile long replicationDelayMillis;
+
+    public PriceReplica(IInstrumentPriceCache instrumentPriceCache, IReplicationTransport replicationTransport) {
+        this.instrumentPriceCache = Objects.requireNonNull(instrumentPriceCache);
+        this.replicationTransport = Objects.requireNonNull(replicationTransport);
+        this.lock = new ReentrantLock();
+        this.batchApplied = lock.newCondition();
+        this.heldBackBatches = new TreeMap<>();
+    }
+
+    /**
+     * @return The local cache the leader's prices are applied to.
+     */
+    public IInstrumentPriceCache getInstrumentPriceCache() {
+        return instrumentPriceCache;
+    }
+
+    @Override
+    public void start() {
+        lock.lock();
+        try {
+            if (connection != null)
+                throw new IllegalStateException("replica is already started");
+
+            // Connect before catching up, so that no batch sent in between is missed
+            connection = replicationTransport.connect(this::onBatch);
+            catchingUp = true;
+            connection.requestCatchUp(appliedSequence);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    @Override
+    public long getLatestSequence() {
+        return latestSequence;
+    }
+
+    @Override
+    public Duration getReplicationDelay() {
+        return Duration.ofMillis(replicationDelayMillis);
+    }
+
+    @Override
+    public boolean awaitSequence(long sequence, Duration timeout) throws InterruptedException {
+        long remainingNanos = timeout.toNanos();
+        lock.lock();
+        try {
+            while (appliedSequence < sequence) {
+                if (remainingNanos <= 0L) {
+                    return false;
+                }
+                remainingNanos = batchApplied.awaitNanos(remainingNanos);
+            }
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void onBatch(ByteBuffer batch) {
+        final ReplicationBatch replicationBatch = ReplicationBatch.decode(batch);
+        lock.lock();
+        try {
+            latestSequence = Math.max(latestSequence, replicationBatch.sequence());
+            if (replicationBatch.isSnapshot()) {
+                applySnapshotBatch(replicationBatch);
+            }
+            else {
+                applyDeltaBatch(replicationBatch);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // Called while holding the lock
+    private void applySnapshotBatch(ReplicationBatch replicationBatch) {
+        // A snapshot older than the applied batches would take prices back
+        if (replicationBatch.sequence() <= appliedSequence) {
+            return;
+        }
+        snapshotSequence = replicationBatch.sequence();
+        instrumentPriceCache.publishInstrumentPrices(replicationBatch.instrumentPrices());
+        if (replicationBatch.batchType() == ReplicationBatch.LAST_SNAPSHOT_BATCH) {
+            snapshotSequence = 0L;
+            applied(replicationBatch);
+        }
+    }
+
+    // Called while holding the lock
+    private void applyDeltaBatch(ReplicationBatch replicationBatch) {
+        // Batches up to the applied sequence, or reflected by the snapshot being applied, were resent by a catch-up
+        if (replicationBatch.sequence() <= Math.max(appliedSequence, snapshotSequence)) {
+            return;
+        }
+        if (replicationBatch.sequence() == appliedSequence + 1L && snapshotSequence == 0L) {
+            instrumentPriceCache.publishInstrumentPrices(replicationBatch.instrumentPrices());
+            applied(replicationBatch);
+            return;
+        }
+
+        // A batch is missing, e.g. sent before the replica connected or lost by the transport
+        heldBackBatches.put(replicationBatch.sequence(), replicationBatch);
+        if (! catchingUp) {
+            catchingUp = true;
+            connection.requestCatchUp(appliedSequence);
+        }
+    }
+
+    // Called while holding the lock
+    private void applied(ReplicationBatch replicationBatch) {
+        appliedSequence = replicationBatch.sequence();
+        replicationDelayMillis = Math.max(0L, System.currentTimeMillis() - replicationBatch.sentAtMillis());
+
+        // Apply the held back batches that now follow on
+        heldBackBatches.headMap(appliedSequence, true).clear();
+        for (Map.Entry<Long, ReplicationBatch> heldBackBatch = heldBackBatches.firstEntry();
+             heldBackBatch != null && heldBackBatch.getKey() == appliedSequence + 1L;
+             heldBackBatch = heldBackBatches.firstEntry()) {
+            heldBackBatches.pollFirstEntry();
+            instrumentPriceCache.publishInstrumentPrices(heldBackBatch.getValue().instrumentPrices());
+            appliedSequence = heldBackBatch.getKey();
+            replicationDelayMillis = Math.max(0L, System.currentTimeMillis() - heldBackBatch.getValue().sentAtMillis());
+        }
+        if (heldBackBatches.isEmpty()) {
+            catchingUp = false;
+        }
+        batchApplied.signalAll();
+    }
+
+}
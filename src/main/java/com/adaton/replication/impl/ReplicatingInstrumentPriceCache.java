@@ -0,0 +1,227 @@
+package com.adaton.replication.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.model.PriceAggregate;
+import com.adaton.model.PriceSubscriptionFilter;
+import com.adaton.model.PublishResult;
+import com.adaton.replication.IReplicationSink;
+import com.adaton.replication.IReplicationTransport;
+import com.adaton.service.IInstrumentPriceCache;
+import com.adaton.service.IInstrumentPriceSnapshot;
+import com.adaton.service.IPriceListener;
+import com.adaton.service.IPriceSubscription;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Cache stage that makes the underlying cache the leader of a replication transport. Every publication is
+ * encoded as a delta batch, numbered in the order it is applied to the underlying cache, and sent to every
+ * follower. The most recent batches are kept in a delta log, so that followers joining or missing batches
+ * catch up from the log, or from a snapshot of every cached date once the log no longer holds what they missed.
+ * Prices the underlying cache already held when it was wrapped count as sequence 1, which no log holds, so that
+ * followers joining from scratch receive them in a snapshot.
+ * <p>
+ * Publications are applied to the underlying cache one at a time, so that followers apply them in the same
+ * order; bulk publications keep the per-price cost of that ordering low.
+ */
+public class ReplicatingInstrumentPriceCache implements IInstrumentPriceCache {
+
+    public static final int DEFAULT_LOG_CAPACITY = 1024;
+
+    // Number of prices per snapshot batch
+    private static final int SNAPSHOT_BATCH_SIZE = 1 << 16;
+
+    private final IInstrumentPriceCache instrumentPriceCache;
+    private final IReplicationTransport replicationTransport;
+
+    // Held while a publication is applied and sent, and while the delta log is read
+    private final ReentrantLock publicationLock;
+    // Most recent delta batches, at their sequence modulo the capacity. Guarded by publicationLock.
+    private final ByteBuffer[] deltaLog;
+    // Sequence of the last batch sent. Written while holding publicationLock.
+    private volatile long sequence;
+    // Sequence of the prices held before any batch was sent, followers that applied less catch up from a snapshot
+    private final long initialSequence;
+
+    public ReplicatingInstrumentPriceCache(IInstrumentPriceCache instrumentPriceCache, IReplicationTransport replicationTransport) {
+        this(instrumentPriceCache, replicationTransport, DEFAULT_LOG_CAPACITY);
+    }
+
+    public ReplicatingInstrumentPriceCache(IInstrumentPriceCache instrumentPriceCache, IReplicationTransport replicationTransport, int logCapacity) {
+        if (logCapacity <= 0)
+            throw new IllegalArgumentException("logCapacity must be positive");
+
+        this.instrumentPriceCache = Objects.requireNonNull(instrumentPriceCache);
+        this.replicationTransport = Objects.requireNonNull(replicationTransport);
+        this.publicationLock = new ReentrantLock();
+        this.deltaLog = new ByteBuffer[logCapacity];
+        this.initialSequence = instrumentPriceCache.getCachedPriceDates().isEmpty() ? 0L : 1L;
+        this.sequence = initialSequence;
+        replicationTransport.bind(this::catchUp);
+    }
+
+    /**
+     * @return The sequence of the last batch sent to followers, 0 if none, or 1 if none but the underlying cache
+     *         held prices when it was wrapped. A follower that applied it holds every price published so far.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public void publishInstrumentPrice(InstrumentPrice instrumentPrice) {
+        // Encoding needs no ordering, only applying and sending the batch does
+        final byte[] batch = ReplicationBatch.encode(ReplicationBatch.DELTA_BATCH, List.of(instrumentPrice));
+        publicationLock.lock();
+        try {
+            instrumentPriceCache.publishInstrumentPrice(instrumentPrice);
+            send(batch);
+        }
+        finally {
+            publicationLock.unlock();
+        }
+    }
+
+    @Override
+    public PublishResult publishInstrumentPrices(Collection<InstrumentPrice> instrumentPrices) {
+        if (instrumentPrices.isEmpty()) {
+            return instrumentPriceCache.publishInstrumentPrices(instrumentPrices);
+        }
+
+        final byte[] batch = ReplicationBatch.encode(ReplicationBatch.DELTA_BATCH, instrumentPrices);
+        publicationLock.lock();
+        try {
+            final PublishResult publishResult = instrumentPriceCache.publishInstrumentPrices(instrumentPrices);
+            send(batch);
+            return publishResult;
+        }
+        finally {
+            publicationLock.unlock();
+        }
+    }
+
+    @Override
+    public Map<String, InstrumentPrice> getInstrumentPrice(String instrumentId, LocalDate priceDate) {
+        return instrumentPriceCache.getInstrumentPrice(instrumentId, priceDate);
+    }
+
+    @Override
+    public Map<String, InstrumentPrice> getAllInstrumentPricesForVendor(String vendorId, LocalDate priceDate) {
+        return instrumentPriceCache.getAllInstrumentPricesForVendor(vendorId, priceDate);
+    }
+
+    @Override
+    public double getPrice(String vendorId, String instrumentId, LocalDate priceDate) {
+        return instrumentPriceCache.getPrice(vendorId, instrumentId, priceDate);
+    }
+
+    @Override
+    public PriceAggregate getPriceAggregate(String instrumentId, LocalDate priceDate) {
+        return instrumentPriceCache.getPriceAggregate(instrumentId, priceDate);
+    }
+
+    @Override
+    public void getAllPriceAggregates(LocalDate priceDate, BiConsumer<String, PriceAggregate> consumer) {
+        instrumentPriceCache.getAllPriceAggregates(priceDate, consumer);
+    }
+
+    @Override
+    public void getInstrumentPrices(
+            Collection<String> instrumentIds,
+            LocalDate fromDate,
+            LocalDate toDate,
+            boolean parallel,
+            Consumer<InstrumentPrice> consumer) {
+        instrumentPriceCache.getInstrumentPrices(instrumentIds, fromDate, toDate, parallel, consumer);
+    }
+
+    @Override
+    public void getAllInstrumentPricesForVendors(
+            Collection<String> vendorIds,
+            LocalDate fromDate,
+            LocalDate toDate,
+            boolean parallel,
+            Consumer<InstrumentPrice> consumer) {
+        instrumentPriceCache.getAllInstrumentPricesForVendors(vendorIds, fromDate, toDate, parallel, consumer);
+    }
+
+    @Override
+    public NavigableSet<LocalDate> getCachedPriceDates() {
+        return instrumentPriceCache.getCachedPriceDates();
+    }
+
+    @Override
+    public IInstrumentPriceSnapshot getSnapshot(LocalDate priceDate) {
+        return instrumentPriceCache.getSnapshot(priceDate);
+    }
+
+    @Override
+    public IPriceSubscription subscribe(PriceSubscriptionFilter filter, IPriceListener listener) {
+        return instrumentPriceCache.subscribe(filter, listener);
+    }
+
+    // Called while holding publicationLock
+    private void send(byte[] batch) {
+        final long batchSequence = sequence + 1L;
+        final ByteBuffer stampedBatch = ReplicationBatch.stamp(batch, batchSequence, System.currentTimeMillis());
+        deltaLog[(int) (batchSequence % deltaLog.length)] = stampedBatch;
+        sequence = batchSequence;
+        replicationTransport.send(stampedBatch.duplicate());
+    }
+
+    private void catchUp(long afterSequence, IReplicationSink sink) {
+        final List<ByteBuffer> missedBatches = new ArrayList<>();
+        final List<LocalDate> snapshotDates = new ArrayList<>();
+        final long snapshotSequence;
+        final boolean fromDeltaLog;
+        publicationLock.lock();
+        try {
+            snapshotSequence = sequence;
+            fromDeltaLog =
+                afterSequence >= initialSequence && afterSequence <= snapshotSequence && snapshotSequence - afterSequence <= deltaLog.length;
+            if (fromDeltaLog) {
+                for (long batchSequence = afterSequence + 1L; batchSequence <= snapshotSequence; batchSequence++) {
+                    missedBatches.add(deltaLog[(int) (batchSequence % deltaLog.length)].duplicate());
+                }
+            }
+            else {
+                snapshotDates.addAll(instrumentPriceCache.getCachedPriceDates());
+            }
+        }
+        finally {
+            publicationLock.unlock();
+        }
+
+        if (fromDeltaLog) {
+            missedBatches.forEach(sink::onBatch);
+            return;
+        }
+
+        // Take and encode the snapshots outside the lock, so that publications go on meanwhile. A snapshot may hold
+        // prices of batches after the snapshot sequence: the follower applies those batches again over it, in order,
+        // which leaves every price as the leader holds it. The last part tells the follower the snapshot is complete.
+        final long sentAtMillis = System.currentTimeMillis();
+        final List<InstrumentPrice> snapshotPrices = new ArrayList<>(SNAPSHOT_BATCH_SIZE);
+        for (LocalDate snapshotDate : snapshotDates) {
+            instrumentPriceCache.getSnapshot(snapshotDate).forEachInstrumentPrice(instrumentPrice -> {
+                snapshotPrices.add(instrumentPrice);
+                if (snapshotPrices.size() == SNAPSHOT_BATCH_SIZE) {
+                    sink.onBatch(ReplicationBatch.stamp(ReplicationBatch.encode(ReplicationBatch.SNAPSHOT_BATCH, snapshotPrices), snapshotSequence, sentAtMillis));
+                    snapshotPrices.clear();
+                }
+            });
+        }
+        sink.onBatch(ReplicationBatch.stamp(ReplicationBatch.encode(ReplicationBatch.LAST_SNAPSHOT_BATCH, snapshotPrices), snapshotSequence, sentAtMillis));
+    }
+
+}
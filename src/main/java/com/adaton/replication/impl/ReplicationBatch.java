@@ -0,0 +1,170 @@
+package com.adaton.replication.impl;
+
+import com.adaton.model.InstrumentPrice;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replication batch and its binary encoding:
+ * <pre>
+ * byte   batch type
+ * long   sequence
+ * long   time sent, in epoch milliseconds
+ * varint date count, then for each date:
+ *   int    epoch day
+ *   varint price count, then for each price:
+ *     varint vendor index, followed by the vendor ID on its first use in the batch
+ *     varint instrument index, followed by the instrument ID on its first use in the batch
+ *     double price
+ * </pre>
+ * IDs are written as a varint length and UTF-8 bytes, and only once per batch.
+ */
+record ReplicationBatch(
+        byte batchType,
+        // Delta batches are numbered from 1 in publication order, snapshot parts carry the sequence they reflect
+        long sequence,
+        long sentAtMillis,
+        List<InstrumentPrice> instrumentPrices) {
+
+    static final byte DELTA_BATCH = 1;
+    static final byte SNAPSHOT_BATCH = 2;
+    static final byte LAST_SNAPSHOT_BATCH = 3;
+
+    // Offsets of the fields stamped when a batch is sent
+    private static final int SEQUENCE_OFFSET = 1;
+    private static final int SENT_AT_OFFSET = SEQUENCE_OFFSET + Long.BYTES;
+
+    boolean isSnapshot() {
+        return batchType != DELTA_BATCH;
+    }
+
+    /**
+     * Encode a group of prices, leaving the sequence and time sent to be stamped. Prices keep their order
+     * within each date, so that the last price of a key wins on both sides.
+     */
+    static byte[] encode(byte batchType, Collection<InstrumentPrice> instrumentPrices) {
+        final Map<LocalDate, List<InstrumentPrice>> pricesByDate = new LinkedHashMap<>();
+        for (InstrumentPrice instrumentPrice : instrumentPrices) {
+            pricesByDate.computeIfAbsent(instrumentPrice.priceDate(), priceDate -> new ArrayList<>()).add(instrumentPrice);
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + instrumentPrices.size() * 12);
+        final DataOutputStream output = new DataOutputStream(bytes);
+        final Map<String, Integer> vendorIndices = new HashMap<>();
+        final Map<String, Integer> instrumentIndices = new HashMap<>();
+        try {
+            output.writeByte(batchType);
+            output.writeLong(0L);
+            output.writeLong(0L);
+            writeVarInt(output, pricesByDate.size());
+            for (Map.Entry<LocalDate, List<InstrumentPrice>> pricesForDate : pricesByDate.entrySet()) {
+                output.writeInt((int) pricesForDate.getKey().toEpochDay());
+                writeVarInt(output, pricesForDate.getValue().size());
+                for (InstrumentPrice instrumentPrice : pricesForDate.getValue()) {
+                    writeSymbol(output, vendorIndices, instrumentPrice.vendorId());
+                    writeSymbol(output, instrumentIndices, instrumentPrice.instrumentId());
+                    output.writeDouble(instrumentPrice.price());
+                }
+            }
+        }
+        catch (IOException e) {
+            // Writes to an in-memory stream do not fail
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Stamp an encoded batch with its sequence and the time it is sent.
+     *
+     * @return A read-only buffer over the batch.
+     */
+    static ByteBuffer stamp(byte[] batch, long sequence, long sentAtMillis) {
+        final ByteBuffer buffer = ByteBuffer.wrap(batch);
+        buffer.putLong(SEQUENCE_OFFSET, sequence);
+        buffer.putLong(SENT_AT_OFFSET, sentAtMillis);
+        return buffer.asReadOnlyBuffer();
+    }
+
+    static ReplicationBatch decode(ByteBuffer batch) {
+        final ByteBuffer input = batch.duplicate();
+        final byte batchType = input.get();
+        if (batchType < DELTA_BATCH || batchType > LAST_SNAPSHOT_BATCH)
+            throw new IllegalArgumentException("unknown batch type " + batchType);
+        final long sequence = input.getLong();
+        final long sentAtMillis = input.getLong();
+
+        final List<String> vendorIds = new ArrayList<>();
+        final List<String> instrumentIds = new ArrayList<>();
+        final List<InstrumentPrice> instrumentPrices = new ArrayList<>();
+        for (int dateCount = readVarInt(input); dateCount > 0; dateCount--) {
+            final LocalDate priceDate = LocalDate.ofEpochDay(input.getInt());
+            for (int priceCount = readVarInt(input); priceCount > 0; priceCount--) {
+                final String vendorId = readSymbol(input, vendorIds);
+                final String instrumentId = readSymbol(input, instrumentIds);
+                instrumentPrices.add(new InstrumentPrice(vendorId, instrumentId, priceDate, input.getDouble()));
+            }
+        }
+        return new ReplicationBatch(batchType, sequence, sentAtMillis, instrumentPrices);
+    }
+
+    private static void writeSymbol(DataOutputStream output, Map<String, Integer> symbolIndices, String symbol) throws IOException {
+        final Integer symbolIndex = symbolIndices.get(symbol);
+        if (symbolIndex != null) {
+            writeVarInt(output, symbolIndex);
+            return;
+        }
+        // A new symbol takes the next index, and is defined where it is first used
+        final byte[] symbolBytes = symbol.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(output, symbolIndices.size());
+        symbolIndices.put(symbol, symbolIndices.size());
+        writeVarInt(output, symbolBytes.length);
+        output.write(symbolBytes);
+    }
+
+    private static String readSymbol(ByteBuffer input, List<String> symbols) {
+        final int symbolIndex = readVarInt(input);
+        if (symbolIndex < symbols.size()) {
+            return symbols.get(symbolIndex);
+        }
+        if (symbolIndex > symbols.size())
+            throw new IllegalArgumentException("undefined symbol index " + symbolIndex);
+        final byte[] symbolBytes = new byte[readVarInt(input)];
+        input.get(symbolBytes);
+        final String symbol = new String(symbolBytes, StandardCharsets.UTF_8);
+        symbols.add(symbol);
+        return symbol;
+    }
+
+    private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuffer input) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            final byte encodedByte = input.get();
+            value |= (encodedByte & 0x7F) << shift;
+            if (encodedByte >= 0) {
+                return value;
+            }
+        }
+    }
+
+}
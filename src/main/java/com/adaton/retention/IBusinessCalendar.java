@@ -0,0 +1,13 @@
+package com.adaton.retention;
+
+import java.time.LocalDate;
+
+public interface IBusinessCalendar {
+
+    /**
+     * @param date Calendar date.
+     * @return True if prices are published for the date.
+     */
+    boolean isBusinessDay(LocalDate date);
+
+}
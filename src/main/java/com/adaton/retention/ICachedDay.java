@@ -0,0 +1,31 @@
+package com.adaton.retention;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Cached price date as seen by a retention policy. Counts and estimates are computed on first use.
+ */
+public interface ICachedDay {
+
+    /**
+     * @return Trading date of the prices cached for the day.
+     */
+    LocalDate getPriceDate();
+
+    /**
+     * @return The number of prices cached for the day.
+     */
+    long getPriceCount();
+
+    /**
+     * @return An estimate of the memory held by the indices of the day, in bytes.
+     */
+    long estimateMemoryBytes();
+
+    /**
+     * @return A map that associates a vendor ID (key) to the number of prices cached for the vendor (value).
+     */
+    Map<String, Long> getPriceCountByVendor();
+
+}
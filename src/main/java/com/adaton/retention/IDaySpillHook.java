@@ -0,0 +1,17 @@
+package com.adaton.retention;
+
+import com.adaton.service.IInstrumentPriceSnapshot;
+
+import java.io.IOException;
+
+public interface IDaySpillHook {
+
+    /**
+     * Receive the prices of a date evicted from the cache, e.g. to move them to disk or to a compressed store.
+     * Called on the retention thread once the date is no longer cached.
+     *
+     * @param evictedDay Snapshot of the prices of the evicted date.
+     */
+    void spill(IInstrumentPriceSnapshot evictedDay) throws IOException;
+
+}
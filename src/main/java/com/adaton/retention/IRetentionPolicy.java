@@ -0,0 +1,30 @@
+package com.adaton.retention;
+
+import java.time.LocalDate;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+
+public interface IRetentionPolicy {
+
+    /**
+     * Select the cached dates to evict. Called on the retention thread, never on a publishing thread.
+     *
+     * @param cachedDays Map of [Price date --> Cached day] of every cached date, in ascending date order.
+     * @return The dates to evict.
+     */
+    Set<LocalDate> selectEvictedDates(NavigableMap<LocalDate, ICachedDay> cachedDays);
+
+    /**
+     * Resolve the earliest price date that may still be published, given the dates retained by the last
+     * eviction. Prices for earlier dates are rejected on publication, so that a date is not cached only to be
+     * evicted again.
+     *
+     * @param retainedDates Dates retained by the last eviction, in ascending order.
+     * @return The earliest admitted price date, or null if every date is admitted.
+     */
+    default LocalDate getEarliestAdmittedDate(NavigableSet<LocalDate> retainedDates) {
+        return null;
+    }
+
+}
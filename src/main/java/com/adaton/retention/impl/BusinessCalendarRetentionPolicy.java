@@ -0,0 +1,67 @@
+package com.adaton.retention.impl;
+
+import com.adaton.retention.IBusinessCalendar;
+import com.adaton.retention.ICachedDay;
+import com.adaton.retention.IRetentionPolicy;
+
+import java.time.LocalDate;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Retains the dates that fall on one of the most recent business days of a calendar, counted back from the
+ * latest cached date. Business days without cached prices still count towards the window, and dates that
+ * are not business days are evicted.
+ */
+public class BusinessCalendarRetentionPolicy implements IRetentionPolicy {
+
+    // Bounds the search for business days, in case the calendar has none
+    private static final int MAX_CALENDAR_DAYS_SEARCHED = 3660;
+
+    private final IBusinessCalendar businessCalendar;
+    private final int maxBusinessDayCount;
+
+    public BusinessCalendarRetentionPolicy(IBusinessCalendar businessCalendar, int maxBusinessDayCount) {
+        if (maxBusinessDayCount <= 0) {
+            throw new IllegalArgumentException("maxBusinessDayCount must be positive");
+        }
+        this.businessCalendar = businessCalendar;
+        this.maxBusinessDayCount = maxBusinessDayCount;
+    }
+
+    @Override
+    public Set<LocalDate> selectEvictedDates(NavigableMap<LocalDate, ICachedDay> cachedDays) {
+        if (cachedDays.isEmpty()) {
+            return Set.of();
+        }
+
+        final LocalDate windowStart = windowStart(cachedDays.lastKey());
+        return cachedDays.navigableKeySet()
+            .stream()
+            .filter(priceDate -> priceDate.isBefore(windowStart) || ! businessCalendar.isBusinessDay(priceDate))
+            .collect(Collectors.toSet());
+    }
+
+    @Override
+    public LocalDate getEarliestAdmittedDate(NavigableSet<LocalDate> retainedDates) {
+        return retainedDates.isEmpty() ? null : windowStart(retainedDates.last());
+    }
+
+    // Returns the earliest business day of the window that ends on the latest date
+    private LocalDate windowStart(LocalDate latestDate) {
+        LocalDate windowStart = latestDate;
+        int businessDayCount = 0;
+        for (LocalDate date = latestDate; ! date.isBefore(latestDate.minusDays(MAX_CALENDAR_DAYS_SEARCHED)); date = date.minusDays(1L)) {
+            if (businessCalendar.isBusinessDay(date)) {
+                windowStart = date;
+                if (++businessDayCount == maxBusinessDayCount) {
+                    break;
+                }
+            }
+        }
+        return windowStart;
+    }
+
+}
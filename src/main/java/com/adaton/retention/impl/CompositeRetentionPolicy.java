@@ -0,0 +1,45 @@
+package com.adaton.retention.impl;
+
+import com.adaton.retention.ICachedDay;
+import com.adaton.retention.IRetentionPolicy;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+
+/**
+ * Evicts every date evicted by any of its policies.
+ */
+public class CompositeRetentionPolicy implements IRetentionPolicy {
+
+    private final List<IRetentionPolicy> retentionPolicies;
+
+    public CompositeRetentionPolicy(IRetentionPolicy... retentionPolicies) {
+        this.retentionPolicies = List.of(retentionPolicies);
+    }
+
+    @Override
+    public Set<LocalDate> selectEvictedDates(NavigableMap<LocalDate, ICachedDay> cachedDays) {
+        final Set<LocalDate> evictedDates = new HashSet<>();
+        for (IRetentionPolicy retentionPolicy : retentionPolicies) {
+            evictedDates.addAll(retentionPolicy.selectEvictedDates(cachedDays));
+        }
+        return evictedDates;
+    }
+
+    @Override
+    public LocalDate getEarliestAdmittedDate(NavigableSet<LocalDate> retainedDates) {
+        LocalDate earliestAdmittedDate = null;
+        for (IRetentionPolicy retentionPolicy : retentionPolicies) {
+            final LocalDate admittedDate = retentionPolicy.getEarliestAdmittedDate(retainedDates);
+            if (admittedDate != null && (earliestAdmittedDate == null || admittedDate.isAfter(earliestAdmittedDate))) {
+                earliestAdmittedDate = admittedDate;
+            }
+        }
+        return earliestAdmittedDate;
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.adaton.retention.impl;
+
+import com.adaton.retention.ICachedDay;
+import com.adaton.retention.IRetentionPolicy;
+
+import java.time.LocalDate;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Retains the most recent dates, up to a maximum number of dates.
+ */
+public class DayCountRetentionPolicy implements IRetentionPolicy {
+
+    private final int maxDayCount;
+
+    public DayCountRetentionPolicy(int maxDayCount) {
+        if (maxDayCount <= 0) {
+            throw new IllegalArgumentException("maxDayCount must be positive");
+        }
+        this.maxDayCount = maxDayCount;
+    }
+
+    @Override
+    public Set<LocalDate> selectEvictedDates(NavigableMap<LocalDate, ICachedDay> cachedDays) {
+        return cachedDays.navigableKeySet()
+            .stream()
+            .limit(Math.max(cachedDays.size() - maxDayCount, 0))
+            .collect(Collectors.toSet());
+    }
+
+    @Override
+    public LocalDate getEarliestAdmittedDate(NavigableSet<LocalDate> retainedDates) {
+        // Once the window is full, a date older than every retained date would be evicted straight away
+        return retainedDates.size() >= maxDayCount ? retainedDates.first() : null;
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.adaton.retention.impl;
+
+import com.adaton.retention.ICachedDay;
+import com.adaton.retention.IRetentionPolicy;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.NavigableMap;
+import java.util.Set;
+
+/**
+ * Retains the most recent dates whose estimated memory fits in a budget. The latest date is always retained.
+ */
+public class MemoryBudgetRetentionPolicy implements IRetentionPolicy {
+
+    private final long maxMemoryBytes;
+
+    public MemoryBudgetRetentionPolicy(long maxMemoryBytes) {
+        if (maxMemoryBytes <= 0L) {
+            throw new IllegalArgumentException("maxMemoryBytes must be positive");
+        }
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    @Override
+    public Set<LocalDate> selectEvictedDates(NavigableMap<LocalDate, ICachedDay> cachedDays) {
+        final Set<LocalDate> evictedDates = new HashSet<>();
+        long retainedMemoryBytes = 0L;
+        for (ICachedDay cachedDay : cachedDays.descendingMap().values()) {
+            retainedMemoryBytes += cachedDay.estimateMemoryBytes();
+            // Once the budget is exceeded, every earlier date is evicted as well
+            if (! evictedDates.isEmpty() || (retainedMemoryBytes > maxMemoryBytes && ! cachedDay.getPriceDate().equals(cachedDays.lastKey()))) {
+                evictedDates.add(cachedDay.getPriceDate());
+            }
+        }
+        return evictedDates;
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.adaton.retention.impl;
+
+import com.adaton.retention.ICachedDay;
+import com.adaton.retention.IRetentionPolicy;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+
+/**
+ * Retains the most recent dates for as long as no vendor holds more prices than a cap across the retained
+ * dates. The latest date is always retained.
+ */
+public class VendorCapRetentionPolicy implements IRetentionPolicy {
+
+    private final long maxPricesPerVendor;
+
+    public VendorCapRetentionPolicy(long maxPricesPerVendor) {
+        if (maxPricesPerVendor <= 0L) {
+            throw new IllegalArgumentException("maxPricesPerVendor must be positive");
+        }
+        this.maxPricesPerVendor = maxPricesPerVendor;
+    }
+
+    @Override
+    public Set<LocalDate> selectEvictedDates(NavigableMap<LocalDate, ICachedDay> cachedDays) {
+        final Set<LocalDate> evictedDates = new HashSet<>();
+        final Map<String, Long> retainedPriceCounts = new HashMap<>();
+        for (ICachedDay cachedDay : cachedDays.descendingMap().values()) {
+            if (! evictedDates.isEmpty()) {
+                // Every date earlier than an evicted date is evicted as well
+                evictedDates.add(cachedDay.getPriceDate());
+                continue;
+            }
+
+            boolean exceedsCap = false;
+            for (Map.Entry<String, Long> priceCount : cachedDay.getPriceCountByVendor().entrySet()) {
+                if (retainedPriceCounts.merge(priceCount.getKey(), priceCount.getValue(), Long::sum) > maxPricesPerVendor) {
+                    exceedsCap = true;
+                }
+            }
+            if (exceedsCap && ! cachedDay.getPriceDate().equals(cachedDays.lastKey())) {
+                evictedDates.add(cachedDay.getPriceDate());
+            }
+        }
+        return evictedDates;
+    }
+
+}
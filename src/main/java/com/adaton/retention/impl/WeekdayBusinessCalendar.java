@@ -0,0 +1,30 @@
+package com.adaton.retention.impl;
+
+import com.adaton.retention.IBusinessCalendar;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Business calendar of the weekdays from Monday to Friday, less a set of holidays.
+ */
+public class WeekdayBusinessCalendar implements IBusinessCalendar {
+
+    private final Set<LocalDate> holidays;
+
+    public WeekdayBusinessCalendar() {
+        this(Set.of());
+    }
+
+    public WeekdayBusinessCalendar(Set<LocalDate> holidays) {
+        this.holidays = Set.copyOf(holidays);
+    }
+
+    @Override
+    public boolean isBusinessDay(LocalDate date) {
+        final DayOfWeek dayOfWeek = date.getDayOfWeek();
+        return dayOfWeek != DayOfWeek.SATURDAY && dayOfWeek != DayOfWeek.SUNDAY && ! holidays.contains(date);
+    }
+
+}
@@ -1,10 +1,16 @@
 package com.adaton.service;
 
 import com.adaton.model.InstrumentPrice;
+import com.adaton.model.PriceAggregate;
+import com.adaton.model.PriceSubscriptionFilter;
+import com.adaton.model.PublishResult;
 
 import java.time.LocalDate;
 import java.util.Collection;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public interface IInstrumentPriceCache {
 
@@ -17,10 +23,14 @@ public interface IInstrumentPriceCache {
 
     /**
      * Publish a collection of instrument prices to the cache.
+     * The batch is partitioned by price date and each date is looked up once. Prices for dates that fall
+     * outside the retained window are rejected rather than published. When the batch holds more than one
+     * price for the same vendor, instrument and date, the last one in iteration order is kept.
      *
      * @param instrumentPrices Collection of instrument prices to be published.
+     * @return Accepted, rejected and superseded price counts for the batch.
      */
-    void publishInstrumentPrices(Collection<InstrumentPrice> instrumentPrices);
+    PublishResult publishInstrumentPrices(Collection<InstrumentPrice> instrumentPrices);
 
     /**
      * Retrieve all instrument prices stored in the cache for the specified instrument ID.
@@ -48,4 +58,111 @@ public interface IInstrumentPriceCache {
             String vendorId,
             LocalDate priceDate);
 
+    /**
+     * Retrieve the price of an instrument from a vendor, without creating a price object or a map.
+     * A price published as NaN cannot be told apart from a missing one.
+     *
+     * @param vendorId     Vendor ID of the price.
+     * @param instrumentId Instrument ID of the price.
+     * @param priceDate    Trading date for the price.
+     * @return The price, or NaN if the cache holds no price for the vendor, instrument and date.
+     */
+    double getPrice(
+            String vendorId,
+            String instrumentId,
+            LocalDate priceDate);
+
+    /**
+     * Retrieve the aggregate of the prices of an instrument across vendors: vendor count, lowest, highest and
+     * summed price, and the consensus (median) price. The aggregate is computed on the first lookup and kept
+     * until a price of the instrument is published again, so repeated lookups do not revisit the vendor prices.
+     * NaN prices are left out of the aggregate.
+     *
+     * @param instrumentId Instrument ID for which prices are to be aggregated.
+     * @param priceDate    Trading date for prices.
+     * @return The aggregate, or null if the cache holds no price for the instrument and date.
+     */
+    PriceAggregate getPriceAggregate(
+            String instrumentId,
+            LocalDate priceDate);
+
+    /**
+     * Retrieve the aggregate of the prices of every instrument with prices for a date, e.g. the consensus
+     * price of each instrument. Aggregates are handed to the consumer in no particular order.
+     *
+     * @param priceDate Trading date for prices.
+     * @param consumer  Receives the instrument ID and the aggregate of each instrument.
+     */
+    void getAllPriceAggregates(
+            LocalDate priceDate,
+            BiConsumer<String, PriceAggregate> consumer);
+
+    /**
+     * Retrieve the instrument prices of several instruments over a range of price dates. Each cached date in
+     * the range is looked up once, and the prices are handed to the consumer as they are found, without being
+     * collected into maps. Dates and instruments that are not cached are skipped.
+     *
+     * @param instrumentIds Instrument IDs for which prices are to be retrieved.
+     * @param fromDate      First trading date of the range, inclusive.
+     * @param toDate        Last trading date of the range, inclusive.
+     * @param parallel      True to visit the dates of the range concurrently, in which case the consumer must
+     *                      be thread-safe and prices are not handed over in date order.
+     * @param consumer      Receives every instrument price found.
+     */
+    void getInstrumentPrices(
+            Collection<String> instrumentIds,
+            LocalDate fromDate,
+            LocalDate toDate,
+            boolean parallel,
+            Consumer<InstrumentPrice> consumer);
+
+    /**
+     * Retrieve all instrument prices of several vendors over a range of price dates. Each cached date in the
+     * range is looked up once, and the prices are handed to the consumer as they are found, without being
+     * collected into maps. Dates and vendors that are not cached are skipped.
+     *
+     * @param vendorIds Vendor IDs for which instrument prices are to be retrieved.
+     * @param fromDate  First trading date of the range, inclusive.
+     * @param toDate    Last trading date of the range, inclusive.
+     * @param parallel  True to visit the dates of the range concurrently, in which case the consumer must be
+     *                  thread-safe and prices are not handed over in date order.
+     * @param consumer  Receives every instrument price found.
+     */
+    void getAllInstrumentPricesForVendors(
+            Collection<String> vendorIds,
+            LocalDate fromDate,
+            LocalDate toDate,
+            boolean parallel,
+            Consumer<InstrumentPrice> consumer);
+
+    /**
+     * Retrieve the price dates currently held in the cache.
+     *
+     * @return A read-only view of the cached price dates, in ascending order.
+     */
+    NavigableSet<LocalDate> getCachedPriceDates();
+
+    /**
+     * Take an immutable, point-in-time snapshot of the prices cached for a price date. The snapshot covers both
+     * the instrument and the vendor view of the date: a price is visible through both of them or through
+     * neither. Prices published afterwards, or the eviction of the date, do not affect the snapshot.
+     *
+     * @param priceDate Trading date for prices.
+     * @return A snapshot of the prices for the date, empty if the date is not cached.
+     */
+    IInstrumentPriceSnapshot getSnapshot(LocalDate priceDate);
+
+    /**
+     * Subscribe to the price changes of the cache instead of polling it. Every publication that passes the filter
+     * is received as a NEW or UPDATED change, and every evicted date that passes the filter as a DAY_EVICTED
+     * change. Changes are delivered in batches on a separate thread, and pending changes to the same vendor,
+     * instrument and date are conflated. Changes are dropped, and counted, when a slow listener lets too many
+     * changes pile up.
+     *
+     * @param filter   Prices and dates whose changes are received.
+     * @param listener Receives the changes.
+     * @return The subscription, to be closed once the changes are no longer needed.
+     */
+    IPriceSubscription subscribe(PriceSubscriptionFilter filter, IPriceListener listener);
+
 }
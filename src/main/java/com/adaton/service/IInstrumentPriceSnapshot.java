@@ -0,0 +1,43 @@
+package com.adaton.service;
+
+import com.adaton.model.InstrumentPrice;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Immutable, point-in-time view of the prices cached for one price date. Prices published after the snapshot
+ * was taken are not visible through it, and the maps it returns never change while they are iterated.
+ */
+public interface IInstrumentPriceSnapshot {
+
+    /**
+     * @return Trading date of the prices held in the snapshot.
+     */
+    LocalDate getPriceDate();
+
+    /**
+     * Retrieve all instrument prices held in the snapshot for the specified instrument ID.
+     *
+     * @param instrumentId Instrument ID for which prices are to be retrieved.
+     * @return A map that associates a vendor ID (key) to its price (value).
+     */
+    Map<String, InstrumentPrice> getInstrumentPrice(String instrumentId);
+
+    /**
+     * Retrieve all instrument prices held in the snapshot for the specified vendor ID.
+     *
+     * @param vendorId Vendor ID for which instrument prices are to be retrieved.
+     * @return A map that associates an instrument ID (key) to its price (value).
+     */
+    Map<String, InstrumentPrice> getAllInstrumentPricesForVendor(String vendorId);
+
+    /**
+     * Visit every instrument price held in the snapshot.
+     *
+     * @param action Action to be performed on each instrument price.
+     */
+    void forEachInstrumentPrice(Consumer<InstrumentPrice> action);
+
+}
@@ -0,0 +1,22 @@
+package com.adaton.service;
+
+import com.adaton.model.PriceChangeEvent;
+
+import java.util.List;
+
+/**
+ * Receives the price changes of a subscription. Batches are delivered one at a time, on a virtual thread rather
+ * than on the publishing thread, so a slow listener delays its own subscription only.
+ */
+@FunctionalInterface
+public interface IPriceListener {
+
+    /**
+     * Receive a batch of price changes. Changes to the same vendor, instrument and date that were still pending
+     * are conflated into one change: the latest price, and the price it replaced before the first of them.
+     *
+     * @param priceChanges Price changes, in the order their keys first changed since the previous batch.
+     */
+    void onPriceChanges(List<PriceChangeEvent> priceChanges);
+
+}
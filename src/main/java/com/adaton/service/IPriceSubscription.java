@@ -0,0 +1,21 @@
+package com.adaton.service;
+
+/**
+ * Subscription to the price changes of a cache. Closing it stops the delivery of pending changes.
+ */
+public interface IPriceSubscription extends AutoCloseable {
+
+    /**
+     * @return The number of price changes dropped because the changes pending delivery had reached capacity.
+     */
+    long getDroppedCount();
+
+    /**
+     * @return The number of batches whose delivery threw an exception.
+     */
+    long getFailedCount();
+
+    @Override
+    void close();
+
+}
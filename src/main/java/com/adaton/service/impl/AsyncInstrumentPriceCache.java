@@ -0,0 +1,394 @@
+package com.adaton.service.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.model.PriceAggregate;
+import com.adaton.model.PriceSubscriptionFilter;
+import com.adaton.model.PublishResult;
+import com.adaton.service.IInstrumentPriceCache;
+import com.adaton.service.IInstrumentPriceSnapshot;
+import com.adaton.service.IPriceListener;
+import com.adaton.service.IPriceSubscription;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Cache stage that publishes asynchronously. Publishing threads place prices in preallocated ring buffers,
+ * one per shard of the instrument ID space, without locking or allocating. One applier thread per shard
+ * drains its ring buffer in batches into the underlying cache through its bulk publication path.
+ * <p>
+ * All prices of an instrument go through the same shard, so prices published by one thread for a given
+ * instrument are applied in publication order. Prices become visible to readers once applied; awaitVisibility
+ * waits for every price published before the call.
+ */
+public class AsyncInstrumentPriceCache implements IInstrumentPriceCache, AutoCloseable {
+
+    /**
+     * What a publishing thread does when the ring buffer of its shard is full.
+     */
+    public enum BackpressurePolicy {
+        // Wait until the applier frees a slot
+        BLOCK,
+        // Discard the oldest price of the ring buffer to make room
+        DROP_OLDEST,
+        // Throw a RejectedExecutionException
+        FAIL_FAST
+    }
+
+    private static final int DEFAULT_RING_BUFFER_CAPACITY = 1 << 16;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 4096;
+
+    // Number of empty polls an idle applier spins for before parking
+    private static final int IDLE_SPIN_COUNT = 100;
+    private static final long IDLE_PARK_NANOS = 50_000L;
+
+    // Longs between two publisher count cells, so that each cell has its own cache line
+    private static final int PUBLISHER_COUNT_CELL_STRIDE = 16;
+
+    private final IInstrumentPriceCache instrumentPriceCache;
+    private final BackpressurePolicy backpressurePolicy;
+    private final int maxBatchSize;
+    private final Shard[] shards;
+    // Number of publishing threads between their check of closed and the end of their offer, striped by thread
+    // so that publishers do not contend on one counter. A thread increments and decrements the same cell, so no
+    // cell is ever negative and close can wait for each cell in turn.
+    private final AtomicLongArray publisherCounts;
+    private final int publisherCountCellMask;
+    private final LongAdder droppedCount;
+    private final LongAdder failedCount;
+    // Set when close starts, rejects publications
+    private volatile boolean closed;
+    // Set once close has applied every published price, stops the appliers
+    private volatile boolean stopped;
+
+    public AsyncInstrumentPriceCache(IInstrumentPriceCache instrumentPriceCache, int shardCount, BackpressurePolicy backpressurePolicy) {
+        this(instrumentPriceCache, shardCount, DEFAULT_RING_BUFFER_CAPACITY, DEFAULT_MAX_BATCH_SIZE, backpressurePolicy);
+    }
+
+    public AsyncInstrumentPriceCache(
+            IInstrumentPriceCache instrumentPriceCache,
+            int shardCount,
+            int ringBufferCapacity,
+            int maxBatchSize,
+            BackpressurePolicy backpressurePolicy) {
+        if (shardCount <= 0)
+            throw new IllegalArgumentException("shardCount must be positive");
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+
+        this.instrumentPriceCache = Objects.requireNonNull(instrumentPriceCache);
+        this.backpressurePolicy = Objects.requireNonNull(backpressurePolicy);
+        this.maxBatchSize = maxBatchSize;
+        this.droppedCount = new LongAdder();
+        this.failedCount = new LongAdder();
+        final int publisherCountCellCount = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+        this.publisherCounts = new AtomicLongArray(publisherCountCellCount * PUBLISHER_COUNT_CELL_STRIDE);
+        this.publisherCountCellMask = publisherCountCellCount - 1;
+        this.shards = new Shard[shardCount];
+        for (int shardIndex = 0; shardIndex < shardCount; shardIndex++) {
+            shards[shardIndex] = new Shard(new PriceRingBuffer(ringBufferCapacity));
+        }
+        for (int shardIndex = 0; shardIndex < shardCount; shardIndex++) {
+            final Shard shard = shards[shardIndex];
+            shard.applier = new Thread(() -> runApplier(shard), "price-applier-" + shardIndex);
+            shard.applier.setDaemon(true);
+            shard.applier.start();
+        }
+    }
+
+    @Override
+    public void publishInstrumentPrice(InstrumentPrice instrumentPrice) {
+        publish(instrumentPrice, null);
+    }
+
+    /**
+     * Publish a collection of instrument prices asynchronously. The prices are applied in batches of their
+     * shard; the returned result counts the prices accepted into the ring buffers, less those of the collection
+     * this call discarded under the DROP_OLDEST policy, and every queued price it discarded as dropped.
+     */
+    @Override
+    public PublishResult publishInstrumentPrices(Collection<InstrumentPrice> instrumentPrices) {
+        final List<InstrumentPrice> droppedPrices = new ArrayList<>(0);
+        for (InstrumentPrice instrumentPrice : instrumentPrices) {
+            publish(instrumentPrice, droppedPrices);
+        }
+
+        // Only discarded prices of the collection are not accepted, others were published before the call
+        int ownDroppedCount = 0;
+        if (! droppedPrices.isEmpty()) {
+            final Set<InstrumentPrice> ownPrices = Collections.newSetFromMap(new IdentityHashMap<>());
+            ownPrices.addAll(instrumentPrices);
+            for (InstrumentPrice droppedPrice : droppedPrices) {
+                if (ownPrices.contains(droppedPrice)) {
+                    ownDroppedCount++;
+                }
+            }
+        }
+        return new PublishResult(instrumentPrices.size() - ownDroppedCount, 0, 0, droppedPrices.size());
+    }
+
+    // Adds the prices discarded to make room to droppedPrices, if not null
+    private void publish(InstrumentPrice instrumentPrice, List<InstrumentPrice> droppedPrices) {
+        final Shard shard = shards[Math.floorMod(instrumentPrice.instrumentId().hashCode(), shards.length)];
+
+        // Register before checking closed: close sets closed, then waits for the registered publishers, so a
+        // publisher either sees closed or has its price in the ring buffer before close drains it
+        final int publisherCountIndex = publisherCountIndex();
+        publisherCounts.incrementAndGet(publisherCountIndex);
+        try {
+            if (closed)
+                throw new IllegalStateException("cache is closed");
+            if (shard.ringBuffer.offer(instrumentPrice)) {
+                return;
+            }
+
+            switch (backpressurePolicy) {
+                case BLOCK -> {
+                    while (! shard.ringBuffer.offer(instrumentPrice)) {
+                        Thread.onSpinWait();
+                        LockSupport.unpark(shard.applier);
+                        Thread.yield();
+                    }
+                }
+                case DROP_OLDEST -> {
+                    while (! shard.ringBuffer.offer(instrumentPrice)) {
+                        final InstrumentPrice droppedPrice = shard.ringBuffer.poll();
+                        if (droppedPrice != null) {
+                            droppedCount.increment();
+                            if (droppedPrices != null) {
+                                droppedPrices.add(droppedPrice);
+                            }
+                        }
+                    }
+                }
+                case FAIL_FAST -> throw new RejectedExecutionException("ring buffer of shard is full");
+            }
+        }
+        finally {
+            publisherCounts.decrementAndGet(publisherCountIndex);
+        }
+    }
+
+    // Index of the publisher count cell of the current thread
+    private int publisherCountIndex() {
+        final long threadHash = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        return ((int) (threadHash >>> 32) & publisherCountCellMask) * PUBLISHER_COUNT_CELL_STRIDE;
+    }
+
+    @Override
+    public Map<String, InstrumentPrice> getInstrumentPrice(String instrumentId, LocalDate priceDate) {
+        return instrumentPriceCache.getInstrumentPrice(instrumentId, priceDate);
+    }
+
+    @Override
+    public Map<String, InstrumentPrice> getAllInstrumentPricesForVendor(String vendorId, LocalDate priceDate) {
+        return instrumentPriceCache.getAllInstrumentPricesForVendor(vendorId, priceDate);
+    }
+
+    @Override
+    public double getPrice(String vendorId, String instrumentId, LocalDate priceDate) {
+        return instrumentPriceCache.getPrice(vendorId, instrumentId, priceDate);
+    }
+
+    @Override
+    public PriceAggregate getPriceAggregate(String instrumentId, LocalDate priceDate) {
+        return instrumentPriceCache.getPriceAggregate(instrumentId, priceDate);
+    }
+
+    @Override
+    public void getAllPriceAggregates(LocalDate priceDate, BiConsumer<String, PriceAggregate> consumer) {
+        instrumentPriceCache.getAllPriceAggregates(priceDate, consumer);
+    }
+
+    @Override
+    public void getInstrumentPrices(
+            Collection<String> instrumentIds,
+            LocalDate fromDate,
+            LocalDate toDate,
+            boolean parallel,
+            Consumer<InstrumentPrice> consumer) {
+        instrumentPriceCache.getInstrumentPrices(instrumentIds, fromDate, toDate, parallel, consumer);
+    }
+
+    @Override
+    public void getAllInstrumentPricesForVendors(
+            Collection<String> vendorIds,
+            LocalDate fromDate,
+            LocalDate toDate,
+            boolean parallel,
+            Consumer<InstrumentPrice> consumer) {
+        instrumentPriceCache.getAllInstrumentPricesForVendors(vendorIds, fromDate, toDate, parallel, consumer);
+    }
+
+    @Override
+    public NavigableSet<LocalDate> getCachedPriceDates() {
+        return instrumentPriceCache.getCachedPriceDates();
+    }
+
+    @Override
+    public IInstrumentPriceSnapshot getSnapshot(LocalDate priceDate) {
+        return instrumentPriceCache.getSnapshot(priceDate);
+    }
+
+    @Override
+    public IPriceSubscription subscribe(PriceSubscriptionFilter filter, IPriceListener listener) {
+        return instrumentPriceCache.subscribe(filter, listener);
+    }
+
+    /**
+     * Wait until every price published before the call is visible in the underlying cache, or was dropped.
+     *
+     * @param timeout Maximum time to wait.
+     * @return False if the timeout elapsed first.
+     */
+    public boolean awaitVisibility(Duration timeout) {
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        final long[] targetCounts = new long[shards.length];
+        for (int shardIndex = 0; shardIndex < shards.length; shardIndex++) {
+            targetCounts[shardIndex] = shards[shardIndex].ringBuffer.claimedCount();
+        }
+
+        for (int shardIndex = 0; shardIndex < shards.length; shardIndex++) {
+            final Shard shard = shards[shardIndex];
+            while (shard.visibleCount < targetCounts[shardIndex]) {
+                if (System.nanoTime() - deadline >= 0L) {
+                    return false;
+                }
+                LockSupport.unpark(shard.applier);
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wait until every price published before the call is visible in the underlying cache, or was dropped.
+     */
+    public void flush() {
+        while (! awaitVisibility(Duration.ofSeconds(1L))) {
+            if (stopped && ! isAnyApplierAlive()) {
+                throw new IllegalStateException("cache is closed");
+            }
+        }
+    }
+
+    /**
+     * @return The number of prices discarded by the DROP_OLDEST backpressure policy.
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * @return The number of prices lost because the underlying cache failed to publish their batch.
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * Stop accepting publications, apply every price already published, and stop the applier threads.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        // Publishers that checked closed before it was set finish placing their price
+        for (int index = 0; index < publisherCounts.length(); index += PUBLISHER_COUNT_CELL_STRIDE) {
+            while (publisherCounts.get(index) != 0) {
+                // A BLOCK publisher waits for the appliers to free a slot
+                for (Shard shard : shards) {
+                    LockSupport.unpark(shard.applier);
+                }
+                Thread.yield();
+            }
+        }
+        flush();
+        stopped = true;
+        boolean interrupted = false;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.applier);
+            while (shard.applier.isAlive()) {
+                try {
+                    shard.applier.join();
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean isAnyApplierAlive() {
+        for (Shard shard : shards) {
+            if (shard.applier.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void runApplier(Shard shard) {
+        final List<InstrumentPrice> batch = new ArrayList<>(maxBatchSize);
+        int idleCount = 0;
+        while (true) {
+            final int drainedCount = shard.ringBuffer.drainTo(batch, maxBatchSize);
+            if (drainedCount > 0) {
+                try {
+                    instrumentPriceCache.publishInstrumentPrices(batch);
+                }
+                catch (RuntimeException e) {
+                    // Keep the applier alive, the batch is lost
+                    failedCount.add(batch.size());
+                }
+                batch.clear();
+                idleCount = 0;
+            }
+            // Every consumed position is either applied by this thread or dropped by a publishing thread
+            shard.visibleCount = shard.ringBuffer.consumedCount();
+
+            if (drainedCount == 0) {
+                if (stopped) {
+                    return;
+                }
+                if (++idleCount < IDLE_SPIN_COUNT) {
+                    Thread.onSpinWait();
+                }
+                else {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        }
+    }
+
+    private static class Shard {
+
+        private final PriceRingBuffer ringBuffer;
+        private Thread applier;
+        // Number of ring buffer positions whose price is visible in the underlying cache or was dropped
+        private volatile long visibleCount;
+
+        private Shard(PriceRingBuffer ringBuffer) {
+            this.ringBuffer = ringBuffer;
+        }
+
+    }
+
+}
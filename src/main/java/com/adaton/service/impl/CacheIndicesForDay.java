@@ -1,18 +1,67 @@
 package com.adaton.service.impl;
 
 import com.adaton.persistence.ICacheIndex;
+import com.adaton.persistence.IDayPriceStore;
 
+import java.time.LocalDate;
 import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
 
 public record CacheIndicesForDay(
-        // Map of [Instrument ID --> Map of [Vendor ID --> Price]]
-        ICacheIndex cachedPricesByInstrument,
-        // Map of [Vendor ID --> Map of [Instrument ID --> Price]]
-        ICacheIndex cachedPricesByVendor) {
+        // Prices of the date, readable by instrument and by vendor
+        IDayPriceStore priceStore,
+        // Shared by publications, exclusive while the store is snapshot or frozen
+        StampedLock publicationLock,
+        // Aggregates of each instrument's prices across vendors, maintained by the publications
+        PriceAggregates priceAggregates,
+        // True once the prices published so far are held in a compact, read-only form
+        boolean frozen) {
 
     public CacheIndicesForDay {
-        Objects.requireNonNull(cachedPricesByInstrument);
-        Objects.requireNonNull(cachedPricesByVendor);
+        Objects.requireNonNull(priceStore);
+        Objects.requireNonNull(publicationLock);
+        Objects.requireNonNull(priceAggregates);
+    }
+
+    public CacheIndicesForDay(IDayPriceStore priceStore, boolean frozen) {
+        this(priceStore, new StampedLock(), new PriceAggregates(priceStore), frozen);
+    }
+
+    /**
+     * @return Map of [Instrument ID --> Map of [Vendor ID --> Price]]
+     */
+    public ICacheIndex cachedPricesByInstrument() {
+        return priceStore.instrumentIndex();
+    }
+
+    /**
+     * @return Map of [Vendor ID --> Map of [Instrument ID --> Price]]
+     */
+    public ICacheIndex cachedPricesByVendor() {
+        return priceStore.vendorIndex();
+    }
+
+    /**
+     * Take a snapshot of the store in which a price is either in both orientations or in neither. Unless the
+     * store holds each price once, the snapshot is taken between two publications, which wait while it is taken;
+     * otherwise publications run on and the snapshot may hold part of a group published meanwhile.
+     */
+    public InstrumentPriceSnapshot snapshot(LocalDate priceDate) {
+        final IDayPriceStore snapshot;
+        if (priceStore.holdsEachPriceOnce()) {
+            // A price is in both orientations as soon as it is in the store
+            snapshot = priceStore.snapshot();
+        }
+        else {
+            final long stamp = publicationLock.writeLock();
+            try {
+                snapshot = priceStore.snapshot();
+            }
+            finally {
+                publicationLock.unlockWrite(stamp);
+            }
+        }
+        return new InstrumentPriceSnapshot(priceDate, snapshot.instrumentIndex(), snapshot.vendorIndex());
     }
 
 }
@@ -1,100 +1,786 @@
 package com.adaton.service.impl;
 
+import com.adaton.metrics.CacheOperation;
+import com.adaton.metrics.DayStatistics;
+import com.adaton.metrics.ICacheMetrics;
+import com.adaton.metrics.impl.CacheMetrics;
+import com.adaton.metrics.impl.InstrumentedDayPriceStore;
 import com.adaton.model.InstrumentPrice;
-import com.adaton.persistence.impl.CacheIndex;
+import com.adaton.model.PriceAggregate;
+import com.adaton.model.PriceSubscriptionFilter;
+import com.adaton.model.PublishResult;
+import com.adaton.persistence.ICacheIndex;
+import com.adaton.persistence.ICacheIndexFactory;
+import com.adaton.persistence.ISymbolTable;
+import com.adaton.persistence.impl.DaySnapshotFile;
+import com.adaton.persistence.impl.ImmutableCacheIndex;
+import com.adaton.persistence.impl.InternedCacheIndexFactory;
+import com.adaton.persistence.impl.LayeredPriceStore;
+import com.adaton.persistence.impl.SlotTableCacheIndexFactory;
+import com.adaton.retention.IDaySpillHook;
+import com.adaton.retention.IRetentionPolicy;
+import com.adaton.retention.impl.DayCountRetentionPolicy;
 import com.adaton.service.IInstrumentPriceCache;
+import com.adaton.service.IInstrumentPriceSnapshot;
+import com.adaton.service.IPriceListener;
+import com.adaton.service.IPriceSubscription;
 
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public class InstrumentPriceCache implements IInstrumentPriceCache {
 
-    private static final int MAX_DAY_COUNT = 30;
+    private static final int DEFAULT_MAX_DAY_COUNT = 30;
+
+    private static final String SNAPSHOT_FILE_SUFFIX = ".snapshot";
+
+    // Minimum number of prices for a single date before a bulk publication is spread across the fork-join pool
+    private static final int PARALLEL_PUBLISH_THRESHOLD = 8192;
 
     // Sorted map with price date as key and cache indices as value that supports concurrent access
     private final ConcurrentSkipListMap<LocalDate, CacheIndicesForDay> cacheIndicesByDate;
 
+    // Indices of the recently looked up dates, answering lookups without traversing the date map
+    private final RecentDays recentDays;
+
+    // Creates the cache indices of every new price date
+    private final ICacheIndexFactory cacheIndexFactory;
+
+    // Pool used to apply large bulk publications in parallel, or null if bulk publications run on the caller's thread
+    private final ForkJoinPool bulkPublishPool;
+
+    // Price dates published to since the last snapshot was written
+    private final Set<LocalDate> modifiedDates;
+
+    // Operation latencies and counters, only recorded once enabled
+    private final CacheMetrics cacheMetrics;
+
+    // Evicts the dates that fall outside the retention policy, off the publishing threads
+    private final RetentionEngine retentionEngine;
+
+    // Subscribers to the price changes and day evictions of the cache
+    private final PriceSubscriptions priceSubscriptions;
+
+    // Called on the retention thread with every evicted date, once it is removed and spilled
+    private final List<Consumer<LocalDate>> evictionListeners;
+
+    // Date of the last publication by epoch day
+    private volatile LocalDate lastPriceDate;
+
+    // Snapshot files skipped by loadSnapshot because they could not be mapped
+    private final LongAdder corruptSnapshotCount;
+
     public InstrumentPriceCache() {
+        this(new SlotTableCacheIndexFactory());
+    }
+
+    public InstrumentPriceCache(ForkJoinPool bulkPublishPool) {
+        this(new SlotTableCacheIndexFactory(), Objects.requireNonNull(bulkPublishPool));
+    }
+
+    public InstrumentPriceCache(ICacheIndexFactory cacheIndexFactory) {
+        this(cacheIndexFactory, null, new DayCountRetentionPolicy(DEFAULT_MAX_DAY_COUNT), null, RetentionEngine.DEFAULT_RETENTION_EXECUTOR);
+    }
+
+    public InstrumentPriceCache(ICacheIndexFactory cacheIndexFactory, ForkJoinPool bulkPublishPool) {
+        this(cacheIndexFactory, Objects.requireNonNull(bulkPublishPool), new DayCountRetentionPolicy(DEFAULT_MAX_DAY_COUNT), null, RetentionEngine.DEFAULT_RETENTION_EXECUTOR);
+    }
+
+    public InstrumentPriceCache(ICacheIndexFactory cacheIndexFactory, IRetentionPolicy retentionPolicy) {
+        this(cacheIndexFactory, null, Objects.requireNonNull(retentionPolicy), null, RetentionEngine.DEFAULT_RETENTION_EXECUTOR);
+    }
+
+    public InstrumentPriceCache(ICacheIndexFactory cacheIndexFactory, IRetentionPolicy retentionPolicy, IDaySpillHook spillHook) {
+        this(cacheIndexFactory, null, Objects.requireNonNull(retentionPolicy), Objects.requireNonNull(spillHook), RetentionEngine.DEFAULT_RETENTION_EXECUTOR);
+    }
+
+    /**
+     * @param spillHook         Receives the evicted dates, or null if evicted dates are dropped.
+     * @param retentionExecutor Executor running the retention of the cache when a new date is published, instead of
+     *                          the daemon thread shared by the caches not given one. Caches with slow spill hooks
+     *                          are best given their own, e.g. a single-threaded executor per cache or cache family.
+     */
+    public InstrumentPriceCache(ICacheIndexFactory cacheIndexFactory, IRetentionPolicy retentionPolicy, IDaySpillHook spillHook, Executor retentionExecutor) {
+        this(cacheIndexFactory, null, Objects.requireNonNull(retentionPolicy), spillHook, Objects.requireNonNull(retentionExecutor));
+    }
+
+    private InstrumentPriceCache(
+            ICacheIndexFactory cacheIndexFactory,
+            ForkJoinPool bulkPublishPool,
+            IRetentionPolicy retentionPolicy,
+            IDaySpillHook spillHook,
+            Executor retentionExecutor) {
         this.cacheIndicesByDate = new ConcurrentSkipListMap<>();
+        this.recentDays = new RecentDays(cacheIndicesByDate);
+        this.cacheIndexFactory = Objects.requireNonNull(cacheIndexFactory);
+        this.bulkPublishPool = bulkPublishPool;
+        this.modifiedDates = ConcurrentHashMap.newKeySet();
+        this.cacheMetrics = new CacheMetrics(this::getDayStatistics);
+        this.priceSubscriptions = new PriceSubscriptions();
+        this.evictionListeners = new CopyOnWriteArrayList<>();
+        this.corruptSnapshotCount = new LongAdder();
+        this.retentionEngine =
+            new RetentionEngine(
+                cacheIndicesByDate,
+                retentionPolicy,
+                spillHook,
+                this::dayEvicted,
+                recentDays::invalidate,
+                cacheMetrics,
+                frozenPriceTable ->
+                    newLayeredCacheIndicesForDay(frozenPriceTable.getPriceDate(), frozenPriceTable.instrumentIndex(), frozenPriceTable.vendorIndex()),
+                retentionExecutor
+            );
     }
 
     @Override
-    public void publishInstrumentPrice(InstrumentPrice instrumentPrice) {
-        if (cacheIndicesByDate.size() >= MAX_DAY_COUNT &&
-            ! cacheIndicesByDate.containsKey(instrumentPrice.priceDate())) {
-            // If the cache has reached MAX_DAY_COUNT and the cache does not contain the new price date to be
-            // published, an existing date needs to be evicted from the cache to make room for the new date.
-            final LocalDate earliestDateInCache = cacheIndicesByDate.firstKey();
-            if (earliestDateInCache.isBefore(instrumentPrice.priceDate())) {
-                // If the earliest date in the cache is older than the new price date to be published,
-                // evict the old date.
-                cacheIndicesByDate.remove(earliestDateInCache);
+    public void publishInstrumentPrice(InstrumentPrice publishedPrice) {
+        final long startNanos = cacheMetrics.startTiming();
+        final InstrumentPrice instrumentPrice = cacheIndexFactory.internInstrumentPrice(publishedPrice);
+        if (! retentionEngine.admits(instrumentPrice.priceDate())) {
+            // The new price date to be published is older than the window retained by the cache,
+            // the new price date is ignored. Eviction itself is left to the retention engine.
+            cacheMetrics.addRejectedAsTooOld(1L);
+            cacheMetrics.recordLatency(CacheOperation.PUBLISH, startNanos);
+            return;
+        }
+
+        publishAdmittedPrice(instrumentPrice);
+        cacheMetrics.addPublishedPrices(1L);
+        cacheMetrics.recordLatency(CacheOperation.PUBLISH, startNanos);
+    }
+
+    /**
+     * Publish an instrument price given by the symbol IDs of its vendor and instrument, as interned by the symbol
+     * tables of the cache, and by the epoch day of its date. No price object is created: with the slot table
+     * backend, publishing a price for a vendor, instrument and date that already have one allocates nothing.
+     * Price objects are still created while the cache has subscribers, and for dates held in a frozen form.
+     *
+     * @param vendorId     Vendor symbol ID, from getVendorSymbols().
+     * @param instrumentId Instrument symbol ID, from getInstrumentSymbols().
+     * @param epochDay     Trading date for the price, as a count of days since 1970-01-01.
+     * @param price        Price to be published.
+     * @throws UnsupportedOperationException If the cache index backend does not intern symbols.
+     */
+    public void publishInstrumentPrice(int vendorId, int instrumentId, int epochDay, double price) {
+        final long startNanos = cacheMetrics.startTiming();
+        final InternedCacheIndexFactory internedCacheIndexFactory = internedCacheIndexFactory();
+        if (vendorId < 0 || vendorId >= internedCacheIndexFactory.getVendorSymbols().size())
+            throw new IllegalArgumentException("vendorId is not an interned vendor symbol ID");
+        if (instrumentId < 0 || instrumentId >= internedCacheIndexFactory.getInstrumentSymbols().size())
+            throw new IllegalArgumentException("instrumentId is not an interned instrument symbol ID");
+
+        final LocalDate priceDate = priceDate(epochDay);
+        if (! retentionEngine.admits(priceDate)) {
+            cacheMetrics.addRejectedAsTooOld(1L);
+            cacheMetrics.recordLatency(CacheOperation.PUBLISH, startNanos);
+            return;
+        }
+
+        if (! priceSubscriptions.isEmpty()) {
+            // Subscribers receive price objects
+            publishAdmittedPrice(newInstrumentPrice(vendorId, instrumentId, priceDate, price));
+        }
+        else {
+            CacheIndicesForDay cacheIndicesForDay = cacheIndicesForDay(priceDate);
+            publishPriceForDay(cacheIndicesForDay, vendorId, instrumentId, priceDate, price);
+            // If the date was frozen meanwhile, publish the price again to the indices that replaced it
+            for (CacheIndicesForDay replacement = cacheIndicesByDate.get(priceDate);
+                 replacement != null && replacement != cacheIndicesForDay;
+                 replacement = cacheIndicesByDate.get(priceDate)) {
+                cacheIndicesForDay = replacement;
+                publishPriceForDay(cacheIndicesForDay, vendorId, instrumentId, priceDate, price);
+            }
+            markModified(priceDate);
+        }
+        cacheMetrics.addPublishedPrices(1L);
+        cacheMetrics.recordLatency(CacheOperation.PUBLISH, startNanos);
+    }
+
+    // Publishes a price whose date is admitted, and notifies the subscribers
+    private void publishAdmittedPrice(InstrumentPrice instrumentPrice) {
+        CacheIndicesForDay cacheIndicesForDay = cacheIndicesForDay(instrumentPrice.priceDate());
+        final InstrumentPrice replacedPrice = publishInstrumentPriceForDay(cacheIndicesForDay, instrumentPrice);
+        // If the date was frozen meanwhile, the price may have missed the frozen table: publish it again
+        // to the indices that replaced it. The replaced price is the one seen by the first publication.
+        for (CacheIndicesForDay replacement = cacheIndicesByDate.get(instrumentPrice.priceDate());
+             replacement != null && replacement != cacheIndicesForDay;
+             replacement = cacheIndicesByDate.get(instrumentPrice.priceDate())) {
+            cacheIndicesForDay = replacement;
+            publishInstrumentPriceForDay(cacheIndicesForDay, instrumentPrice);
+        }
+        markModified(instrumentPrice.priceDate());
+        if (! priceSubscriptions.isEmpty()) {
+            priceSubscriptions.priceChanged(replacedPrice, instrumentPrice);
+        }
+    }
+
+    private void publishPriceForDay(CacheIndicesForDay cacheIndicesForDay, int vendorId, int instrumentId, LocalDate priceDate, double price) {
+        final long stamp = cacheIndicesForDay.publicationLock().readLock();
+        try {
+            if (cacheIndicesForDay.priceStore().isAddressedBySymbolId()) {
+                cacheIndicesForDay.priceAggregates().updatePrice(getInstrumentSymbols().symbol(instrumentId), vendorId, instrumentId, price);
             }
             else {
-                // Else, the new price date to be published is somehow older than the earliest date in the cache,
-                // the new price date is ignored.
-                return;
+                cacheIndicesForDay.priceAggregates().updatePrice(newInstrumentPrice(vendorId, instrumentId, priceDate, price));
             }
         }
+        finally {
+            cacheIndicesForDay.publicationLock().unlockRead(stamp);
+        }
+    }
+
+    private InstrumentPrice newInstrumentPrice(int vendorId, int instrumentId, LocalDate priceDate, double price) {
+        final InternedCacheIndexFactory internedCacheIndexFactory = internedCacheIndexFactory();
+        return new InstrumentPrice(
+            internedCacheIndexFactory.getVendorSymbols().symbol(vendorId),
+            internedCacheIndexFactory.getInstrumentSymbols().symbol(instrumentId),
+            priceDate,
+            price
+        );
+    }
+
+    private LocalDate priceDate(int epochDay) {
+        // Publications mostly target one date, reuse its instance rather than creating one per publication
+        final LocalDate lastPriceDate = this.lastPriceDate;
+        if (lastPriceDate != null && lastPriceDate.toEpochDay() == epochDay) {
+            return lastPriceDate;
+        }
+        final LocalDate priceDate = LocalDate.ofEpochDay(epochDay);
+        this.lastPriceDate = priceDate;
+        return priceDate;
+    }
+
+    private InternedCacheIndexFactory internedCacheIndexFactory() {
+        if (cacheIndexFactory instanceof InternedCacheIndexFactory internedCacheIndexFactory) {
+            return internedCacheIndexFactory;
+        }
+        throw new UnsupportedOperationException("symbol IDs require an interned cache index backend");
+    }
 
-        cacheIndicesByDate.compute(
-                instrumentPrice.priceDate(),
-                (date, cacheIndicesByDate) -> {
-                    if (cacheIndicesByDate == null) {
-                        cacheIndicesByDate =
-                            new CacheIndicesForDay(
-                                new CacheIndex(),
-                                new CacheIndex()
-                            );
-                    }
-
-                    cacheIndicesByDate.cachedPricesByInstrument()
-                        .updateCacheIndex(
-                            instrumentPrice.instrumentId(),
-                            instrumentPrice.vendorId(),
-                            instrumentPrice
-                        );
-                    cacheIndicesByDate.cachedPricesByVendor()
-                        .updateCacheIndex(
-                            instrumentPrice.vendorId(),
-                            instrumentPrice.instrumentId(),
-                            instrumentPrice
-                        );
-
-                    return cacheIndicesByDate;
+    /**
+     * @return The vendor symbol table, which assigns the vendor IDs taken by publishInstrumentPrice(int, int, int, double).
+     * @throws UnsupportedOperationException If the cache index backend does not intern symbols.
+     */
+    public ISymbolTable getVendorSymbols() {
+        return internedCacheIndexFactory().getVendorSymbols();
+    }
+
+    /**
+     * @return The instrument symbol table, which assigns the instrument IDs taken by publishInstrumentPrice(int, int, int, double).
+     * @throws UnsupportedOperationException If the cache index backend does not intern symbols.
+     */
+    public ISymbolTable getInstrumentSymbols() {
+        return internedCacheIndexFactory().getInstrumentSymbols();
+    }
+
+    @Override
+    public PublishResult publishInstrumentPrices(Collection<InstrumentPrice> instrumentPrices) {
+        final long startNanos = cacheMetrics.startTiming();
+        // Partition the batch by price date so that each date is only looked up once in cacheIndicesByDate
+        final TreeMap<LocalDate, List<InstrumentPrice>> pricesByDate = new TreeMap<>();
+        for (InstrumentPrice instrumentPrice : instrumentPrices) {
+            pricesByDate
+                .computeIfAbsent(instrumentPrice.priceDate(), date -> new ArrayList<>())
+                .add(cacheIndexFactory.internInstrumentPrice(instrumentPrice));
+        }
+        if (pricesByDate.isEmpty()) {
+            cacheMetrics.recordLatency(CacheOperation.PUBLISH_BULK, startNanos);
+            return new PublishResult(0, 0, 0);
+        }
+
+        int acceptedCount = 0;
+        int rejectedCount = 0;
+        int supersededCount = 0;
+        for (Map.Entry<LocalDate, List<InstrumentPrice>> pricesForDate : pricesByDate.entrySet()) {
+            if (! retentionEngine.admits(pricesForDate.getKey())) {
+                // The price date falls outside the window kept by the cache, the prices are ignored.
+                rejectedCount += pricesForDate.getValue().size();
+                continue;
+            }
+
+            CacheIndicesForDay cacheIndicesForDay = cacheIndicesForDay(pricesForDate.getKey());
+            final List<InstrumentPrice> replacedPrices =
+                priceSubscriptions.isEmpty() ? null : replacedPrices(cacheIndicesForDay, pricesForDate.getValue());
+            acceptedCount += pricesForDate.getValue().size();
+            supersededCount += publishInstrumentPricesForDay(cacheIndicesForDay, pricesForDate.getValue());
+            // If the date was frozen meanwhile, the prices may have missed the frozen table: publish them again
+            // to the indices that replaced it. Superseded prices are only counted by the first publication.
+            for (CacheIndicesForDay replacement = cacheIndicesByDate.get(pricesForDate.getKey());
+                 replacement != null && replacement != cacheIndicesForDay;
+                 replacement = cacheIndicesByDate.get(pricesForDate.getKey())) {
+                cacheIndicesForDay = replacement;
+                publishInstrumentPricesForDay(cacheIndicesForDay, pricesForDate.getValue());
+            }
+            markModified(pricesForDate.getKey());
+            if (replacedPrices != null) {
+                for (int priceIndex = 0; priceIndex < replacedPrices.size(); priceIndex++) {
+                    priceSubscriptions.priceChanged(replacedPrices.get(priceIndex), pricesForDate.getValue().get(priceIndex));
                 }
+            }
+        }
+
+        cacheMetrics.addPublishedPrices(acceptedCount);
+        cacheMetrics.addRejectedAsTooOld(rejectedCount);
+        cacheMetrics.addSupersededPrices(supersededCount);
+        cacheMetrics.recordLatency(CacheOperation.PUBLISH_BULK, startNanos);
+        return new PublishResult(acceptedCount, rejectedCount, supersededCount);
+    }
+
+    // True if the date is admitted but not cached, so that addPriceDate would add it
+    boolean lacksPriceDate(LocalDate priceDate) {
+        return ! cacheIndicesByDate.containsKey(priceDate) && retentionEngine.admits(priceDate);
+    }
+
+    // Adds an empty date unless it is cached or not admitted, so that the stripes of a sharded cache hold the same dates
+    void addPriceDate(LocalDate priceDate) {
+        if (retentionEngine.admits(priceDate)) {
+            cacheIndicesForDay(priceDate);
+        }
+    }
+
+    private CacheIndicesForDay cacheIndicesForDay(LocalDate priceDate) {
+        // Most publications target a date already cached, avoid the remapping lambda in that case
+        final CacheIndicesForDay cacheIndicesForDay = cacheIndicesByDate.get(priceDate);
+        if (cacheIndicesForDay != null) {
+            return cacheIndicesForDay;
+        }
+        return cacheIndicesByDate.computeIfAbsent(priceDate, this::newCacheIndicesForDay);
+    }
+
+    private CacheIndicesForDay newCacheIndicesForDay(LocalDate priceDate) {
+        // A new date may push an earlier one out of the retention window
+        retentionEngine.requestRun();
+        return new CacheIndicesForDay(new InstrumentedDayPriceStore(cacheIndexFactory.createDayStore(priceDate), cacheMetrics), false);
+    }
+
+    // Creates the store of a date held in a compact, read-only form, with later publications layered over it
+    private CacheIndicesForDay newLayeredCacheIndicesForDay(LocalDate priceDate, ICacheIndex baseInstrumentIndex, ICacheIndex baseVendorIndex) {
+        return new CacheIndicesForDay(
+            new InstrumentedDayPriceStore(
+                new LayeredPriceStore(baseInstrumentIndex, baseVendorIndex, cacheIndexFactory.createDayStore(priceDate)),
+                cacheMetrics
+            ),
+            true
         );
     }
 
-    @Override
-    public void publishInstrumentPrices(Collection<InstrumentPrice> instrumentPrices) {
+    private static InstrumentPrice publishInstrumentPriceForDay(CacheIndicesForDay cacheIndicesForDay, InstrumentPrice instrumentPrice) {
+        final long stamp = cacheIndicesForDay.publicationLock().readLock();
+        try {
+            // The aggregates store the price, so that they know the price it replaces
+            return cacheIndicesForDay.priceAggregates().updatePrice(instrumentPrice);
+        }
+        finally {
+            cacheIndicesForDay.publicationLock().unlockRead(stamp);
+        }
+    }
+
+    // Returns the price each price of the group replaces, either cached before the group is published or earlier in the group
+    private static List<InstrumentPrice> replacedPrices(CacheIndicesForDay cacheIndicesForDay, List<InstrumentPrice> instrumentPrices) {
+        final Map<Map.Entry<String, String>, InstrumentPrice> latestPrices = new HashMap<>();
+        final List<InstrumentPrice> replacedPrices = new ArrayList<>(instrumentPrices.size());
         for (InstrumentPrice instrumentPrice : instrumentPrices) {
-            publishInstrumentPrice(instrumentPrice);
+            final InstrumentPrice replacedPrice = latestPrices.put(Map.entry(instrumentPrice.instrumentId(), instrumentPrice.vendorId()), instrumentPrice);
+            replacedPrices.add(
+                replacedPrice != null
+                    ? replacedPrice
+                    : cacheIndicesForDay.cachedPricesByInstrument().getCachedInstrumentPrices(instrumentPrice.instrumentId()).get(instrumentPrice.vendorId())
+            );
+        }
+        return replacedPrices;
+    }
+
+    private int publishInstrumentPricesForDay(CacheIndicesForDay cacheIndicesForDay, List<InstrumentPrice> instrumentPrices) {
+        final boolean parallel = bulkPublishPool != null && instrumentPrices.size() >= PARALLEL_PUBLISH_THRESHOLD;
+        final long stamp = cacheIndicesForDay.publicationLock().readLock();
+        try {
+            return cacheIndicesForDay.priceAggregates().updatePrices(instrumentPrices, parallel ? bulkPublishPool : null);
+        }
+        finally {
+            cacheIndicesForDay.publicationLock().unlockRead(stamp);
         }
     }
 
     @Override
     public Map<String, InstrumentPrice> getInstrumentPrice(String instrumentId, LocalDate priceDate) {
-        if (cacheIndicesByDate.containsKey(priceDate)) {
-            final var pricesForDate = cacheIndicesByDate.get(priceDate).cachedPricesByInstrument();
-            return pricesForDate.getCachedInstrumentPrices(instrumentId);
+        final long startNanos = cacheMetrics.startTiming();
+        final CacheIndicesForDay cacheIndicesForDay = recentDays.get(priceDate);
+        final Map<String, InstrumentPrice> instrumentPrices =
+            cacheIndicesForDay != null ? cacheIndicesForDay.cachedPricesByInstrument().getCachedInstrumentPrices(instrumentId) : Collections.emptyMap();
+        cacheMetrics.recordLatency(CacheOperation.GET_INSTRUMENT_PRICE, startNanos);
+        return instrumentPrices;
+    }
+
+    @Override
+    public Map<String, InstrumentPrice> getAllInstrumentPricesForVendor(String vendorId, LocalDate priceDate) {
+        final long startNanos = cacheMetrics.startTiming();
+        final CacheIndicesForDay cacheIndicesForDay = recentDays.get(priceDate);
+        final Map<String, InstrumentPrice> instrumentPrices =
+            cacheIndicesForDay != null ? cacheIndicesForDay.cachedPricesByVendor().getCachedInstrumentPrices(vendorId) : Collections.emptyMap();
+        cacheMetrics.recordLatency(CacheOperation.GET_VENDOR_PRICES, startNanos);
+        return instrumentPrices;
+    }
+
+    @Override
+    public double getPrice(String vendorId, String instrumentId, LocalDate priceDate) {
+        final long startNanos = cacheMetrics.startTiming();
+        final CacheIndicesForDay cacheIndicesForDay = recentDays.get(priceDate);
+        final double price = cacheIndicesForDay != null ? cacheIndicesForDay.priceStore().getPrice(vendorId, instrumentId) : Double.NaN;
+        cacheMetrics.recordLatency(CacheOperation.GET_PRICE, startNanos);
+        return price;
+    }
+
+    @Override
+    public PriceAggregate getPriceAggregate(String instrumentId, LocalDate priceDate) {
+        final long startNanos = cacheMetrics.startTiming();
+        final CacheIndicesForDay cacheIndicesForDay = recentDays.get(priceDate);
+        final PriceAggregate priceAggregate = cacheIndicesForDay != null ? cacheIndicesForDay.priceAggregates().get(instrumentId) : null;
+        cacheMetrics.recordLatency(CacheOperation.GET_PRICE_AGGREGATE, startNanos);
+        return priceAggregate;
+    }
+
+    @Override
+    public void getAllPriceAggregates(LocalDate priceDate, BiConsumer<String, PriceAggregate> consumer) {
+        final long startNanos = cacheMetrics.startTiming();
+        final CacheIndicesForDay cacheIndicesForDay = recentDays.get(priceDate);
+        if (cacheIndicesForDay != null) {
+            cacheIndicesForDay.priceAggregates().forEach(consumer);
+        }
+        cacheMetrics.recordLatency(CacheOperation.GET_PRICE_AGGREGATES_BULK, startNanos);
+    }
+
+    @Override
+    public void getInstrumentPrices(
+            Collection<String> instrumentIds,
+            LocalDate fromDate,
+            LocalDate toDate,
+            boolean parallel,
+            Consumer<InstrumentPrice> consumer) {
+        final long startNanos = cacheMetrics.startTiming();
+        forEachCachedDate(fromDate, toDate, parallel, cacheIndicesForDay -> {
+            final ICacheIndex pricesForDate = cacheIndicesForDay.cachedPricesByInstrument();
+            for (String instrumentId : instrumentIds) {
+                pricesForDate.forEachCachedInstrumentPrice(instrumentId, consumer);
+            }
+        });
+        cacheMetrics.recordLatency(CacheOperation.GET_INSTRUMENT_PRICES_BULK, startNanos);
+    }
+
+    @Override
+    public void getAllInstrumentPricesForVendors(
+            Collection<String> vendorIds,
+            LocalDate fromDate,
+            LocalDate toDate,
+            boolean parallel,
+            Consumer<InstrumentPrice> consumer) {
+        final long startNanos = cacheMetrics.startTiming();
+        forEachCachedDate(fromDate, toDate, parallel, cacheIndicesForDay -> {
+            final ICacheIndex pricesForDate = cacheIndicesForDay.cachedPricesByVendor();
+            for (String vendorId : vendorIds) {
+                pricesForDate.forEachCachedInstrumentPrice(vendorId, consumer);
+            }
+        });
+        cacheMetrics.recordLatency(CacheOperation.GET_VENDOR_PRICES_BULK, startNanos);
+    }
+
+    private void forEachCachedDate(LocalDate fromDate, LocalDate toDate, boolean parallel, Consumer<CacheIndicesForDay> action) {
+        // Walk the cached dates of the range once instead of looking each date up
+        final Collection<CacheIndicesForDay> cacheIndicesForDates =
+            cacheIndicesByDate.subMap(fromDate, true, toDate, true).values();
+        if (! parallel) {
+            cacheIndicesForDates.forEach(action);
+            return;
+        }
+
+        // Copy the dates first, as a concurrent view of the skip list does not split well
+        final List<CacheIndicesForDay> cacheIndicesForDateList = List.copyOf(cacheIndicesForDates);
+        if (bulkPublishPool != null) {
+            bulkPublishPool.submit(() -> cacheIndicesForDateList.parallelStream().forEach(action)).join();
         }
         else {
-            return Collections.emptyMap();
+            cacheIndicesForDateList.parallelStream().forEach(action);
         }
     }
 
     @Override
-    public Map<String, InstrumentPrice> getAllInstrumentPricesForVendor(String vendorId, LocalDate priceDate) {
-        if (cacheIndicesByDate.containsKey(priceDate)) {
-            final var pricesForDate = cacheIndicesByDate.get(priceDate).cachedPricesByVendor();
-            return pricesForDate.getCachedInstrumentPrices(vendorId);
+    public NavigableSet<LocalDate> getCachedPriceDates() {
+        return Collections.unmodifiableNavigableSet(cacheIndicesByDate.keySet());
+    }
+
+    @Override
+    public IInstrumentPriceSnapshot getSnapshot(LocalDate priceDate) {
+        final long startNanos = cacheMetrics.startTiming();
+        final CacheIndicesForDay cacheIndicesForDay = cacheIndicesByDate.get(priceDate);
+        final IInstrumentPriceSnapshot snapshot =
+            cacheIndicesForDay == null
+                ? new InstrumentPriceSnapshot(priceDate, ImmutableCacheIndex.empty(), ImmutableCacheIndex.empty())
+                : cacheIndicesForDay.snapshot(priceDate);
+        cacheMetrics.recordLatency(CacheOperation.GET_SNAPSHOT, startNanos);
+        return snapshot;
+    }
+
+    @Override
+    public IPriceSubscription subscribe(PriceSubscriptionFilter filter, IPriceListener listener) {
+        return subscribe(filter, listener, PriceSubscription.DEFAULT_MAX_PENDING_COUNT);
+    }
+
+    /**
+     * Subscribe to the price changes of the cache, with a given capacity for the changes pending delivery.
+     *
+     * @param filter          Prices and dates whose changes are received.
+     * @param listener        Receives the changes.
+     * @param maxPendingCount Number of distinct vendor, instrument and date keys whose changes may be pending
+     *                        delivery, further changes to other keys are dropped until the listener catches up.
+     * @return The subscription, to be closed once the changes are no longer needed.
+     */
+    public IPriceSubscription subscribe(PriceSubscriptionFilter filter, IPriceListener listener, int maxPendingCount) {
+        final PriceSubscription priceSubscription = new PriceSubscription(filter, listener, maxPendingCount, this);
+        addSubscription(priceSubscription, true);
+        return priceSubscription;
+    }
+
+    // Registers a subscription shared with other caches, e.g. the other stripes of a sharded cache
+    void addSubscription(PriceSubscription priceSubscription, boolean receivesEvictions) {
+        priceSubscriptions.add(priceSubscription, receivesEvictions);
+    }
+
+    /**
+     * Register a listener called with every date the retention policy evicts, once the date is removed from the
+     * cache and handed to the spill hook. Listeners run on the retention thread, and delay the next runs.
+     *
+     * @param evictionListener Receives the evicted dates.
+     */
+    public void addEvictionListener(Consumer<LocalDate> evictionListener) {
+        evictionListeners.add(Objects.requireNonNull(evictionListener));
+    }
+
+    /**
+     * @return True if prices of the date are published, false if they are rejected as older than the dates
+     *         the retention policy keeps.
+     */
+    public boolean admits(LocalDate priceDate) {
+        return retentionEngine.admits(priceDate);
+    }
+
+    /**
+     * @return The earliest price date the cache admits, or null if every date is admitted. Earlier dates
+     *         are not cached, and never will be.
+     */
+    public LocalDate getEarliestAdmittedDate() {
+        return retentionEngine.getEarliestAdmittedDate();
+    }
+
+    private void dayEvicted(LocalDate priceDate) {
+        priceSubscriptions.dayEvicted(priceDate);
+        for (Consumer<LocalDate> evictionListener : evictionListeners) {
+            evictionListener.accept(priceDate);
         }
-        else {
-            return Collections.emptyMap();
+    }
+
+    /**
+     * @return The metrics of the cache. Recording is off until enabled through the metrics or through JMX.
+     */
+    public ICacheMetrics getCacheMetrics() {
+        return cacheMetrics;
+    }
+
+    /**
+     * Apply the retention policy on the caller's thread. Retention otherwise runs in the background whenever
+     * a publication adds a new date.
+     *
+     * @return The number of dates evicted.
+     */
+    public int runRetention() {
+        return retentionEngine.run();
+    }
+
+    /**
+     * Apply the retention policy periodically, in addition to the runs triggered by new dates. Needed by
+     * policies whose limits can be reached by publications to dates already cached, e.g. memory budgets.
+     *
+     * @param scheduler Scheduler that runs the retention policy.
+     * @param period    Time between two runs.
+     * @return The scheduled task, to be cancelled when the cache is discarded.
+     */
+    public ScheduledFuture<?> scheduleRetention(ScheduledExecutorService scheduler, Duration period) {
+        return scheduler.scheduleWithFixedDelay(retentionEngine::run, period.toNanos(), period.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Keep only the most recent dates in their regular form, and freeze the earlier ones into a compact, read-only
+     * form that shares one price column between the instrument and the vendor index. Dates are frozen by the
+     * retention runs, from the next run on. Prices published to a frozen date are kept in an index layered over it.
+     *
+     * @param hotDayCount    Number of most recent dates that are not frozen.
+     * @param compressPrices True to XOR compress the prices of frozen dates, which makes their lookups slower.
+     */
+    public void enableColdTier(int hotDayCount, boolean compressPrices) {
+        retentionEngine.enableColdTier(hotDayCount, compressPrices);
+        retentionEngine.requestRun();
+    }
+
+    /**
+     * @return The number of evicted dates that the spill hook failed to receive.
+     */
+    public long getSpillFailedCount() {
+        return retentionEngine.getSpillFailedCount();
+    }
+
+    /**
+     * @return The number of snapshot files that loadSnapshot skipped because they could not be mapped.
+     */
+    public long getCorruptSnapshotCount() {
+        return corruptSnapshotCount.sum();
+    }
+
+    /**
+     * Write a snapshot file for every cached date published to since the previous snapshot, and delete the
+     * snapshot files of dates that are no longer cached. Each call is expected to target the same directory,
+     * as dates that have not changed since the previous call are not written again.
+     *
+     * @param snapshotDirectory Directory holding one snapshot file per date.
+     * @return The number of snapshot files written.
+     */
+    public int writeSnapshot(Path snapshotDirectory) throws IOException {
+        final long startNanos = cacheMetrics.startTiming();
+        Files.createDirectories(snapshotDirectory);
+        modifiedDates.retainAll(cacheIndicesByDate.keySet());
+
+        int writtenCount = 0;
+        for (Map.Entry<LocalDate, CacheIndicesForDay> cacheIndicesForDate : cacheIndicesByDate.entrySet()) {
+            final LocalDate priceDate = cacheIndicesForDate.getKey();
+            // Clear the mark before writing, so that a publication racing with the write marks the date again
+            if (modifiedDates.remove(priceDate)) {
+                try {
+                    DaySnapshotFile.write(
+                        snapshotDirectory.resolve(priceDate + SNAPSHOT_FILE_SUFFIX),
+                        priceDate,
+                        cacheIndicesForDate.getValue().cachedPricesByInstrument()
+                    );
+                }
+                catch (IOException | RuntimeException e) {
+                    modifiedDates.add(priceDate);
+                    throw e;
+                }
+                writtenCount++;
+            }
+        }
+
+        try (DirectoryStream<Path> snapshotFiles = Files.newDirectoryStream(snapshotDirectory, "*" + SNAPSHOT_FILE_SUFFIX)) {
+            for (Path snapshotFile : snapshotFiles) {
+                final LocalDate priceDate = snapshotDate(snapshotFile);
+                if (priceDate != null && ! cacheIndicesByDate.containsKey(priceDate)) {
+                    Files.delete(snapshotFile);
+                }
+            }
+        }
+        cacheMetrics.recordLatency(CacheOperation.WRITE_SNAPSHOT, startNanos);
+        return writtenCount;
+    }
+
+    /**
+     * Serve the dates held in a snapshot directory straight from memory-mapped snapshot files. Dates already
+     * cached are left untouched, and the retention policy is applied once the files are loaded.
+     * Prices published afterwards to a loaded date are kept in an index layered over the snapshot.
+     * A file that cannot be mapped, e.g. one left incomplete by a crash, is skipped and counted by
+     * getCorruptSnapshotCount, and the other dates are loaded.
+     *
+     * @param snapshotDirectory Directory holding one snapshot file per date.
+     * @return The number of dates loaded.
+     */
+    public int loadSnapshot(Path snapshotDirectory) throws IOException {
+        final long startNanos = cacheMetrics.startTiming();
+        final TreeMap<LocalDate, Path> snapshotFilesByDate = new TreeMap<>();
+        try (DirectoryStream<Path> snapshotFiles = Files.newDirectoryStream(snapshotDirectory, "*" + SNAPSHOT_FILE_SUFFIX)) {
+            for (Path snapshotFile : snapshotFiles) {
+                final LocalDate priceDate = snapshotDate(snapshotFile);
+                if (priceDate != null) {
+                    snapshotFilesByDate.put(priceDate, snapshotFile);
+                }
+            }
+        }
+
+        int loadedCount = 0;
+        for (Map.Entry<LocalDate, Path> snapshotFile : snapshotFilesByDate.entrySet()) {
+            if (! retentionEngine.admits(snapshotFile.getKey())) {
+                continue;
+            }
+            final DaySnapshotFile daySnapshotFile;
+            try {
+                daySnapshotFile = DaySnapshotFile.map(snapshotFile.getValue());
+            }
+            catch (IOException e) {
+                corruptSnapshotCount.increment();
+                continue;
+            }
+            // A mapped snapshot is as compact as a frozen date, it is never frozen again
+            final CacheIndicesForDay cacheIndicesForDay =
+                newLayeredCacheIndicesForDay(daySnapshotFile.getPriceDate(), daySnapshotFile.instrumentIndex(), daySnapshotFile.vendorIndex());
+            if (cacheIndicesByDate.putIfAbsent(daySnapshotFile.getPriceDate(), cacheIndicesForDay) == null) {
+                loadedCount++;
+            }
+        }
+        retentionEngine.run();
+        cacheMetrics.recordLatency(CacheOperation.LOAD_SNAPSHOT, startNanos);
+        return loadedCount;
+    }
+
+    private List<DayStatistics> getDayStatistics() {
+        final List<DayStatistics> dayStatistics = new ArrayList<>(cacheIndicesByDate.size());
+        cacheIndicesByDate.forEach((priceDate, cacheIndicesForDay) ->
+            dayStatistics.add(
+                new DayStatistics(
+                    priceDate,
+                    cacheIndicesForDay.priceStore().getPriceCount(),
+                    cacheIndicesForDay.priceStore().estimateMemoryBytes()
+                )
+            )
+        );
+        return dayStatistics;
+    }
+
+    private void markModified(LocalDate priceDate) {
+        // Most publications target a date already marked, avoid the write in that case
+        if (! modifiedDates.contains(priceDate)) {
+            modifiedDates.add(priceDate);
+        }
+    }
+
+    // Returns the date of a snapshot file, or null if the file name is not a snapshot file name
+    private static LocalDate snapshotDate(Path snapshotFile) {
+        final String fileName = snapshotFile.getFileName().toString();
+        try {
+            return LocalDate.parse(fileName.substring(0, fileName.length() - SNAPSHOT_FILE_SUFFIX.length()));
+        }
+        catch (DateTimeParseException e) {
+            return null;
         }
     }
 
@@ -0,0 +1,45 @@
+package com.adaton.service.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.ICacheIndex;
+import com.adaton.service.IInstrumentPriceSnapshot;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+public record InstrumentPriceSnapshot(
+        LocalDate priceDate,
+        // Snapshot of the Map of [Instrument ID --> Map of [Vendor ID --> Price]]
+        ICacheIndex pricesByInstrument,
+        // Snapshot of the Map of [Vendor ID --> Map of [Instrument ID --> Price]]
+        ICacheIndex pricesByVendor) implements IInstrumentPriceSnapshot {
+
+    public InstrumentPriceSnapshot {
+        Objects.requireNonNull(priceDate);
+        Objects.requireNonNull(pricesByInstrument);
+        Objects.requireNonNull(pricesByVendor);
+    }
+
+    @Override
+    public LocalDate getPriceDate() {
+        return priceDate;
+    }
+
+    @Override
+    public Map<String, InstrumentPrice> getInstrumentPrice(String instrumentId) {
+        return pricesByInstrument.getCachedInstrumentPrices(instrumentId);
+    }
+
+    @Override
+    public Map<String, InstrumentPrice> getAllInstrumentPricesForVendor(String vendorId) {
+        return pricesByVendor.getCachedInstrumentPrices(vendorId);
+    }
+
+    @Override
+    public void forEachInstrumentPrice(Consumer<InstrumentPrice> action) {
+        pricesByInstrument.forEachInstrumentPrice(action);
+    }
+
+}
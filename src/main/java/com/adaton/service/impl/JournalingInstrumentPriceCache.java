@@ -0,0 +1,171 @@
+package com.adaton.service.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.model.PriceAggregate;
+import com.adaton.model.PriceSubscriptionFilter;
+import com.adaton.model.PublishResult;
+import com.adaton.persistence.IPriceJournal;
+import com.adaton.service.IInstrumentPriceCache;
+import com.adaton.service.IInstrumentPriceSnapshot;
+import com.adaton.service.IPriceListener;
+import com.adaton.service.IPriceSubscription;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Cache stage that appends every published price to a journal before publishing it to the underlying cache.
+ * Journal segments of a date are deleted once the retention policy of the underlying cache evicts the date,
+ * and prices of dates the cache no longer admits are not journaled.
+ */
+public class JournalingInstrumentPriceCache implements IInstrumentPriceCache {
+
+    private final InstrumentPriceCache instrumentPriceCache;
+    private final IPriceJournal priceJournal;
+
+    // Evicted dates whose segments are still to be deleted, after a failed deletion
+    private final Set<LocalDate> evictedDates;
+    private final LongAdder purgeFailedCount;
+
+    public JournalingInstrumentPriceCache(InstrumentPriceCache instrumentPriceCache, IPriceJournal priceJournal) {
+        this.instrumentPriceCache = Objects.requireNonNull(instrumentPriceCache);
+        this.priceJournal = Objects.requireNonNull(priceJournal);
+        this.evictedDates = ConcurrentHashMap.newKeySet();
+        this.purgeFailedCount = new LongAdder();
+        instrumentPriceCache.addEvictionListener(this::dayEvicted);
+    }
+
+    /**
+     * Publish every journaled price to the underlying cache, typically once on startup before any new
+     * publication. Segments of the dates the cache does not admit are deleted afterwards.
+     *
+     * @param parallelism Number of replay threads.
+     * @return The number of prices replayed.
+     */
+    public long recover(int parallelism) throws IOException {
+        final long replayedCount = priceJournal.replay(instrumentPriceCache::publishInstrumentPrices, parallelism);
+        final LocalDate earliestAdmittedDate = instrumentPriceCache.getEarliestAdmittedDate();
+        if (earliestAdmittedDate != null) {
+            priceJournal.deleteSegmentsBefore(earliestAdmittedDate);
+        }
+        return replayedCount;
+    }
+
+    /**
+     * @return The number of evicted dates whose segments could not be deleted. Their deletion is retried on
+     *         the next eviction.
+     */
+    public long getPurgeFailedCount() {
+        return purgeFailedCount.sum();
+    }
+
+    @Override
+    public void publishInstrumentPrice(InstrumentPrice instrumentPrice) {
+        if (instrumentPriceCache.admits(instrumentPrice.priceDate())) {
+            priceJournal.append(instrumentPrice);
+        }
+        instrumentPriceCache.publishInstrumentPrice(instrumentPrice);
+    }
+
+    @Override
+    public PublishResult publishInstrumentPrices(Collection<InstrumentPrice> instrumentPrices) {
+        // Batches rarely hold rejected prices, only copy the batch when they do
+        boolean allAdmitted = true;
+        for (InstrumentPrice instrumentPrice : instrumentPrices) {
+            if (! instrumentPriceCache.admits(instrumentPrice.priceDate())) {
+                allAdmitted = false;
+                break;
+            }
+        }
+        priceJournal.append(
+            allAdmitted
+                ? instrumentPrices
+                : instrumentPrices.stream().filter(instrumentPrice -> instrumentPriceCache.admits(instrumentPrice.priceDate())).toList()
+        );
+        return instrumentPriceCache.publishInstrumentPrices(instrumentPrices);
+    }
+
+    @Override
+    public Map<String, InstrumentPrice> getInstrumentPrice(String instrumentId, LocalDate priceDate) {
+        return instrumentPriceCache.getInstrumentPrice(instrumentId, priceDate);
+    }
+
+    @Override
+    public Map<String, InstrumentPrice> getAllInstrumentPricesForVendor(String vendorId, LocalDate priceDate) {
+        return instrumentPriceCache.getAllInstrumentPricesForVendor(vendorId, priceDate);
+    }
+
+    @Override
+    public double getPrice(String vendorId, String instrumentId, LocalDate priceDate) {
+        return instrumentPriceCache.getPrice(vendorId, instrumentId, priceDate);
+    }
+
+    @Override
+    public PriceAggregate getPriceAggregate(String instrumentId, LocalDate priceDate) {
+        return instrumentPriceCache.getPriceAggregate(instrumentId, priceDate);
+    }
+
+    @Override
+    public void getAllPriceAggregates(LocalDate priceDate, BiConsumer<String, PriceAggregate> consumer) {
+        instrumentPriceCache.getAllPriceAggregates(priceDate, consumer);
+    }
+
+    @Override
+    public void getInstrumentPrices(
+            Collection<String> instrumentIds,
+            LocalDate fromDate,
+            LocalDate toDate,
+            boolean parallel,
+            Consumer<InstrumentPrice> consumer) {
+        instrumentPriceCache.getInstrumentPrices(instrumentIds, fromDate, toDate, parallel, consumer);
+    }
+
+    @Override
+    public void getAllInstrumentPricesForVendors(
+            Collection<String> vendorIds,
+            LocalDate fromDate,
+            LocalDate toDate,
+            boolean parallel,
+            Consumer<InstrumentPrice> consumer) {
+        instrumentPriceCache.getAllInstrumentPricesForVendors(vendorIds, fromDate, toDate, parallel, consumer);
+    }
+
+    @Override
+    public NavigableSet<LocalDate> getCachedPriceDates() {
+        return instrumentPriceCache.getCachedPriceDates();
+    }
+
+    @Override
+    public IInstrumentPriceSnapshot getSnapshot(LocalDate priceDate) {
+        return instrumentPriceCache.getSnapshot(priceDate);
+    }
+
+    @Override
+    public IPriceSubscription subscribe(PriceSubscriptionFilter filter, IPriceListener listener) {
+        return instrumentPriceCache.subscribe(filter, listener);
+    }
+
+    // Called on the retention thread, once the date is removed from the underlying cache
+    private void dayEvicted(LocalDate priceDate) {
+        evictedDates.add(priceDate);
+        for (LocalDate evictedDate : evictedDates) {
+            try {
+                priceJournal.deleteSegments(evictedDate);
+                evictedDates.remove(evictedDate);
+            }
+            catch (IOException e) {
+                purgeFailedCount.increment();
+            }
+        }
+    }
+
+}
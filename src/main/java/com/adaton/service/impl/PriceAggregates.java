@@ -0,0 +1,219 @@
+package com.adaton.service.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.model.PriceAggregate;
+import com.adaton.persistence.IDayPriceStore;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+
+/**
+ * Aggregates of the prices of every instrument of a date across its vendors, maintained as prices are published.
+ * Each instrument keeps its vendor prices sorted, with their sum, and a publication moves the price it replaces
+ * to its new place. The count, lowest, highest and median price are read off the sorted prices, so an aggregate
+ * is built in constant time when queried, and kept until a price of the instrument changes.
+ * <p>
+ * A single price is stored while holding the statistics of its instrument, so the price it replaces is the one
+ * the statistics hold. Group publications do not report the prices they replace, so they mark the statistics of
+ * their instruments stale, to be rebuilt from the store when next queried. So do the statistics of a store that
+ * held prices before the aggregates were created, e.g. a frozen date layered over its compact table.
+ */
+class PriceAggregates {
+
+    private final IDayPriceStore priceStore;
+    private final ConcurrentHashMap<String, InstrumentStatistics> statisticsByInstrument;
+    // True if the store held no price when the aggregates were created, so that every price went through them
+    private final boolean startedEmpty;
+    // Set once every instrument of the store has statistics
+    private volatile boolean everyInstrumentFound;
+
+    PriceAggregates(IDayPriceStore priceStore) {
+        this.priceStore = priceStore;
+        this.statisticsByInstrument = new ConcurrentHashMap<>();
+        this.startedEmpty = priceStore.getPriceCount() == 0L;
+        this.everyInstrumentFound = startedEmpty;
+    }
+
+    /**
+     * Keep an instrument price in the store and in the statistics of its instrument.
+     *
+     * @return The price replaced, or null if the store held no price for the vendor and instrument.
+     */
+    InstrumentPrice updatePrice(InstrumentPrice instrumentPrice) {
+        final InstrumentStatistics statistics = statistics(instrumentPrice.instrumentId());
+        synchronized (statistics) {
+            final InstrumentPrice replacedPrice = priceStore.updatePrice(instrumentPrice);
+            statistics.replace(replacedPrice != null ? replacedPrice.price() : Double.NaN, instrumentPrice.price());
+            return replacedPrice;
+        }
+    }
+
+    /**
+     * Keep a price given by the symbol IDs of its vendor and instrument in the store, and in the statistics of
+     * its instrument, without allocating once the instrument has statistics.
+     */
+    void updatePrice(String instrumentId, int vendorSymbolId, int instrumentSymbolId, double price) {
+        final InstrumentStatistics statistics = statistics(instrumentId);
+        synchronized (statistics) {
+            final double replacedPrice = priceStore.getPrice(vendorSymbolId, instrumentSymbolId);
+            priceStore.updatePrice(vendorSymbolId, instrumentSymbolId, price);
+            statistics.replace(replacedPrice, price);
+        }
+    }
+
+    /**
+     * Keep a group of instrument prices in the store, and mark the statistics of their instruments stale.
+     *
+     * @return The number of prices replaced, as counted by the store.
+     */
+    int updatePrices(Collection<InstrumentPrice> instrumentPrices, ForkJoinPool parallelPool) {
+        final int replacedCount = priceStore.updatePrices(instrumentPrices, parallelPool);
+        // Marked once the prices are stored, so that a rebuild cannot miss them
+        String previousInstrumentId = null;
+        for (InstrumentPrice instrumentPrice : instrumentPrices) {
+            if (! instrumentPrice.instrumentId().equals(previousInstrumentId)) {
+                statistics(instrumentPrice.instrumentId()).markStale();
+                previousInstrumentId = instrumentPrice.instrumentId();
+            }
+        }
+        return replacedCount;
+    }
+
+    /**
+     * @return The aggregate of the prices of an instrument, or null if the instrument has no price.
+     */
+    PriceAggregate get(String instrumentId) {
+        final InstrumentStatistics statistics = startedEmpty ? statisticsByInstrument.get(instrumentId) : statistics(instrumentId);
+        return statistics != null ? statistics.get() : null;
+    }
+
+    /**
+     * Hand the aggregate of every instrument with a price to the consumer, from the maintained statistics.
+     */
+    void forEach(BiConsumer<String, PriceAggregate> consumer) {
+        if (! everyInstrumentFound) {
+            // The instruments the store held before the aggregates were created have no statistics until published
+            // or queried, the scan adds them to be rebuilt
+            priceStore.instrumentIndex().forEachInstrumentPrice(instrumentPrice -> statistics(instrumentPrice.instrumentId()));
+            everyInstrumentFound = true;
+        }
+        statisticsByInstrument.forEach((instrumentId, statistics) -> {
+            final PriceAggregate priceAggregate = statistics.get();
+            if (priceAggregate != null) {
+                consumer.accept(instrumentId, priceAggregate);
+            }
+        });
+    }
+
+    private InstrumentStatistics statistics(String instrumentId) {
+        // Most publications target an instrument with statistics, avoid the mapping lambda in that case
+        final InstrumentStatistics statistics = statisticsByInstrument.get(instrumentId);
+        if (statistics != null) {
+            return statistics;
+        }
+        return statisticsByInstrument.computeIfAbsent(instrumentId, InstrumentStatistics::new);
+    }
+
+    /**
+     * Sorted vendor prices of one instrument, NaN prices left out, and their sum. Guarded by itself.
+     */
+    private class InstrumentStatistics {
+
+        private final String instrumentId;
+        private double[] sortedPrices;
+        private int priceCount;
+        private double sumOfPrices;
+        // True if prices were stored without updating the statistics, which are rebuilt from the store when queried
+        private boolean stale;
+        // Aggregate of the current prices, built when queried. Read without holding the statistics.
+        private volatile PriceAggregate priceAggregate;
+
+        private InstrumentStatistics(String instrumentId) {
+            this.instrumentId = instrumentId;
+            this.sortedPrices = new double[4];
+            // The store may hold prices of the instrument that were never published through the aggregates
+            this.stale = ! startedEmpty;
+        }
+
+        private PriceAggregate get() {
+            final PriceAggregate priceAggregate = this.priceAggregate;
+            if (priceAggregate != null) {
+                return priceAggregate;
+            }
+            synchronized (this) {
+                if (stale) {
+                    rebuild();
+                }
+                if (this.priceAggregate == null && priceCount > 0) {
+                    final int middle = priceCount >>> 1;
+                    final double consensusPrice =
+                        (priceCount & 1) == 1 ? sortedPrices[middle] : (sortedPrices[middle - 1] + sortedPrices[middle]) / 2.0d;
+                    this.priceAggregate = new PriceAggregate(priceCount, sortedPrices[0], sortedPrices[priceCount - 1], sumOfPrices, consensusPrice);
+                }
+                return this.priceAggregate;
+            }
+        }
+
+        // Called while holding this
+        private void replace(double replacedPrice, double price) {
+            if (stale) {
+                return;
+            }
+            if (! Double.isNaN(replacedPrice) && ! remove(replacedPrice)) {
+                // Cannot happen while every single price is stored holding this, rebuild rather than drift
+                markStale();
+                return;
+            }
+            if (! Double.isNaN(price)) {
+                add(price);
+            }
+            priceAggregate = null;
+        }
+
+        private synchronized void markStale() {
+            stale = true;
+            priceAggregate = null;
+        }
+
+        // Called while holding this
+        private void rebuild() {
+            priceCount = 0;
+            sumOfPrices = 0.0d;
+            priceStore.instrumentIndex().forEachCachedInstrumentPrice(instrumentId, instrumentPrice -> {
+                if (! Double.isNaN(instrumentPrice.price())) {
+                    add(instrumentPrice.price());
+                }
+            });
+            stale = false;
+        }
+
+        private void add(double price) {
+            if (priceCount == sortedPrices.length) {
+                sortedPrices = Arrays.copyOf(sortedPrices, priceCount << 1);
+            }
+            final int searchIndex = Arrays.binarySearch(sortedPrices, 0, priceCount, price);
+            final int priceIndex = searchIndex >= 0 ? searchIndex : -searchIndex - 1;
+            System.arraycopy(sortedPrices, priceIndex, sortedPrices, priceIndex + 1, priceCount - priceIndex);
+            sortedPrices[priceIndex] = price;
+            priceCount++;
+            sumOfPrices += price;
+        }
+
+        // Returns false if the price is not held
+        private boolean remove(double price) {
+            final int priceIndex = Arrays.binarySearch(sortedPrices, 0, priceCount, price);
+            if (priceIndex < 0) {
+                return false;
+            }
+            System.arraycopy(sortedPrices, priceIndex + 1, sortedPrices, priceIndex, priceCount - priceIndex - 1);
+            priceCount--;
+            sumOfPrices -= price;
+            return true;
+        }
+
+    }
+
+}
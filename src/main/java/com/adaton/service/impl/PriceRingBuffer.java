@@ -0,0 +1,119 @@
+package com.adaton.service.impl;
+
+import com.adaton.model.InstrumentPrice;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer, multi-consumer ring buffer of instrument prices with preallocated slots.
+ * Producers and consumers claim slots with a single CAS on a shared position and never lock or allocate.
+ * <p>
+ * Each slot carries a sequence number: a slot at position p is free for a producer when its sequence is p,
+ * and holds a price for a consumer when its sequence is p + 1. Releasing a slot sets it to p + capacity.
+ */
+class PriceRingBuffer {
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final InstrumentPrice[] prices;
+    // Next position to be claimed by a producer
+    private final AtomicLong tail;
+    // Next position to be claimed by a consumer
+    private final AtomicLong head;
+
+    PriceRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of 2");
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            sequences.set(slot, slot);
+        }
+        this.prices = new InstrumentPrice[capacity];
+        this.tail = new AtomicLong();
+        this.head = new AtomicLong();
+    }
+
+    /**
+     * @return False if the ring buffer is full.
+     */
+    boolean offer(InstrumentPrice instrumentPrice) {
+        long position = tail.get();
+        while (true) {
+            final int slot = (int) position & mask;
+            final long difference = sequences.getAcquire(slot) - position;
+            if (difference == 0L) {
+                if (tail.compareAndSet(position, position + 1L)) {
+                    prices[slot] = instrumentPrice;
+                    sequences.setRelease(slot, position + 1L);
+                    return true;
+                }
+                position = tail.get();
+            }
+            else if (difference < 0L) {
+                return false;
+            }
+            else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * @return The oldest price, or null if the ring buffer is empty.
+     */
+    InstrumentPrice poll() {
+        long position = head.get();
+        while (true) {
+            final int slot = (int) position & mask;
+            final long difference = sequences.getAcquire(slot) - (position + 1L);
+            if (difference == 0L) {
+                if (head.compareAndSet(position, position + 1L)) {
+                    final InstrumentPrice instrumentPrice = prices[slot];
+                    prices[slot] = null;
+                    sequences.setRelease(slot, position + mask + 1L);
+                    return instrumentPrice;
+                }
+                position = head.get();
+            }
+            else if (difference < 0L) {
+                return null;
+            }
+            else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Move up to maxCount of the oldest prices to a batch.
+     *
+     * @return The number of prices moved.
+     */
+    int drainTo(List<InstrumentPrice> batch, int maxCount) {
+        int drainedCount = 0;
+        InstrumentPrice instrumentPrice;
+        while (drainedCount < maxCount && (instrumentPrice = poll()) != null) {
+            batch.add(instrumentPrice);
+            drainedCount++;
+        }
+        return drainedCount;
+    }
+
+    /**
+     * @return The number of positions claimed by producers so far.
+     */
+    long claimedCount() {
+        return tail.get();
+    }
+
+    /**
+     * @return The number of positions claimed by consumers so far.
+     */
+    long consumedCount() {
+        return head.get();
+    }
+
+}
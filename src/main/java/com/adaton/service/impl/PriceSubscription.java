@@ -0,0 +1,215 @@
+package com.adaton.service.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.model.PriceChangeEvent;
+import com.adaton.model.PriceChangeEvent.ChangeType;
+import com.adaton.model.PriceSubscriptionFilter;
+import com.adaton.service.IInstrumentPriceCache;
+import com.adaton.service.IPriceListener;
+import com.adaton.service.IPriceSubscription;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pending price changes of one subscriber, conflated per vendor, instrument and date, and delivered in batches
+ * by a virtual thread started whenever changes are pending and no delivery is under way. Publishers only
+ * record a change in a concurrent map, without locking, and never wait for the listener.
+ * <p>
+ * Publishers record their change once the price is stored, so concurrent publishers of a key may record their
+ * changes out of order. A pending change therefore only keeps the price replaced before it, and the new price
+ * delivered is read from the cache at delivery time: the last change delivered for a key carries its current price.
+ * A change recorded once the price it stored was already delivered is not delivered again, so the delivery
+ * thread remembers the last price delivered for each key until its date is evicted.
+ */
+class PriceSubscription implements IPriceSubscription {
+
+    static final int DEFAULT_MAX_PENDING_COUNT = 1 << 16;
+
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    private record ChangeKey(LocalDate priceDate, String vendorId, String instrumentId) {
+    }
+
+    // Change recorded for a key, ordered by the sequence of the first change of the key
+    private record PendingChange(long sequence, PriceChangeEvent priceChange) {
+    }
+
+    private final PriceSubscriptionFilter filter;
+    private final IPriceListener listener;
+    private final int maxPendingCount;
+    // Cache the delivered prices are read from
+    private final IInstrumentPriceCache priceSource;
+
+    // Registries the subscription is to be removed from when closed
+    private final List<PriceSubscriptions> registries;
+
+    // Changes not yet handed to the listener. The delivery thread removes the changes it delivers.
+    private final ConcurrentHashMap<ChangeKey, PendingChange> pendingChanges;
+    private final AtomicLong changeSequence;
+    // True while a delivery thread runs
+    private final AtomicBoolean delivering;
+    // Last price delivered for each key of a cached date. Only used by the delivery thread.
+    private final Map<ChangeKey, InstrumentPrice> deliveredPrices;
+
+    private final LongAdder droppedCount;
+    private final LongAdder failedCount;
+    private volatile boolean closed;
+
+    PriceSubscription(PriceSubscriptionFilter filter, IPriceListener listener, int maxPendingCount, IInstrumentPriceCache priceSource) {
+        if (maxPendingCount <= 0)
+            throw new IllegalArgumentException("maxPendingCount must be positive");
+
+        this.filter = Objects.requireNonNull(filter);
+        this.listener = Objects.requireNonNull(listener);
+        this.maxPendingCount = maxPendingCount;
+        this.priceSource = Objects.requireNonNull(priceSource);
+        this.registries = new CopyOnWriteArrayList<>();
+        this.pendingChanges = new ConcurrentHashMap<>();
+        this.changeSequence = new AtomicLong();
+        this.delivering = new AtomicBoolean();
+        this.deliveredPrices = new HashMap<>();
+        this.droppedCount = new LongAdder();
+        this.failedCount = new LongAdder();
+    }
+
+    void addRegistry(PriceSubscriptions registry) {
+        registries.add(registry);
+    }
+
+    void priceChanged(InstrumentPrice oldPrice, InstrumentPrice newPrice) {
+        if (closed || ! filter.matches(newPrice)) {
+            return;
+        }
+
+        final ChangeKey changeKey = new ChangeKey(newPrice.priceDate(), newPrice.vendorId(), newPrice.instrumentId());
+        if (pendingChanges.containsKey(changeKey)) {
+            // Keep the price replaced before the first pending change, or none if the first change was new.
+            // The new price is read at delivery time, as this change may have been recorded after a later one.
+            return;
+        }
+        // Concurrent publishers of new keys may go past the capacity by one change each
+        if (pendingChanges.size() >= maxPendingCount) {
+            droppedCount.increment();
+            return;
+        }
+        final PriceChangeEvent priceChange = oldPrice == null ? PriceChangeEvent.added(newPrice) : PriceChangeEvent.updated(oldPrice, newPrice);
+        if (pendingChanges.putIfAbsent(changeKey, new PendingChange(changeSequence.getAndIncrement(), priceChange)) == null) {
+            startDelivery();
+        }
+    }
+
+    void dayEvicted(LocalDate priceDate) {
+        if (closed || ! filter.matches(priceDate)) {
+            return;
+        }
+
+        // The eviction supersedes the changes of the date still pending, and is never dropped
+        pendingChanges.keySet().removeIf(changeKey -> changeKey.priceDate().equals(priceDate));
+        pendingChanges.put(new ChangeKey(priceDate, null, null), new PendingChange(changeSequence.getAndIncrement(), PriceChangeEvent.dayEvicted(priceDate)));
+        startDelivery();
+    }
+
+    private void startDelivery() {
+        if (! delivering.get() && delivering.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("price-subscription").start(this::deliver);
+        }
+    }
+
+    private void deliver() {
+        while (true) {
+            if (closed) {
+                delivering.set(false);
+                return;
+            }
+            if (pendingChanges.isEmpty()) {
+                delivering.set(false);
+                // A change recorded since the check saw a delivery under way, and started none
+                if (pendingChanges.isEmpty() || ! delivering.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+
+            final List<Map.Entry<ChangeKey, PendingChange>> pendingEntries = new ArrayList<>(pendingChanges.entrySet());
+            pendingEntries.sort(Comparator.comparingLong(pendingEntry -> pendingEntry.getValue().sequence()));
+            final List<PriceChangeEvent> priceChanges = new ArrayList<>(pendingEntries.size());
+            for (Map.Entry<ChangeKey, PendingChange> pendingEntry : pendingEntries) {
+                // A change recorded for the key from now on is delivered in the next batch
+                if (pendingChanges.remove(pendingEntry.getKey(), pendingEntry.getValue())) {
+                    final PriceChangeEvent priceChange = currentPriceChange(pendingEntry.getKey(), pendingEntry.getValue().priceChange());
+                    if (priceChange != null) {
+                        priceChanges.add(priceChange);
+                    }
+                }
+            }
+
+            for (int batchStart = 0; batchStart < priceChanges.size() && ! closed; batchStart += MAX_BATCH_SIZE) {
+                try {
+                    listener.onPriceChanges(
+                        Collections.unmodifiableList(priceChanges.subList(batchStart, Math.min(batchStart + MAX_BATCH_SIZE, priceChanges.size())))
+                    );
+                }
+                catch (RuntimeException e) {
+                    // Keep delivering, the changes of the batch are lost for this subscriber
+                    failedCount.increment();
+                }
+            }
+        }
+    }
+
+    // Returns the change with the price currently cached for its key, or null if the key is no longer cached or
+    // its current price was already delivered
+    private PriceChangeEvent currentPriceChange(ChangeKey changeKey, PriceChangeEvent pendingPriceChange) {
+        if (pendingPriceChange.changeType() == ChangeType.DAY_EVICTED) {
+            deliveredPrices.keySet().removeIf(deliveredKey -> deliveredKey.priceDate().equals(pendingPriceChange.priceDate()));
+            return pendingPriceChange;
+        }
+        final InstrumentPrice recordedPrice = pendingPriceChange.newPrice();
+        final InstrumentPrice currentPrice =
+            priceSource.getInstrumentPrice(recordedPrice.instrumentId(), recordedPrice.priceDate()).get(recordedPrice.vendorId());
+        if (currentPrice == null) {
+            // The date was evicted since, its eviction is pending
+            return null;
+        }
+        if (currentPrice.equals(deliveredPrices.put(changeKey, currentPrice))) {
+            // Recorded by a publisher whose price, or a later one, was delivered before the change was recorded
+            return null;
+        }
+        if (currentPrice.equals(recordedPrice)) {
+            return pendingPriceChange;
+        }
+        return pendingPriceChange.oldPrice() == null
+            ? PriceChangeEvent.added(currentPrice)
+            : PriceChangeEvent.updated(pendingPriceChange.oldPrice(), currentPrice);
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        registries.forEach(registry -> registry.remove(this));
+        pendingChanges.clear();
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.adaton.service.impl;
+
+import com.adaton.model.InstrumentPrice;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Subscriptions of a cache. Publishers check isEmpty before collecting the prices they replace, so that
+ * publications cost nothing more while nobody subscribes.
+ */
+class PriceSubscriptions {
+
+    private final List<PriceSubscription> priceSubscriptions;
+    // Subscriptions that also receive day evictions, a subset of the price subscriptions
+    private final List<PriceSubscription> evictionSubscriptions;
+
+    PriceSubscriptions() {
+        this.priceSubscriptions = new CopyOnWriteArrayList<>();
+        this.evictionSubscriptions = new CopyOnWriteArrayList<>();
+    }
+
+    boolean isEmpty() {
+        return priceSubscriptions.isEmpty();
+    }
+
+    void add(PriceSubscription priceSubscription, boolean receivesEvictions) {
+        priceSubscription.addRegistry(this);
+        priceSubscriptions.add(priceSubscription);
+        if (receivesEvictions) {
+            evictionSubscriptions.add(priceSubscription);
+        }
+    }
+
+    void remove(PriceSubscription priceSubscription) {
+        priceSubscriptions.remove(priceSubscription);
+        evictionSubscriptions.remove(priceSubscription);
+    }
+
+    void priceChanged(InstrumentPrice oldPrice, InstrumentPrice newPrice) {
+        for (PriceSubscription priceSubscription : priceSubscriptions) {
+            priceSubscription.priceChanged(oldPrice, newPrice);
+        }
+    }
+
+    void dayEvicted(LocalDate priceDate) {
+        for (PriceSubscription evictionSubscription : evictionSubscriptions) {
+            evictionSubscription.dayEvicted(priceDate);
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.adaton.service.impl;
+
+import java.time.LocalDate;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Direct-mapped cache of the indices of recently looked up dates, in front of the date map. Each date has a
+ * single slot, selected by its epoch day, so that lookups of the active dates take an array read rather than
+ * a skip list traversal. Slots are filled by lookups, and cleared when the indices of their date are removed
+ * or replaced in the date map.
+ */
+class RecentDays {
+
+    // Number of slots, a power of 2. Dates this many days apart share a slot.
+    private static final int SLOT_COUNT = 16;
+
+    private record RecentDay(long epochDay, CacheIndicesForDay cacheIndicesForDay) {
+    }
+
+    private final ConcurrentSkipListMap<LocalDate, CacheIndicesForDay> cacheIndicesByDate;
+    private final AtomicReferenceArray<RecentDay> slots;
+    // Counts the invalidations, so that a lookup racing with one does not leave a stale slot behind
+    private final AtomicLong invalidationCount;
+
+    RecentDays(ConcurrentSkipListMap<LocalDate, CacheIndicesForDay> cacheIndicesByDate) {
+        this.cacheIndicesByDate = cacheIndicesByDate;
+        this.slots = new AtomicReferenceArray<>(SLOT_COUNT);
+        this.invalidationCount = new AtomicLong();
+    }
+
+    /**
+     * @return The indices of a date, or null if the date is not cached.
+     */
+    CacheIndicesForDay get(LocalDate priceDate) {
+        final long epochDay = priceDate.toEpochDay();
+        final int slotIndex = slotIndex(epochDay);
+        final RecentDay recentDay = slots.get(slotIndex);
+        if (recentDay != null && recentDay.epochDay() == epochDay) {
+            return recentDay.cacheIndicesForDay();
+        }
+
+        final long invalidationCount = this.invalidationCount.get();
+        final CacheIndicesForDay cacheIndicesForDay = cacheIndicesByDate.get(priceDate);
+        if (cacheIndicesForDay != null) {
+            final RecentDay filledDay = new RecentDay(epochDay, cacheIndicesForDay);
+            slots.set(slotIndex, filledDay);
+            // The date map may have changed since it was read, in which case the filled slot may be stale
+            if (this.invalidationCount.get() != invalidationCount) {
+                slots.compareAndSet(slotIndex, filledDay, null);
+            }
+        }
+        return cacheIndicesForDay;
+    }
+
+    /**
+     * Clear the slot of a date, once its indices are removed or replaced in the date map.
+     */
+    void invalidate(LocalDate priceDate) {
+        invalidationCount.incrementAndGet();
+        slots.set(slotIndex(priceDate.toEpochDay()), null);
+    }
+
+    private static int slotIndex(long epochDay) {
+        return (int) epochDay & (SLOT_COUNT - 1);
+    }
+
+}
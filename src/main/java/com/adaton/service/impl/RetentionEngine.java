@@ -0,0 +1,267 @@
+package com.adaton.service.impl;
+
+import com.adaton.metrics.impl.CacheMetrics;
+import com.adaton.persistence.impl.FrozenPriceTable;
+import com.adaton.retention.ICachedDay;
+import com.adaton.retention.IDaySpillHook;
+import com.adaton.retention.IRetentionPolicy;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Applies a retention policy to the cached dates on a background executor, and freezes the dates that have
+ * fallen into the cold tier. Publishers only read the earliest admitted date, and request a run when they
+ * add a date.
+ */
+class RetentionEngine {
+
+    // Runs requested by publishers of the caches not given an executor of their own. Runs are short and only
+    // queued once per engine, but a slow spill hook of one cache delays the retention of the others.
+    static final ExecutorService DEFAULT_RETENTION_EXECUTOR =
+        Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "price-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private final ConcurrentSkipListMap<LocalDate, CacheIndicesForDay> cacheIndicesByDate;
+    private final IRetentionPolicy retentionPolicy;
+    // Receives the evicted dates, or null if evicted dates are dropped
+    private final IDaySpillHook spillHook;
+    // Notified of every evicted date, once it is no longer cached
+    private final Consumer<LocalDate> evictionListener;
+    // Notified of every date whose indices were removed or replaced, once the date map holds the change
+    private final Consumer<LocalDate> retiredDayListener;
+    private final CacheMetrics cacheMetrics;
+    // Creates the indices that replace a frozen date, layered over its frozen table
+    private final Function<FrozenPriceTable, CacheIndicesForDay> frozenDayFactory;
+    // Runs the runs requested by publishers
+    private final Executor retentionExecutor;
+
+    private final AtomicBoolean runRequested;
+    private final LongAdder spillFailedCount;
+
+    // Prices for earlier dates are rejected on publication, null if every date is admitted
+    private volatile LocalDate earliestAdmittedDate;
+
+    // Number of most recent dates kept in their regular form, dates before them are frozen. 0 if no date is frozen.
+    private volatile int hotDayCount;
+    private volatile boolean compressPrices;
+
+    RetentionEngine(
+            ConcurrentSkipListMap<LocalDate, CacheIndicesForDay> cacheIndicesByDate,
+            IRetentionPolicy retentionPolicy,
+            IDaySpillHook spillHook,
+            Consumer<LocalDate> evictionListener,
+            Consumer<LocalDate> retiredDayListener,
+            CacheMetrics cacheMetrics,
+            Function<FrozenPriceTable, CacheIndicesForDay> frozenDayFactory,
+            Executor retentionExecutor) {
+        this.cacheIndicesByDate = cacheIndicesByDate;
+        this.retentionPolicy = retentionPolicy;
+        this.spillHook = spillHook;
+        this.evictionListener = evictionListener;
+        this.retiredDayListener = retiredDayListener;
+        this.cacheMetrics = cacheMetrics;
+        this.frozenDayFactory = frozenDayFactory;
+        this.retentionExecutor = retentionExecutor;
+        this.runRequested = new AtomicBoolean();
+        this.spillFailedCount = new LongAdder();
+    }
+
+    LocalDate getEarliestAdmittedDate() {
+        return earliestAdmittedDate;
+    }
+
+    boolean admits(LocalDate priceDate) {
+        final LocalDate earliestAdmittedDate = this.earliestAdmittedDate;
+        return earliestAdmittedDate == null || ! priceDate.isBefore(earliestAdmittedDate);
+    }
+
+    /**
+     * Queue a run on the retention executor, unless one is already queued.
+     */
+    void requestRun() {
+        if (runRequested.compareAndSet(false, true)) {
+            retentionExecutor.execute(() -> {
+                runRequested.set(false);
+                run();
+            });
+        }
+    }
+
+    /**
+     * Freeze every date but the most recent ones from the next run on. Dates already frozen stay frozen.
+     */
+    void enableColdTier(int hotDayCount, boolean compressPrices) {
+        if (hotDayCount <= 0) {
+            throw new IllegalArgumentException("hotDayCount must be positive");
+        }
+        this.compressPrices = compressPrices;
+        this.hotDayCount = hotDayCount;
+    }
+
+    long getSpillFailedCount() {
+        return spillFailedCount.sum();
+    }
+
+    /**
+     * Evict the dates selected by the policy and hand them to the spill hook, then freeze the cold dates.
+     * Runs are serialised, so that concurrent rollovers evict and freeze each date once.
+     *
+     * @return The number of dates evicted.
+     */
+    synchronized int run() {
+        final NavigableMap<LocalDate, ICachedDay> cachedDays = new TreeMap<>();
+        cacheIndicesByDate.forEach((priceDate, cacheIndicesForDay) -> cachedDays.put(priceDate, new CachedDay(priceDate, cacheIndicesForDay)));
+        final Set<LocalDate> evictedDates = retentionPolicy.selectEvictedDates(Collections.unmodifiableNavigableMap(cachedDays));
+
+        // Stop admitting evicted dates before they are removed, so that publishers do not recreate them
+        final TreeSet<LocalDate> retainedDates = new TreeSet<>(cachedDays.keySet());
+        retainedDates.removeAll(evictedDates);
+        // The floor only moves forward: a run that finds the earlier dates already evicted must not admit them again
+        final LocalDate runEarliestAdmittedDate = earliestAdmittedDate(retainedDates, evictedDates);
+        if (earliestAdmittedDate == null || (runEarliestAdmittedDate != null && runEarliestAdmittedDate.isAfter(earliestAdmittedDate))) {
+            earliestAdmittedDate = runEarliestAdmittedDate;
+        }
+
+        int evictedCount = 0;
+        for (LocalDate evictedDate : new TreeSet<>(evictedDates)) {
+            final CachedDay cachedDay = (CachedDay) cachedDays.get(evictedDate);
+            if (cachedDay == null || ! cacheIndicesByDate.remove(evictedDate, cachedDay.cacheIndicesForDay)) {
+                continue;
+            }
+            retiredDayListener.accept(evictedDate);
+            evictedCount++;
+            if (spillHook != null) {
+                spill(evictedDate, cachedDay.cacheIndicesForDay);
+            }
+            evictionListener.accept(evictedDate);
+        }
+        cacheMetrics.addEvictedDays(evictedCount);
+        freezeColdDays();
+        return evictedCount;
+    }
+
+    private void freezeColdDays() {
+        final int hotDayCount = this.hotDayCount;
+        if (hotDayCount == 0) {
+            return;
+        }
+
+        final List<LocalDate> cachedDates = new ArrayList<>(cacheIndicesByDate.keySet());
+        for (LocalDate coldDate : cachedDates.subList(0, Math.max(cachedDates.size() - hotDayCount, 0))) {
+            final CacheIndicesForDay cacheIndicesForDay = cacheIndicesByDate.get(coldDate);
+            if (cacheIndicesForDay != null && ! cacheIndicesForDay.frozen()) {
+                freeze(coldDate, cacheIndicesForDay);
+            }
+        }
+    }
+
+    private void freeze(LocalDate coldDate, CacheIndicesForDay cacheIndicesForDay) {
+        // Publications wait while the date is frozen, and retry on the replacement indices once it is in place
+        final long stamp = cacheIndicesForDay.publicationLock().writeLock();
+        try {
+            final FrozenPriceTable frozenPriceTable =
+                FrozenPriceTable.freeze(coldDate, cacheIndicesForDay.cachedPricesByInstrument(), compressPrices);
+            if (cacheIndicesByDate.replace(coldDate, cacheIndicesForDay, frozenDayFactory.apply(frozenPriceTable))) {
+                retiredDayListener.accept(coldDate);
+            }
+        }
+        finally {
+            cacheIndicesForDay.publicationLock().unlockWrite(stamp);
+        }
+    }
+
+    private LocalDate earliestAdmittedDate(TreeSet<LocalDate> retainedDates, Set<LocalDate> evictedDates) {
+        LocalDate earliestAdmittedDate = retentionPolicy.getEarliestAdmittedDate(Collections.unmodifiableNavigableSet(retainedDates));
+        // Dates evicted from before the earliest retained date are not admitted again either
+        for (LocalDate evictedDate : evictedDates) {
+            if ((retainedDates.isEmpty() || evictedDate.isBefore(retainedDates.first())) &&
+                (earliestAdmittedDate == null || ! evictedDate.isBefore(earliestAdmittedDate))) {
+                earliestAdmittedDate = evictedDate.plusDays(1L);
+            }
+        }
+        return earliestAdmittedDate;
+    }
+
+    private void spill(LocalDate evictedDate, CacheIndicesForDay cacheIndicesForDay) {
+        try {
+            // The snapshot waits for publications still in flight on the evicted date
+            spillHook.spill(cacheIndicesForDay.snapshot(evictedDate));
+        }
+        catch (IOException | RuntimeException e) {
+            // Keep evicting, the prices of the date are lost
+            spillFailedCount.increment();
+        }
+    }
+
+    /**
+     * Cached date whose counts are computed once, when the policy first asks for them.
+     */
+    private static class CachedDay implements ICachedDay {
+
+        private final LocalDate priceDate;
+        private final CacheIndicesForDay cacheIndicesForDay;
+        private long priceCount = -1L;
+        private long memoryBytes = -1L;
+        private Map<String, Long> priceCountByVendor;
+
+        private CachedDay(LocalDate priceDate, CacheIndicesForDay cacheIndicesForDay) {
+            this.priceDate = priceDate;
+            this.cacheIndicesForDay = cacheIndicesForDay;
+        }
+
+        @Override
+        public LocalDate getPriceDate() {
+            return priceDate;
+        }
+
+        @Override
+        public long getPriceCount() {
+            if (priceCount < 0L) {
+                priceCount = cacheIndicesForDay.priceStore().getPriceCount();
+            }
+            return priceCount;
+        }
+
+        @Override
+        public long estimateMemoryBytes() {
+            if (memoryBytes < 0L) {
+                memoryBytes = cacheIndicesForDay.priceStore().estimateMemoryBytes();
+            }
+            return memoryBytes;
+        }
+
+        @Override
+        public Map<String, Long> getPriceCountByVendor() {
+            if (priceCountByVendor == null) {
+                final Map<String, Long> priceCounts = new HashMap<>();
+                cacheIndicesForDay.cachedPricesByVendor()
+                    .forEachInstrumentPrice(instrumentPrice -> priceCounts.merge(instrumentPrice.vendorId(), 1L, Long::sum));
+                priceCountByVendor = Collections.unmodifiableMap(priceCounts);
+            }
+            return priceCountByVendor;
+        }
+
+    }
+
+}
@@ -0,0 +1,402 @@
+package com.adaton.service.impl;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.model.PriceAggregate;
+import com.adaton.model.PriceSubscriptionFilter;
+import com.adaton.model.PublishResult;
+import com.adaton.service.IInstrumentPriceCache;
+import com.adaton.service.IInstrumentPriceSnapshot;
+import com.adaton.service.IPriceListener;
+import com.adaton.service.IPriceSubscription;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Cache partitioned into independent stripes by instrument ID. Each stripe is a cache of its own, with its own
+ * date map, price stores and retention, so publications of different instruments never contend on a date.
+ * <p>
+ * The prices of an instrument are all held by one stripe: instrument lookups go to that stripe only, while
+ * vendor lookups are scattered to every stripe and their results gathered into one map. A new date is added to
+ * every stripe, but each stripe applies the retention policy to its own share of the prices: policies by date,
+ * such as a day count, evict a date from every stripe, while a memory budget, a budget per stripe, or a vendor
+ * cap may evict a date from some stripes only. A date stays cached until the last stripe holding it evicts it,
+ * and only then is its eviction delivered to subscribers.
+ * <p>
+ * Stripes run their retention on the executor they are created with. The stripes of the default stripe factory
+ * share the daemon retention thread of every cache not given an executor; a stripe factory can give the stripes
+ * of one cache an executor of their own.
+ */
+public class ShardedInstrumentPriceCache implements IInstrumentPriceCache {
+
+    // Minimum number of prices in a bulk publication before the stripes are published to in parallel
+    private static final int PARALLEL_PUBLISH_THRESHOLD = 8192;
+
+    private final InstrumentPriceCache[] stripes;
+
+    // Pool used to scatter queries and large bulk publications over the stripes, or null for the common pool
+    private final ForkJoinPool stripePool;
+
+    // Subscriptions receiving the day evictions, once the last stripe holding a date has evicted it
+    private final PriceSubscriptions evictionSubscriptions;
+
+    // Dates whose eviction was delivered and that no stripe has cached since, one per evicted date, guarded by itself
+    private final Set<LocalDate> evictedDates;
+
+    public ShardedInstrumentPriceCache(int stripeCount) {
+        this(stripeCount, InstrumentPriceCache::new, null);
+    }
+
+    public ShardedInstrumentPriceCache(int stripeCount, Supplier<InstrumentPriceCache> stripeFactory) {
+        this(stripeCount, stripeFactory, null);
+    }
+
+    public ShardedInstrumentPriceCache(int stripeCount, Supplier<InstrumentPriceCache> stripeFactory, ForkJoinPool stripePool) {
+        if (stripeCount <= 0)
+            throw new IllegalArgumentException("stripeCount must be positive");
+
+        this.stripes = new InstrumentPriceCache[stripeCount];
+        for (int stripeIndex = 0; stripeIndex < stripeCount; stripeIndex++) {
+            stripes[stripeIndex] = Objects.requireNonNull(stripeFactory.get());
+        }
+        this.stripePool = stripePool;
+        this.evictionSubscriptions = new PriceSubscriptions();
+        this.evictedDates = new HashSet<>();
+        for (InstrumentPriceCache stripe : stripes) {
+            stripe.addEvictionListener(this::stripeDayEvicted);
+        }
+    }
+
+    @Override
+    public void publishInstrumentPrice(InstrumentPrice instrumentPrice) {
+        final InstrumentPriceCache stripe = stripe(instrumentPrice.instrumentId());
+        if (stripe.lacksPriceDate(instrumentPrice.priceDate())) {
+            addPriceDate(instrumentPrice.priceDate());
+        }
+        stripe.publishInstrumentPrice(instrumentPrice);
+    }
+
+    @Override
+    public PublishResult publishInstrumentPrices(Collection<InstrumentPrice> instrumentPrices) {
+        // Partition the batch by stripe, keeping the order of the prices within each stripe
+        final List<List<InstrumentPrice>> pricesByStripe = new ArrayList<>(stripes.length);
+        for (int stripeIndex = 0; stripeIndex < stripes.length; stripeIndex++) {
+            pricesByStripe.add(new ArrayList<>());
+        }
+        final Set<LocalDate> priceDates = new HashSet<>();
+        for (InstrumentPrice instrumentPrice : instrumentPrices) {
+            pricesByStripe.get(stripeIndex(instrumentPrice.instrumentId())).add(instrumentPrice);
+            priceDates.add(instrumentPrice.priceDate());
+        }
+        for (LocalDate priceDate : priceDates) {
+            if (isLackedByAnyStripe(priceDate)) {
+                addPriceDate(priceDate);
+            }
+        }
+
+        final IntFunction<PublishResult> publishToStripe =
+            stripeIndex -> stripes[stripeIndex].publishInstrumentPrices(pricesByStripe.get(stripeIndex));
+        final List<PublishResult> publishResults =
+            instrumentPrices.size() >= PARALLEL_PUBLISH_THRESHOLD
+                ? scatter(publishToStripe)
+                : IntStream.range(0, stripes.length).mapToObj(publishToStripe).toList();
+
+        int acceptedCount = 0;
+        int rejectedAsTooOldCount = 0;
+        int supersededCount = 0;
+        int droppedCount = 0;
+        for (PublishResult publishResult : publishResults) {
+            acceptedCount += publishResult.acceptedCount();
+            rejectedAsTooOldCount += publishResult.rejectedAsTooOldCount();
+            supersededCount += publishResult.supersededCount();
+            droppedCount += publishResult.droppedCount();
+        }
+        return new PublishResult(acceptedCount, rejectedAsTooOldCount, supersededCount, droppedCount);
+    }
+
+    // True if some stripe admits the date but does not hold it. Most publications target dates every stripe
+    // holds, or too old for any stripe, and skip addPriceDate.
+    private boolean isLackedByAnyStripe(LocalDate priceDate) {
+        for (InstrumentPriceCache stripe : stripes) {
+            if (stripe.lacksPriceDate(priceDate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Adds the date to every stripe that does not hold it yet, so that the stripes agree on the retained dates
+    private void addPriceDate(LocalDate priceDate) {
+        synchronized (evictedDates) {
+            evictedDates.remove(priceDate);
+        }
+        for (InstrumentPriceCache stripe : stripes) {
+            stripe.addPriceDate(priceDate);
+        }
+    }
+
+    @Override
+    public Map<String, InstrumentPrice> getInstrumentPrice(String instrumentId, LocalDate priceDate) {
+        return stripe(instrumentId).getInstrumentPrice(instrumentId, priceDate);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The prices of every stripe are gathered into a copy, later publications are not visible through it.
+     */
+    @Override
+    public Map<String, InstrumentPrice> getAllInstrumentPricesForVendor(String vendorId, LocalDate priceDate) {
+        return gather(scatter(stripeIndex -> stripes[stripeIndex].getAllInstrumentPricesForVendor(vendorId, priceDate)));
+    }
+
+    @Override
+    public double getPrice(String vendorId, String instrumentId, LocalDate priceDate) {
+        return stripe(instrumentId).getPrice(vendorId, instrumentId, priceDate);
+    }
+
+    @Override
+    public PriceAggregate getPriceAggregate(String instrumentId, LocalDate priceDate) {
+        return stripe(instrumentId).getPriceAggregate(instrumentId, priceDate);
+    }
+
+    @Override
+    public void getAllPriceAggregates(LocalDate priceDate, BiConsumer<String, PriceAggregate> consumer) {
+        // Every instrument belongs to a single stripe, so the stripes' aggregates do not overlap
+        for (InstrumentPriceCache stripe : stripes) {
+            stripe.getAllPriceAggregates(priceDate, consumer);
+        }
+    }
+
+    @Override
+    public void getInstrumentPrices(
+            Collection<String> instrumentIds,
+            LocalDate fromDate,
+            LocalDate toDate,
+            boolean parallel,
+            Consumer<InstrumentPrice> consumer) {
+        final List<List<String>> instrumentIdsByStripe = new ArrayList<>(stripes.length);
+        for (int stripeIndex = 0; stripeIndex < stripes.length; stripeIndex++) {
+            instrumentIdsByStripe.add(new ArrayList<>());
+        }
+        for (String instrumentId : instrumentIds) {
+            instrumentIdsByStripe.get(stripeIndex(instrumentId)).add(instrumentId);
+        }
+
+        if (! parallel) {
+            // Visit the dates in order, each date being visited in the stripes holding the instruments
+            for (LocalDate priceDate : getCachedPriceDates().subSet(fromDate, true, toDate, true)) {
+                for (int stripeIndex = 0; stripeIndex < stripes.length; stripeIndex++) {
+                    if (! instrumentIdsByStripe.get(stripeIndex).isEmpty()) {
+                        stripes[stripeIndex].getInstrumentPrices(instrumentIdsByStripe.get(stripeIndex), priceDate, priceDate, false, consumer);
+                    }
+                }
+            }
+            return;
+        }
+
+        scatter(stripeIndex -> {
+            if (! instrumentIdsByStripe.get(stripeIndex).isEmpty()) {
+                stripes[stripeIndex].getInstrumentPrices(instrumentIdsByStripe.get(stripeIndex), fromDate, toDate, true, consumer);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void getAllInstrumentPricesForVendors(
+            Collection<String> vendorIds,
+            LocalDate fromDate,
+            LocalDate toDate,
+            boolean parallel,
+            Consumer<InstrumentPrice> consumer) {
+        if (! parallel) {
+            // Visit the dates in order, each date being visited in every stripe
+            for (LocalDate priceDate : getCachedPriceDates().subSet(fromDate, true, toDate, true)) {
+                for (InstrumentPriceCache stripe : stripes) {
+                    stripe.getAllInstrumentPricesForVendors(vendorIds, priceDate, priceDate, false, consumer);
+                }
+            }
+            return;
+        }
+
+        scatter(stripeIndex -> {
+            stripes[stripeIndex].getAllInstrumentPricesForVendors(vendorIds, fromDate, toDate, true, consumer);
+            return null;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A date is cached while any stripe holds it.
+     */
+    @Override
+    public NavigableSet<LocalDate> getCachedPriceDates() {
+        final NavigableSet<LocalDate> cachedPriceDates = new TreeSet<>();
+        for (InstrumentPriceCache stripe : stripes) {
+            cachedPriceDates.addAll(stripe.getCachedPriceDates());
+        }
+        return Collections.unmodifiableNavigableSet(cachedPriceDates);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Each stripe is snapshotted in turn. Both views of a price come from the same stripe, so a price is still
+     * visible through both views or through neither, but the snapshot is not taken at one point in time across
+     * instruments of different stripes.
+     */
+    @Override
+    public IInstrumentPriceSnapshot getSnapshot(LocalDate priceDate) {
+        final IInstrumentPriceSnapshot[] stripeSnapshots = new IInstrumentPriceSnapshot[stripes.length];
+        for (int stripeIndex = 0; stripeIndex < stripes.length; stripeIndex++) {
+            stripeSnapshots[stripeIndex] = stripes[stripeIndex].getSnapshot(priceDate);
+        }
+        return new ShardedSnapshot(priceDate, stripeSnapshots);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The subscription receives the price changes of every stripe, and the eviction of a date once the last
+     * stripe holding it has evicted it.
+     */
+    @Override
+    public IPriceSubscription subscribe(PriceSubscriptionFilter filter, IPriceListener listener) {
+        final PriceSubscription priceSubscription = new PriceSubscription(filter, listener, PriceSubscription.DEFAULT_MAX_PENDING_COUNT, this);
+        for (InstrumentPriceCache stripe : stripes) {
+            stripe.addSubscription(priceSubscription, false);
+        }
+        evictionSubscriptions.add(priceSubscription, true);
+        return priceSubscription;
+    }
+
+    // Called on the retention thread of a stripe, once the date is removed from that stripe
+    private void stripeDayEvicted(LocalDate priceDate) {
+        synchronized (evictedDates) {
+            // Stripes evicting a date concurrently may both find it gone from every stripe, deliver it once
+            if (isCachedByAnyStripe(priceDate) || ! evictedDates.add(priceDate)) {
+                return;
+            }
+        }
+        evictionSubscriptions.dayEvicted(priceDate);
+    }
+
+    private boolean isCachedByAnyStripe(LocalDate priceDate) {
+        for (InstrumentPriceCache stripe : stripes) {
+            if (stripe.getCachedPriceDates().contains(priceDate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Apply the retention policy of every stripe on the caller's thread.
+     *
+     * @return The number of dates evicted, counted once per stripe.
+     */
+    public int runRetention() {
+        int evictedCount = 0;
+        for (InstrumentPriceCache stripe : stripes) {
+            evictedCount += stripe.runRetention();
+        }
+        return evictedCount;
+    }
+
+    /**
+     * Enable the cold tier of every stripe.
+     *
+     * @see InstrumentPriceCache#enableColdTier(int, boolean)
+     */
+    public void enableColdTier(int hotDayCount, boolean compressPrices) {
+        for (InstrumentPriceCache stripe : stripes) {
+            stripe.enableColdTier(hotDayCount, compressPrices);
+        }
+    }
+
+    /**
+     * @return The stripes of the cache, e.g. to read or enable the metrics of each stripe.
+     */
+    public List<InstrumentPriceCache> getStripes() {
+        return List.of(stripes);
+    }
+
+    private InstrumentPriceCache stripe(String instrumentId) {
+        return stripes[stripeIndex(instrumentId)];
+    }
+
+    private int stripeIndex(String instrumentId) {
+        return Math.floorMod(instrumentId.hashCode(), stripes.length);
+    }
+
+    // Applies the action to every stripe concurrently, and returns the results in stripe order
+    private <T> List<T> scatter(IntFunction<T> action) {
+        if (stripes.length == 1) {
+            return Collections.singletonList(action.apply(0));
+        }
+        if (stripePool != null) {
+            return stripePool.submit(() -> IntStream.range(0, stripes.length).parallel().mapToObj(action).toList()).join();
+        }
+        return IntStream.range(0, stripes.length).parallel().mapToObj(action).toList();
+    }
+
+    private static Map<String, InstrumentPrice> gather(List<Map<String, InstrumentPrice>> stripePrices) {
+        int priceCount = 0;
+        for (Map<String, InstrumentPrice> instrumentPrices : stripePrices) {
+            priceCount += instrumentPrices.size();
+        }
+        if (priceCount == 0) {
+            return Collections.emptyMap();
+        }
+
+        final Map<String, InstrumentPrice> gatheredPrices = HashMap.newHashMap(priceCount);
+        stripePrices.forEach(gatheredPrices::putAll);
+        return Collections.unmodifiableMap(gatheredPrices);
+    }
+
+    private record ShardedSnapshot(LocalDate priceDate, IInstrumentPriceSnapshot[] stripeSnapshots) implements IInstrumentPriceSnapshot {
+
+        @Override
+        public LocalDate getPriceDate() {
+            return priceDate;
+        }
+
+        @Override
+        public Map<String, InstrumentPrice> getInstrumentPrice(String instrumentId) {
+            return stripeSnapshots[Math.floorMod(instrumentId.hashCode(), stripeSnapshots.length)].getInstrumentPrice(instrumentId);
+        }
+
+        @Override
+        public Map<String, InstrumentPrice> getAllInstrumentPricesForVendor(String vendorId) {
+            return gather(Arrays.stream(stripeSnapshots).map(stripeSnapshot -> stripeSnapshot.getAllInstrumentPricesForVendor(vendorId)).toList());
+        }
+
+        @Override
+        public void forEachInstrumentPrice(Consumer<InstrumentPrice> action) {
+            for (IInstrumentPriceSnapshot stripeSnapshot : stripeSnapshots) {
+                stripeSnapshot.forEachInstrumentPrice(action);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.adaton;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.model.PriceAggregate;
+import com.adaton.persistence.impl.CacheIndexFactory;
+import com.adaton.persistence.impl.SlotTableCacheIndexFactory;
+import com.adaton.retention.impl.DayCountRetentionPolicy;
+import com.adaton.service.IInstrumentPriceCache;
+import com.adaton.service.impl.InstrumentPriceCache;
+import com.adaton.service.impl.ShardedInstrumentPriceCache;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AggregateTest {
+
+    private static final LocalDate FIRST_DATE = LocalDate.of(2024, 1, 1);
+
+    private static void assertAggregatesFollowPublications(IInstrumentPriceCache instrumentPriceCache) {
+        instrumentPriceCache.publishInstrumentPrices(List.of(
+            new InstrumentPrice("Vendor 1", "Instrument 1", FIRST_DATE, 100.0d),
+            new InstrumentPrice("Vendor 2", "Instrument 1", FIRST_DATE, 102.0d),
+            new InstrumentPrice("Vendor 3", "Instrument 1", FIRST_DATE, 1000.0d),
+            new InstrumentPrice("Vendor 4", "Instrument 1", FIRST_DATE, Double.NaN)
+        ));
+
+        // The outlying vendor moves the average but not the consensus, the NaN price is left out
+        final PriceAggregate priceAggregate = instrumentPriceCache.getPriceAggregate("Instrument 1", FIRST_DATE);
+        assertEquals(new PriceAggregate(3, 100.0d, 1000.0d, 1202.0d, 102.0d), priceAggregate);
+        assertEquals(1202.0d / 3, priceAggregate.averagePrice());
+        assertSame(priceAggregate, instrumentPriceCache.getPriceAggregate("Instrument 1", FIRST_DATE));
+
+        // Publications replace the aggregate of their instrument only
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 2", "Instrument 2", FIRST_DATE, 50.0d));
+        assertSame(priceAggregate, instrumentPriceCache.getPriceAggregate("Instrument 1", FIRST_DATE));
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 4", "Instrument 1", FIRST_DATE, 104.0d));
+        assertEquals(new PriceAggregate(4, 100.0d, 1000.0d, 1306.0d, 103.0d), instrumentPriceCache.getPriceAggregate("Instrument 1", FIRST_DATE));
+        instrumentPriceCache.publishInstrumentPrices(List.of(new InstrumentPrice("Vendor 3", "Instrument 1", FIRST_DATE, 101.0d)));
+        assertEquals(new PriceAggregate(4, 100.0d, 104.0d, 407.0d, 101.5d), instrumentPriceCache.getPriceAggregate("Instrument 1", FIRST_DATE));
+
+        assertNull(instrumentPriceCache.getPriceAggregate("Instrument 3", FIRST_DATE));
+        assertNull(instrumentPriceCache.getPriceAggregate("Instrument 1", FIRST_DATE.plusDays(1L)));
+    }
+
+    @Test
+    public void testAggregates() {
+        assertAggregatesFollowPublications(new InstrumentPriceCache(new CacheIndexFactory()));
+        assertAggregatesFollowPublications(new InstrumentPriceCache(new SlotTableCacheIndexFactory()));
+        assertAggregatesFollowPublications(new ShardedInstrumentPriceCache(4));
+    }
+
+    @Test
+    public void testAggregatesBySymbolId() {
+        final var instrumentPriceCache = new InstrumentPriceCache(new SlotTableCacheIndexFactory());
+        final int vendor1 = instrumentPriceCache.getVendorSymbols().intern("Vendor 1");
+        final int vendor2 = instrumentPriceCache.getVendorSymbols().intern("Vendor 2");
+        final int instrument1 = instrumentPriceCache.getInstrumentSymbols().intern("Instrument 1");
+        final int epochDay = (int) FIRST_DATE.toEpochDay();
+
+        instrumentPriceCache.publishInstrumentPrice(vendor1, instrument1, epochDay, 10.0d);
+        assertEquals(new PriceAggregate(1, 10.0d, 10.0d, 10.0d, 10.0d), instrumentPriceCache.getPriceAggregate("Instrument 1", FIRST_DATE));
+        instrumentPriceCache.publishInstrumentPrice(vendor2, instrument1, epochDay, 20.0d);
+        assertEquals(new PriceAggregate(2, 10.0d, 20.0d, 30.0d, 15.0d), instrumentPriceCache.getPriceAggregate("Instrument 1", FIRST_DATE));
+    }
+
+    @Test
+    public void testAllAggregatesForDate() {
+        final var instrumentPriceCache =
+            new ShardedInstrumentPriceCache(
+                4,
+                () -> new InstrumentPriceCache(new SlotTableCacheIndexFactory(), new DayCountRetentionPolicy(2))
+            );
+        instrumentPriceCache.publishInstrumentPrices(
+            IntStream.range(0, 400)
+                .mapToObj(priceIndex -> new InstrumentPrice("Vendor " + priceIndex % 4, "Instrument " + priceIndex / 4, FIRST_DATE, priceIndex))
+                .toList()
+        );
+
+        final Map<String, PriceAggregate> priceAggregates = new HashMap<>();
+        instrumentPriceCache.getAllPriceAggregates(FIRST_DATE, (instrumentId, priceAggregate) ->
+            assertNull(priceAggregates.put(instrumentId, priceAggregate)));
+        assertEquals(100, priceAggregates.size());
+        priceAggregates.forEach((instrumentId, priceAggregate) -> {
+            final int firstPrice = Integer.parseInt(instrumentId.substring("Instrument ".length())) * 4;
+            assertEquals(new PriceAggregate(4, firstPrice, firstPrice + 3, 4 * firstPrice + 6, firstPrice + 1.5d), priceAggregate);
+        });
+
+        instrumentPriceCache.getAllPriceAggregates(FIRST_DATE.plusDays(1L), (instrumentId, priceAggregate) -> fail());
+    }
+
+    @Test
+    public void testAggregatesFollowConcurrentPublishers() throws InterruptedException {
+        final var instrumentPriceCache = new InstrumentPriceCache(new CacheIndexFactory());
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 0", "Instrument 1", FIRST_DATE, 0.0d));
+        assertNotNull(instrumentPriceCache.getPriceAggregate("Instrument 1", FIRST_DATE));
+
+        // Publishers of the same vendors replace each other's prices, the aggregate follows the last stored ones
+        final Thread[] publishers = new Thread[4];
+        for (int publisherIndex = 0; publisherIndex < publishers.length; publisherIndex++) {
+            final int firstPrice = publisherIndex * 10000;
+            publishers[publisherIndex] = new Thread(() -> IntStream.range(firstPrice, firstPrice + 10000).forEach(price ->
+                instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor " + price % 3, "Instrument 1", FIRST_DATE, price))));
+            publishers[publisherIndex].start();
+        }
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+
+        final double[] prices =
+            instrumentPriceCache.getInstrumentPrice("Instrument 1", FIRST_DATE).values().stream().mapToDouble(InstrumentPrice::price).sorted().toArray();
+        assertEquals(3, prices.length);
+        assertEquals(
+            new PriceAggregate(3, prices[0], prices[2], prices[0] + prices[1] + prices[2], prices[1]),
+            instrumentPriceCache.getPriceAggregate("Instrument 1", FIRST_DATE)
+        );
+    }
+
+}
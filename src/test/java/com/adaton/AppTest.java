@@ -1,11 +1,15 @@
 package com.adaton;
 
 import com.adaton.model.InstrumentPrice;
+import com.adaton.model.PublishResult;
 import com.adaton.service.IInstrumentPriceCache;
+import com.adaton.service.IInstrumentPriceSnapshot;
 import com.adaton.service.impl.InstrumentPriceCache;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.IntStream;
@@ -14,7 +18,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 public class AppTest {
 
-    private IInstrumentPriceCache getCacheInstance() {
+    protected InstrumentPriceCache getCacheInstance() {
         return new InstrumentPriceCache();
     }
 
@@ -96,6 +100,29 @@ public class AppTest {
         assertEquals(0, nonExistVendorID.size());
     }
 
+    @Test
+    public void testPriceLookup() {
+        final var instrumentPriceCache = getCacheInstance();
+        instrumentPriceCache.publishInstrumentPrices(List.of(testV1I1Today, testV2I1Today, testV1I1Yesterday));
+
+        assertEquals(100.0d, instrumentPriceCache.getPrice("Vendor 1", "Instrument 1", LocalDate.now()));
+        assertEquals(110.0d, instrumentPriceCache.getPrice("Vendor 2", "Instrument 1", LocalDate.now()));
+        assertEquals(90.0d, instrumentPriceCache.getPrice("Vendor 1", "Instrument 1", LocalDate.now().minusDays(1L)));
+
+        // Missing prices are reported as NaN
+        assertTrue(Double.isNaN(instrumentPriceCache.getPrice("Vendor 2", "Instrument 1", LocalDate.now().minusDays(1L))));
+        assertTrue(Double.isNaN(instrumentPriceCache.getPrice("Vendor 1", "Instrument 2", LocalDate.now())));
+        assertTrue(Double.isNaN(instrumentPriceCache.getPrice("Non-existent Vendor ID", "Instrument 1", LocalDate.now())));
+        assertTrue(Double.isNaN(instrumentPriceCache.getPrice("Vendor 1", "Instrument 1", LocalDate.now().minusDays(2L))));
+
+        // Lookups see corrections, and the same read-only view is handed out for repeated lookups
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 1", LocalDate.now(), 101.0d));
+        assertEquals(101.0d, instrumentPriceCache.getPrice("Vendor 1", "Instrument 1", LocalDate.now()));
+        final Map<String, InstrumentPrice> vendorPrices = instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor 1", LocalDate.now());
+        assertSame(vendorPrices, instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor 1", LocalDate.now()));
+        assertThrows(UnsupportedOperationException.class, () -> vendorPrices.remove("Instrument 1"));
+    }
+
     @Test
     public void testSingleVendorMultipleInstrumentPricesPublication() {
         final var instrumentPriceCache = getCacheInstance();
@@ -188,8 +215,9 @@ public class AppTest {
             testRetrieveByInstrumentId(instrumentPriceCache, instrumentPrice, 1);
         }
 
-        // Publish all 31 days of prices (the earliest day should be evicted)
+        // Publish all 31 days of prices (the earliest day should be evicted once retention has run)
         instrumentPriceCache.publishInstrumentPrices(testRecords31Days);
+        instrumentPriceCache.runRetention();
 
         // Cache should still contain exactly 30 days of prices
         for (InstrumentPrice instrumentPrice : testRecords31Days.subList(0, 30)) {
@@ -199,6 +227,7 @@ public class AppTest {
 
         // Record for the earliest date should be evicted
         final InstrumentPrice evictedDay = testRecords31Days.getLast();
+        assertTrue(Double.isNaN(instrumentPriceCache.getPrice(evictedDay.vendorId(), evictedDay.instrumentId(), evictedDay.priceDate())));
 
         Map<String, InstrumentPrice> nonExistDate =
                 instrumentPriceCache.getInstrumentPrice(evictedDay.instrumentId(), evictedDay.priceDate());
@@ -222,8 +251,9 @@ public class AppTest {
                         .toList()
                         .reversed();
 
-        // Publish all 31 days of prices (the earliest day should be evicted)
+        // Publish all 31 days of prices (the earliest day should be evicted once retention has run)
         instrumentPriceCache.publishInstrumentPrices(testRecords31DaysReversed);
+        instrumentPriceCache.runRetention();
 
         // Cache should still contain exactly 30 days of prices
         for (InstrumentPrice instrumentPrice : testRecords31DaysReversed.subList(1, 31)) {
@@ -245,4 +275,106 @@ public class AppTest {
         assertEquals(0, nonExistDate.size());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testBulkPublicationResult() {
+        final var instrumentPriceCache = getCacheInstance();
+
+        // Fill the cached window
+        instrumentPriceCache.publishInstrumentPrice(testV1I1Today);
+        instrumentPriceCache.publishInstrumentPrices(
+            IntStream.range(1, 30)
+                .mapToObj(dayIndex -> new InstrumentPrice("Vendor 1", "Instrument 1", LocalDate.now().minusDays(dayIndex), 100.0d + dayIndex))
+                .toList()
+        );
+        instrumentPriceCache.runRetention();
+
+        // Publish a batch that replaces a cached price, repeats a price within the batch and carries a date
+        // older than the cached window
+        final InstrumentPrice testV1I2TodayCorrected = new InstrumentPrice("Vendor 1", "Instrument 2", LocalDate.now(), 201.0d);
+        final InstrumentPrice testTooOld = new InstrumentPrice("Vendor 1", "Instrument 1", LocalDate.now().minusDays(30L), 130.0d);
+
+        final PublishResult publishResult =
+            instrumentPriceCache.publishInstrumentPrices(
+                List.of(testV1I1Today, testV1I2Today, testV1I2TodayCorrected, testTooOld)
+            );
+
+        assertEquals(3, publishResult.acceptedCount());
+        assertEquals(1, publishResult.rejectedAsTooOldCount());
+        assertEquals(2, publishResult.supersededCount());
+
+        // The last price in the batch wins
+        testRetrieveByInstrumentId(instrumentPriceCache, testV1I2TodayCorrected, 1);
+        testRetrieveByVendorId(instrumentPriceCache, testV1I2TodayCorrected, 2);
+
+        // The date older than the cached window is ignored
+        assertEquals(0, instrumentPriceCache.getInstrumentPrice(testTooOld.instrumentId(), testTooOld.priceDate()).size());
+    }
+
+    @Test
+    public void testSnapshotIsolation() {
+        final var instrumentPriceCache = getCacheInstance();
+
+        instrumentPriceCache.publishInstrumentPrices(List.of(testV1I1Today, testV1I2Today, testV2I1Today));
+        final IInstrumentPriceSnapshot snapshot = instrumentPriceCache.getSnapshot(LocalDate.now());
+
+        // Prices published after the snapshot was taken are not visible through it
+        final InstrumentPrice testV1I1TodayCorrected = new InstrumentPrice("Vendor 1", "Instrument 1", LocalDate.now(), 101.0d);
+        instrumentPriceCache.publishInstrumentPrice(testV1I1TodayCorrected);
+        instrumentPriceCache.publishInstrumentPrice(testV2I2Today);
+
+        assertEquals(LocalDate.now(), snapshot.getPriceDate());
+        assertEquals(2, snapshot.getInstrumentPrice("Instrument 1").size());
+        assertEquals(100.0d, snapshot.getInstrumentPrice("Instrument 1").get("Vendor 1").price(), 1.0e-6);
+        assertEquals(1, snapshot.getAllInstrumentPricesForVendor("Vendor 2").size());
+        assertEquals(0, snapshot.getInstrumentPrice("Instrument 3").size());
+        final List<InstrumentPrice> snapshotPrices = new ArrayList<>();
+        snapshot.forEachInstrumentPrice(snapshotPrices::add);
+        assertEquals(3, snapshotPrices.size());
+
+        // The snapshot is read-only, and the live cache holds the newer prices
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getInstrumentPrice("Instrument 1").put("Vendor 3", testV1I1Today));
+        testRetrieveByInstrumentId(instrumentPriceCache, testV1I1TodayCorrected, 2);
+        testRetrieveByVendorId(instrumentPriceCache, testV2I2Today, 2);
+
+        // A snapshot of a date that is not cached is empty
+        assertEquals(0, instrumentPriceCache.getSnapshot(LocalDate.now().minusDays(1L)).getAllInstrumentPricesForVendor("Vendor 1").size());
+    }
+
+    @Test
+    public void testBulkQueryOverDateRange() {
+        final var instrumentPriceCache = getCacheInstance();
+
+        instrumentPriceCache.publishInstrumentPrices(
+            List.of(
+                testV1I1Today, testV1I2Today, testV2I1Today, testV2I2Today,
+                testV1I1Yesterday, testV1I2Yesterday, testV2I1Yesterday, testV2I2Yesterday
+            )
+        );
+
+        // Dates and keys that are not cached are skipped
+        final List<InstrumentPrice> instrumentPrices = new ArrayList<>();
+        instrumentPriceCache.getInstrumentPrices(
+            List.of("Instrument 1", "Instrument 3"),
+            LocalDate.now().minusDays(5L),
+            LocalDate.now(),
+            false,
+            instrumentPrices::add
+        );
+        assertEquals(4, instrumentPrices.size());
+        assertTrue(instrumentPrices.containsAll(List.of(testV1I1Today, testV2I1Today, testV1I1Yesterday, testV2I1Yesterday)));
+        // Dates are visited in ascending order
+        assertEquals(LocalDate.now().minusDays(1L), instrumentPrices.get(0).priceDate());
+
+        final List<InstrumentPrice> vendorPrices = Collections.synchronizedList(new ArrayList<>());
+        instrumentPriceCache.getAllInstrumentPricesForVendors(
+            List.of("Vendor 2"),
+            LocalDate.now(),
+            LocalDate.now().plusDays(1L),
+            true,
+            vendorPrices::add
+        );
+        assertEquals(2, vendorPrices.size());
+        assertTrue(vendorPrices.containsAll(List.of(testV2I1Today, testV2I2Today)));
+    }
+
+}
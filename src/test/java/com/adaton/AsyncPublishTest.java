@@ -0,0 +1,229 @@
+package com.adaton;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.model.PriceAggregate;
+import com.adaton.model.PriceSubscriptionFilter;
+import com.adaton.model.PublishResult;
+import com.adaton.service.IInstrumentPriceCache;
+import com.adaton.service.IInstrumentPriceSnapshot;
+import com.adaton.service.IPriceListener;
+import com.adaton.service.IPriceSubscription;
+import com.adaton.service.impl.AsyncInstrumentPriceCache;
+import com.adaton.service.impl.AsyncInstrumentPriceCache.BackpressurePolicy;
+import com.adaton.service.impl.InstrumentPriceCache;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncPublishTest {
+
+    /**
+     * Cache whose bulk publication waits until it is released, so that ring buffers fill up.
+     */
+    private static class GatedInstrumentPriceCache implements IInstrumentPriceCache {
+
+        private final InstrumentPriceCache instrumentPriceCache = new InstrumentPriceCache();
+        private final CountDownLatch gate = new CountDownLatch(1);
+
+        @Override
+        public void publishInstrumentPrice(InstrumentPrice instrumentPrice) {
+            publishInstrumentPrices(List.of(instrumentPrice));
+        }
+
+        @Override
+        public PublishResult publishInstrumentPrices(Collection<InstrumentPrice> instrumentPrices) {
+            try {
+                gate.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return instrumentPriceCache.publishInstrumentPrices(instrumentPrices);
+        }
+
+        @Override
+        public Map<String, InstrumentPrice> getInstrumentPrice(String instrumentId, LocalDate priceDate) {
+            return instrumentPriceCache.getInstrumentPrice(instrumentId, priceDate);
+        }
+
+        @Override
+        public Map<String, InstrumentPrice> getAllInstrumentPricesForVendor(String vendorId, LocalDate priceDate) {
+            return instrumentPriceCache.getAllInstrumentPricesForVendor(vendorId, priceDate);
+        }
+
+        @Override
+        public double getPrice(String vendorId, String instrumentId, LocalDate priceDate) {
+            return instrumentPriceCache.getPrice(vendorId, instrumentId, priceDate);
+        }
+
+        @Override
+        public PriceAggregate getPriceAggregate(String instrumentId, LocalDate priceDate) {
+            return instrumentPriceCache.getPriceAggregate(instrumentId, priceDate);
+        }
+
+        @Override
+        public void getAllPriceAggregates(LocalDate priceDate, BiConsumer<String, PriceAggregate> consumer) {
+            instrumentPriceCache.getAllPriceAggregates(priceDate, consumer);
+        }
+
+        @Override
+        public void getInstrumentPrices(Collection<String> instrumentIds, LocalDate fromDate, LocalDate toDate, boolean parallel, Consumer<InstrumentPrice> consumer) {
+            instrumentPriceCache.getInstrumentPrices(instrumentIds, fromDate, toDate, parallel, consumer);
+        }
+
+        @Override
+        public void getAllInstrumentPricesForVendors(Collection<String> vendorIds, LocalDate fromDate, LocalDate toDate, boolean parallel, Consumer<InstrumentPrice> consumer) {
+            instrumentPriceCache.getAllInstrumentPricesForVendors(vendorIds, fromDate, toDate, parallel, consumer);
+        }
+
+        @Override
+        public NavigableSet<LocalDate> getCachedPriceDates() {
+            return instrumentPriceCache.getCachedPriceDates();
+        }
+
+        @Override
+        public IInstrumentPriceSnapshot getSnapshot(LocalDate priceDate) {
+            return instrumentPriceCache.getSnapshot(priceDate);
+        }
+
+        @Override
+        public IPriceSubscription subscribe(PriceSubscriptionFilter filter, IPriceListener listener) {
+            return instrumentPriceCache.subscribe(filter, listener);
+        }
+
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        final LocalDate today = LocalDate.now();
+        try (var instrumentPriceCache = new AsyncInstrumentPriceCache(new InstrumentPriceCache(), 4, 1024, 256, BackpressurePolicy.BLOCK)) {
+            final Thread[] producers = new Thread[4];
+            for (int producerIndex = 0; producerIndex < producers.length; producerIndex++) {
+                final String vendorId = "Vendor " + producerIndex;
+                producers[producerIndex] = new Thread(() -> IntStream.range(0, 10000).forEach(
+                    instrumentIndex -> instrumentPriceCache.publishInstrumentPrice(
+                        new InstrumentPrice(vendorId, "Instrument " + instrumentIndex, today, instrumentIndex))));
+                producers[producerIndex].start();
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+
+            assertTrue(instrumentPriceCache.awaitVisibility(Duration.ofSeconds(10L)));
+            assertEquals(10000, instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor 3", today).size());
+            assertEquals(4, instrumentPriceCache.getInstrumentPrice("Instrument 9999", today).size());
+            assertEquals(0L, instrumentPriceCache.getDroppedCount());
+        }
+    }
+
+    @Test
+    public void testCloseAppliesEveryAcceptedPrice() throws InterruptedException {
+        final LocalDate today = LocalDate.now();
+        final var underlyingCache = new InstrumentPriceCache();
+        final var instrumentPriceCache = new AsyncInstrumentPriceCache(underlyingCache, 2, 1024, 64, BackpressurePolicy.BLOCK);
+        final AtomicInteger acceptedCount = new AtomicInteger();
+        final Thread[] producers = new Thread[4];
+        for (int producerIndex = 0; producerIndex < producers.length; producerIndex++) {
+            final String vendorId = "Vendor " + producerIndex;
+            producers[producerIndex] = new Thread(() -> {
+                try {
+                    for (int instrumentIndex = 0; ; instrumentIndex++) {
+                        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice(vendorId, "Instrument " + instrumentIndex, today, instrumentIndex));
+                        acceptedCount.incrementAndGet();
+                    }
+                }
+                catch (IllegalStateException e) {
+                    // The cache is closed
+                }
+            });
+            producers[producerIndex].start();
+        }
+        Thread.sleep(20L);
+        instrumentPriceCache.close();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        // Every price accepted before close is applied by close
+        int appliedCount = 0;
+        for (int producerIndex = 0; producerIndex < producers.length; producerIndex++) {
+            appliedCount += underlyingCache.getAllInstrumentPricesForVendor("Vendor " + producerIndex, today).size();
+        }
+        assertEquals(acceptedCount.get(), appliedCount);
+        assertThrows(IllegalStateException.class, () -> instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 0", "Instrument 0", today, 0.0d)));
+    }
+
+    @Test
+    public void testFailFastBackpressure() {
+        final var gatedCache = new GatedInstrumentPriceCache();
+        try (var instrumentPriceCache = new AsyncInstrumentPriceCache(gatedCache, 1, 4, 1, BackpressurePolicy.FAIL_FAST)) {
+            try {
+                // The applier holds one price while the gate is closed, the ring buffer holds four more
+                assertThrows(
+                    RejectedExecutionException.class,
+                    () -> IntStream.range(0, 10).forEach(
+                        instrumentIndex -> instrumentPriceCache.publishInstrumentPrice(
+                            new InstrumentPrice("Vendor 1", "Instrument " + instrumentIndex, LocalDate.now(), instrumentIndex)))
+                );
+            }
+            finally {
+                gatedCache.gate.countDown();
+            }
+        }
+    }
+
+    @Test
+    public void testDropOldestBackpressure() {
+        final var gatedCache = new GatedInstrumentPriceCache();
+        final LocalDate today = LocalDate.now();
+        try (var instrumentPriceCache = new AsyncInstrumentPriceCache(gatedCache, 1, 4, 1, BackpressurePolicy.DROP_OLDEST)) {
+            IntStream.range(0, 100).forEach(
+                instrumentIndex -> instrumentPriceCache.publishInstrumentPrice(
+                    new InstrumentPrice("Vendor 1", "Instrument " + instrumentIndex, today, instrumentIndex)));
+            gatedCache.gate.countDown();
+            instrumentPriceCache.flush();
+
+            // The latest prices are kept
+            final long appliedCount = instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor 1", today).size();
+            assertEquals(100L, appliedCount + instrumentPriceCache.getDroppedCount());
+            assertEquals(1, instrumentPriceCache.getInstrumentPrice("Instrument 99", today).size());
+        }
+    }
+
+    @Test
+    public void testDropOldestPublishResult() {
+        final var gatedCache = new GatedInstrumentPriceCache();
+        final LocalDate today = LocalDate.now();
+        try (var instrumentPriceCache = new AsyncInstrumentPriceCache(gatedCache, 1, 4, 1, BackpressurePolicy.DROP_OLDEST)) {
+            instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 0", "Instrument 0", today, 0.0d));
+            final PublishResult publishResult = instrumentPriceCache.publishInstrumentPrices(
+                IntStream.range(1, 21)
+                    .mapToObj(instrumentIndex -> new InstrumentPrice("Vendor 1", "Instrument " + instrumentIndex, today, instrumentIndex))
+                    .toList()
+            );
+            gatedCache.gate.countDown();
+            instrumentPriceCache.flush();
+
+            // Prices of the collection discarded by the call are not accepted
+            final int appliedCount = instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor 1", today).size();
+            assertEquals(appliedCount, publishResult.acceptedCount());
+            assertEquals(instrumentPriceCache.getDroppedCount(), publishResult.droppedCount());
+            assertTrue(publishResult.acceptedCount() < 20);
+            assertTrue(publishResult.droppedCount() >= 20 - publishResult.acceptedCount());
+        }
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.adaton;
+
+import com.adaton.persistence.impl.CacheIndexFactory;
+import com.adaton.service.impl.InstrumentPriceCache;
+
+/**
+ * Runs the cache tests against a pair of concurrent hash map indices per date.
+ */
+public class CacheIndexAppTest extends AppTest {
+
+    @Override
+    protected InstrumentPriceCache getCacheInstance() {
+        return new InstrumentPriceCache(new CacheIndexFactory());
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.adaton;
+
+import com.adaton.metrics.DayStatistics;
+import com.adaton.model.InstrumentPrice;
+import com.adaton.model.PublishResult;
+import com.adaton.persistence.impl.CacheIndexFactory;
+import com.adaton.persistence.impl.FrozenPriceTable;
+import com.adaton.persistence.impl.PersistentCacheIndex;
+import com.adaton.service.IInstrumentPriceSnapshot;
+import com.adaton.service.impl.InstrumentPriceCache;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColdTierTest {
+
+    private static final LocalDate FIRST_DATE = LocalDate.of(2024, 1, 1);
+
+    private static List<InstrumentPrice> pricesForDate(LocalDate priceDate) {
+        // Vendors quote close prices for the same instrument, and some prices repeat
+        return IntStream.range(0, 3000)
+            .mapToObj(priceIndex -> new InstrumentPrice(
+                "Vendor " + priceIndex % 5,
+                "Instrument " + priceIndex / 5,
+                priceDate,
+                priceIndex % 7 == 0 ? 100.0d : 100.0d + priceIndex / 5 + priceIndex % 5 * 0.01d + priceDate.getDayOfMonth()))
+            .toList();
+    }
+
+    private static int priceCount(IInstrumentPriceSnapshot snapshot) {
+        final List<InstrumentPrice> instrumentPrices = new ArrayList<>();
+        snapshot.forEachInstrumentPrice(instrumentPrices::add);
+        return instrumentPrices.size();
+    }
+
+    @Test
+    public void testFrozenDatesAnswerLookups() {
+        frozenDatesAnswerLookups(false);
+        frozenDatesAnswerLookups(true);
+    }
+
+    private void frozenDatesAnswerLookups(boolean compressPrices) {
+        final InstrumentPriceCache instrumentPriceCache = new InstrumentPriceCache(new CacheIndexFactory());
+        final List<List<InstrumentPrice>> pricesByDate = new ArrayList<>();
+        for (int dayIndex = 0; dayIndex < 5; dayIndex++) {
+            pricesByDate.add(pricesForDate(FIRST_DATE.plusDays(dayIndex)));
+            instrumentPriceCache.publishInstrumentPrices(pricesByDate.get(dayIndex));
+        }
+
+        instrumentPriceCache.enableColdTier(2, compressPrices);
+        instrumentPriceCache.runRetention();
+
+        for (List<InstrumentPrice> prices : pricesByDate) {
+            for (InstrumentPrice instrumentPrice : prices) {
+                final Map<String, InstrumentPrice> instrumentPrices =
+                    instrumentPriceCache.getInstrumentPrice(instrumentPrice.instrumentId(), instrumentPrice.priceDate());
+                assertEquals(5, instrumentPrices.size());
+                assertEquals(instrumentPrice, instrumentPrices.get(instrumentPrice.vendorId()));
+            }
+        }
+        final Map<String, InstrumentPrice> vendorPrices = instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor 3", FIRST_DATE);
+        assertEquals(600, vendorPrices.size());
+        assertEquals(pricesByDate.get(0).get(8), vendorPrices.get("Instrument 1"));
+        vendorPrices.forEach((instrumentId, instrumentPrice) -> assertEquals(instrumentId, instrumentPrice.instrumentId()));
+        assertTrue(instrumentPriceCache.getInstrumentPrice("Instrument 600", FIRST_DATE).isEmpty());
+        assertTrue(instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor 5", FIRST_DATE).isEmpty());
+
+        // The frozen dates hold a small share of the memory of the same prices as price objects
+        final List<DayStatistics> dayStatistics = instrumentPriceCache.getCacheMetrics().getSnapshot().dayStatistics();
+        assertEquals(3000L, dayStatistics.get(0).priceCount());
+        assertTrue(dayStatistics.get(0).estimatedMemoryBytes() * 5L < dayStatistics.get(4).estimatedMemoryBytes());
+    }
+
+    @Test
+    public void testPublicationsToFrozenDates() {
+        publicationsToFrozenDates(false);
+        publicationsToFrozenDates(true);
+    }
+
+    private void publicationsToFrozenDates(boolean compressPrices) {
+        final InstrumentPriceCache instrumentPriceCache = new InstrumentPriceCache();
+        instrumentPriceCache.publishInstrumentPrices(pricesForDate(FIRST_DATE));
+        instrumentPriceCache.publishInstrumentPrices(pricesForDate(FIRST_DATE.plusDays(1L)));
+        assertEquals(102.01d, instrumentPriceCache.getPrice("Vendor 1", "Instrument 1", FIRST_DATE));
+        instrumentPriceCache.enableColdTier(1, compressPrices);
+        instrumentPriceCache.runRetention();
+
+        final IInstrumentPriceSnapshot frozenSnapshot = instrumentPriceCache.getSnapshot(FIRST_DATE);
+
+        // A correction and a new price are layered over the frozen date
+        final PublishResult publishResult =
+            instrumentPriceCache.publishInstrumentPrices(
+                List.of(
+                    new InstrumentPrice("Vendor 0", "Instrument 0", FIRST_DATE, -1.0d),
+                    new InstrumentPrice("Vendor 9", "Instrument 0", FIRST_DATE, -2.0d)
+                )
+            );
+        assertEquals(1, publishResult.supersededCount());
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 1", FIRST_DATE, -3.0d));
+
+        final Map<String, InstrumentPrice> instrumentPrices = instrumentPriceCache.getInstrumentPrice("Instrument 0", FIRST_DATE);
+        assertEquals(6, instrumentPrices.size());
+        assertEquals(-1.0d, instrumentPrices.get("Vendor 0").price());
+        assertEquals(-2.0d, instrumentPrices.get("Vendor 9").price());
+        assertEquals(-3.0d, instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor 1", FIRST_DATE).get("Instrument 1").price());
+        assertEquals(-3.0d, instrumentPriceCache.getPrice("Vendor 1", "Instrument 1", FIRST_DATE));
+        assertEquals(3001, priceCount(instrumentPriceCache.getSnapshot(FIRST_DATE)));
+
+        // The snapshot taken before the publications is not affected
+        assertEquals(100.0d, frozenSnapshot.getInstrumentPrice("Instrument 0").get("Vendor 0").price());
+        assertEquals(3000, priceCount(frozenSnapshot));
+    }
+
+    @Test
+    public void testFrozenPriceTable() {
+        frozenPriceTable(false);
+        frozenPriceTable(true);
+    }
+
+    private void frozenPriceTable(boolean compressPrices) {
+        final PersistentCacheIndex pricesByInstrument = new PersistentCacheIndex();
+        final List<InstrumentPrice> prices = new ArrayList<>(pricesForDate(FIRST_DATE));
+        prices.add(new InstrumentPrice("Vendor 0", "Instrument 9999", FIRST_DATE, Double.NaN));
+        prices.add(new InstrumentPrice("Vendor 1", "Instrument 9999", FIRST_DATE, -0.0d));
+        prices.add(new InstrumentPrice("Vendor 2", "Instrument 9999", FIRST_DATE, Double.MAX_VALUE));
+        prices.forEach(instrumentPrice -> pricesByInstrument.updateCacheIndex(instrumentPrice.instrumentId(), instrumentPrice.vendorId(), instrumentPrice));
+
+        final FrozenPriceTable frozenPriceTable = FrozenPriceTable.freeze(FIRST_DATE, pricesByInstrument, compressPrices);
+        assertEquals(prices.size(), frozenPriceTable.getPriceCount());
+        for (InstrumentPrice instrumentPrice : prices) {
+            assertEquals(instrumentPrice, frozenPriceTable.instrumentIndex().getCachedInstrumentPrices(instrumentPrice.instrumentId()).get(instrumentPrice.vendorId()));
+            assertEquals(instrumentPrice, frozenPriceTable.vendorIndex().getCachedInstrumentPrices(instrumentPrice.vendorId()).get(instrumentPrice.instrumentId()));
+        }
+
+        final List<InstrumentPrice> visitedPrices = new ArrayList<>();
+        frozenPriceTable.vendorIndex().forEachInstrumentPrice(visitedPrices::add);
+        assertEquals(prices.size(), visitedPrices.size());
+        assertTrue(visitedPrices.containsAll(prices));
+        assertThrows(UnsupportedOperationException.class, () -> frozenPriceTable.instrumentIndex().updateCacheIndex("Instrument 0", "Vendor 0", prices.get(0)));
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.adaton;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.ISymbolTable;
+import com.adaton.persistence.impl.InternedCacheIndexFactory;
+import com.adaton.service.impl.InstrumentPriceCache;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the cache tests against the interned cache index backend.
+ */
+public class InternedCacheIndexAppTest extends AppTest {
+
+    @Override
+    protected InstrumentPriceCache getCacheInstance() {
+        return new InstrumentPriceCache(new InternedCacheIndexFactory());
+    }
+
+    @Test
+    public void testCanonicalSymbols() {
+        final var cacheIndexFactory = new InternedCacheIndexFactory();
+        final var instrumentPriceCache = new InstrumentPriceCache(cacheIndexFactory);
+
+        // Publish prices whose vendor ID instances are distinct but equal
+        final List<InstrumentPrice> instrumentPrices =
+            IntStream.range(0, 1000)
+                .mapToObj(instrumentIndex -> new InstrumentPrice(new String("Vendor 1"), "Instrument " + instrumentIndex, LocalDate.now(), instrumentIndex))
+                .toList();
+        instrumentPriceCache.publishInstrumentPrices(instrumentPrices);
+
+        final ISymbolTable vendorSymbols = cacheIndexFactory.getVendorSymbols();
+        assertEquals(1, vendorSymbols.size());
+        assertEquals(1000, cacheIndexFactory.getInstrumentSymbols().size());
+
+        // All cached prices share the canonical vendor ID instance
+        final Map<String, InstrumentPrice> allPrices =
+            instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor 1", LocalDate.now());
+        assertEquals(1000, allPrices.size());
+        final String canonicalVendorId = vendorSymbols.symbol(vendorSymbols.lookup("Vendor 1"));
+        allPrices.forEach((instrumentId, instrumentPrice) -> {
+            assertEquals(instrumentId, instrumentPrice.instrumentId());
+            assertSame(canonicalVendorId, instrumentPrice.vendorId());
+        });
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.adaton;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.impl.PriceJournal;
+import com.adaton.service.impl.InstrumentPriceCache;
+import com.adaton.service.impl.JournalingInstrumentPriceCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalTest {
+
+    @TempDir
+    Path journalDirectory;
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(journalDirectory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    @Test
+    public void testJournalReplay() throws IOException {
+        final LocalDate today = LocalDate.now();
+        try (PriceJournal priceJournal = new PriceJournal(journalDirectory, 100, Duration.ofMillis(1L), 4096L)) {
+            final var instrumentPriceCache = new JournalingInstrumentPriceCache(new InstrumentPriceCache(), priceJournal);
+            instrumentPriceCache.publishInstrumentPrices(
+                IntStream.range(0, 1000)
+                    .mapToObj(priceIndex -> new InstrumentPrice("Vendor " + priceIndex % 4, "Instrument " + priceIndex / 4, today.minusDays(priceIndex % 2), priceIndex))
+                    .toList()
+            );
+            // Intraday correction
+            instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 0", "Instrument 0", today, -1.0d));
+            priceJournal.sync();
+        }
+
+        // Segments were rolled over
+        assertTrue(segmentFiles().size() > 2);
+
+        try (PriceJournal priceJournal = new PriceJournal(journalDirectory)) {
+            final var recoveredCache = new JournalingInstrumentPriceCache(new InstrumentPriceCache(), priceJournal);
+            assertEquals(1001L, recoveredCache.recover(4));
+
+            assertEquals(2, recoveredCache.getInstrumentPrice("Instrument 0", today).size());
+            assertEquals(2, recoveredCache.getInstrumentPrice("Instrument 0", today.minusDays(1L)).size());
+            assertEquals(-1.0d, recoveredCache.getInstrumentPrice("Instrument 0", today).get("Vendor 0").price(), 1.0e-6);
+            assertEquals(250, recoveredCache.getAllInstrumentPricesForVendor("Vendor 1", today.minusDays(1L)).size());
+        }
+    }
+
+    @Test
+    public void testTornBlockIsIgnored() throws IOException {
+        final LocalDate today = LocalDate.now();
+        try (PriceJournal priceJournal = new PriceJournal(journalDirectory)) {
+            priceJournal.append(new InstrumentPrice("Vendor 1", "Instrument 1", today, 100.0d));
+            priceJournal.sync();
+        }
+
+        // Simulate a crash in the middle of the next block
+        Files.write(segmentFiles().getFirst(), new byte[] { 0, 0, 0, 42, 1, 2 }, StandardOpenOption.APPEND);
+
+        try (PriceJournal priceJournal = new PriceJournal(journalDirectory)) {
+            final var recoveredCache = new InstrumentPriceCache();
+            assertEquals(1L, priceJournal.replay(recoveredCache::publishInstrumentPrices, 1));
+            assertEquals(100.0d, recoveredCache.getInstrumentPrice("Instrument 1", today).get("Vendor 1").price(), 1.0e-6);
+        }
+    }
+
+    @Test
+    public void testSegmentsOfEvictedDatesAreDeleted() throws IOException {
+        final LocalDate earliestDate = LocalDate.now().minusDays(29L);
+        try (PriceJournal priceJournal = new PriceJournal(journalDirectory)) {
+            final InstrumentPriceCache underlyingCache = new InstrumentPriceCache();
+            final var instrumentPriceCache = new JournalingInstrumentPriceCache(underlyingCache, priceJournal);
+            for (int dayIndex = 0; dayIndex <= 30; dayIndex++) {
+                instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 1", earliestDate.plusDays(dayIndex), dayIndex));
+            }
+            // Segments are deleted by the retention run that evicts their date
+            underlyingCache.runRetention();
+            priceJournal.sync();
+            assertEquals(30, segmentFiles().size());
+            assertTrue(segmentFiles().stream().noneMatch(segmentFile -> segmentFile.getFileName().toString().contains(earliestDate.toString())));
+
+            // Prices the cache rejects are not journaled
+            instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 2", "Instrument 1", earliestDate, 0.0d));
+            instrumentPriceCache.publishInstrumentPrices(List.of(
+                new InstrumentPrice("Vendor 2", "Instrument 1", earliestDate, 0.0d),
+                new InstrumentPrice("Vendor 2", "Instrument 1", earliestDate.plusDays(30L), 30.0d)
+            ));
+            priceJournal.sync();
+            assertEquals(30, segmentFiles().size());
+            assertEquals(0L, instrumentPriceCache.getPurgeFailedCount());
+        }
+    }
+
+}
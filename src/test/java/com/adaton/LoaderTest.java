@@ -0,0 +1,146 @@
+package com.adaton;
+
+import com.adaton.loader.ILoadListener;
+import com.adaton.loader.impl.CsvPriceFileFormat;
+import com.adaton.loader.impl.FixedWidthPriceFileFormat;
+import com.adaton.loader.impl.MappedPriceFileLoader;
+import com.adaton.model.InstrumentPrice;
+import com.adaton.model.LoadResult;
+import com.adaton.service.impl.InstrumentPriceCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoaderTest {
+
+    private static final LocalDate FIRST_DATE = LocalDate.of(2024, 1, 1);
+
+    @TempDir
+    Path loadDirectory;
+
+    // Records the bad rows and the last progress reported
+    private static class RecordingLoadListener implements ILoadListener {
+
+        private final Map<Long, String> badRows = new ConcurrentHashMap<>();
+        private final AtomicLong loadedBytes = new AtomicLong();
+
+        @Override
+        public void onProgress(long loadedBytes, long totalBytes) {
+            this.loadedBytes.accumulateAndGet(loadedBytes, Math::max);
+        }
+
+        @Override
+        public void onBadRow(long rowOffset, String reason) {
+            badRows.put(rowOffset, reason);
+        }
+
+    }
+
+    @Test
+    public void testCsvLoad() throws IOException {
+        // Small chunks, so that rows straddle chunk boundaries and chunks are parsed on several threads
+        final StringBuilder csv = new StringBuilder("vendorId,instrumentId,priceDate,price\n");
+        for (int instrumentIndex = 0; instrumentIndex < 2000; instrumentIndex++) {
+            for (int vendorIndex = 0; vendorIndex < 3; vendorIndex++) {
+                csv.append("Vendor ").append(vendorIndex).append(",Instrument ").append(instrumentIndex).append(',')
+                    .append(FIRST_DATE.plusDays(instrumentIndex % 2)).append(',').append(instrumentIndex).append('.').append(vendorIndex).append("5\r\n");
+            }
+        }
+        final long firstBadRowOffset = csv.length();
+        csv.append("Vendor 0,Instrument 1,2024-02-30,1.0\n")
+            .append("Vendor 0,Instrument 1,2024-01-01,one\n")
+            .append("Vendor 0,Instrument 1,2024-01-01\n")
+            .append(",Instrument 1,2024-01-01,1.0\n")
+            .append("\n")
+            .append("Vendor 9,Instrument 9,2024-01-01,-1.5e3");
+        final Path csvFile = loadDirectory.resolve("prices.csv");
+        Files.writeString(csvFile, csv, StandardCharsets.UTF_8);
+
+        final var instrumentPriceCache = new InstrumentPriceCache();
+        final var loadListener = new RecordingLoadListener();
+        final LoadResult loadResult =
+            new MappedPriceFileLoader(new CsvPriceFileFormat(), 4, 1000L).load(csvFile, instrumentPriceCache, loadListener);
+
+        assertEquals(new LoadResult(6005L, 4L, 6001L, 0L, 0L), loadResult);
+        assertEquals(Files.size(csvFile), loadListener.loadedBytes.get());
+        assertEquals(4, loadListener.badRows.size());
+        assertTrue(loadListener.badRows.get(firstBadRowOffset).startsWith("invalid price date"));
+
+        final Map<String, InstrumentPrice> instrumentPrices = instrumentPriceCache.getInstrumentPrice("Instrument 1999", FIRST_DATE.plusDays(1L));
+        assertEquals(3, instrumentPrices.size());
+        assertEquals(1999.25d, instrumentPrices.get("Vendor 2").price());
+        assertEquals(1000, instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor 1", FIRST_DATE).size());
+        assertEquals(-1500.0d, instrumentPriceCache.getPrice("Vendor 9", "Instrument 9", FIRST_DATE));
+    }
+
+    @Test
+    public void testFixedWidthLoad() throws IOException {
+        final var priceFileFormat = new FixedWidthPriceFileFormat(8, 16);
+        final Path binaryFile = loadDirectory.resolve("prices.bin");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(binaryFile)))) {
+            // A correction within the same chunk as the price it corrects
+            writeRecord(output, "V0", "Instrument 0", FIRST_DATE, 0.0d);
+            writeRecord(output, "V0", "Instrument 0", FIRST_DATE, -1.0d);
+            for (int priceIndex = 1; priceIndex < 5000; priceIndex++) {
+                writeRecord(output, "V" + priceIndex % 5, "Instrument " + priceIndex / 5, FIRST_DATE, priceIndex);
+            }
+            // A record without a vendor ID and a partial record
+            writeRecord(output, "", "Instrument 0", FIRST_DATE, -2.0d);
+            output.write(new byte[priceFileFormat.getRecordSize() / 2]);
+        }
+
+        final var instrumentPriceCache = new InstrumentPriceCache();
+        final var loadListener = new RecordingLoadListener();
+        final LoadResult loadResult =
+            new MappedPriceFileLoader(priceFileFormat, 4, 4096L).load(binaryFile, instrumentPriceCache, loadListener);
+
+        assertEquals(new LoadResult(5003L, 2L, 5001L, 0L, 1L), loadResult);
+        assertEquals(List.of(5001L * priceFileFormat.getRecordSize(), 5002L * priceFileFormat.getRecordSize()), loadListener.badRows.keySet().stream().sorted().toList());
+        assertEquals(-1.0d, instrumentPriceCache.getPrice("V0", "Instrument 0", FIRST_DATE));
+        assertEquals(4999.0d, instrumentPriceCache.getPrice("V4", "Instrument 999", FIRST_DATE));
+        assertEquals(1000, instrumentPriceCache.getAllInstrumentPricesForVendor("V3", FIRST_DATE).size());
+    }
+
+    @Test
+    public void testLastPriceOfFileWinsAcrossChunks() throws IOException {
+        // Every round of prices for the same keys falls in chunks of its own, the last round is to be kept
+        final StringBuilder csv = new StringBuilder("vendorId,instrumentId,priceDate,price\n");
+        for (int round = 0; round < 50; round++) {
+            for (int instrumentIndex = 0; instrumentIndex < 20; instrumentIndex++) {
+                csv.append("Vendor 1,Instrument ").append(instrumentIndex).append(',').append(FIRST_DATE).append(',').append(round).append('\n');
+            }
+        }
+        final Path csvFile = loadDirectory.resolve("corrections.csv");
+        Files.writeString(csvFile, csv, StandardCharsets.UTF_8);
+
+        for (int load = 0; load < 10; load++) {
+            final var instrumentPriceCache = new InstrumentPriceCache();
+            final LoadResult loadResult = new MappedPriceFileLoader(new CsvPriceFileFormat(), 8, 100L).load(csvFile, instrumentPriceCache);
+            assertEquals(new LoadResult(1000L, 0L, 1000L, 0L, 980L), loadResult);
+            instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor 1", FIRST_DATE)
+                .forEach((instrumentId, instrumentPrice) -> assertEquals(49.0d, instrumentPrice.price(), instrumentId));
+        }
+    }
+
+    private static void writeRecord(DataOutputStream output, String vendorId, String instrumentId, LocalDate priceDate, double price) throws IOException {
+        output.write(Arrays.copyOf(vendorId.getBytes(StandardCharsets.UTF_8), 8));
+        output.write(Arrays.copyOf(instrumentId.getBytes(StandardCharsets.UTF_8), 16));
+        output.writeInt((int) priceDate.toEpochDay());
+        output.writeDouble(price);
+    }
+
+}
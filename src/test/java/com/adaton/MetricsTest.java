@@ -0,0 +1,111 @@
+package com.adaton;
+
+import com.adaton.metrics.CacheMetricsSnapshot;
+import com.adaton.metrics.CacheOperation;
+import com.adaton.metrics.ICacheMetrics;
+import com.adaton.metrics.OperationStatistics;
+import com.adaton.metrics.impl.LatencyHistogram;
+import com.adaton.model.InstrumentPrice;
+import com.adaton.service.impl.InstrumentPriceCache;
+import org.junit.jupiter.api.Test;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    @Test
+    public void testCountersAndDayStatistics() {
+        final InstrumentPriceCache instrumentPriceCache = new InstrumentPriceCache();
+        final ICacheMetrics cacheMetrics = instrumentPriceCache.getCacheMetrics();
+
+        // Nothing is recorded until metrics are enabled
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 1", LocalDate.now(), 100.0d));
+        assertFalse(cacheMetrics.isEnabled());
+        assertEquals(0L, cacheMetrics.getSnapshot().publishedPriceCount());
+        assertEquals(0L, cacheMetrics.getSnapshot().operationStatistics().get(CacheOperation.PUBLISH).count());
+
+        cacheMetrics.setEnabled(true);
+        // Fill the cached window, evicting the first date, then publish a price older than every cached date
+        instrumentPriceCache.publishInstrumentPrices(
+            IntStream.range(1, 31)
+                .mapToObj(dayIndex -> new InstrumentPrice("Vendor 1", "Instrument 1", LocalDate.now().plusDays(dayIndex), 100.0d))
+                .toList()
+        );
+        instrumentPriceCache.runRetention();
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 1", LocalDate.now(), 100.0d));
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 2", "Instrument 1", LocalDate.now().plusDays(30L), 100.0d));
+        instrumentPriceCache.getInstrumentPrice("Instrument 1", LocalDate.now().plusDays(30L));
+
+        final CacheMetricsSnapshot snapshot = cacheMetrics.getSnapshot();
+        assertTrue(snapshot.enabled());
+        assertEquals(31L, snapshot.publishedPriceCount());
+        assertEquals(1L, snapshot.rejectedAsTooOldCount());
+        assertEquals(1L, snapshot.evictedDayCount());
+        assertEquals(2L, snapshot.operationStatistics().get(CacheOperation.PUBLISH).count());
+        assertEquals(1L, snapshot.operationStatistics().get(CacheOperation.PUBLISH_BULK).count());
+        assertEquals(1L, snapshot.operationStatistics().get(CacheOperation.GET_INSTRUMENT_PRICE).count());
+        assertEquals(1L, snapshot.operationStatistics().get(CacheOperation.INDEX_LOOKUP).count());
+        assertEquals(30L, snapshot.operationStatistics().get(CacheOperation.INDEX_UPDATE_BULK).count());
+
+        assertEquals(30, snapshot.dayStatistics().size());
+        assertEquals(LocalDate.now().plusDays(30L), snapshot.dayStatistics().get(29).priceDate());
+        assertEquals(2L, snapshot.dayStatistics().get(29).priceCount());
+        assertTrue(snapshot.dayStatistics().get(29).estimatedMemoryBytes() > 0L);
+    }
+
+    @Test
+    public void testLatencyPercentiles() {
+        final LatencyHistogram latencyHistogram = new LatencyHistogram();
+        for (long latencyNanos = 1L; latencyNanos <= 10000L; latencyNanos++) {
+            latencyHistogram.record(latencyNanos * 1000L);
+        }
+
+        final OperationStatistics operationStatistics = latencyHistogram.getStatistics();
+        assertEquals(10000L, operationStatistics.count());
+        assertEquals(5000500.0d, operationStatistics.meanLatencyNanos(), 1.0e-6);
+        assertEquals(10000000L, operationStatistics.maxLatencyNanos());
+        // Percentiles are reported within the relative precision of the buckets
+        assertEquals(5000000.0d, operationStatistics.p50LatencyNanos(), 5000000.0d / 16);
+        assertEquals(9900000.0d, operationStatistics.p99LatencyNanos(), 9900000.0d / 16);
+        assertTrue(operationStatistics.p50LatencyNanos() <= operationStatistics.p90LatencyNanos());
+        assertTrue(operationStatistics.p99LatencyNanos() <= operationStatistics.p999LatencyNanos());
+    }
+
+    @Test
+    public void testMBeans() throws Exception {
+        final InstrumentPriceCache instrumentPriceCache = new InstrumentPriceCache();
+        final ICacheMetrics cacheMetrics = instrumentPriceCache.getCacheMetrics();
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName cacheObjectName = new ObjectName("com.adaton:type=InstrumentPriceCache,name=" + ObjectName.quote("metrics test"));
+
+        cacheMetrics.registerMBeans("metrics test");
+        try {
+            // Metrics can be switched on through JMX
+            mBeanServer.setAttribute(cacheObjectName, new Attribute("Enabled", true));
+            instrumentPriceCache.publishInstrumentPrices(
+                List.of(
+                    new InstrumentPrice("Vendor 1", "Instrument 1", LocalDate.now(), 100.0d),
+                    new InstrumentPrice("Vendor 1", "Instrument 2", LocalDate.now(), 100.0d)
+                )
+            );
+
+            assertTrue(cacheMetrics.isEnabled());
+            assertEquals(2L, mBeanServer.getAttribute(cacheObjectName, "PublishedPriceCount"));
+            assertEquals(2L, mBeanServer.getAttribute(cacheObjectName, "CachedPriceCount"));
+            assertEquals(1L, mBeanServer.getAttribute(new ObjectName(cacheObjectName + ",operation=PUBLISH_BULK"), "Count"));
+        }
+        finally {
+            cacheMetrics.unregisterMBeans();
+        }
+        assertFalse(mBeanServer.isRegistered(cacheObjectName));
+    }
+
+}
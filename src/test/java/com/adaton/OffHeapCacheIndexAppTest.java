@@ -0,0 +1,54 @@
+package com.adaton;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.impl.OffHeapCacheIndexFactory;
+import com.adaton.service.impl.InstrumentPriceCache;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the cache tests against the off-heap cache index backend.
+ */
+public class OffHeapCacheIndexAppTest extends AppTest {
+
+    @Override
+    protected InstrumentPriceCache getCacheInstance() {
+        return new InstrumentPriceCache(new OffHeapCacheIndexFactory());
+    }
+
+    @Test
+    public void testManyPricesAcrossColumnBlocks() {
+        final var instrumentPriceCache = getCacheInstance();
+
+        // Publish enough prices to span several column blocks and grow the lookup tables
+        final List<InstrumentPrice> instrumentPrices =
+            IntStream.range(0, 20000)
+                .mapToObj(priceIndex -> new InstrumentPrice("Vendor " + priceIndex % 3, "Instrument " + priceIndex / 3, LocalDate.now(), priceIndex))
+                .toList();
+        instrumentPriceCache.publishInstrumentPrices(instrumentPrices);
+
+        // Update one price in place
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 100", LocalDate.now(), -1.0d));
+
+        final Map<String, InstrumentPrice> vendorPrices = instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor 1", LocalDate.now());
+        assertEquals(6667, vendorPrices.size());
+        assertEquals(-1.0d, vendorPrices.get("Instrument 100").price(), 1.0e-6);
+        vendorPrices.forEach((instrumentId, instrumentPrice) -> {
+            assertEquals(instrumentId, instrumentPrice.instrumentId());
+            assertEquals("Vendor 1", instrumentPrice.vendorId());
+        });
+
+        final Map<String, InstrumentPrice> instrumentPricesById = instrumentPriceCache.getInstrumentPrice("Instrument 100", LocalDate.now());
+        assertEquals(3, instrumentPricesById.size());
+        assertEquals(300.0d, instrumentPricesById.get("Vendor 0").price(), 1.0e-6);
+        assertEquals(-1.0d, instrumentPricesById.get("Vendor 1").price(), 1.0e-6);
+        assertNull(instrumentPricesById.get("Vendor 3"));
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.adaton;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.impl.PersistentCacheIndexFactory;
+import com.adaton.service.IInstrumentPriceSnapshot;
+import com.adaton.service.impl.InstrumentPriceCache;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the cache tests against the persistent cache index backend.
+ */
+public class PersistentCacheIndexAppTest extends AppTest {
+
+    @Override
+    protected InstrumentPriceCache getCacheInstance() {
+        return new InstrumentPriceCache(new PersistentCacheIndexFactory());
+    }
+
+    @Test
+    public void testManyPricesAndSnapshots() {
+        final var instrumentPriceCache = getCacheInstance();
+
+        // "Aa" and "BB" share a hash code, so their prices land in the same trie node
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Aa", "Instrument 0", LocalDate.now(), 1.0d));
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("BB", "Instrument 0", LocalDate.now(), 2.0d));
+        final List<InstrumentPrice> instrumentPrices =
+            IntStream.range(0, 20000)
+                .mapToObj(priceIndex -> new InstrumentPrice("Vendor " + priceIndex % 3, "Instrument " + priceIndex / 3, LocalDate.now(), priceIndex))
+                .toList();
+        instrumentPriceCache.publishInstrumentPrices(instrumentPrices);
+        final IInstrumentPriceSnapshot snapshot = instrumentPriceCache.getSnapshot(LocalDate.now());
+
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("BB", "Instrument 0", LocalDate.now(), -2.0d));
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 100", LocalDate.now(), -1.0d));
+
+        final Map<String, InstrumentPrice> vendorPrices = snapshot.getAllInstrumentPricesForVendor("Vendor 1");
+        assertEquals(6667, vendorPrices.size());
+        assertEquals(301.0d, vendorPrices.get("Instrument 100").price(), 1.0e-6);
+        assertEquals(6667, vendorPrices.entrySet().stream().filter(entry -> entry.getKey().equals(entry.getValue().instrumentId())).count());
+
+        assertEquals(5, snapshot.getInstrumentPrice("Instrument 0").size());
+        assertEquals(2.0d, snapshot.getInstrumentPrice("Instrument 0").get("BB").price(), 1.0e-6);
+        assertEquals(-2.0d, instrumentPriceCache.getInstrumentPrice("Instrument 0", LocalDate.now()).get("BB").price(), 1.0e-6);
+        assertEquals(1.0d, instrumentPriceCache.getInstrumentPrice("Instrument 0", LocalDate.now()).get("Aa").price(), 1.0e-6);
+        assertEquals(-1.0d, instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor 1", LocalDate.now()).get("Instrument 100").price(), 1.0e-6);
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.adaton;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.impl.SlotTableCacheIndexFactory;
+import com.adaton.replication.IReplicationConnection;
+import com.adaton.replication.IReplicationSink;
+import com.adaton.replication.IReplicationSource;
+import com.adaton.replication.IReplicationTransport;
+import com.adaton.replication.impl.LoopbackReplicationTransport;
+import com.adaton.replication.impl.PriceReplica;
+import com.adaton.replication.impl.ReplicatingInstrumentPriceCache;
+import com.adaton.retention.impl.DayCountRetentionPolicy;
+import com.adaton.service.IInstrumentPriceCache;
+import com.adaton.service.impl.InstrumentPriceCache;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicationTest {
+
+    private static final LocalDate FIRST_DATE = LocalDate.of(2024, 1, 1);
+
+    private static List<InstrumentPrice> pricesForDate(LocalDate priceDate, int instrumentCount, double priceOffset) {
+        return IntStream.range(0, instrumentCount * 3)
+            .mapToObj(priceIndex -> new InstrumentPrice("Vendor " + priceIndex % 3, "Instrument " + priceIndex / 3, priceDate, priceIndex + priceOffset))
+            .toList();
+    }
+
+    private static InstrumentPriceCache newCache() {
+        return new InstrumentPriceCache(new SlotTableCacheIndexFactory(), new DayCountRetentionPolicy(5));
+    }
+
+    private static void assertSamePrices(IInstrumentPriceCache expectedCache, IInstrumentPriceCache actualCache) {
+        assertEquals(expectedCache.getCachedPriceDates(), actualCache.getCachedPriceDates());
+        for (LocalDate priceDate : expectedCache.getCachedPriceDates()) {
+            for (int vendorIndex = 0; vendorIndex < 3; vendorIndex++) {
+                assertEquals(
+                    expectedCache.getAllInstrumentPricesForVendor("Vendor " + vendorIndex, priceDate),
+                    actualCache.getAllInstrumentPricesForVendor("Vendor " + vendorIndex, priceDate)
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testFollowersCatchUpAndFollow() throws InterruptedException {
+        final var replicationTransport = new LoopbackReplicationTransport();
+        final var leaderCache = newCache();
+        final var leader = new ReplicatingInstrumentPriceCache(leaderCache, replicationTransport, 4);
+
+        // The first follower catches up from the delta log
+        leader.publishInstrumentPrices(pricesForDate(FIRST_DATE, 100, 0.0d));
+        leader.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 1", FIRST_DATE, -1.0d));
+        assertEquals(2L, leader.getSequence());
+        try (var logFollower = new PriceReplica(newCache(), replicationTransport)) {
+            logFollower.start();
+            assertTrue(logFollower.awaitSequence(leader.getSequence(), Duration.ofSeconds(5L)));
+            assertSamePrices(leaderCache, logFollower.getInstrumentPriceCache());
+
+            // The second follower joins once the log no longer holds every batch, and catches up from a snapshot
+            for (int dayIndex = 1; dayIndex < 5; dayIndex++) {
+                leader.publishInstrumentPrices(pricesForDate(FIRST_DATE.plusDays(dayIndex), 50, dayIndex));
+            }
+            try (var snapshotFollower = new PriceReplica(newCache(), replicationTransport)) {
+                snapshotFollower.start();
+                assertTrue(snapshotFollower.awaitSequence(leader.getSequence(), Duration.ofSeconds(5L)));
+                assertSamePrices(leaderCache, snapshotFollower.getInstrumentPriceCache());
+
+                // Both follow later publications, with their lag measured
+                leader.publishInstrumentPrice(new InstrumentPrice("Vendor 2", "Instrument 7", FIRST_DATE.plusDays(4L), -2.0d));
+                for (PriceReplica follower : List.of(logFollower, snapshotFollower)) {
+                    assertTrue(follower.awaitSequence(leader.getSequence(), Duration.ofSeconds(5L)));
+                    assertEquals(leader.getSequence(), follower.getLatestSequence());
+                    assertFalse(follower.getReplicationDelay().isNegative());
+                    assertEquals(-2.0d, follower.getInstrumentPriceCache().getPrice("Vendor 2", "Instrument 7", FIRST_DATE.plusDays(4L)));
+                    assertSamePrices(leaderCache, follower.getInstrumentPriceCache());
+                }
+            }
+        }
+        assertEquals(0L, replicationTransport.getFailedCount());
+    }
+
+    @Test
+    public void testFollowerRecoversMissedBatches() throws InterruptedException {
+        // Transport losing the third batch sent
+        final var loopbackTransport = new LoopbackReplicationTransport();
+        final AtomicLong sentCount = new AtomicLong();
+        final IReplicationTransport lossyTransport = new IReplicationTransport() {
+            @Override
+            public void bind(IReplicationSource source) {
+                loopbackTransport.bind(source);
+            }
+
+            @Override
+            public void send(ByteBuffer batch) {
+                if (sentCount.incrementAndGet() != 3L) {
+                    loopbackTransport.send(batch);
+                }
+            }
+
+            @Override
+            public IReplicationConnection connect(IReplicationSink sink) {
+                return loopbackTransport.connect(sink);
+            }
+        };
+
+        final var leaderCache = newCache();
+        final var leader = new ReplicatingInstrumentPriceCache(leaderCache, lossyTransport);
+        try (var follower = new PriceReplica(newCache(), lossyTransport)) {
+            follower.start();
+            for (int priceIndex = 0; priceIndex < 5; priceIndex++) {
+                leader.publishInstrumentPrice(new InstrumentPrice("Vendor 0", "Instrument " + priceIndex, FIRST_DATE, priceIndex));
+            }
+
+            // The batches after the lost one are held back until it is recovered from the delta log
+            assertTrue(follower.awaitSequence(5L, Duration.ofSeconds(5L)));
+            assertEquals(5, follower.getInstrumentPriceCache().getAllInstrumentPricesForVendor("Vendor 0", FIRST_DATE).size());
+            assertSamePrices(leaderCache, follower.getInstrumentPriceCache());
+        }
+    }
+
+    @Test
+    public void testFollowerReceivesPricesHeldBeforeReplication() throws InterruptedException {
+        final var replicationTransport = new LoopbackReplicationTransport();
+        final var leaderCache = newCache();
+        leaderCache.publishInstrumentPrices(pricesForDate(FIRST_DATE, 100, 0.0d));
+
+        // The prices held when the cache was wrapped were never sent, the follower receives them in a snapshot
+        final var leader = new ReplicatingInstrumentPriceCache(leaderCache, replicationTransport);
+        assertEquals(1L, leader.getSequence());
+        try (var follower = new PriceReplica(newCache(), replicationTransport)) {
+            follower.start();
+            assertTrue(follower.awaitSequence(leader.getSequence(), Duration.ofSeconds(5L)));
+            assertSamePrices(leaderCache, follower.getInstrumentPriceCache());
+
+            leader.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 1", FIRST_DATE, -1.0d));
+            assertEquals(2L, leader.getSequence());
+            assertTrue(follower.awaitSequence(leader.getSequence(), Duration.ofSeconds(5L)));
+            assertSamePrices(leaderCache, follower.getInstrumentPriceCache());
+        }
+    }
+
+}
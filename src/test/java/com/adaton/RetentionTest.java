@@ -0,0 +1,142 @@
+package com.adaton;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.persistence.impl.CacheIndexFactory;
+import com.adaton.retention.impl.BusinessCalendarRetentionPolicy;
+import com.adaton.retention.impl.CompositeRetentionPolicy;
+import com.adaton.retention.impl.DayCountRetentionPolicy;
+import com.adaton.retention.impl.MemoryBudgetRetentionPolicy;
+import com.adaton.retention.impl.VendorCapRetentionPolicy;
+import com.adaton.retention.impl.WeekdayBusinessCalendar;
+import com.adaton.service.IInstrumentPriceSnapshot;
+import com.adaton.service.impl.InstrumentPriceCache;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RetentionTest {
+
+    // A Monday
+    private static final LocalDate MONDAY = LocalDate.of(2024, 1, 1);
+
+    private static void publishDays(InstrumentPriceCache instrumentPriceCache, String vendorId, LocalDate fromDate, int dayCount) {
+        for (int dayIndex = 0; dayIndex < dayCount; dayIndex++) {
+            instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice(vendorId, "Instrument 1", fromDate.plusDays(dayIndex), 100.0d + dayIndex));
+        }
+    }
+
+    // Retention also runs on a background thread whenever a new date is cached, so the tests assert the retained
+    // dates after a synchronous run rather than the number of dates evicted by it
+
+    @Test
+    public void testBusinessCalendarRetention() {
+        // New Year's Day is a holiday, so the window of three business days ends on Friday and starts on Wednesday
+        final var retentionPolicy = new BusinessCalendarRetentionPolicy(new WeekdayBusinessCalendar(Set.of(MONDAY)), 3);
+        final InstrumentPriceCache instrumentPriceCache = new InstrumentPriceCache(new CacheIndexFactory(), retentionPolicy);
+        publishDays(instrumentPriceCache, "Vendor 1", MONDAY, 7);
+        // Looking up a date keeps it among the recent days until it is evicted, if a background run has not evicted it yet
+        instrumentPriceCache.getPrice("Vendor 1", "Instrument 1", MONDAY);
+
+        instrumentPriceCache.runRetention();
+        assertEquals(Set.of(MONDAY.plusDays(2L), MONDAY.plusDays(3L), MONDAY.plusDays(4L)), instrumentPriceCache.getCachedPriceDates());
+        assertTrue(Double.isNaN(instrumentPriceCache.getPrice("Vendor 1", "Instrument 1", MONDAY)));
+        assertEquals(102.0d, instrumentPriceCache.getPrice("Vendor 1", "Instrument 1", MONDAY.plusDays(2L)));
+
+        // Tuesday is outside the window and is no longer admitted
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 1", MONDAY.plusDays(1L), 1.0d));
+        assertTrue(instrumentPriceCache.getInstrumentPrice("Instrument 1", MONDAY.plusDays(1L)).isEmpty());
+    }
+
+    @Test
+    public void testMemoryBudgetRetention() {
+        // A budget smaller than a single price only retains the latest date
+        final InstrumentPriceCache smallBudgetCache = new InstrumentPriceCache(new CacheIndexFactory(), new MemoryBudgetRetentionPolicy(1L));
+        publishDays(smallBudgetCache, "Vendor 1", MONDAY, 5);
+        smallBudgetCache.runRetention();
+        assertEquals(Set.of(MONDAY.plusDays(4L)), smallBudgetCache.getCachedPriceDates());
+
+        final InstrumentPriceCache largeBudgetCache = new InstrumentPriceCache(new CacheIndexFactory(), new MemoryBudgetRetentionPolicy(1L << 30));
+        publishDays(largeBudgetCache, "Vendor 1", MONDAY, 5);
+        largeBudgetCache.runRetention();
+        assertEquals(5, largeBudgetCache.getCachedPriceDates().size());
+    }
+
+    @Test
+    public void testVendorCapRetention() {
+        final InstrumentPriceCache instrumentPriceCache = new InstrumentPriceCache(new CacheIndexFactory(), new VendorCapRetentionPolicy(2L));
+        publishDays(instrumentPriceCache, "Vendor 1", MONDAY, 5);
+
+        instrumentPriceCache.runRetention();
+        assertEquals(Set.of(MONDAY.plusDays(3L), MONDAY.plusDays(4L)), instrumentPriceCache.getCachedPriceDates());
+    }
+
+    @Test
+    public void testCompositeRetentionAndAdmission() {
+        final var retentionPolicy = new CompositeRetentionPolicy(new DayCountRetentionPolicy(3), new VendorCapRetentionPolicy(2L));
+        final InstrumentPriceCache instrumentPriceCache = new InstrumentPriceCache(new CacheIndexFactory(), retentionPolicy);
+        publishDays(instrumentPriceCache, "Vendor 1", MONDAY, 5);
+        publishDays(instrumentPriceCache, "Vendor 2", MONDAY.plusDays(4L), 1);
+
+        // The day count evicts the first two dates and the vendor cap of Vendor 1 evicts the third
+        instrumentPriceCache.runRetention();
+        assertEquals(Set.of(MONDAY.plusDays(3L), MONDAY.plusDays(4L)), instrumentPriceCache.getCachedPriceDates());
+
+        // Dates before an evicted date are not admitted any more
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 1", MONDAY, 1.0d));
+        assertEquals(Set.of(MONDAY.plusDays(3L), MONDAY.plusDays(4L)), instrumentPriceCache.getCachedPriceDates());
+    }
+
+    @Test
+    public void testSpillHookReceivesEvictedDays() {
+        final List<IInstrumentPriceSnapshot> spilledDays = new CopyOnWriteArrayList<>();
+        final InstrumentPriceCache instrumentPriceCache =
+            new InstrumentPriceCache(new CacheIndexFactory(), new DayCountRetentionPolicy(2), spilledDays::add);
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 2", "Instrument 2", MONDAY, 50.0d));
+        publishDays(instrumentPriceCache, "Vendor 1", MONDAY, 3);
+
+        instrumentPriceCache.runRetention();
+        assertEquals(1, spilledDays.size());
+        final IInstrumentPriceSnapshot spilledDay = spilledDays.get(0);
+        assertEquals(MONDAY, spilledDay.getPriceDate());
+        assertEquals(100.0d, spilledDay.getInstrumentPrice("Instrument 1").get("Vendor 1").price());
+        assertEquals(50.0d, spilledDay.getAllInstrumentPricesForVendor("Vendor 2").get("Instrument 2").price());
+        assertEquals(0L, instrumentPriceCache.getSpillFailedCount());
+    }
+
+    @Test
+    public void testSpillFailuresAreCounted() {
+        final InstrumentPriceCache instrumentPriceCache =
+            new InstrumentPriceCache(new CacheIndexFactory(), new DayCountRetentionPolicy(1), evictedDay -> {
+                throw new IOException("spill target unavailable");
+            });
+        publishDays(instrumentPriceCache, "Vendor 1", MONDAY, 3);
+
+        // The days are evicted regardless of the failed spill
+        instrumentPriceCache.runRetention();
+        assertEquals(Set.of(MONDAY.plusDays(2L)), instrumentPriceCache.getCachedPriceDates());
+        assertEquals(2L, instrumentPriceCache.getSpillFailedCount());
+    }
+
+    @Test
+    public void testRetentionRunsOnInjectedExecutor() {
+        // The cache only retains on its own executor, here holding the requested runs until the test runs them
+        final List<Runnable> requestedRuns = new ArrayList<>();
+        final InstrumentPriceCache instrumentPriceCache =
+            new InstrumentPriceCache(new CacheIndexFactory(), new DayCountRetentionPolicy(2), null, requestedRuns::add);
+        publishDays(instrumentPriceCache, "Vendor 1", MONDAY, 4);
+        assertEquals(4, instrumentPriceCache.getCachedPriceDates().size());
+
+        // A run is only queued once until it starts
+        assertEquals(1, requestedRuns.size());
+        requestedRuns.forEach(Runnable::run);
+        assertEquals(Set.of(MONDAY.plusDays(2L), MONDAY.plusDays(3L)), instrumentPriceCache.getCachedPriceDates());
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.adaton;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.model.PriceChangeEvent;
+import com.adaton.model.PriceChangeEvent.ChangeType;
+import com.adaton.model.PriceSubscriptionFilter;
+import com.adaton.model.PublishResult;
+import com.adaton.persistence.impl.SlotTableCacheIndexFactory;
+import com.adaton.retention.impl.DayCountRetentionPolicy;
+import com.adaton.service.IInstrumentPriceSnapshot;
+import com.adaton.service.impl.InstrumentPriceCache;
+import com.adaton.service.impl.ShardedInstrumentPriceCache;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedCacheTest {
+
+    private static final LocalDate FIRST_DATE = LocalDate.of(2024, 1, 1);
+
+    private static List<InstrumentPrice> pricesForDate(LocalDate priceDate, int instrumentCount) {
+        return IntStream.range(0, instrumentCount * 4)
+            .mapToObj(priceIndex -> new InstrumentPrice("Vendor " + priceIndex % 4, "Instrument " + priceIndex / 4, priceDate, priceIndex))
+            .toList();
+    }
+
+    @Test
+    public void testLookupsAcrossStripes() {
+        final var instrumentPriceCache = new ShardedInstrumentPriceCache(4);
+        final List<InstrumentPrice> instrumentPrices = pricesForDate(FIRST_DATE, 1000);
+        final PublishResult publishResult = instrumentPriceCache.publishInstrumentPrices(instrumentPrices);
+        assertEquals(4000, publishResult.acceptedCount());
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 7", FIRST_DATE, -1.0d));
+
+        // Every stripe holds a share of the instruments, and the date
+        instrumentPriceCache.getStripes().forEach(stripe -> {
+            assertEquals(List.of(FIRST_DATE), List.copyOf(stripe.getCachedPriceDates()));
+            assertFalse(stripe.getAllInstrumentPricesForVendor("Vendor 0", FIRST_DATE).isEmpty());
+        });
+
+        final Map<String, InstrumentPrice> vendorPrices = instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor 1", FIRST_DATE);
+        assertEquals(1000, vendorPrices.size());
+        assertEquals(-1.0d, vendorPrices.get("Instrument 7").price());
+        vendorPrices.forEach((instrumentId, instrumentPrice) -> assertEquals(instrumentId, instrumentPrice.instrumentId()));
+        assertEquals(4, instrumentPriceCache.getInstrumentPrice("Instrument 999", FIRST_DATE).size());
+        assertTrue(instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor 4", FIRST_DATE).isEmpty());
+        assertTrue(instrumentPriceCache.getInstrumentPrice("Instrument 0", FIRST_DATE.plusDays(1L)).isEmpty());
+
+        // Bulk queries visit every stripe, in date order unless run in parallel
+        instrumentPriceCache.publishInstrumentPrices(pricesForDate(FIRST_DATE.plusDays(1L), 10));
+        final List<InstrumentPrice> queriedPrices = new ArrayList<>();
+        instrumentPriceCache.getInstrumentPrices(List.of("Instrument 1", "Instrument 2", "Instrument 500"), FIRST_DATE, FIRST_DATE.plusDays(1L), false, queriedPrices::add);
+        assertEquals(20, queriedPrices.size());
+        assertEquals(List.of(FIRST_DATE, FIRST_DATE.plusDays(1L)), queriedPrices.stream().map(InstrumentPrice::priceDate).distinct().toList());
+        final List<InstrumentPrice> parallelPrices = Collections.synchronizedList(new ArrayList<>());
+        instrumentPriceCache.getAllInstrumentPricesForVendors(List.of("Vendor 2", "Vendor 3"), FIRST_DATE, FIRST_DATE.plusDays(1L), true, parallelPrices::add);
+        assertEquals(2020, parallelPrices.size());
+
+        final IInstrumentPriceSnapshot snapshot = instrumentPriceCache.getSnapshot(FIRST_DATE);
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 7", FIRST_DATE, -2.0d));
+        assertEquals(-1.0d, snapshot.getAllInstrumentPricesForVendor("Vendor 1").get("Instrument 7").price());
+        assertEquals(-1.0d, snapshot.getInstrumentPrice("Instrument 7").get("Vendor 1").price());
+    }
+
+    @Test
+    public void testStripesRetainTheSameDates() {
+        final var instrumentPriceCache =
+            new ShardedInstrumentPriceCache(
+                4,
+                () -> new InstrumentPriceCache(new SlotTableCacheIndexFactory(), new DayCountRetentionPolicy(2))
+            );
+
+        // Each date only holds one instrument, the other stripes still hold the date
+        for (int dayIndex = 0; dayIndex < 4; dayIndex++) {
+            instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument " + dayIndex, FIRST_DATE.plusDays(dayIndex), dayIndex));
+        }
+        instrumentPriceCache.runRetention();
+
+        assertEquals(List.of(FIRST_DATE.plusDays(2L), FIRST_DATE.plusDays(3L)), List.copyOf(instrumentPriceCache.getCachedPriceDates()));
+        instrumentPriceCache.getStripes().forEach(stripe ->
+            assertEquals(List.of(FIRST_DATE.plusDays(2L), FIRST_DATE.plusDays(3L)), List.copyOf(stripe.getCachedPriceDates())));
+        final PublishResult publishResult =
+            instrumentPriceCache.publishInstrumentPrices(List.of(new InstrumentPrice("Vendor 1", "Instrument 9", FIRST_DATE, 0.0d)));
+        assertEquals(1, publishResult.rejectedAsTooOldCount());
+    }
+
+    @Test
+    public void testEvictionDeliveredOnceLastStripeEvicts() throws InterruptedException {
+        // The stripes share an executor that only holds the requested runs, so that each stripe is retained on demand
+        final List<Runnable> requestedRuns = Collections.synchronizedList(new ArrayList<>());
+        final var instrumentPriceCache =
+            new ShardedInstrumentPriceCache(
+                2,
+                () -> new InstrumentPriceCache(new SlotTableCacheIndexFactory(), new DayCountRetentionPolicy(1), null, requestedRuns::add)
+            );
+        final BlockingQueue<PriceChangeEvent> evictions = new LinkedBlockingQueue<>();
+        instrumentPriceCache.subscribe(PriceSubscriptionFilter.all(), priceChanges -> priceChanges.stream()
+            .filter(priceChange -> priceChange.changeType() == ChangeType.DAY_EVICTED)
+            .forEach(evictions::add));
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 1", FIRST_DATE, 1.0d));
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 1", FIRST_DATE.plusDays(1L), 2.0d));
+
+        // The date stays cached while a stripe still holds it
+        instrumentPriceCache.getStripes().get(0).runRetention();
+        assertEquals(List.of(FIRST_DATE, FIRST_DATE.plusDays(1L)), List.copyOf(instrumentPriceCache.getCachedPriceDates()));
+        assertNull(evictions.poll(100L, TimeUnit.MILLISECONDS));
+
+        instrumentPriceCache.getStripes().get(1).runRetention();
+        assertEquals(List.of(FIRST_DATE.plusDays(1L)), List.copyOf(instrumentPriceCache.getCachedPriceDates()));
+        assertEquals(PriceChangeEvent.dayEvicted(FIRST_DATE), evictions.poll(5L, TimeUnit.SECONDS));
+        instrumentPriceCache.runRetention();
+        assertNull(evictions.poll(100L, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testConcurrentPublishers() throws Exception {
+        final var instrumentPriceCache = new ShardedInstrumentPriceCache(8);
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> publishers = new ArrayList<>();
+            for (int threadIndex = 0; threadIndex < 4; threadIndex++) {
+                final String vendorId = "Vendor " + threadIndex;
+                publishers.add(executorService.submit(() -> {
+                    for (int instrumentIndex = 0; instrumentIndex < 5000; instrumentIndex++) {
+                        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice(vendorId, "Instrument " + instrumentIndex, FIRST_DATE, instrumentIndex));
+                    }
+                }));
+            }
+            for (Future<?> publisher : publishers) {
+                publisher.get();
+            }
+        }
+        finally {
+            executorService.shutdown();
+        }
+
+        for (int threadIndex = 0; threadIndex < 4; threadIndex++) {
+            assertEquals(5000, instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor " + threadIndex, FIRST_DATE).size());
+        }
+        assertEquals(4, instrumentPriceCache.getInstrumentPrice("Instrument 4999", FIRST_DATE).size());
+    }
+
+}
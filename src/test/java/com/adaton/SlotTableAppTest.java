@@ -0,0 +1,124 @@
+package com.adaton;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.model.PublishResult;
+import com.adaton.service.IInstrumentPriceSnapshot;
+import com.adaton.persistence.impl.SlotTableCacheIndexFactory;
+import com.adaton.service.impl.InstrumentPriceCache;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the cache tests against the slot table store, with large bulk publications applied in parallel.
+ */
+public class SlotTableAppTest extends AppTest {
+
+    private static final ForkJoinPool BULK_PUBLISH_POOL = new ForkJoinPool(4);
+
+    @Override
+    protected InstrumentPriceCache getCacheInstance() {
+        return new InstrumentPriceCache(new SlotTableCacheIndexFactory(), BULK_PUBLISH_POOL);
+    }
+
+    @Test
+    public void testLargeParallelBulkPublication() {
+        final var instrumentPriceCache = getCacheInstance();
+        final LocalDate today = LocalDate.now();
+
+        // Enough instruments to span several pages of every vendor column, and a correction of each price
+        final List<InstrumentPrice> instrumentPrices = new ArrayList<>();
+        IntStream.range(0, 5000).forEach(instrumentIndex -> {
+            for (int vendorIndex = 0; vendorIndex < 3; vendorIndex++) {
+                instrumentPrices.add(new InstrumentPrice("Vendor " + vendorIndex, "Instrument " + instrumentIndex, today, instrumentIndex));
+            }
+        });
+        IntStream.range(0, 5000).forEach(instrumentIndex ->
+            instrumentPrices.add(new InstrumentPrice("Vendor 0", "Instrument " + instrumentIndex, today, -instrumentIndex)));
+
+        final PublishResult publishResult = instrumentPriceCache.publishInstrumentPrices(instrumentPrices);
+        assertEquals(20000, publishResult.acceptedCount());
+        assertEquals(5000, publishResult.supersededCount());
+
+        final Map<String, InstrumentPrice> vendorPrices = instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor 0", today);
+        assertEquals(5000, vendorPrices.size());
+        assertEquals(-4999.0d, vendorPrices.get("Instrument 4999").price());
+        vendorPrices.forEach((instrumentId, instrumentPrice) -> assertEquals(instrumentId, instrumentPrice.instrumentId()));
+
+        final Map<String, InstrumentPrice> instrumentPricesForId = instrumentPriceCache.getInstrumentPrice("Instrument 1234", today);
+        assertEquals(3, instrumentPricesForId.size());
+        assertEquals(-1234.0d, instrumentPricesForId.get("Vendor 0").price());
+        assertEquals(1234.0d, instrumentPricesForId.get("Vendor 2").price());
+        assertNull(instrumentPricesForId.get("Vendor 3"));
+        // Lookups of an instrument share one view of its row
+        assertSame(instrumentPricesForId, instrumentPriceCache.getInstrumentPrice("Instrument 1234", today));
+        assertTrue(instrumentPriceCache.getAllInstrumentPricesForVendor("Vendor 3", today).isEmpty());
+        assertEquals(15000L, instrumentPriceCache.getCacheMetrics().getSnapshot().dayStatistics().get(0).priceCount());
+    }
+
+    @Test
+    public void testPublicationBySymbolId() {
+        final var instrumentPriceCache = getCacheInstance();
+        final LocalDate today = LocalDate.now();
+        final int vendorId = instrumentPriceCache.getVendorSymbols().intern("Vendor 1");
+        final int[] instrumentIds =
+            IntStream.range(0, 1000).map(instrumentIndex -> instrumentPriceCache.getInstrumentSymbols().intern("Instrument " + instrumentIndex)).toArray();
+        for (int instrumentId : instrumentIds) {
+            instrumentPriceCache.publishInstrumentPrice(vendorId, instrumentId, (int) today.toEpochDay(), instrumentId);
+        }
+        assertEquals(new InstrumentPrice("Vendor 1", "Instrument 7", today, instrumentIds[7]), instrumentPriceCache.getInstrumentPrice("Instrument 7", today).get("Vendor 1"));
+        assertThrows(IllegalArgumentException.class, () -> instrumentPriceCache.publishInstrumentPrice(vendorId + 1, instrumentIds[0], (int) today.toEpochDay(), 0.0d));
+
+        // Once the prices exist, publishing new ones allocates nothing per price
+        final var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long allocatedBytesBefore = threadMXBean.getCurrentThreadAllocatedBytes();
+        for (int round = 0; round < 100; round++) {
+            for (int instrumentId : instrumentIds) {
+                instrumentPriceCache.publishInstrumentPrice(vendorId, instrumentId, (int) today.toEpochDay(), round);
+            }
+        }
+        final long allocatedBytes = threadMXBean.getCurrentThreadAllocatedBytes() - allocatedBytesBefore;
+        assertTrue(allocatedBytes < 100_000L, allocatedBytes + " bytes allocated by 100000 publications");
+        assertEquals(99.0d, instrumentPriceCache.getInstrumentPrice("Instrument 999", today).get("Vendor 1").price());
+    }
+
+    @Test
+    public void testSnapshotWhilePublishing() throws InterruptedException {
+        final var instrumentPriceCache = getCacheInstance();
+        final LocalDate today = LocalDate.now();
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 0", "Instrument 0", today, 0.0d));
+
+        // Snapshots are taken without waiting for the publisher, and each price is in both orientations
+        final Thread publisher = new Thread(() -> {
+            for (int instrumentIndex = 1; instrumentIndex < 20000; instrumentIndex++) {
+                instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor " + instrumentIndex % 3, "Instrument " + instrumentIndex, today, instrumentIndex));
+            }
+        });
+        publisher.start();
+        while (publisher.isAlive()) {
+            final IInstrumentPriceSnapshot snapshot = instrumentPriceCache.getSnapshot(today);
+            final int vendorPriceCount =
+                IntStream.range(0, 3).map(vendorIndex -> snapshot.getAllInstrumentPricesForVendor("Vendor " + vendorIndex).size()).sum();
+            final List<InstrumentPrice> snapshotPrices = new ArrayList<>();
+            snapshot.forEachInstrumentPrice(snapshotPrices::add);
+            assertEquals(vendorPriceCount, snapshotPrices.size());
+            for (InstrumentPrice instrumentPrice : snapshotPrices) {
+                assertEquals(instrumentPrice, snapshot.getInstrumentPrice(instrumentPrice.instrumentId()).get(instrumentPrice.vendorId()));
+            }
+            assertThrows(UnsupportedOperationException.class, () -> snapshot.getInstrumentPrice("Instrument 0").put("Vendor 3", new InstrumentPrice("Vendor 3", "Instrument 0", today, 0.0d)));
+        }
+        publisher.join();
+        final IInstrumentPriceSnapshot snapshot = instrumentPriceCache.getSnapshot(today);
+        assertEquals(6667, snapshot.getAllInstrumentPricesForVendor("Vendor 0").size());
+        assertEquals(19999.0d, snapshot.getInstrumentPrice("Instrument 19999").get("Vendor 1").price());
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.adaton;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.service.impl.InstrumentPriceCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotTest {
+
+    @TempDir
+    Path snapshotDirectory;
+
+    private static List<InstrumentPrice> pricesForDate(LocalDate priceDate) {
+        return IntStream.range(0, 300)
+            .mapToObj(priceIndex -> new InstrumentPrice("Vendor " + priceIndex % 3, "Instrument " + priceIndex / 3, priceDate, priceIndex))
+            .toList();
+    }
+
+    @Test
+    public void testSnapshotAndWarmRestart() throws IOException {
+        final LocalDate today = LocalDate.now();
+        final LocalDate yesterday = today.minusDays(1L);
+
+        final var instrumentPriceCache = new InstrumentPriceCache();
+        instrumentPriceCache.publishInstrumentPrices(pricesForDate(today));
+        instrumentPriceCache.publishInstrumentPrices(pricesForDate(yesterday));
+        assertEquals(2, instrumentPriceCache.writeSnapshot(snapshotDirectory));
+
+        // Nothing changed since the previous snapshot
+        assertEquals(0, instrumentPriceCache.writeSnapshot(snapshotDirectory));
+
+        // Restart from the snapshot
+        final var restartedCache = new InstrumentPriceCache();
+        assertEquals(2, restartedCache.loadSnapshot(snapshotDirectory));
+
+        final Map<String, InstrumentPrice> vendorPrices = restartedCache.getAllInstrumentPricesForVendor("Vendor 1", today);
+        assertEquals(100, vendorPrices.size());
+        assertEquals(new InstrumentPrice("Vendor 1", "Instrument 10", today, 31.0d), vendorPrices.get("Instrument 10"));
+        vendorPrices.forEach((instrumentId, instrumentPrice) -> assertEquals(instrumentId, instrumentPrice.instrumentId()));
+
+        final Map<String, InstrumentPrice> instrumentPrices = restartedCache.getInstrumentPrice("Instrument 99", yesterday);
+        assertEquals(3, instrumentPrices.size());
+        assertEquals(new InstrumentPrice("Vendor 2", "Instrument 99", yesterday, 299.0d), instrumentPrices.get("Vendor 2"));
+        assertNull(instrumentPrices.get("Vendor 3"));
+        assertTrue(restartedCache.getInstrumentPrice("Instrument 100", yesterday).isEmpty());
+
+        // Publish a correction and a new price over a restored date
+        restartedCache.publishInstrumentPrices(
+            List.of(
+                new InstrumentPrice("Vendor 1", "Instrument 10", today, -31.0d),
+                new InstrumentPrice("Vendor 3", "Instrument 10", today, 1000.0d)
+            )
+        );
+        final Map<String, InstrumentPrice> correctedPrices = restartedCache.getInstrumentPrice("Instrument 10", today);
+        assertEquals(4, correctedPrices.size());
+        assertEquals(-31.0d, correctedPrices.get("Vendor 1").price(), 1.0e-6);
+        assertEquals(30.0d, correctedPrices.get("Vendor 0").price(), 1.0e-6);
+
+        // Only the corrected date is written again
+        assertEquals(1, restartedCache.writeSnapshot(snapshotDirectory));
+
+        final var secondRestartedCache = new InstrumentPriceCache();
+        assertEquals(2, secondRestartedCache.loadSnapshot(snapshotDirectory));
+        assertEquals(correctedPrices, secondRestartedCache.getInstrumentPrice("Instrument 10", today));
+        assertEquals(100, secondRestartedCache.getAllInstrumentPricesForVendor("Vendor 1", today).size());
+    }
+
+    @Test
+    public void testCorruptSnapshotIsSkipped() throws IOException {
+        final LocalDate today = LocalDate.now();
+        final LocalDate yesterday = today.minusDays(1L);
+        final var instrumentPriceCache = new InstrumentPriceCache();
+        instrumentPriceCache.publishInstrumentPrices(pricesForDate(today));
+        instrumentPriceCache.publishInstrumentPrices(pricesForDate(yesterday));
+        assertEquals(2, instrumentPriceCache.writeSnapshot(snapshotDirectory));
+
+        // A snapshot torn by a crash does not keep the other dates from loading
+        final Path tornFile = snapshotDirectory.resolve(yesterday + ".snapshot");
+        final byte[] snapshotBytes = Files.readAllBytes(tornFile);
+        Files.write(tornFile, Arrays.copyOf(snapshotBytes, snapshotBytes.length / 2));
+        Files.write(snapshotDirectory.resolve(today.minusDays(2L) + ".snapshot"), new byte[0]);
+
+        final var restartedCache = new InstrumentPriceCache();
+        assertEquals(1, restartedCache.loadSnapshot(snapshotDirectory));
+        assertEquals(2L, restartedCache.getCorruptSnapshotCount());
+        assertEquals(100, restartedCache.getAllInstrumentPricesForVendor("Vendor 1", today).size());
+        assertTrue(restartedCache.getAllInstrumentPricesForVendor("Vendor 1", yesterday).isEmpty());
+    }
+
+    @Test
+    public void testSnapshotOfEvictedDateIsDeleted() throws IOException {
+        final var instrumentPriceCache = new InstrumentPriceCache();
+        final LocalDate earliestDate = LocalDate.now().minusDays(29L);
+        IntStream.range(0, 30)
+            .forEach(dayIndex -> instrumentPriceCache.publishInstrumentPrice(
+                new InstrumentPrice("Vendor 1", "Instrument 1", earliestDate.plusDays(dayIndex), dayIndex)));
+        assertEquals(30, instrumentPriceCache.writeSnapshot(snapshotDirectory));
+        assertTrue(Files.exists(snapshotDirectory.resolve(earliestDate + ".snapshot")));
+
+        // Publishing a new date evicts the earliest one
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 1", LocalDate.now().plusDays(1L), 30.0d));
+        instrumentPriceCache.runRetention();
+        assertEquals(1, instrumentPriceCache.writeSnapshot(snapshotDirectory));
+        assertFalse(Files.exists(snapshotDirectory.resolve(earliestDate + ".snapshot")));
+    }
+
+}
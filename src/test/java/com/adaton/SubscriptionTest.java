@@ -0,0 +1,202 @@
+package com.adaton;
+
+import com.adaton.model.InstrumentPrice;
+import com.adaton.model.PriceChangeEvent;
+import com.adaton.model.PriceChangeEvent.ChangeType;
+import com.adaton.model.PriceSubscriptionFilter;
+import com.adaton.persistence.impl.SlotTableCacheIndexFactory;
+import com.adaton.retention.impl.DayCountRetentionPolicy;
+import com.adaton.service.IPriceSubscription;
+import com.adaton.service.impl.InstrumentPriceCache;
+import com.adaton.service.impl.ShardedInstrumentPriceCache;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubscriptionTest {
+
+    private static final LocalDate FIRST_DATE = LocalDate.of(2024, 1, 1);
+
+    private static List<PriceChangeEvent> awaitChanges(BlockingQueue<PriceChangeEvent> priceChanges, int changeCount) throws InterruptedException {
+        final List<PriceChangeEvent> receivedChanges = new ArrayList<>();
+        while (receivedChanges.size() < changeCount) {
+            final PriceChangeEvent priceChange = priceChanges.poll(5L, TimeUnit.SECONDS);
+            assertNotNull(priceChange, "expected " + changeCount + " changes, received " + receivedChanges);
+            receivedChanges.add(priceChange);
+        }
+        return receivedChanges;
+    }
+
+    @Test
+    public void testPriceChanges() throws InterruptedException {
+        final var instrumentPriceCache = new InstrumentPriceCache();
+        final BlockingQueue<PriceChangeEvent> priceChanges = new LinkedBlockingQueue<>();
+        instrumentPriceCache.subscribe(PriceSubscriptionFilter.forVendor("Vendor 1"), priceChanges::addAll);
+
+        final InstrumentPrice v1i1 = new InstrumentPrice("Vendor 1", "Instrument 1", FIRST_DATE, 100.0d);
+        instrumentPriceCache.publishInstrumentPrice(v1i1);
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 2", "Instrument 1", FIRST_DATE, 200.0d));
+        assertEquals(List.of(PriceChangeEvent.added(v1i1)), awaitChanges(priceChanges, 1));
+
+        final InstrumentPrice v1i1Corrected = new InstrumentPrice("Vendor 1", "Instrument 1", FIRST_DATE, 101.0d);
+        instrumentPriceCache.publishInstrumentPrice(v1i1Corrected);
+        assertEquals(List.of(PriceChangeEvent.updated(v1i1, v1i1Corrected)), awaitChanges(priceChanges, 1));
+
+        // Bulk publications report the price each price replaces, cached or earlier in the batch
+        final InstrumentPrice v1i2 = new InstrumentPrice("Vendor 1", "Instrument 2", FIRST_DATE, 300.0d);
+        final InstrumentPrice v1i1Bulk = new InstrumentPrice("Vendor 1", "Instrument 1", FIRST_DATE, 102.0d);
+        instrumentPriceCache.publishInstrumentPrices(List.of(v1i2, v1i1Bulk, new InstrumentPrice("Vendor 2", "Instrument 2", FIRST_DATE, 400.0d)));
+        final List<PriceChangeEvent> bulkChanges = awaitChanges(priceChanges, 2);
+        assertTrue(bulkChanges.contains(PriceChangeEvent.added(v1i2)));
+        assertTrue(bulkChanges.contains(PriceChangeEvent.updated(v1i1Corrected, v1i1Bulk)));
+        assertNull(priceChanges.poll(100L, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testConflationAndBackpressure() throws InterruptedException {
+        final var instrumentPriceCache = new InstrumentPriceCache();
+        final CountDownLatch firstBatchReceived = new CountDownLatch(1);
+        final CountDownLatch listenerReleased = new CountDownLatch(1);
+        final BlockingQueue<PriceChangeEvent> priceChanges = new LinkedBlockingQueue<>();
+        final IPriceSubscription priceSubscription =
+            instrumentPriceCache.subscribe(
+                PriceSubscriptionFilter.all(),
+                receivedChanges -> {
+                    firstBatchReceived.countDown();
+                    try {
+                        listenerReleased.await();
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    priceChanges.addAll(receivedChanges);
+                },
+                3
+            );
+
+        final List<InstrumentPrice> v1i1Prices =
+            IntStream.range(0, 4).mapToObj(priceIndex -> new InstrumentPrice("Vendor 1", "Instrument 1", FIRST_DATE, priceIndex)).toList();
+        instrumentPriceCache.publishInstrumentPrice(v1i1Prices.get(0));
+        assertTrue(firstBatchReceived.await(5L, TimeUnit.SECONDS));
+
+        // While the listener is stalled, changes to the same key are conflated and changes to new keys are bounded
+        final InstrumentPrice v1i2 = new InstrumentPrice("Vendor 1", "Instrument 2", FIRST_DATE, 0.0d);
+        final InstrumentPrice v1i2Corrected = new InstrumentPrice("Vendor 1", "Instrument 2", FIRST_DATE, 1.0d);
+        final InstrumentPrice v1i3 = new InstrumentPrice("Vendor 1", "Instrument 3", FIRST_DATE, 0.0d);
+        instrumentPriceCache.publishInstrumentPrice(v1i1Prices.get(1));
+        instrumentPriceCache.publishInstrumentPrice(v1i2);
+        instrumentPriceCache.publishInstrumentPrices(List.of(v1i1Prices.get(2), v1i1Prices.get(3), v1i2Corrected, v1i3));
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 4", FIRST_DATE, 0.0d));
+        assertEquals(1L, priceSubscription.getDroppedCount());
+
+        listenerReleased.countDown();
+        assertEquals(
+            List.of(
+                PriceChangeEvent.added(v1i1Prices.get(0)),
+                PriceChangeEvent.updated(v1i1Prices.get(0), v1i1Prices.get(3)),
+                PriceChangeEvent.added(v1i2Corrected),
+                PriceChangeEvent.added(v1i3)
+            ),
+            awaitChanges(priceChanges, 4)
+        );
+        assertEquals(0L, priceSubscription.getFailedCount());
+    }
+
+    @Test
+    public void testConcurrentPublishersDeliverTheCachedPrice() throws InterruptedException {
+        final var instrumentPriceCache = new InstrumentPriceCache();
+        final AtomicReference<InstrumentPrice> deliveredPrice = new AtomicReference<>();
+        final List<InstrumentPrice> deliveredPrices = Collections.synchronizedList(new ArrayList<>());
+        instrumentPriceCache.subscribe(PriceSubscriptionFilter.all(), priceChanges ->
+            priceChanges.forEach(priceChange -> {
+                deliveredPrices.add(priceChange.newPrice());
+                deliveredPrice.set(priceChange.newPrice());
+            }));
+
+        // Publishers of one key record their changes in any order, the last change delivered still has the cached price
+        final Thread[] publishers = new Thread[4];
+        for (int publisherIndex = 0; publisherIndex < publishers.length; publisherIndex++) {
+            final int firstPrice = publisherIndex * 10000;
+            publishers[publisherIndex] = new Thread(() -> IntStream.range(firstPrice, firstPrice + 10000).forEach(
+                price -> instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 1", FIRST_DATE, price))));
+            publishers[publisherIndex].start();
+        }
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+
+        final InstrumentPrice cachedPrice = instrumentPriceCache.getInstrumentPrice("Instrument 1", FIRST_DATE).get("Vendor 1");
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+        while (! cachedPrice.equals(deliveredPrice.get()) && System.nanoTime() - deadline < 0L) {
+            Thread.sleep(10L);
+        }
+        assertEquals(cachedPrice, deliveredPrice.get());
+        // A change recorded after its price was delivered is not delivered again
+        synchronized (deliveredPrices) {
+            for (int priceIndex = 1; priceIndex < deliveredPrices.size(); priceIndex++) {
+                assertNotEquals(deliveredPrices.get(priceIndex - 1), deliveredPrices.get(priceIndex));
+            }
+        }
+    }
+
+    @Test
+    public void testDayEvictions() throws InterruptedException {
+        final var instrumentPriceCache = new InstrumentPriceCache(new SlotTableCacheIndexFactory(), new DayCountRetentionPolicy(2));
+        final BlockingQueue<PriceChangeEvent> priceChanges = new LinkedBlockingQueue<>();
+        final IPriceSubscription priceSubscription =
+            instrumentPriceCache.subscribe(PriceSubscriptionFilter.forDate(FIRST_DATE), priceChanges::addAll);
+
+        final InstrumentPrice firstPrice = new InstrumentPrice("Vendor 1", "Instrument 1", FIRST_DATE, 100.0d);
+        instrumentPriceCache.publishInstrumentPrice(firstPrice);
+        assertEquals(List.of(PriceChangeEvent.added(firstPrice)), awaitChanges(priceChanges, 1));
+        for (int dayIndex = 1; dayIndex < 3; dayIndex++) {
+            instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 1", FIRST_DATE.plusDays(dayIndex), 100.0d));
+        }
+        instrumentPriceCache.runRetention();
+        final PriceChangeEvent eviction = awaitChanges(priceChanges, 1).get(0);
+        assertEquals(ChangeType.DAY_EVICTED, eviction.changeType());
+        assertEquals(FIRST_DATE, eviction.priceDate());
+
+        // No change is delivered once the subscription is closed
+        priceSubscription.close();
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 2", FIRST_DATE.plusDays(2L), 100.0d));
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 1", FIRST_DATE.plusDays(3L), 100.0d));
+        instrumentPriceCache.runRetention();
+        assertNull(priceChanges.poll(100L, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testShardedSubscription() throws InterruptedException {
+        final var instrumentPriceCache =
+            new ShardedInstrumentPriceCache(
+                4,
+                () -> new InstrumentPriceCache(new SlotTableCacheIndexFactory(), new DayCountRetentionPolicy(1))
+            );
+        final BlockingQueue<PriceChangeEvent> priceChanges = new LinkedBlockingQueue<>();
+        instrumentPriceCache.subscribe(PriceSubscriptionFilter.all(), priceChanges::addAll);
+
+        final List<InstrumentPrice> instrumentPrices =
+            IntStream.range(0, 100).mapToObj(instrumentIndex -> new InstrumentPrice("Vendor 1", "Instrument " + instrumentIndex, FIRST_DATE, instrumentIndex)).toList();
+        instrumentPriceCache.publishInstrumentPrices(instrumentPrices);
+        assertTrue(awaitChanges(priceChanges, 100).containsAll(instrumentPrices.stream().map(PriceChangeEvent::added).toList()));
+
+        // Every stripe evicts the date, the eviction is received once
+        instrumentPriceCache.publishInstrumentPrice(new InstrumentPrice("Vendor 1", "Instrument 1", FIRST_DATE.plusDays(1L), 0.0d));
+        instrumentPriceCache.runRetention();
+        final List<PriceChangeEvent> changes = awaitChanges(priceChanges, 2);
+        assertTrue(changes.contains(PriceChangeEvent.dayEvicted(FIRST_DATE)));
+        assertNull(priceChanges.poll(100L, TimeUnit.MILLISECONDS));
+    }
+
+}